@@ -0,0 +1,91 @@
+/*
+ * Copyright 2011 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.typography.font.benchmark;
+
+import com.google.typography.font.sfntly.Tag;
+import com.google.typography.font.sfntly.table.core.CMap;
+import com.google.typography.font.sfntly.table.core.CMapTable;
+import com.google.typography.font.sfntly.table.core.CompiledCMap;
+import com.google.typography.font.tools.sfnttool.GlyphMapper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for looking up every mapped character of the best Unicode cmap,
+ * both directly and through the compiled lookup view.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CMapBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class CMapState {
+    public CMap cmap;
+    public CompiledCMap compiled;
+    public int[] characters;
+
+    @Setup(Level.Trial)
+    public void selectCMap(FontState fontState) {
+      CMapTable cmapTable = fontState.font.getTable(Tag.cmap);
+      this.cmap = new GlyphMapper(cmapTable).cmap();
+      this.compiled = this.cmap.compiled();
+      List<Integer> characters = new ArrayList<Integer>();
+      for (int character : this.cmap) {
+        characters.add(character);
+      }
+      this.characters = new int[characters.size()];
+      for (int i = 0; i < this.characters.length; i++) {
+        this.characters[i] = characters.get(i);
+      }
+    }
+  }
+
+  @Benchmark
+  public int glyphId(CMapState cmapState) {
+    int sum = 0;
+    for (int character : cmapState.characters) {
+      sum += cmapState.cmap.glyphId(character);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public int compiledGlyphId(CMapState cmapState) {
+    int sum = 0;
+    for (int character : cmapState.characters) {
+      sum += cmapState.compiled.glyphId(character);
+    }
+    return sum;
+  }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2011 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.typography.font.benchmark;
+
+import com.google.typography.font.sfntly.Font;
+import com.google.typography.font.sfntly.FontFactory;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Benchmark state holding one of the test fonts, both as the raw bytes and as
+ * a loaded font. The fonts are read from the directory named by the
+ * <code>sfntly.testdata</code> system property which defaults to the test data
+ * used by the unit tests.
+ */
+@State(Scope.Benchmark)
+public class FontState {
+
+  private static final String TESTDATA_PATH =
+      System.getProperty("sfntly.testdata", "../data/testdata/");
+
+  @Param({"DroidSans-Regular.ttf", "OpenSans-Regular.ttf", "Roboto-Regular.ttf"})
+  public String fontName;
+
+  public FontFactory factory;
+  public byte[] fontBytes;
+  public Font font;
+
+  @Setup(Level.Trial)
+  public void loadFont() throws IOException {
+    this.fontBytes = Files.readAllBytes(new File(TESTDATA_PATH, this.fontName).toPath());
+    this.factory = FontFactory.getInstance();
+    this.font = this.factory.loadFonts(this.fontBytes)[0];
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2011 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.typography.font.benchmark;
+
+import com.google.typography.font.sfntly.data.WritableFontData;
+import com.google.typography.font.tools.conversion.eot.EOTWriter;
+import com.google.typography.font.tools.conversion.woff.WoffWriter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for writing a loaded font out as an sfnt, as WOFF and as EOT.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+  @State(Scope.Thread)
+  public static class OutputState {
+    public final ByteArrayOutputStream out = new ByteArrayOutputStream();
+  }
+
+  @Benchmark
+  public int serializeFont(FontState fontState, OutputState outputState) throws IOException {
+    outputState.out.reset();
+    fontState.factory.serializeFont(fontState.font, outputState.out);
+    return outputState.out.size();
+  }
+
+  @Benchmark
+  public WritableFontData woffConvert(FontState fontState) {
+    return new WoffWriter().convert(fontState.font);
+  }
+
+  @Benchmark
+  public WritableFontData eotConvert(FontState fontState) throws IOException {
+    return new EOTWriter(false).convert(fontState.font);
+  }
+
+  @Benchmark
+  public WritableFontData eotConvertCompressed(FontState fontState) throws IOException {
+    return new EOTWriter(true).convert(fontState.font);
+  }
+}
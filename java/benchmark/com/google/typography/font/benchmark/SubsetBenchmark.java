@@ -0,0 +1,87 @@
+/*
+ * Copyright 2011 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.typography.font.benchmark;
+
+import com.google.typography.font.sfntly.Font;
+import com.google.typography.font.sfntly.Tag;
+import com.google.typography.font.tools.sfnttool.GlyphCoverage;
+import com.google.typography.font.tools.subsetter.GlyphSet;
+import com.google.typography.font.tools.subsetter.RenumberingSubsetter;
+import com.google.typography.font.tools.subsetter.Subsetter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark for renumbering subsetting of a font down to the glyphs needed for
+ * a short Latin text.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SubsetBenchmark {
+
+  private static final String SUBSET_TEXT =
+      "The quick brown fox jumps over the lazy dog. 0123456789 \u00e0\u00e9\u00ee\u00f5\u00fc";
+
+  @State(Scope.Benchmark)
+  public static class SubsetState {
+    public GlyphSet glyphs;
+    public Set<Integer> removeTables;
+
+    @Setup(Level.Trial)
+    public void computeCoverage(FontState fontState) {
+      this.glyphs = GlyphCoverage.getGlyphCoverageSet(fontState.font, SUBSET_TEXT);
+      // tables that the renumbering subsetter doesn't handle yet
+      this.removeTables = new HashSet<Integer>();
+      this.removeTables.add(Tag.GDEF);
+      this.removeTables.add(Tag.GPOS);
+      this.removeTables.add(Tag.GSUB);
+      this.removeTables.add(Tag.kern);
+      this.removeTables.add(Tag.hdmx);
+      this.removeTables.add(Tag.vmtx);
+      this.removeTables.add(Tag.VDMX);
+      this.removeTables.add(Tag.LTSH);
+      this.removeTables.add(Tag.DSIG);
+      this.removeTables.add(Tag.vhea);
+    }
+  }
+
+  @Benchmark
+  public Font.Builder subset(FontState fontState, SubsetState subsetState) throws IOException {
+    Subsetter subsetter = new RenumberingSubsetter(fontState.font, fontState.factory);
+    subsetter.setGlyphs(subsetState.glyphs);
+    subsetter.setRemoveTables(subsetState.removeTables);
+    return subsetter.subset();
+  }
+}
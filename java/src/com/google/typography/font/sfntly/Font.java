@@ -34,9 +34,14 @@ import com.google.typography.font.sfntly.table.core.MaximumProfileTable;
 import com.google.typography.font.sfntly.table.core.NameTable;
 import com.google.typography.font.sfntly.table.truetype.LocaTable;
 
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -48,6 +53,10 @@ import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 import java.util.logging.Logger;
 
 /**
@@ -80,7 +89,29 @@ public class Font {
     tableCheckSum(4),
     tableOffset(8),
     tableLength(12),
-    tableRecordSize(16);
+    tableRecordSize(16),
+
+    // Offsets within a TrueType Collection header
+    ttcTag(0),
+    ttcVersion(4),
+    ttcNumFonts(8),
+    ttcOffsetTableBegin(12),
+    ttcOffsetTableEntrySize(4),
+
+    // Offsets within a WOFF header
+    woffSignature(0),
+    woffFlavor(4),
+    woffLength(8),
+    woffNumTables(12),
+    woffTableRecordBegin(44),
+
+    // Offsets within a WOFF table record
+    woffTableTag(0),
+    woffTableOffset(4),
+    woffTableCompLength(8),
+    woffTableOrigLength(12),
+    woffTableOrigCheckSum(16),
+    woffTableRecordSize(20);
 
     private final int offset;
 
@@ -320,11 +351,23 @@ public class Font {
 
   public static final int SFNTVERSION_1 = Fixed1616.fixed(1, 0);
 
+  private static final int TTC_VERSION_1 = Fixed1616.fixed(1, 0);
+
   private final int sfntVersion;
   private final byte[] digest;
   private long checksum;
 
-  private Map<Integer, ? extends Table> tables; // these get set in the builder
+  private Map<Integer, Table> tables; // these get set in the builder
+
+  // the directory and data for a font that builds its tables on first access;
+  // these are null if all the tables were built by the builder
+  private Map<Integer, Header> lazyHeaders;
+  private Map<Header, WritableFontData> lazyData;
+  private boolean checksumSet;
+  /**
+   * Lock on all operations that build tables on first access.
+   */
+  private final Object lazyTablesLock = new Object();
 
   /**
    * Constructor.
@@ -367,6 +410,18 @@ public class Font {
    * @return the font checksum
    */
   public long checksum() {
+    if (this.lazyHeaders != null) {
+      synchronized (this.lazyTablesLock) {
+        if (!this.checksumSet) {
+          long fontChecksum = 0;
+          for (Table table : this.allTables().values()) {
+            fontChecksum += table.calculatedChecksum();
+          }
+          this.checksum = fontChecksum & 0xffffffffL;
+          this.checksumSet = true;
+        }
+      }
+    }
     return this.checksum;
   }
 
@@ -376,7 +431,7 @@ public class Font {
    * @return the number of tables
    */
   public int numTables() {
-    return this.tables.size();
+    return this.tableTags().size();
   }
 
   /**
@@ -385,7 +440,7 @@ public class Font {
    * @return a table iterator
    */
   public Iterator<? extends Table> iterator() {
-    return this.tables.values().iterator();
+    return this.allTables().values().iterator();
   }
 
   /**
@@ -395,7 +450,7 @@ public class Font {
    * @return true if the table is in the font; false otherwise
    */
   public boolean hasTable(int tag) {
-    return this.tables.containsKey(tag);
+    return this.tableTags().contains(tag);
   }
 
   /**
@@ -407,6 +462,11 @@ public class Font {
    */
   @SuppressWarnings("unchecked")
   public <T extends Table> T getTable(int tag) {
+    if (this.lazyHeaders != null) {
+      synchronized (this.lazyTablesLock) {
+        return (T) this.lazyTable(tag);
+      }
+    }
     return (T) this.tables.get(tag);
   }
 
@@ -416,7 +476,75 @@ public class Font {
    * @return an unmodifiable view of the tables in this font
    */
   public Map<Integer, ? extends Table> tableMap() {
-    return Collections.unmodifiableMap(this.tables);
+    return Collections.unmodifiableMap(this.allTables());
+  }
+
+  /**
+   * Get the tags of all the tables in this font without building any tables
+   * that have not been built yet.
+   *
+   * @return the table tags
+   */
+  private Set<Integer> tableTags() {
+    if (this.lazyHeaders != null) {
+      return this.lazyHeaders.keySet();
+    }
+    return this.tables.keySet();
+  }
+
+  /**
+   * Get all the tables in this font. If the tables are built on first access
+   * then any that have not been built yet are built.
+   *
+   * @return the tables in the font accessed by table tag
+   */
+  private Map<Integer, Table> allTables() {
+    if (this.lazyHeaders != null) {
+      synchronized (this.lazyTablesLock) {
+        for (Integer tag : this.lazyHeaders.keySet()) {
+          this.lazyTable(tag);
+        }
+      }
+    }
+    return this.tables;
+  }
+
+  /**
+   * Get the table with the specified tag, building it if this is the first
+   * access to it. Must be called holding the lazy tables lock.
+   *
+   * @param tag the identifier of the table
+   * @return the table specified if it exists; null otherwise
+   */
+  private Table lazyTable(int tag) {
+    Table table = this.tables.get(tag);
+    if (table != null || !this.lazyHeaders.containsKey(tag)) {
+      return table;
+    }
+    Map<Integer, Table.Builder<? extends Table>> builderMap =
+        new HashMap<Integer, Table.Builder<? extends Table>>();
+    Table.Builder<? extends Table> builder = this.lazyTableBuilder(tag);
+    builderMap.put(tag, builder);
+    // some tables need data from these to be built
+    for (int relatedTag : new int[] {Tag.head, Tag.hhea, Tag.maxp}) {
+      if (relatedTag != tag && this.lazyHeaders.containsKey(relatedTag)) {
+        builderMap.put(relatedTag, this.lazyTableBuilder(relatedTag));
+      }
+    }
+    Builder.interRelateBuilders(builderMap);
+    if (builder.readyToBuild()) {
+      table = builder.build();
+    }
+    if (table == null) {
+      throw new RuntimeException("Unable to build table - " + builder);
+    }
+    this.tables.put(tag, table);
+    return table;
+  }
+
+  private Table.Builder<? extends Table> lazyTableBuilder(int tag) {
+    Header header = this.lazyHeaders.get(tag);
+    return Table.Builder.getBuilder(header, this.lazyData.get(header));
   }
 
   @Override
@@ -448,6 +576,22 @@ public class Font {
     return sb.toString();
   }
 
+  /**
+   * Get the number of bytes that the font serializes to: the table directory
+   * and every table padded to a multiple of four bytes.
+   *
+   * @return the serialized length in bytes
+   */
+  public long serializedLength() {
+    long length =
+        Offset.tableRecordBegin.offset + this.numTables() * Offset.tableRecordSize.offset;
+    Iterator<? extends Table> iter = this.iterator();
+    while (iter.hasNext()) {
+      length += (iter.next().dataLength() + 3) & ~3;
+    }
+    return length;
+  }
+
   /**
    * Serialize the font to the output stream.
    *
@@ -463,6 +607,155 @@ public class Font {
     this.serializeTables(fos, tableRecords);
   }
 
+  /**
+   * Serialize the font to the channel. The table data is written straight from
+   * the storage backing each table with no intermediate copy wherever the
+   * storage allows it. If the channel supports gathering writes then the whole
+   * font is handed to the channel in a single write.
+   *
+   * @param channel the destination for the font serialization
+   * @param tableOrdering the table ordering to apply
+   * @throws IOException
+   */
+  void serialize(WritableByteChannel channel, List<Integer> tableOrdering) throws IOException {
+    List<Integer> finalTableOrdering = this.generateTableOrdering(tableOrdering);
+    List<Header> tableRecords = buildTableHeadersForSerialization(finalTableOrdering);
+    ByteArrayOutputStream headerStream = new ByteArrayOutputStream(
+        Offset.tableRecordBegin.offset + tableRecords.size() * Offset.tableRecordSize.offset);
+    this.serializeHeader(new FontOutputStream(headerStream), tableRecords);
+
+    List<ByteBuffer> buffers = new ArrayList<ByteBuffer>(2 * tableRecords.size() + 1);
+    buffers.add(ByteBuffer.wrap(headerStream.toByteArray()));
+    for (Header record : tableRecords) {
+      Table table = this.getTable(record.tag());
+      if (table == null) {
+        throw new IOException("Table out of sync with font header.");
+      }
+      ByteBuffer tableBuffer = table.readFontData().asByteBuffer();
+      buffers.add(tableBuffer);
+      int tableSize = tableBuffer.remaining();
+      int fillerSize = ((tableSize + 3) & ~3) - tableSize;
+      if (fillerSize > 0) {
+        buffers.add(ByteBuffer.wrap(new byte[fillerSize]));
+      }
+    }
+    writeFully(channel, buffers.toArray(new ByteBuffer[buffers.size()]));
+  }
+
+  /**
+   * Serialize the fonts as a TrueType Collection to the output stream. The
+   * offset tables of all the fonts come first and are followed by the table
+   * data. A table whose data is the same in several fonts, by checksum and then
+   * by content, is only written once and the offset table of each of those
+   * fonts points at that copy.
+   *
+   * @param fonts the fonts to serialize
+   * @param os the destination for the collection
+   * @param tableOrdering the table ordering to apply to each font
+   * @throws IOException
+   */
+  static void serializeCollection(Font[] fonts, OutputStream os, List<Integer> tableOrdering)
+      throws IOException {
+    int offset = Offset.ttcOffsetTableBegin.offset
+        + fonts.length * Offset.ttcOffsetTableEntrySize.offset;
+    int[] directoryOffsets = new int[fonts.length];
+    for (int i = 0; i < fonts.length; i++) {
+      directoryOffsets[i] = offset;
+      offset += Offset.tableRecordBegin.offset
+          + fonts[i].numTables() * Offset.tableRecordSize.offset;
+    }
+
+    List<List<Header>> fontRecords = new ArrayList<List<Header>>(fonts.length);
+    List<Table> tables = new ArrayList<Table>();
+    List<Integer> tableOffsets = new ArrayList<Integer>();
+    // checksum to the indices of the tables written with it
+    Map<Long, List<Integer>> tablesByChecksum = new HashMap<Long, List<Integer>>();
+    for (Font font : fonts) {
+      List<Header> records = new ArrayList<Header>(font.numTables());
+      for (Integer tag : font.generateTableOrdering(tableOrdering)) {
+        Table table = font.getTable(tag);
+        long checksum = table.calculatedChecksum();
+        List<Integer> candidates = tablesByChecksum.get(checksum);
+        if (candidates == null) {
+          candidates = new ArrayList<Integer>(1);
+          tablesByChecksum.put(checksum, candidates);
+        }
+        Integer tableOffset = null;
+        for (int index : candidates) {
+          if (sameData(tables.get(index).readFontData(), table.readFontData())) {
+            tableOffset = tableOffsets.get(index);
+            break;
+          }
+        }
+        if (tableOffset == null) {
+          tableOffset = offset;
+          candidates.add(tables.size());
+          tables.add(table);
+          tableOffsets.add(offset);
+          // write on boundary of 4 bytes
+          offset += (table.dataLength() + 3) & ~3;
+        }
+        records.add(new Header(tag, checksum, tableOffset, table.header().length()));
+      }
+      fontRecords.add(records);
+    }
+
+    FontOutputStream fos = new FontOutputStream(os);
+    fos.writeULong(Tag.ttcf);
+    fos.writeFixed(TTC_VERSION_1);
+    fos.writeULong(fonts.length);
+    for (int directoryOffset : directoryOffsets) {
+      fos.writeULong(directoryOffset);
+    }
+    for (int i = 0; i < fonts.length; i++) {
+      fonts[i].serializeHeader(fos, fontRecords.get(i));
+    }
+    for (Table table : tables) {
+      int tableSize = table.serialize(fos);
+      int fillerSize = ((tableSize + 3) & ~3) - tableSize;
+      for (int i = 0; i < fillerSize; i++) {
+        fos.write(0);
+      }
+    }
+  }
+
+  private static boolean sameData(ReadableFontData a, ReadableFontData b) {
+    if (a.length() != b.length()) {
+      return false;
+    }
+    byte[] bufferA = new byte[Math.min(a.length(), 8192)];
+    byte[] bufferB = new byte[bufferA.length];
+    for (int offset = 0; offset < a.length(); offset += bufferA.length) {
+      int length = Math.min(bufferA.length, a.length() - offset);
+      a.readBytes(offset, bufferA, 0, length);
+      b.readBytes(offset, bufferB, 0, length);
+      if (!Arrays.equals(bufferA, bufferB)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static void writeFully(WritableByteChannel channel, ByteBuffer[] buffers)
+      throws IOException {
+    if (channel instanceof GatheringByteChannel) {
+      GatheringByteChannel gatheringChannel = (GatheringByteChannel) channel;
+      long remaining = 0;
+      for (ByteBuffer buffer : buffers) {
+        remaining += buffer.remaining();
+      }
+      while (remaining > 0) {
+        remaining -= gatheringChannel.write(buffers);
+      }
+      return;
+    }
+    for (ByteBuffer buffer : buffers) {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    }
+  }
+
   /**
    * Build the table headers to be used for serialization. These headers will be
    * filled out with the data required for serialization. The headers will be
@@ -480,7 +773,7 @@ public class Font {
     int tableOffset =
         Offset.tableRecordBegin.offset + this.numTables() * Offset.tableRecordSize.offset;
     for (Integer tag : finalTableOrdering) {
-      Table table = this.tables.get(tag);
+      Table table = this.getTable(tag);
       if (table != null) {
         tableHeaders.add(new Header(
             tag, table.calculatedChecksum(), tableOffset, table.header().length()));
@@ -552,12 +845,12 @@ public class Font {
    * @return the full ordering for serialization
    */
   private List<Integer> generateTableOrdering(List<Integer> defaultTableOrdering) {
-    List<Integer> tableOrdering = new ArrayList<Integer>(this.tables.size());
+    List<Integer> tableOrdering = new ArrayList<Integer>(this.numTables());
     if (defaultTableOrdering == null) {
       defaultTableOrdering = defaultTableOrdering();
     }
 
-    Set<Integer> tablesInFont = new TreeSet<Integer>(this.tables.keySet());
+    Set<Integer> tablesInFont = new TreeSet<Integer>(this.tableTags());
 
     // add all the default ordering
     for (Integer tag : defaultTableOrdering) {
@@ -626,7 +919,7 @@ public class Font {
         fontIS = new FontInputStream(is);
         SortedSet<Header> records = readHeader(fontIS);
         this.dataBlocks = loadTableData(records, fontIS);
-        this.tableBuilders = buildAllTableBuilders(this.dataBlocks);
+        this.tableBuilders = null;
       } finally {
         fontIS.close();
       }
@@ -638,7 +931,24 @@ public class Font {
       }
       SortedSet<Header> records = readHeader(wfd, offsetToOffsetTable);
       this.dataBlocks = loadTableData(records, wfd);
-      this.tableBuilders = buildAllTableBuilders(this.dataBlocks);
+      this.tableBuilders = null;
+    }
+
+    private void loadFont(ReadableFontData rfd, int offsetToOffsetTable) throws IOException {
+      if (rfd == null) {
+        throw new IOException("No data for font.");
+      }
+      SortedSet<Header> records = readHeader(rfd, offsetToOffsetTable);
+      this.dataBlocks = loadTableData(records, rfd);
+      this.tableBuilders = null;
+    }
+
+    private void loadWoff(ReadableFontData rfd) throws IOException {
+      if (rfd == null) {
+        throw new IOException("No data for font.");
+      }
+      this.dataBlocks = loadWoffTableData(rfd);
+      this.tableBuilders = null;
     }
 
     static final Builder
@@ -655,10 +965,210 @@ public class Font {
       return builder;
     }
 
+    static final Builder getOTFBuilder(
+        FontFactory factory, ReadableFontData rfd, int offsetToOffsetTable) throws IOException {
+      Builder builder = new Builder(factory);
+      builder.loadFont(rfd, offsetToOffsetTable);
+      return builder;
+    }
+
+    static final Builder getWOFFBuilder(FontFactory factory, ReadableFontData rfd)
+        throws IOException {
+      Builder builder = new Builder(factory);
+      builder.loadWoff(rfd);
+      return builder;
+    }
+
     static final Builder getOTFBuilder(FontFactory factory) {
       return new Builder(factory);
     }
 
+    /**
+     * Load the member fonts of a TrueType Collection from a stream without
+     * buffering the whole stream. Each offset table is read when the stream
+     * reaches it and every distinct table range is then read once in offset
+     * order. Member fonts that share a table range share the data read for it,
+     * each through a copy on write view so that editing one font leaves the
+     * others alone.
+     */
+    static final Builder[] getOTFCollectionBuilders(FontFactory factory, InputStream is)
+        throws IOException {
+      if (is == null) {
+        throw new IOException("No input stream for font.");
+      }
+      FontInputStream fontIS = new FontInputStream(is);
+      try {
+        return loadCollection(factory, fontIS);
+      } finally {
+        fontIS.close();
+      }
+    }
+
+    private static Builder[] loadCollection(FontFactory factory, FontInputStream is)
+        throws IOException {
+      if (is.readULongAsInt() != Tag.ttcf) {
+        throw new IOException("Not a TrueType Collection.");
+      }
+      is.readFixed(); // version
+      int numFonts = is.readULongAsInt();
+      if (numFonts < 0) {
+        throw new IOException("Invalid number of fonts in collection: " + numFonts);
+      }
+      Builder[] builders = new Builder[numFonts];
+      List<SortedSet<Header>> records = new ArrayList<SortedSet<Header>>();
+      // offset table position to the fonts using it, for those not read yet
+      TreeMap<Integer, List<Integer>> directories = new TreeMap<Integer, List<Integer>>();
+      for (int fontNumber = 0; fontNumber < numFonts; fontNumber++) {
+        int offset = is.readULongAsInt();
+        List<Integer> fonts = directories.get(offset);
+        if (fonts == null) {
+          fonts = new ArrayList<Integer>();
+          directories.put(offset, fonts);
+        }
+        fonts.add(fontNumber);
+        records.add(null);
+      }
+
+      // table ranges keyed by offset and length and the ranges still to be read
+      Map<Long, WritableFontData> ranges = new HashMap<Long, WritableFontData>();
+      TreeSet<Long> pending = new TreeSet<Long>();
+      // bytes passed over while offset tables were still to come, in case a
+      // table is stored ahead of the offset table that refers to it
+      TreeMap<Long, byte[]> skipped = new TreeMap<Long, byte[]>();
+      logger.fine("########  Reading Collection Table Data");
+      while (!directories.isEmpty() || !pending.isEmpty()) {
+        long nextRange = pending.isEmpty() ? Long.MAX_VALUE : pending.first() >>> 32;
+        if (!directories.isEmpty() && directories.firstKey() <= nextRange) {
+          Map.Entry<Integer, List<Integer>> entry = directories.pollFirstEntry();
+          if (entry.getKey() < is.position()) {
+            throw new IOException("Offset table at " + entry.getKey() + " overlaps other data.");
+          }
+          skipTo(is, entry.getKey(), skipped, true);
+          Builder builder = new Builder(factory);
+          SortedSet<Header> headers = builder.readHeader(is);
+          Builder fontBuilder = builder;
+          for (int fontNumber : entry.getValue()) {
+            if (fontBuilder == null) {
+              // several fonts with one offset table
+              fontBuilder = new Builder(factory);
+              fontBuilder.sfntVersion = builder.sfntVersion;
+              fontBuilder.numTables = builder.numTables;
+              fontBuilder.searchRange = builder.searchRange;
+              fontBuilder.entrySelector = builder.entrySelector;
+              fontBuilder.rangeShift = builder.rangeShift;
+            }
+            builders[fontNumber] = fontBuilder;
+            records.set(fontNumber, headers);
+            fontBuilder = null;
+          }
+          for (Header header : headers) {
+            if (header.offset() < 0 || header.length() < 0) {
+              throw new IOException("Invalid table record " + header);
+            }
+            Long key = rangeKey(header.offset(), header.length());
+            if (!ranges.containsKey(key)) {
+              if (header.offset() < is.position()) {
+                ranges.put(key, readBack(header.offset(), header.length(), ranges, skipped));
+              } else {
+                ranges.put(key, null);
+                pending.add(key);
+              }
+            }
+          }
+        } else {
+          Long key = pending.pollFirst();
+          int offset = (int) (key >>> 32);
+          int length = (int) key.longValue();
+          if (offset < is.position()) {
+            // overlaps a range that has already been read
+            ranges.put(key, readBack(offset, length, ranges, skipped));
+            continue;
+          }
+          skipTo(is, offset, skipped, !directories.isEmpty());
+          logger.finest("\t\tStream Position = " + Integer.toHexString((int) is.position()));
+          WritableFontData data = WritableFontData.createWritableFontData(length);
+          // don't close this or the whole stream is gone
+          data.copyFrom(new FontInputStream(is, length), length);
+          if (is.position() != (long) offset + length) {
+            throw new EOFException("Collection ends inside the table data at " + offset);
+          }
+          ranges.put(key, data);
+        }
+      }
+
+      for (int fontNumber = 0; fontNumber < numFonts; fontNumber++) {
+        SortedSet<Header> headers = records.get(fontNumber);
+        Map<Header, WritableFontData> tableData =
+            new HashMap<Header, WritableFontData>(headers.size());
+        for (Header header : headers) {
+          WritableFontData data = ranges.get(rangeKey(header.offset(), header.length()));
+          tableData.put(header, WritableFontData.createCopyOnWriteFontData(data));
+        }
+        builders[fontNumber].dataBlocks = tableData;
+        builders[fontNumber].tableBuilders = null;
+      }
+      return builders;
+    }
+
+    private static Long rangeKey(int offset, int length) {
+      return ((long) offset << 32) | (length & 0xffffffffL);
+    }
+
+    /**
+     * Advance the stream to the offset, keeping the bytes passed over if asked
+     * to.
+     */
+    private static void skipTo(FontInputStream is, long offset, TreeMap<Long, byte[]> skipped,
+        boolean keep) throws IOException {
+      long gap = offset - is.position();
+      if (keep && gap > 0) {
+        long position = is.position();
+        byte[] b = new byte[(int) gap];
+        int read = 0;
+        while (read < b.length) {
+          int n = is.read(b, read, b.length - read);
+          if (n < 0) {
+            throw new EOFException("Collection ends before offset " + offset);
+          }
+          read += n;
+        }
+        skipped.put(position, b);
+        return;
+      }
+      while (gap > 0) {
+        long n = is.skip(gap);
+        if (n <= 0) {
+          if (is.read() < 0) {
+            throw new EOFException("Collection ends before offset " + offset);
+          }
+          n = 1;
+        }
+        gap -= n;
+      }
+    }
+
+    /**
+     * Get the data for a range the stream has already passed, from a table
+     * range containing it or from the bytes kept while skipping.
+     */
+    private static WritableFontData readBack(int offset, int length,
+        Map<Long, WritableFontData> ranges, TreeMap<Long, byte[]> skipped) throws IOException {
+      for (Map.Entry<Long, WritableFontData> entry : ranges.entrySet()) {
+        WritableFontData data = entry.getValue();
+        long start = entry.getKey() >>> 32;
+        if (data != null && start <= offset && start + data.length() >= (long) offset + length) {
+          return data.slice((int) (offset - start), length);
+        }
+      }
+      Map.Entry<Long, byte[]> entry = skipped.floorEntry((long) offset);
+      if (entry != null && entry.getKey() + entry.getValue().length >= (long) offset + length) {
+        int start = (int) (offset - entry.getKey());
+        return WritableFontData.createWritableFontData(
+            Arrays.copyOfRange(entry.getValue(), start, start + length));
+      }
+      throw new IOException("Table data at " + offset + " is out of order in the collection.");
+    }
+
     /**
      * Get the font factory that created this font builder.
      *
@@ -679,7 +1189,7 @@ public class Font {
         return true;
       }
 
-      for (Table.Builder<? extends Table> tableBuilder : this.tableBuilders.values()) {
+      for (Table.Builder<? extends Table> tableBuilder : this.tableBuilders().values()) {
         if (tableBuilder.readyToBuild() == false) {
           return false;
         }
@@ -694,12 +1204,22 @@ public class Font {
      * @return a {@link Font}
      */
     public Font build() {
-      Map<Integer, ? extends Table> tables = null;
+      Map<Integer, Table> tables = null;
 
       Font font = new Font(this.sfntVersion, this.digest);
 
-      if (this.tableBuilders.size() > 0) {
-        tables = buildTablesFromBuilders(font, this.tableBuilders);
+      if (this.tableBuilders == null && this.factory.lazyTableLoading()) {
+        // no table has been touched so leave building them to the font
+        Map<Integer, Header> headers = new HashMap<Integer, Header>();
+        for (Header header : this.dataBlocks.keySet()) {
+          headers.put(header.tag(), header);
+        }
+        font.lazyHeaders = headers;
+        font.lazyData = this.dataBlocks;
+        tables = new TreeMap<Integer, Table>();
+      } else if (this.tableBuilders().size() > 0) {
+        tables = buildTablesFromBuilders(
+            font, this.tableBuilders, this.factory.tableBuildingExecutor());
       }
       font.tables = tables;
       this.tableBuilders = null;
@@ -720,7 +1240,7 @@ public class Font {
      * Clear all table builders.
      */
     public void clearTableBuilders() {
-      this.tableBuilders.clear();
+      this.tableBuilders().clear();
     }
 
     /**
@@ -730,7 +1250,7 @@ public class Font {
      * @return true if there is a builder for that table; false otherwise
      */
     public boolean hasTableBuilder(int tag) {
-      return this.tableBuilders.containsKey(tag);
+      return this.tableBuilders().containsKey(tag);
     }
 
     /**
@@ -741,7 +1261,7 @@ public class Font {
      * @return the builder for the tag; null if there is no builder for that tag
      */
     public Table.Builder<? extends Table> getTableBuilder(int tag) {
-      Table.Builder<? extends Table> builder = this.tableBuilders.get(tag);
+      Table.Builder<? extends Table> builder = this.tableBuilders().get(tag);
       return builder;
     }
 
@@ -759,14 +1279,17 @@ public class Font {
     public Table.Builder<? extends Table> newTableBuilder(int tag) {
       Header header = new Header(tag);
       Table.Builder<? extends Table> builder = Table.Builder.getBuilder(header, null);
-      this.tableBuilders.put(header.tag(), builder);
+      this.tableBuilders().put(header.tag(), builder);
 
       return builder;
     }
 
     /**
      * Creates a new table builder for the table type given by the table id tag.
-     * It makes a copy of the data provided and uses that copy for the table.
+     * The table shares the data provided and only makes a private copy of it
+     * the first time the table data is written to, so an unedited table is
+     * serialized straight from the data provided. The data provided is never
+     * modified.
      *
      *  This new table has been added to the font and will replace any existing
      * builder for that table.
@@ -778,14 +1301,17 @@ public class Font {
      */
     public Table.Builder<? extends Table> newTableBuilder(int tag, ReadableFontData srcData) {
       WritableFontData data;
-      data = WritableFontData.createWritableFontData(srcData.length());
-      // TODO(stuartg): take over original data instead?
-      srcData.copyTo(data);
+      if (srcData.length() > 0) {
+        data = WritableFontData.createCopyOnWriteFontData(srcData);
+      } else {
+        // empty data stays growable
+        data = WritableFontData.createWritableFontData(0);
+      }
 
       Header header = new Header(tag, data.length());
       Table.Builder<? extends Table> builder = Table.Builder.getBuilder(header, data);
 
-      this.tableBuilders.put(tag, builder);
+      this.tableBuilders().put(tag, builder);
 
       return builder;
     }
@@ -797,7 +1323,7 @@ public class Font {
      * @return an unmodifiable view of the table builders in this font builder
      */
     public Map<Integer, Table.Builder<? extends Table>> tableBuilderMap() {
-      return Collections.unmodifiableMap(this.tableBuilders);
+      return Collections.unmodifiableMap(this.tableBuilders());
     }
 
     /**
@@ -807,7 +1333,7 @@ public class Font {
      * @return the table builder removed
      */
     public Table.Builder<? extends Table> removeTableBuilder(int tag) {
-      return this.tableBuilders.remove(tag);
+      return this.tableBuilders().remove(tag);
     }
 
     /**
@@ -816,13 +1342,26 @@ public class Font {
      * @return the number of table builders
      */
     public int tableBuilderCount() {
-      return this.tableBuilders.size();
+      return this.tableBuilders().size();
     }
 
     @SuppressWarnings("unused")
     private int sfntWrapperSize() {
       return Offset.sfntHeaderSize.offset +
-      (Offset.tableRecordSize.offset * this.tableBuilders.size());
+      (Offset.tableRecordSize.offset * this.tableBuilders().size());
+    }
+
+    /**
+     * Get the table builders. The table builders for a loaded font are only
+     * created when they are first needed.
+     *
+     * @return the table builders accessed by table tag
+     */
+    private Map<Integer, Table.Builder<? extends Table>> tableBuilders() {
+      if (this.tableBuilders == null) {
+        this.tableBuilders = buildAllTableBuilders(this.dataBlocks);
+      }
+      return this.tableBuilders;
     }
 
     private Map<Integer, Table.Builder<? extends Table>> buildAllTableBuilders(
@@ -844,7 +1383,7 @@ public class Font {
     }
 
     private static Map<Integer, Table> buildTablesFromBuilders(Font font,
-        Map<Integer, Table.Builder<? extends Table>> builderMap) {
+        Map<Integer, Table.Builder<? extends Table>> builderMap, Executor executor) {
       Map<Integer, Table> tableMap = new TreeMap<Integer, Table>();
 
       interRelateBuilders(builderMap);
@@ -853,22 +1392,25 @@ public class Font {
       boolean tablesChanged = false;
       FontHeaderTable.Builder headerTableBuilder = null;
       
-      // now build all the tables
+      // now build all the tables - only the header table depends on the others
+      List<FutureTask<Table>> tableTasks = new ArrayList<FutureTask<Table>>(builderMap.size());
       for (Table.Builder<? extends Table> builder : builderMap.values()) {
-        Table table = null;
         if (Tag.isHeaderTable(builder.header().tag())) {
           headerTableBuilder = (FontHeaderTable.Builder) builder;
           continue;
         }
-        if (builder.readyToBuild()) {
-          tablesChanged |= builder.changed();
-          table = builder.build();
-        }
-        if (table == null) {
-          throw new RuntimeException("Unable to build table - " + builder);
+        tablesChanged |= builder.changed();
+        FutureTask<Table> tableTask = new FutureTask<Table>(new TableBuildTask(builder));
+        if (executor != null) {
+          executor.execute(tableTask);
+        } else {
+          tableTask.run();
         }
-        long tableChecksum = table.calculatedChecksum();
-        fontChecksum += tableChecksum;
+        tableTasks.add(tableTask);
+      }
+      for (FutureTask<Table> tableTask : tableTasks) {
+        Table table = builtTable(tableTask);
+        fontChecksum += table.calculatedChecksum();
         tableMap.put(table.header().tag(), table);
       }
       
@@ -893,6 +1435,49 @@ public class Font {
       return tableMap;
     }
 
+    /**
+     * Builds a table and calculates its checksum so that the checksum can be
+     * done along with the build when tables are built concurrently.
+     */
+    private static final class TableBuildTask implements Callable<Table> {
+      private final Table.Builder<? extends Table> builder;
+
+      private TableBuildTask(Table.Builder<? extends Table> builder) {
+        this.builder = builder;
+      }
+
+      @Override
+      public Table call() {
+        Table table = null;
+        if (this.builder.readyToBuild()) {
+          table = this.builder.build();
+        }
+        if (table == null) {
+          throw new RuntimeException("Unable to build table - " + this.builder);
+        }
+        table.calculatedChecksum();
+        return table;
+      }
+    }
+
+    private static Table builtTable(FutureTask<Table> tableTask) {
+      try {
+        return tableTask.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException("Interrupted while building tables.", e);
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+        throw new RuntimeException(cause);
+      }
+    }
+
     private static void
     interRelateBuilders(Map<Integer, Table.Builder<? extends Table>> builderMap) {
       FontHeaderTable.Builder headerTableBuilder =
@@ -999,6 +1584,67 @@ public class Font {
       return records;
     }
 
+    /**
+     * Read the WOFF header and table directory and set up the data for each
+     * table. Compressed tables are inflated straight away unless the factory
+     * loads tables lazily, in which case each is inflated when it is first
+     * accessed.
+     */
+    private Map<Header, WritableFontData> loadWoffTableData(ReadableFontData fd)
+        throws IOException {
+      if (fd.length() < Offset.woffTableRecordBegin.offset
+          || fd.readULongAsInt(Offset.woffSignature.offset) != Tag.wOFF) {
+        throw new IOException("Not a WOFF font.");
+      }
+      int length = fd.readULongAsInt(Offset.woffLength.offset);
+      if (length != fd.length()) {
+        throw new IOException("WOFF length " + length + " does not match the data length "
+            + fd.length());
+      }
+      this.sfntVersion = fd.readFixed(Offset.woffFlavor.offset);
+      this.numTables = fd.readUShort(Offset.woffNumTables.offset);
+      if (Offset.woffTableRecordBegin.offset
+          + this.numTables * Offset.woffTableRecordSize.offset > length) {
+        throw new IOException("WOFF table directory is truncated.");
+      }
+
+      Map<Header, WritableFontData> tableData =
+          new HashMap<Header, WritableFontData>(this.numTables);
+      logger.fine("########  Reading WOFF Table Data");
+      boolean lazy = this.factory.lazyTableLoading();
+      int tableOffset = Offset.woffTableRecordBegin.offset;
+      for (int tableNumber = 0;
+      tableNumber < this.numTables;
+      tableNumber++, tableOffset += Offset.woffTableRecordSize.offset) {
+        int tag = fd.readULongAsInt(tableOffset + Offset.woffTableTag.offset);
+        int offset = fd.readULongAsInt(tableOffset + Offset.woffTableOffset.offset);
+        int compLength = fd.readULongAsInt(tableOffset + Offset.woffTableCompLength.offset);
+        int origLength = fd.readULongAsInt(tableOffset + Offset.woffTableOrigLength.offset);
+        if (offset < 0 || compLength < 0 || offset > length - compLength
+            || origLength < compLength) {
+          throw new IOException("Invalid WOFF table record for " + Tag.stringValue(tag));
+        }
+        Header tableHeader = new Header(tag,
+            fd.readULong(tableOffset + Offset.woffTableOrigCheckSum.offset), // checksum
+            offset,
+            origLength);
+        logger.finer("\t" + tableHeader);
+
+        ReadableFontData compressed = fd.slice(offset, compLength);
+        WritableFontData data;
+        if (compLength == origLength) {
+          // stored without compression
+          data = WritableFontData.createCopyOnWriteFontData(compressed);
+        } else if (lazy) {
+          data = WritableFontData.createInflatingFontData(compressed, origLength);
+        } else {
+          data = WritableFontData.createInflatedFontData(compressed, origLength);
+        }
+        tableData.put(tableHeader, data);
+      }
+      return tableData;
+    }
+
     private Map<Header, WritableFontData> loadTableData(
         SortedSet<Header> headers, WritableFontData fd) {
       Map<Header, WritableFontData> tableData =
@@ -1010,5 +1656,19 @@ public class Font {
       }
       return tableData;
     }
+
+    private Map<Header, WritableFontData> loadTableData(
+        SortedSet<Header> headers, ReadableFontData fd) {
+      Map<Header, WritableFontData> tableData =
+          new HashMap<Header, WritableFontData>(headers.size());
+      logger.fine("########  Reading Table Data");
+      for (Header tableHeader : headers) {
+        // share the read only data and only copy a table if it gets edited
+        WritableFontData data = WritableFontData.createCopyOnWriteFontData(
+            fd.slice(tableHeader.offset(), tableHeader.length()));
+        tableData.put(tableHeader, data);
+      }
+      return tableData;
+    }
   }
 }
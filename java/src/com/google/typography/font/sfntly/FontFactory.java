@@ -22,15 +22,22 @@ import com.google.typography.font.sfntly.data.ReadableFontData;
 import com.google.typography.font.sfntly.data.WritableFontData;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PushbackInputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.security.DigestInputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
  * The font factory. This is the root class for the creation and loading of fonts.
@@ -42,6 +49,8 @@ public final class FontFactory {
 
   // font building settings
   private boolean fingerprint = false;
+  private boolean lazyTableLoading = false;
+  private Executor tableBuildingExecutor = null;
 
   // font serialization settings
   List<Integer> tableOrdering;
@@ -110,6 +119,60 @@ public final class FontFactory {
     return this.fingerprint;
   }
 
+  /**
+   * Toggle whether fonts that are loaded build their tables only when they are
+   * first accessed. The table directory is still read at load time but each
+   * table is only built the first time it is requested from the font and its
+   * checksum is only calculated when asked for. This is useful when only a few
+   * tables of a font will be looked at. It only applies to fonts loaded with
+   * one of the <code>loadFonts</code> methods or built from a loaded font
+   * builder whose table builders were never accessed. The compressed tables of
+   * a WOFF font are also only inflated when they are first accessed. By
+   * default this is turned off.
+   *
+   * @param lazyTableLoading whether lazy table loading should be turned on or off
+   * @see #lazyTableLoading()
+   */
+  public void lazyTableLoading(boolean lazyTableLoading) {
+    this.lazyTableLoading = lazyTableLoading;
+  }
+
+  /**
+   * Get the state of the lazy table loading option for fonts that are loaded.
+   *
+   * @return true if lazy table loading is turned on; false otherwise
+   * @see #lazyTableLoading(boolean)
+   */
+  public boolean lazyTableLoading() {
+    return this.lazyTableLoading;
+  }
+
+  /**
+   * Set the executor used to build the tables of a font. When an executor is
+   * set each table other than the font header is built and checksummed as a
+   * separate task on the executor and the font header is fixed up once they
+   * have all finished. A <code>ForkJoinPool</code> is a good fit. When no
+   * executor is set the tables are built one after another on the calling
+   * thread. By default no executor is set.
+   *
+   * @param executor the executor to build tables on; null to build them on the
+   *        calling thread
+   * @see #tableBuildingExecutor()
+   */
+  public void setTableBuildingExecutor(Executor executor) {
+    this.tableBuildingExecutor = executor;
+  }
+
+  /**
+   * Get the executor used to build the tables of a font.
+   *
+   * @return the executor; null if tables are built on the calling thread
+   * @see #setTableBuildingExecutor(Executor)
+   */
+  public Executor tableBuildingExecutor() {
+    return this.tableBuildingExecutor;
+  }
+
   // input stream font loading
 
   /**
@@ -118,7 +181,8 @@ public final class FontFactory {
    * stream contains valid font data. Some font container formats may have more
    * than one font and in this case multiple font objects will be returned. If
    * the data in the stream cannot be parsed or is invalid an array of size zero
-   * will be returned.
+   * will be returned. WOFF 1.0 fonts are recognized by their signature and
+   * their tables are inflated when the tables are loaded.
    *
    * @param is the input stream font data
    * @return one or more fonts
@@ -127,9 +191,13 @@ public final class FontFactory {
   public Font[] loadFonts(InputStream is) throws IOException {
     PushbackInputStream pbis =
       new PushbackInputStream(new BufferedInputStream(is), FontFactory.LOOKAHEAD_SIZE);
-    if (isCollection(pbis)) {
+    int tag = peekTag(pbis);
+    if (tag == Tag.ttcf) {
       return loadCollection(pbis);
     }
+    if (tag == Tag.wOFF) {
+      return new Font[] {loadWoffForBuilding(pbis).build()};
+    }
     return new Font[] {loadSingleOTF(pbis) };
   }
 
@@ -148,9 +216,13 @@ public final class FontFactory {
   public Builder[] loadFontsForBuilding(InputStream is) throws IOException {
     PushbackInputStream pbis =
       new PushbackInputStream(new BufferedInputStream(is), FontFactory.LOOKAHEAD_SIZE);
-    if (isCollection(pbis)) {
+    int tag = peekTag(pbis);
+    if (tag == Tag.ttcf) {
       return loadCollectionForBuilding(pbis);
     }
+    if (tag == Tag.wOFF) {
+      return new Builder[] {loadWoffForBuilding(pbis)};
+    }
     return new Builder[] {loadSingleOTFForBuilding(pbis) };
   }
 
@@ -186,17 +258,38 @@ public final class FontFactory {
   }
 
   private Font.Builder[] loadCollectionForBuilding(InputStream is) throws IOException {
-    WritableFontData wfd = WritableFontData.createWritableFontData(is.available());
-    wfd.copyFrom(is);
-    // TOOD(stuartg): add collection loading from a stream
-    return loadCollectionForBuilding(wfd);
+    return Font.Builder.getOTFCollectionBuilders(this, is);
+  }
+
+  private Font.Builder loadWoffForBuilding(InputStream is) throws IOException {
+    MessageDigest digest = null;
+    if (this.fingerprintFont()) {
+      try {
+        digest = MessageDigest.getInstance("SHA-1");
+      } catch (NoSuchAlgorithmException e) {
+        throw new IOException("Unable to get requested message digest algorithm.", e);
+      }
+      is = new DigestInputStream(is, digest);
+    }
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    int read;
+    while ((read = is.read(buffer)) != -1) {
+      bos.write(buffer, 0, read);
+    }
+    Font.Builder builder = Font.Builder.getWOFFBuilder(
+        this, ReadableFontData.createReadableFontData(bos.toByteArray()));
+    if (this.fingerprintFont()) {
+      builder.setDigest(digest.digest());
+    }
+    return builder;
   }
 
-  static private boolean isCollection(PushbackInputStream pbis) throws IOException {
+  static private int peekTag(PushbackInputStream pbis) throws IOException {
     byte[] tag = new byte[4];
     pbis.read(tag);
     pbis.unread(tag);
-    return Tag.ttcf == Tag.intValue(tag);
+    return Tag.intValue(tag);
   }
 
   // ByteArray font loading
@@ -206,7 +299,8 @@ public final class FontFactory {
    * stream contains valid font data. Some font container formats may have more
    * than one font and in this case multiple font objects will be returned. If
    * the data in the stream cannot be parsed or is invalid an array of size zero
-   * will be returned.
+   * will be returned. WOFF 1.0 fonts are recognized by their signature and
+   * their tables are inflated when the tables are loaded.
    *
    * @param b the font data
    * @return one or more fonts
@@ -219,6 +313,9 @@ public final class FontFactory {
     if (isCollection(rfd)) {
       return loadCollection(rfd);
     }
+    if (isWoff(rfd)) {
+      return new Font[] {Font.Builder.getWOFFBuilder(this, rfd).build()};
+    }
     return new Font[] {loadSingleOTF(rfd)};
   }
 
@@ -239,6 +336,9 @@ public final class FontFactory {
     if (isCollection(wfd)) {
       return loadCollectionForBuilding(wfd);
     }
+    if (isWoff(wfd)) {
+      return new Font.Builder[] {Font.Builder.getWOFFBuilder(this, wfd)};
+    }
     return new Font.Builder[] {loadSingleOTFForBuilding(wfd, 0)};
   }
 
@@ -266,24 +366,153 @@ public final class FontFactory {
   }
 
   private Font.Builder[] loadCollectionForBuilding(WritableFontData wfd) throws IOException {
-    int ttcTag = wfd.readULongAsInt(Offset.TTCTag.offset);
-    long version = wfd.readFixed(Offset.Version.offset);
-    int numFonts = wfd.readULongAsInt(Offset.numFonts.offset);
+    int[] offsets = readCollectionOffsets(wfd);
+    Font.Builder[] builders = new Font.Builder[offsets.length];
+    for (int fontNumber = 0; fontNumber < offsets.length; fontNumber++) {
+      builders[fontNumber] = this.loadSingleOTFForBuilding(wfd, offsets[fontNumber]);
+    }
+    return builders;
+  }
 
-    Font.Builder[] builders = new Font.Builder[numFonts];
+  static private int[] readCollectionOffsets(ReadableFontData rfd) {
+    int ttcTag = rfd.readULongAsInt(Offset.TTCTag.offset);
+    long version = rfd.readFixed(Offset.Version.offset);
+    int numFonts = rfd.readULongAsInt(Offset.numFonts.offset);
+
+    int[] offsets = new int[numFonts];
     int offsetTableOffset = Offset.OffsetTable.offset;
     for (int fontNumber = 0; fontNumber < numFonts; fontNumber++,
         offsetTableOffset += FontData.DataSize.ULONG.size()) {
-      int offset = wfd.readULongAsInt(offsetTableOffset);
-      builders[fontNumber] = this.loadSingleOTFForBuilding(wfd, offset);
+      offsets[fontNumber] = rfd.readULongAsInt(offsetTableOffset);
     }
-    return builders;
+    return offsets;
   }
 
   static private boolean isCollection(ReadableFontData rfd) {
+    return Tag.ttcf == readTag(rfd);
+  }
+
+  static private boolean isWoff(ReadableFontData rfd) {
+    return Tag.wOFF == readTag(rfd);
+  }
+
+  static private int readTag(ReadableFontData rfd) {
     byte[] tag = new byte[4];
     rfd.readBytes(0, tag, 0, tag.length);
-    return Tag.ttcf == Tag.intValue(tag);
+    return Tag.intValue(tag);
+  }
+
+  // mapped file font loading
+
+  /**
+   * Load the font(s) from the file. The file is memory mapped read only rather
+   * than read into the heap so the font data is only paged in as the tables
+   * are accessed and the pages are shared with any other process that has the
+   * same file mapped. The current settings on the factory are used during the
+   * loading process. One or more fonts are returned if the file contains valid
+   * font data. Some font container formats may have more than one font and in
+   * this case multiple font objects will be returned.
+   *
+   * @param path the font file
+   * @return one or more fonts
+   * @throws IOException
+   */
+  public Font[] loadFonts(Path path) throws IOException {
+    FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+    try {
+      return loadFonts(channel);
+    } finally {
+      // the mapping stays valid after the channel is closed
+      channel.close();
+    }
+  }
+
+  /**
+   * Load the font(s) from the file channel. The whole of the channel is memory
+   * mapped read only rather than read into the heap. The channel may be closed
+   * once the fonts have been loaded.
+   *
+   * @param channel the font file channel
+   * @return one or more fonts
+   * @throws IOException
+   * @see #loadFonts(Path)
+   */
+  public Font[] loadFonts(FileChannel channel) throws IOException {
+    Font.Builder[] builders = loadFontsForBuilding(channel);
+    Font[] fonts = new Font[builders.length];
+    for (int i = 0; i < fonts.length; i++) {
+      fonts[i] = builders[i].build();
+    }
+    return fonts;
+  }
+
+  /**
+   * Load the font(s) from the file into font builders. The file is memory
+   * mapped read only and a table is only copied into the heap if it is edited
+   * through its builder.
+   *
+   * @param path the font file
+   * @return one or more font builders
+   * @throws IOException
+   * @see #loadFonts(Path)
+   */
+  public Font.Builder[] loadFontsForBuilding(Path path) throws IOException {
+    FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+    try {
+      return loadFontsForBuilding(channel);
+    } finally {
+      channel.close();
+    }
+  }
+
+  /**
+   * Load the font(s) from the file channel into font builders. The whole of
+   * the channel is memory mapped read only and a table is only copied into the
+   * heap if it is edited through its builder.
+   *
+   * @param channel the font file channel
+   * @return one or more font builders
+   * @throws IOException
+   * @see #loadFonts(Path)
+   */
+  public Font.Builder[] loadFontsForBuilding(FileChannel channel) throws IOException {
+    long size = channel.size();
+    if (size > Integer.MAX_VALUE) {
+      throw new IOException("Font file too large to map.");
+    }
+    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    ReadableFontData rfd = ReadableFontData.createReadableFontData(buffer);
+    MessageDigest digest = null;
+    if (this.fingerprintFont()) {
+      try {
+        digest = MessageDigest.getInstance("SHA-1");
+      } catch (NoSuchAlgorithmException e) {
+        throw new IOException("Unable to get requested message digest algorithm.", e);
+      }
+      digest.update(buffer.duplicate());
+    }
+    if (isCollection(rfd)) {
+      byte[] fileDigest = digest == null ? null : digest.digest();
+      int[] offsets = readCollectionOffsets(rfd);
+      Font.Builder[] builders = new Font.Builder[offsets.length];
+      for (int fontNumber = 0; fontNumber < offsets.length; fontNumber++) {
+        builders[fontNumber] = Font.Builder.getOTFBuilder(this, rfd, offsets[fontNumber]);
+        if (fileDigest != null) {
+          // the fonts of a collection share the file so each digest also covers the font number
+          digest.update(fileDigest);
+          digest.update(new byte[] {(byte) (fontNumber >> 24), (byte) (fontNumber >> 16),
+              (byte) (fontNumber >> 8), (byte) fontNumber});
+          builders[fontNumber].setDigest(digest.digest());
+        }
+      }
+      return builders;
+    }
+    Font.Builder builder = isWoff(rfd)
+        ? Font.Builder.getWOFFBuilder(this, rfd) : Font.Builder.getOTFBuilder(this, rfd, 0);
+    if (digest != null) {
+      builder.setDigest(digest.digest());
+    }
+    return new Font.Builder[] {builder};
   }
 
   // font serialization
@@ -300,6 +529,32 @@ public final class FontFactory {
     font.serialize(os, tableOrdering);
   }
 
+  /**
+   * Serialize the font to the channel. The table data is written to the
+   * channel straight from the storage backing each table so tables that have
+   * not been changed are not copied.
+   *
+   * @param font the font to serialize
+   * @param channel the destination channel for the font
+   * @throws IOException
+   */
+  public void serializeFont(Font font, WritableByteChannel channel) throws IOException {
+    font.serialize(channel, tableOrdering);
+  }
+
+  /**
+   * Serialize the fonts as a TrueType Collection to the output stream. Tables
+   * that are identical in several of the fonts are written once and shared by
+   * the offset tables of those fonts.
+   *
+   * @param fonts the fonts to serialize
+   * @param os the destination stream for the collection
+   * @throws IOException
+   */
+  public void serializeFonts(Font[] fonts, OutputStream os) throws IOException {
+    Font.serializeCollection(fonts, os, tableOrdering);
+  }
+
   /**
    * Set the table ordering to be used in serializing a font. The table ordering
    * is an ordered list of table ids and tables will be serialized in the order
@@ -28,6 +28,7 @@ import java.io.UnsupportedEncodingException;
  */
 public final class Tag {
   public static final int ttcf = Tag.intValue(new byte[]{'t', 't', 'c', 'f'});
+  public static final int wOFF = Tag.intValue(new byte[]{'w', 'O', 'F', 'F'});
 
   /***********************************************************************************
    *
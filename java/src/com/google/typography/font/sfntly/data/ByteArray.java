@@ -19,6 +19,7 @@ package com.google.typography.font.sfntly.data;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 /**
  * An abstraction to a contiguous array of bytes.
@@ -354,6 +355,67 @@ abstract class ByteArray<T extends ByteArray<T>> {
    */
   protected abstract int internalGet(int index, byte[] b, int offset, int length);
 
+  /**
+   * Gets the big endian unsigned 16 bit value at the index given. No bounds
+   * checking is done so the caller must make sure that both bytes are within
+   * the filled length. Subclasses with direct access to their storage should
+   * override this to avoid reading the bytes one at a time.
+   *
+   * @param index the location to get from
+   * @return the unsigned 16 bit value
+   */
+  protected int internalGetUShort(int index) {
+    return (this.internalGet(index) & 0xff) << 8 | (this.internalGet(index + 1) & 0xff);
+  }
+
+  /**
+   * Gets the big endian 32 bit value at the index given. No bounds checking is
+   * done so the caller must make sure that all four bytes are within the
+   * filled length. Subclasses with direct access to their storage should
+   * override this to avoid reading the bytes one at a time.
+   *
+   * @param index the location to get from
+   * @return the 32 bit value
+   */
+  protected int internalGetInt(int index) {
+    return this.internalGet(index) << 24 | (this.internalGet(index + 1) & 0xff) << 16
+        | (this.internalGet(index + 2) & 0xff) << 8 | (this.internalGet(index + 3) & 0xff);
+  }
+
+  /**
+   * Sums the run of big endian unsigned 32 bit values starting at the index
+   * given. No bounds checking is done so the caller must make sure that all of
+   * the values are within the filled length. Subclasses with direct access to
+   * their storage should override this to sum the values straight from it.
+   *
+   * @param index the location to start summing from
+   * @param count the number of 32 bit values to sum
+   * @return the sum of the unsigned values
+   */
+  protected long internalSumULongs(int index, int count) {
+    long sum = 0;
+    for (int end = index + count * 4; index < end; index += 4) {
+      sum += this.internalGetInt(index) & 0xffffffffL;
+    }
+    return sum;
+  }
+
+  /**
+   * Gets a read only view of the bytes at the index given of the given length.
+   * No bounds checking is done so the caller must make sure that the bytes are
+   * within the filled length. Subclasses whose storage can be viewed directly
+   * should override this to share the bytes rather than copy them.
+   *
+   * @param index the location to start the view from
+   * @param length the length of the view
+   * @return a read only buffer holding the bytes
+   */
+  protected ByteBuffer internalByteBuffer(int index, int length) {
+    byte[] b = new byte[length];
+    this.internalGet(index, b, 0, length);
+    return ByteBuffer.wrap(b).asReadOnlyBuffer();
+  }
+
   /**
    * Close this instance of the ByteArray.
    */
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2010 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.typography.font.sfntly.data;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * A fixed size implementation of the ByteArray interface that shares the data
+ * of another font data object until it is first written to. At that point a
+ * private copy of the shared data is made and all further access goes to the
+ * copy. The shared data is never modified.
+ */
+final class CopyOnWriteByteArray extends ByteArray<CopyOnWriteByteArray> {
+
+  private ReadableFontData source;
+  private MemoryByteArray copy;
+
+  /**
+   * Construct a new CopyOnWriteByteArray sharing the data given. The entire
+   * length of the source data is considered filled and readable.
+   *
+   * @param source the data to share until the first write
+   */
+  public CopyOnWriteByteArray(ReadableFontData source) {
+    super(source.length(), source.length());
+    this.source = source;
+  }
+
+  private MemoryByteArray copy() {
+    if (this.copy == null) {
+      MemoryByteArray copy = new MemoryByteArray(this.size());
+      this.source.array.copyTo(0, copy, this.source.boundOffset(0), this.size());
+      this.copy = copy;
+      this.source = null;
+    }
+    return this.copy;
+  }
+
+  @Override
+  protected void internalPut(int index, byte b) {
+    this.copy().internalPut(index, b);
+  }
+
+  @Override
+  protected int internalPut(int index, byte[] b, int offset, int length) {
+    return this.copy().internalPut(index, b, offset, length);
+  }
+
+  @Override
+  protected int internalGet(int index) {
+    if (this.copy != null) {
+      return this.copy.internalGet(index);
+    }
+    return this.source.array.internalGet(this.source.boundOffset(index));
+  }
+
+  @Override
+  protected int internalGet(int index, byte[] b, int offset, int length) {
+    if (this.copy != null) {
+      return this.copy.internalGet(index, b, offset, length);
+    }
+    return this.source.array.internalGet(this.source.boundOffset(index), b, offset, length);
+  }
+
+  @Override
+  protected int internalGetUShort(int index) {
+    if (this.copy != null) {
+      return this.copy.internalGetUShort(index);
+    }
+    return this.source.array.internalGetUShort(this.source.boundOffset(index));
+  }
+
+  @Override
+  protected int internalGetInt(int index) {
+    if (this.copy != null) {
+      return this.copy.internalGetInt(index);
+    }
+    return this.source.array.internalGetInt(this.source.boundOffset(index));
+  }
+
+  @Override
+  protected long internalSumULongs(int index, int count) {
+    if (this.copy != null) {
+      return this.copy.internalSumULongs(index, count);
+    }
+    return this.source.array.internalSumULongs(this.source.boundOffset(index), count);
+  }
+
+  @Override
+  protected ByteBuffer internalByteBuffer(int index, int length) {
+    if (this.copy != null) {
+      return this.copy.internalByteBuffer(index, length);
+    }
+    return this.source.array.internalByteBuffer(this.source.boundOffset(index), length);
+  }
+
+  @Override
+  public void close() {
+    this.source = null;
+    this.copy = null;
+  }
+
+  @Override
+  public int copyTo(OutputStream os, int offset, int length) throws IOException {
+    if (this.copy != null) {
+      return this.copy.copyTo(os, offset, length);
+    }
+    return this.source.array.copyTo(os, this.source.boundOffset(offset), length);
+  }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2011 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.typography.font.sfntly.data;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * A fixed size implementation of the ByteArray interface over zlib compressed
+ * data. The compressed data is inflated into memory the first time the array
+ * is accessed and all access goes to the inflated data from then on. Once the
+ * array is closed any access throws an {@link IllegalStateException}.
+ */
+final class InflatingByteArray extends ByteArray<InflatingByteArray> {
+
+  // guarded by this
+  private ReadableFontData source;
+  private boolean closed;
+  private volatile MemoryByteArray inflated;
+
+  /**
+   * Construct a new InflatingByteArray over the compressed data given. The
+   * entire inflated length is considered filled and readable.
+   *
+   * @param source the zlib compressed data
+   * @param length the length of the data once inflated
+   */
+  public InflatingByteArray(ReadableFontData source, int length) {
+    super(length, length);
+    this.source = source;
+  }
+
+  /**
+   * Inflate zlib compressed data.
+   *
+   * @param source the zlib compressed data
+   * @param length the length of the data once inflated
+   * @return the inflated data
+   * @throws DataFormatException if the compressed data is corrupt or does not
+   *         inflate to the length given
+   */
+  static byte[] inflate(ReadableFontData source, int length) throws DataFormatException {
+    byte[] input = new byte[source.length()];
+    source.readBytes(0, input, 0, input.length);
+    byte[] output = new byte[length];
+    Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(input);
+      int inflatedLength = inflater.inflate(output);
+      if (inflatedLength != length || !inflater.finished()) {
+        throw new DataFormatException(
+            "Compressed data does not inflate to the expected length " + length);
+      }
+    } finally {
+      inflater.end();
+    }
+    return output;
+  }
+
+  private MemoryByteArray inflated() {
+    MemoryByteArray inflated = this.inflated;
+    if (inflated == null) {
+      synchronized (this) {
+        if (this.closed) {
+          throw new IllegalStateException("Font data has been closed.");
+        }
+        inflated = this.inflated;
+        if (inflated == null) {
+          try {
+            inflated = new MemoryByteArray(inflate(this.source, this.size()));
+          } catch (DataFormatException e) {
+            throw new RuntimeException("Unable to inflate font data.", e);
+          }
+          this.inflated = inflated;
+          this.source = null;
+        }
+      }
+    }
+    return inflated;
+  }
+
+  @Override
+  protected void internalPut(int index, byte b) {
+    this.inflated().internalPut(index, b);
+  }
+
+  @Override
+  protected int internalPut(int index, byte[] b, int offset, int length) {
+    return this.inflated().internalPut(index, b, offset, length);
+  }
+
+  @Override
+  protected int internalGet(int index) {
+    return this.inflated().internalGet(index);
+  }
+
+  @Override
+  protected int internalGet(int index, byte[] b, int offset, int length) {
+    return this.inflated().internalGet(index, b, offset, length);
+  }
+
+  @Override
+  protected int internalGetUShort(int index) {
+    return this.inflated().internalGetUShort(index);
+  }
+
+  @Override
+  protected int internalGetInt(int index) {
+    return this.inflated().internalGetInt(index);
+  }
+
+  @Override
+  protected long internalSumULongs(int index, int count) {
+    return this.inflated().internalSumULongs(index, count);
+  }
+
+  @Override
+  protected ByteBuffer internalByteBuffer(int index, int length) {
+    return this.inflated().internalByteBuffer(index, length);
+  }
+
+  @Override
+  public synchronized void close() {
+    this.closed = true;
+    this.source = null;
+    this.inflated = null;
+  }
+
+  @Override
+  public int copyTo(OutputStream os, int offset, int length) throws IOException {
+    return this.inflated().copyTo(os, offset, length);
+  }
+}
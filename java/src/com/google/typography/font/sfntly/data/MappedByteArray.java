@@ -0,0 +1,103 @@
+/*
+ * Copyright 2010 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.typography.font.sfntly.data;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * A read only implementation of the ByteArray interface backed by a
+ * <code>ByteBuffer</code>. This is normally a <code>MappedByteBuffer</code>
+ * obtained from a file so that the font data is paged in by the operating
+ * system only as it is accessed and is shared through the page cache.
+ */
+final class MappedByteArray extends ByteArray<MappedByteArray> {
+
+  private ByteBuffer buffer;
+
+  /**
+   * Construct a new MappedByteArray to wrap the buffer given. The entire
+   * buffer, from position zero to its limit, is considered filled and readable.
+   * The buffer must not be modified after construction.
+   *
+   * @param buffer the buffer that provides the actual storage
+   */
+  public MappedByteArray(ByteBuffer buffer) {
+    super(buffer.limit(), buffer.limit());
+    this.buffer = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+  }
+
+  @Override
+  protected void internalPut(int index, byte b) {
+    throw new UnsupportedOperationException("Attempt to write to read only data.");
+  }
+
+  @Override
+  protected int internalPut(int index, byte[] b, int offset, int length) {
+    throw new UnsupportedOperationException("Attempt to write to read only data.");
+  }
+
+  @Override
+  protected int internalGet(int index) {
+    return this.buffer.get(index);
+  }
+
+  @Override
+  protected int internalGet(int index, byte[] b, int offset, int length) {
+    // use a private view so that concurrent readers don't share a position
+    ByteBuffer view = this.buffer.duplicate();
+    view.position(index);
+    view.get(b, offset, length);
+    return length;
+  }
+
+  @Override
+  protected int internalGetUShort(int index) {
+    return this.buffer.getShort(index) & 0xffff;
+  }
+
+  @Override
+  protected int internalGetInt(int index) {
+    return this.buffer.getInt(index);
+  }
+
+  @Override
+  protected long internalSumULongs(int index, int count) {
+    ByteBuffer view = this.buffer.duplicate();
+    view.position(index);
+    IntBuffer ints = view.slice().order(ByteOrder.BIG_ENDIAN).asIntBuffer();
+    long sum = 0;
+    for (int i = 0; i < count; i++) {
+      sum += ints.get(i) & 0xffffffffL;
+    }
+    return sum;
+  }
+
+  @Override
+  protected ByteBuffer internalByteBuffer(int index, int length) {
+    ByteBuffer view = this.buffer.duplicate();
+    view.position(index);
+    view.limit(index + length);
+    return view.slice().asReadOnlyBuffer();
+  }
+
+  @Override
+  public void close() {
+    this.buffer = null;
+  }
+}
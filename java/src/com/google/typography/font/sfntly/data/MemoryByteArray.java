@@ -18,6 +18,7 @@ package com.google.typography.font.sfntly.data;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 /**
  * A fixed size memory implementation of the ByteArray interface.
@@ -86,6 +87,33 @@ final class MemoryByteArray extends ByteArray<MemoryByteArray> {
     return length;
   }
 
+  @Override
+  protected int internalGetUShort(int index) {
+    return (this.b[index] & 0xff) << 8 | (this.b[index + 1] & 0xff);
+  }
+
+  @Override
+  protected int internalGetInt(int index) {
+    return this.b[index] << 24 | (this.b[index + 1] & 0xff) << 16
+        | (this.b[index + 2] & 0xff) << 8 | (this.b[index + 3] & 0xff);
+  }
+
+  @Override
+  protected long internalSumULongs(int index, int count) {
+    byte[] b = this.b;
+    long sum = 0;
+    for (int end = index + count * 4; index < end; index += 4) {
+      sum += (b[index] & 0xffL) << 24 | (b[index + 1] & 0xff) << 16
+          | (b[index + 2] & 0xff) << 8 | (b[index + 3] & 0xff);
+    }
+    return sum;
+  }
+
+  @Override
+  protected ByteBuffer internalByteBuffer(int index, int length) {
+    return ByteBuffer.wrap(this.b, index, length).slice().asReadOnlyBuffer();
+  }
+
   @Override
   public void close() {
    
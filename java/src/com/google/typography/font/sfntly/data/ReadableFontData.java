@@ -19,6 +19,8 @@ package com.google.typography.font.sfntly.data;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.util.Arrays;
 import java.util.Date;
 
@@ -96,6 +98,21 @@ public class ReadableFontData extends FontData {
     return new ReadableFontData(ba);
   }
 
+  /**
+   * Creates a read only font data object that wraps the buffer given. The
+   * buffer is usually a <code>MappedByteBuffer</code> for a font file so that
+   * only those parts of the font that are accessed are read into memory. The
+   * buffer is used from position zero to its limit and must not be modified
+   * afterwards.
+   *
+   * @param buffer the buffer to wrap
+   * @return a new read only font data
+   */
+  public static ReadableFontData createReadableFontData(ByteBuffer buffer) {
+    ByteArray<?> ba = new MappedByteArray(buffer);
+    return new ReadableFontData(ba);
+  }
+
 
   /**
    * Flag on whether the checksum has been set.
@@ -252,9 +269,11 @@ public class ReadableFontData extends FontData {
    */
   private long computeCheckSum(int lowBound, int highBound) {
     long sum = 0;
-    // checksum all whole 4-byte chunks
-    for (int i = lowBound; i <= highBound - 4; i += 4) {
-      sum += this.readULong(i);
+    // checksum all whole 4-byte chunks straight from the backing array
+    int words = Math.max(0, (highBound - lowBound) / 4);
+    if (words > 0) {
+      this.readCheck(lowBound, words * 4);
+      sum = this.array.internalSumULongs(this.boundOffset(lowBound), words);
     }
     // add last fragment if not 4-byte multiple
     int off = highBound & -4;
@@ -312,17 +331,8 @@ public class ReadableFontData extends FontData {
    * @throws IndexOutOfBoundsException if index is outside the FontData's range
    */
   public int readUByte(int index) {
-    if (!this.boundsCheck(index, 1)) {
-      throw new IndexOutOfBoundsException(
-          "Index attempted to be read from is out of bounds: " + Integer.toHexString(index));
-    }
-    int b = this.array.get(this.boundOffset(index));
-    if (b < 0) {
-      throw new IndexOutOfBoundsException(
-          "Index attempted to be read from is out of bounds: " + Integer.toHexString(index));
-    }
-    return b;
-    // return this.array.get(this.boundOffset(index));
+    this.readCheck(index, 1);
+    return this.array.internalGet(this.boundOffset(index)) & 0xff;
   }
 
   /**
@@ -333,17 +343,26 @@ public class ReadableFontData extends FontData {
    * @throws IndexOutOfBoundsException if index is outside the FontData's range
    */
   public int readByte(int index) {
-    if (!this.boundsCheck(index, 1)) {
-      throw new IndexOutOfBoundsException(
-          "Index attempted to be read from is out of bounds: " + Integer.toHexString(index));
-    }
-    int b = this.array.get(this.boundOffset(index));
-    if (b < 0) {
+    this.readCheck(index, 1);
+    return (this.array.internalGet(this.boundOffset(index)) << 24) >> 24;
+  }
+
+  /**
+   * Checks that the bytes to be read lie both within the bounds of this font
+   * data and within the filled part of the underlying data. Reads of multiple
+   * bytes are checked once for the whole value rather than once per byte.
+   *
+   * @param index index into the font data
+   * @param length the number of bytes to be read
+   * @throws IndexOutOfBoundsException if any of the bytes are outside the
+   *         FontData's range
+   */
+  private void readCheck(int index, int length) {
+    if (!this.boundsCheck(index, length)
+        || this.boundOffset(index) > this.array.length() - length) {
       throw new IndexOutOfBoundsException(
           "Index attempted to be read from is out of bounds: " + Integer.toHexString(index));
     }
-    return (b << 24) >> 24;
-    // return (this.array.get(this.boundOffset(index)) << 24) >> 24;
   }
 
   /**
@@ -385,7 +404,32 @@ public class ReadableFontData extends FontData {
    * @throws IndexOutOfBoundsException if index is outside the FontData's range
    */
   public int readUShort(int index) {
-    return 0xffff & (this.readUByte(index) << 8 | this.readUByte(index + 1));
+    this.readCheck(index, 2);
+    return this.array.internalGetUShort(this.boundOffset(index));
+  }
+
+  /**
+   * Reads consecutive USHORTs starting at the given index into the array. The
+   * bounds are checked once for the whole run of values.
+   *
+   * @param index index into the font data of the first USHORT
+   * @param dst the destination for the USHORTs read
+   * @param offset offset in the destination array to place the first USHORT
+   * @param count the number of USHORTs to read
+   * @return the number of USHORTs read
+   * @throws IndexOutOfBoundsException if any of the USHORTs are outside the
+   *         FontData's range
+   */
+  public int readUShortArray(int index, int[] dst, int offset, int count) {
+    if (count == 0) {
+      return 0;
+    }
+    this.readCheck(index, count * DataSize.USHORT.size());
+    int arrayIndex = this.boundOffset(index);
+    for (int i = 0; i < count; i++, arrayIndex += DataSize.USHORT.size()) {
+      dst[offset + i] = this.array.internalGetUShort(arrayIndex);
+    }
+    return count;
   }
 
   /**
@@ -396,7 +440,8 @@ public class ReadableFontData extends FontData {
    * @throws IndexOutOfBoundsException if index is outside the FontData's range
    */
   public int readShort(int index) {
-    return ((this.readByte(index) << 8 | this.readUByte(index + 1)) << 16) >> 16;
+    this.readCheck(index, 2);
+    return (short) this.array.internalGetUShort(this.boundOffset(index));
   }
 
   /**
@@ -407,8 +452,10 @@ public class ReadableFontData extends FontData {
    * @throws IndexOutOfBoundsException if index is outside the FontData's range
    */
   public int readUInt24(int index) {
-    return 0xffffff & (this.readUByte(index) << 16 | this.readUByte(index + 1) << 8
-        | this.readUByte(index + 2));
+    this.readCheck(index, 3);
+    int arrayIndex = this.boundOffset(index);
+    return this.array.internalGetUShort(arrayIndex) << 8
+        | (this.array.internalGet(arrayIndex + 2) & 0xff);
   }
 
   /**
@@ -419,8 +466,32 @@ public class ReadableFontData extends FontData {
    * @throws IndexOutOfBoundsException if index is outside the FontData's range
    */
   public long readULong(int index) {
-    return 0xffffffffL & (this.readUByte(index) << 24 | this.readUByte(index + 1) << 16
-        | this.readUByte(index + 2) << 8 | this.readUByte(index + 3));
+    this.readCheck(index, 4);
+    return 0xffffffffL & this.array.internalGetInt(this.boundOffset(index));
+  }
+
+  /**
+   * Reads consecutive ULONGs starting at the given index into the array. The
+   * bounds are checked once for the whole run of values.
+   *
+   * @param index index into the font data of the first ULONG
+   * @param dst the destination for the ULONGs read
+   * @param offset offset in the destination array to place the first ULONG
+   * @param count the number of ULONGs to read
+   * @return the number of ULONGs read
+   * @throws IndexOutOfBoundsException if any of the ULONGs are outside the
+   *         FontData's range
+   */
+  public int readULongArray(int index, long[] dst, int offset, int count) {
+    if (count == 0) {
+      return 0;
+    }
+    this.readCheck(index, count * DataSize.ULONG.size());
+    int arrayIndex = this.boundOffset(index);
+    for (int i = 0; i < count; i++, arrayIndex += DataSize.ULONG.size()) {
+      dst[offset + i] = 0xffffffffL & this.array.internalGetInt(arrayIndex);
+    }
+    return count;
   }
 
   /**
@@ -447,8 +518,8 @@ public class ReadableFontData extends FontData {
    * @throws IndexOutOfBoundsException if index is outside the FontData's range
    */
   public long readULongLE(int index) {
-    return 0xffffffffL & (this.readUByte(index) | this.readUByte(index + 1) << 8
-        | this.readUByte(index + 2) << 16 | this.readUByte(index + 3) << 24);
+    this.readCheck(index, 4);
+    return 0xffffffffL & Integer.reverseBytes(this.array.internalGetInt(this.boundOffset(index)));
   }
 
   /**
@@ -459,8 +530,8 @@ public class ReadableFontData extends FontData {
    * @throws IndexOutOfBoundsException if index is outside the FontData's range
    */
   public int readLong(int index) {
-    return this.readByte(index) << 24 | this.readUByte(index + 1) << 16 | 
-    this.readUByte(index + 2) << 8 | this.readUByte(index + 3);
+    this.readCheck(index, 4);
+    return this.array.internalGetInt(this.boundOffset(index));
   }
 
   /**
@@ -551,6 +622,38 @@ public class ReadableFontData extends FontData {
     return this.array.copyTo(os, this.boundOffset(0), this.length());
   }
 
+  /**
+   * Copy the FontData to a channel. Where the underlying storage allows it the
+   * bytes are written to the channel directly without an intermediate copy.
+   *
+   * @param channel the destination
+   * @return number of bytes copied
+   * @throws IOException
+   * @see #asByteBuffer()
+   */
+  public int copyTo(WritableByteChannel channel) throws IOException {
+    ByteBuffer buffer = this.asByteBuffer();
+    int length = buffer.remaining();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    return length;
+  }
+
+  /**
+   * Gets a read only view of the FontData as a <code>ByteBuffer</code>. The
+   * buffer holds the bytes from the start of the FontData to its length. Where
+   * the underlying storage allows it the buffer shares the bytes with the
+   * FontData and otherwise it holds a copy of them. A shared view should not be
+   * held onto if the FontData may be written to since the changes would show
+   * through the view.
+   *
+   * @return a read only buffer over the data
+   */
+  public ByteBuffer asByteBuffer() {
+    return this.array.internalByteBuffer(this.boundOffset(0), this.length());
+  }
+
   /**
    * Copies the FontData to a WritableFontData.
    *
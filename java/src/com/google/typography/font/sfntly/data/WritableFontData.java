@@ -18,6 +18,7 @@ package com.google.typography.font.sfntly.data;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.zip.DataFormatException;
 
 /**
  * Writable font data wrapper. Supports writing of data primitives in the
@@ -85,6 +86,56 @@ public final class WritableFontData extends ReadableFontData {
     return wfd;
   }
   
+  /**
+   * Constructs a writable font data object that shares the data of the
+   * original font data object until it is first written to. No copy is made
+   * for as long as the new font data object is only read from and the original
+   * data is never modified by writes to the new font data object.
+   *
+   * @param original the source font data
+   * @return a new writable font data
+   */
+  public static final WritableFontData createCopyOnWriteFontData(ReadableFontData original) {
+    ByteArray<?> ba = new CopyOnWriteByteArray(original);
+    WritableFontData wfd = new WritableFontData(ba);
+    wfd.setCheckSumRanges(original.checkSumRange());
+    return wfd;
+  }
+
+  /**
+   * Constructs a writable font data object that holds the inflated form of
+   * zlib compressed data. The data is inflated the first time it is accessed.
+   *
+   * @param compressed the zlib compressed data
+   * @param length the length of the data once inflated
+   * @return a new writable font data
+   * @see #createInflatedFontData(ReadableFontData, int)
+   */
+  public static final WritableFontData createInflatingFontData(
+      ReadableFontData compressed, int length) {
+    return new WritableFontData(new InflatingByteArray(compressed, length));
+  }
+
+  /**
+   * Constructs a writable font data object that holds the inflated form of
+   * zlib compressed data. The data is inflated immediately.
+   *
+   * @param compressed the zlib compressed data
+   * @param length the length of the data once inflated
+   * @return a new writable font data
+   * @throws IOException if the compressed data is corrupt or does not inflate
+   *         to the length given
+   * @see #createInflatingFontData(ReadableFontData, int)
+   */
+  public static final WritableFontData createInflatedFontData(
+      ReadableFontData compressed, int length) throws IOException {
+    try {
+      return createWritableFontData(InflatingByteArray.inflate(compressed, length));
+    } catch (DataFormatException e) {
+      throw new IOException("Unable to inflate font data.", e);
+    }
+  }
+
   /**
    * Constructor.
    *
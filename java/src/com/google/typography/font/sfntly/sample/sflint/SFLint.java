@@ -98,20 +98,13 @@ public class SFLint {
     // Test if name entries are consistent. Logic is adapted from fix_full_font_name in
     // font_optimizer.
     NameTable name = (NameTable) font.getTable(Tag.name);
-    for (NameEntry entry : name) {
-      // System.out.println(entry);
-      if (entry.nameId() == NameId.FontFamilyName.value()) {
-        for (NameEntry entry2 : name) {
-          if (entry2.nameId() == NameId.FullFontName.value() &&
-              entry.platformId() == entry2.platformId() &&
-              entry.encodingId() == entry2.encodingId() &&
-              entry.languageId() == entry2.languageId()) {
-            if (!entry2.name().startsWith(entry.name())) {
-              reportProblem("Full font name doesn't begin with family name: " +
-                  "FontFamilyName = " + entry.name() + "; FullFontName = " + entry2.name());
-            }
-          }
-        }
+    for (int index : name.nameIndices(NameId.FontFamilyName.value())) {
+      NameEntry entry = name.nameEntry(index);
+      NameEntry entry2 = name.nameEntry(entry.platformId(), entry.encodingId(),
+          entry.languageId(), NameId.FullFontName.value());
+      if (entry2 != null && !entry2.name().startsWith(entry.name())) {
+        reportProblem("Full font name doesn't begin with family name: " +
+            "FontFamilyName = " + entry.name() + "; FullFontName = " + entry2.name());
       }
     }
   }
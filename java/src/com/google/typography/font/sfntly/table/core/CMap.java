@@ -35,6 +35,7 @@ import java.util.NoSuchElementException;
 public abstract class CMap extends SubTable implements Iterable<Integer> {
   protected final int format;
   protected final CMapId cmapId;
+  private volatile CompiledCMap compiled;
 
   /**
    * CMap subtable formats.
@@ -205,6 +206,39 @@ public abstract class CMap extends SubTable implements Iterable<Integer> {
    */
   public abstract int glyphId(int character);
 
+  /**
+   * Gets the glyph ids for a run of consecutive characters, giving the same
+   * results as {@link #glyphId(int)} for each. Formats that store ranges of
+   * characters override this to fill the run from their ranges.
+   *
+   * @param firstCharacter the first character of the run
+   * @param glyphIds the array to fill with the glyph id of each character
+   */
+  void glyphIds(int firstCharacter, int[] glyphIds) {
+    for (int i = 0; i < glyphIds.length; i++) {
+      glyphIds[i] = this.glyphId(firstCharacter + i);
+    }
+  }
+
+  /**
+   * Gets a constant time lookup view of this cmap. The view is created on the
+   * first call and then filled in as characters are looked up in it. It is
+   * worth using when many characters are to be looked up in the same cmap.
+   *
+   * @return the lookup view of this cmap
+   * @see CompiledCMap
+   */
+  public CompiledCMap compiled() {
+    if (this.compiled == null) {
+      synchronized (this) {
+        if (this.compiled == null) {
+          this.compiled = new CompiledCMap(this);
+        }
+      }
+    }
+    return this.compiled;
+  }
+
   @Override
   public String toString() {
     StringBuilder builder = new StringBuilder();
@@ -5,6 +5,7 @@ import com.google.typography.font.sfntly.data.WritableFontData;
 import com.google.typography.font.sfntly.table.core.CMapTable.CMapId;
 import com.google.typography.font.sfntly.table.core.CMapTable.Offset;
 
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
@@ -14,6 +15,8 @@ import java.util.NoSuchElementException;
  */
 public final class CMapFormat12 extends CMap {
   private final int numberOfGroups;
+  // 1 if the groups are sorted and disjoint, -1 if not, 0 if not yet known
+  private int groupsOrdered;
 
   protected CMapFormat12(ReadableFontData data, CMapId cmapId) {
     super(data, CMapFormat.Format12.value, cmapId);
@@ -53,6 +56,44 @@ public final class CMapFormat12 extends CMap {
     return groupStartGlyph(group) + (character - groupStartChar(group));
   }
 
+  @Override
+  void glyphIds(int firstCharacter, int[] glyphIds) {
+    if (!this.groupsOrdered()) {
+      // the group search in glyphId() is only well defined over ordered groups
+      super.glyphIds(firstCharacter, glyphIds);
+      return;
+    }
+    Arrays.fill(glyphIds, CMapTable.NOTDEF);
+    long lastCharacter = (long) firstCharacter + glyphIds.length - 1;
+    for (int group = 0; group < this.numberOfGroups; group++) {
+      long startChar = this.groupStartChar(group) & 0xffffffffL;
+      if (startChar > lastCharacter) {
+        break;
+      }
+      long endChar = this.groupEndChar(group) & 0xffffffffL;
+      int startGlyph = this.groupStartGlyph(group);
+      for (long c = Math.max(startChar, firstCharacter); c <= Math.min(endChar, lastCharacter);
+          c++) {
+        glyphIds[(int) (c - firstCharacter)] = startGlyph + (int) (c - startChar);
+      }
+    }
+  }
+
+  private boolean groupsOrdered() {
+    if (this.groupsOrdered == 0) {
+      boolean ordered = true;
+      long previousEnd = -1;
+      for (int group = 0; group < this.numberOfGroups && ordered; group++) {
+        long startChar = this.groupStartChar(group) & 0xffffffffL;
+        long endChar = this.groupEndChar(group) & 0xffffffffL;
+        ordered = startChar > previousEnd && endChar >= startChar;
+        previousEnd = endChar;
+      }
+      this.groupsOrdered = ordered ? 1 : -1;
+    }
+    return this.groupsOrdered > 0;
+  }
+
   @Override
   public int language() {
     return this.data.readULongAsInt(Offset.format12Language.offset);
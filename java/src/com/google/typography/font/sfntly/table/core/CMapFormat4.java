@@ -8,6 +8,7 @@ import com.google.typography.font.sfntly.table.core.CMapTable.CMapId;
 import com.google.typography.font.sfntly.table.core.CMapTable.Offset;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
@@ -18,6 +19,8 @@ import java.util.NoSuchElementException;
 public final class CMapFormat4 extends CMap {
   private final int segCount;
   private final int glyphIdArrayOffset;
+  // 1 if the segments are sorted and disjoint, -1 if not, 0 if not yet known
+  private int segmentsOrdered;
 
   protected CMapFormat4(ReadableFontData data, CMapId cmapId) {
     super(data, CMapFormat.Format4.value, cmapId);
@@ -42,6 +45,42 @@ public final class CMapFormat4 extends CMap {
     return retrieveGlyphId(segment, startCode, character);
   }
 
+  @Override
+  void glyphIds(int firstCharacter, int[] glyphIds) {
+    if (!this.segmentsOrdered()) {
+      // the segment search in glyphId() is only well defined over ordered segments
+      super.glyphIds(firstCharacter, glyphIds);
+      return;
+    }
+    Arrays.fill(glyphIds, CMapTable.NOTDEF);
+    int lastCharacter = firstCharacter + glyphIds.length - 1;
+    for (int segment = 0; segment < this.segCount; segment++) {
+      int startCode = this.startCode(segment);
+      if (startCode > lastCharacter) {
+        break;
+      }
+      int endCode = this.endCode(segment);
+      for (int c = Math.max(startCode, firstCharacter); c <= Math.min(endCode, lastCharacter);
+          c++) {
+        glyphIds[c - firstCharacter] = this.retrieveGlyphId(segment, startCode, c);
+      }
+    }
+  }
+
+  private boolean segmentsOrdered() {
+    if (this.segmentsOrdered == 0) {
+      boolean ordered = true;
+      for (int segment = 0, previousEnd = -1; segment < this.segCount && ordered; segment++) {
+        int startCode = this.startCode(segment);
+        int endCode = this.endCode(segment);
+        ordered = startCode > previousEnd && endCode >= startCode;
+        previousEnd = endCode;
+      }
+      this.segmentsOrdered = ordered ? 1 : -1;
+    }
+    return this.segmentsOrdered > 0;
+  }
+
   /**
    * Lower level glyph code retrieval that requires processing the Format 4 segments to use.
    *
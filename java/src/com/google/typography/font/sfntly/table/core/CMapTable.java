@@ -30,6 +30,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * A CMap table.
@@ -226,8 +227,12 @@ public final class CMapTable extends SubTableContainerTable implements Iterable<
    * @param header header for the table
    * @param data data for the table
    */
+  // the cmaps built so far, so that each keeps its compiled view across lookups
+  private final AtomicReferenceArray<CMap> cmaps;
+
   private CMapTable(Header header, ReadableFontData data) {
     super(header, data);
+    this.cmaps = new AtomicReferenceArray<CMap>(this.numCMaps());
   }
 
   /**
@@ -436,9 +441,18 @@ public final class CMapTable extends SubTableContainerTable implements Iterable<
    * @throws IOException
    */
   public CMap cmap(int index) throws IOException {
-    CMap.Builder<? extends CMap> builder =
-        CMapTable.Builder.cmapBuilder(this.readFontData(), index);
-    return builder.build();
+    if (index < 0 || index >= this.cmaps.length()) {
+      return CMapTable.Builder.cmapBuilder(this.readFontData(), index).build();
+    }
+    CMap cmap = this.cmaps.get(index);
+    if (cmap == null) {
+      CMap.Builder<? extends CMap> builder =
+          CMapTable.Builder.cmapBuilder(this.readFontData(), index);
+      // racing threads may both build the cmap but all callers get the first one stored
+      this.cmaps.compareAndSet(index, null, builder.build());
+      cmap = this.cmaps.get(index);
+    }
+    return cmap;
   }
 
   /**
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2011 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.typography.font.sfntly.table.core;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A lookup view of a cmap that maps characters to glyph ids in constant time.
+ *
+ * The view is a two level page table over the Unicode code space. Each page
+ * covers 256 consecutive characters and is filled from the underlying cmap the
+ * first time a character in it is looked up, from the cmap's ranges for the
+ * formats that have them. Pages with no mapped characters
+ * all share a single empty page. Characters outside of the Unicode code space
+ * are passed straight through to the underlying cmap.
+ *
+ * The view gives the same results as {@link CMap#glyphId(int)} and is safe for
+ * use by multiple threads.
+ *
+ * @see CMap#compiled()
+ */
+public final class CompiledCMap {
+  private static final int PAGE_SHIFT = 8;
+  private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+  private static final int PAGE_MASK = PAGE_SIZE - 1;
+  private static final int MAX_CHARACTER = 0x10ffff;
+  private static final int[] NOTDEF_PAGE = new int[PAGE_SIZE];
+
+  private final CMap cmap;
+  private final AtomicReferenceArray<int[]> pages;
+
+  CompiledCMap(CMap cmap) {
+    this.cmap = cmap;
+    this.pages = new AtomicReferenceArray<int[]>((MAX_CHARACTER >> PAGE_SHIFT) + 1);
+  }
+
+  /**
+   * Gets the cmap that this view looks characters up in.
+   *
+   * @return the underlying cmap
+   */
+  public CMap cmap() {
+    return this.cmap;
+  }
+
+  /**
+   * Gets the glyph id for the character code provided.
+   *
+   * The character code provided must be in the encoding used by the cmap table.
+   *
+   * @param character character value using the encoding of the cmap table
+   * @return glyph id for the character code
+   * @see CMap#glyphId(int)
+   */
+  public int glyphId(int character) {
+    if (character < 0 || character > MAX_CHARACTER) {
+      return this.cmap.glyphId(character);
+    }
+    int[] page = this.pages.get(character >> PAGE_SHIFT);
+    if (page == null) {
+      page = this.compilePage(character >> PAGE_SHIFT);
+    }
+    return page[character & PAGE_MASK];
+  }
+
+  private int[] compilePage(int pageIndex) {
+    // racing threads may both fill the page but they fill it with the same values
+    int[] page = new int[PAGE_SIZE];
+    this.cmap.glyphIds(pageIndex << PAGE_SHIFT, page);
+    boolean mapped = false;
+    for (int i = 0; i < PAGE_SIZE; i++) {
+      mapped |= page[i] != CMapTable.NOTDEF;
+    }
+    if (!mapped) {
+      page = NOTDEF_PAGE;
+    }
+    this.pages.set(pageIndex, page);
+    return page;
+  }
+}
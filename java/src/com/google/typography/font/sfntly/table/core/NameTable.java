@@ -540,6 +540,9 @@ public final class NameTable extends SubTableContainerTable implements Iterable<
     }
   }
 
+  private final Object nameIndexLock = new Object();
+  private volatile NameIndex nameIndex;
+
   private NameTable(Header header, ReadableFontData data) {
     super(header, data);
   }
@@ -719,24 +722,37 @@ public final class NameTable extends SubTableContainerTable implements Iterable<
    * @param nameId the name id
    * @return the name entry
    */
-  public NameEntry nameEntry(
-      final int platformId, final int encodingId, final int languageId, final int nameId) {
-    Iterator<NameEntry> nameEntryIter = this.iterator(new NameEntryFilter() {
-      @Override
-      public boolean accept(int pid, int eid, int lid, int nid) {
-        if (pid == platformId && eid == encodingId && lid == languageId && nid == nameId) {
-          return true;
-        }
-        return false;
-      }
-    });
-    // can only be one name for each set of ids
-    if (nameEntryIter.hasNext()) {
-      return nameEntryIter.next();
+  public NameEntry nameEntry(int platformId, int encodingId, int languageId, int nameId) {
+    int index = this.nameIndex(platformId, encodingId, languageId, nameId);
+    if (index >= 0) {
+      return this.nameEntry(index);
     }
     return null;
   }
 
+  /**
+   * Get the index of the name record for the specified name. If there is more than one record
+   * for the name then the first is returned.
+   * @param platformId the platform id
+   * @param encodingId the encoding id
+   * @param languageId the language id
+   * @param nameId the name id
+   * @return the index of the name record; -1 if there is no entry for the name
+   */
+  public int nameIndex(int platformId, int encodingId, int languageId, int nameId) {
+    return this.getNameIndex().get(platformId, encodingId, languageId, nameId);
+  }
+
+  /**
+   * Get the indices of the name records for the given name id, such as all the localized
+   * versions of the family name.
+   * @param nameId the name id
+   * @return the indices of the name records in record order; empty if there are none
+   */
+  public int[] nameIndices(int nameId) {
+    return this.getNameIndex().indices(nameId);
+  }
+
   /**
    * Get all the name entry records.
    * @return the set of all name entry records
@@ -749,6 +765,110 @@ public final class NameTable extends SubTableContainerTable implements Iterable<
     return nameSet;
   }
 
+  private NameIndex getNameIndex() {
+    if (this.nameIndex == null) {
+      synchronized (this.nameIndexLock) {
+        if (this.nameIndex == null) {
+          this.nameIndex = new NameIndex(this);
+        }
+      }
+    }
+    return this.nameIndex;
+  }
+
+  /**
+   * An index of the name records. The four ids of a record are packed into a long which is
+   * hashed with open addressing to the record index. The record indices are also grouped by
+   * name id so that all the records for a name id can be found without a scan.
+   */
+  private static final class NameIndex {
+    private final long[] keys;
+    // record index for each slot; -1 for an empty slot
+    private final int[] slots;
+    private final int mask;
+
+    // sorted distinct name ids and, for each, the start of its records in nameIdRecords
+    private final int[] nameIds;
+    private final int[] nameIdStarts;
+    private final int[] nameIdRecords;
+
+    NameIndex(NameTable table) {
+      int count = table.nameCount();
+      int capacity = Integer.highestOneBit(Math.max(count, 2) * 2 - 1) << 1;
+      this.keys = new long[capacity];
+      this.slots = new int[capacity];
+      this.mask = capacity - 1;
+      Arrays.fill(this.slots, -1);
+
+      long[] byNameId = new long[count];
+      for (int index = 0; index < count; index++) {
+        int nameId = table.nameId(index);
+        long key = key(table.platformId(index), table.encodingId(index),
+            table.languageId(index), nameId);
+        int slot = slot(key);
+        while (this.slots[slot] >= 0 && this.keys[slot] != key) {
+          slot = (slot + 1) & this.mask;
+        }
+        // keep the first record for a name, as a scan of the records would find
+        if (this.slots[slot] < 0) {
+          this.keys[slot] = key;
+          this.slots[slot] = index;
+        }
+        byNameId[index] = ((long) nameId << 32) | index;
+      }
+
+      Arrays.sort(byNameId);
+      int distinct = 0;
+      for (int i = 0; i < count; i++) {
+        if (i == 0 || (byNameId[i] >>> 32) != (byNameId[i - 1] >>> 32)) {
+          distinct++;
+        }
+      }
+      this.nameIds = new int[distinct];
+      this.nameIdStarts = new int[distinct + 1];
+      this.nameIdRecords = new int[count];
+      for (int i = 0, n = 0; i < count; i++) {
+        if (i == 0 || (byNameId[i] >>> 32) != (byNameId[i - 1] >>> 32)) {
+          this.nameIds[n] = (int) (byNameId[i] >>> 32);
+          this.nameIdStarts[n++] = i;
+        }
+        this.nameIdRecords[i] = (int) byNameId[i];
+      }
+      this.nameIdStarts[distinct] = count;
+    }
+
+    private static long key(int platformId, int encodingId, int languageId, int nameId) {
+      return ((long) (platformId & 0xffff) << 48) | ((long) (encodingId & 0xffff) << 32)
+          | ((long) (languageId & 0xffff) << 16) | (nameId & 0xffff);
+    }
+
+    private int slot(long key) {
+      long h = key * 0x9E3779B97F4A7C15L;
+      return (int) (h ^ (h >>> 32)) & this.mask;
+    }
+
+    int get(int platformId, int encodingId, int languageId, int nameId) {
+      if (((platformId | encodingId | languageId | nameId) & ~0xffff) != 0) {
+        return -1;
+      }
+      long key = key(platformId, encodingId, languageId, nameId);
+      for (int slot = slot(key); this.slots[slot] >= 0; slot = (slot + 1) & this.mask) {
+        if (this.keys[slot] == key) {
+          return this.slots[slot];
+        }
+      }
+      return -1;
+    }
+
+    int[] indices(int nameId) {
+      int n = Arrays.binarySearch(this.nameIds, nameId);
+      if (n < 0) {
+        return new int[0];
+      }
+      return Arrays.copyOfRange(this.nameIdRecords, this.nameIdStarts[n], this.nameIdStarts[n + 1]);
+    }
+  }
+
   private static class NameEntryId implements Comparable<NameEntryId> {
     /* @see Font.PlatformId
      */
@@ -0,0 +1,321 @@
+package com.google.typography.font.sfntly.table.opentype.component;
+
+import com.google.typography.font.sfntly.Font;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Computes the closure of a set of glyphs under a set of substitution rules.
+ *
+ * A rule applies once every glyph group of its input, backtrack and look ahead
+ * shares a glyph with the closure, at which point the glyphs of its
+ * substitution are added to the closure. Rather than re-testing every rule
+ * until nothing changes, the engine indexes each glyph to the rule groups that
+ * contain it and works through a list of newly added glyphs, so each group of
+ * each rule is satisfied at most once and each rule is applied at most once.
+ *
+ * The index is built once from the rules and can be reused for any number of
+ * closures. A closure engine is immutable and safe for use by multiple threads.
+ * {@link #forFont(Font)} keeps one engine per font, and an engine can be
+ * written to a stream with {@link #writeTo(OutputStream)} so that another
+ * process can load it with {@link #readFrom(InputStream)} without reading the
+ * GSUB table again.
+ */
+public final class GlyphClosure {
+
+  private static final int MAGIC = 0x67636c31; // 'gcl1'
+  // the number of distinct 16 bit glyph ids
+  private static final int MAX_GLYPHS = 0x10000;
+  // the most entries allocated for a count read from a stream before its entries are read
+  private static final int INITIAL_CAPACITY = 1024;
+
+  private static final Map<Font, GlyphClosure> fontClosures =
+      Collections.synchronizedMap(new WeakHashMap<Font, GlyphClosure>());
+
+  // number of condition groups for each rule id
+  private final int[] groupCounts;
+  // glyphs added by each rule id
+  private final int[][] substGlyphs;
+  // glyph -> (rule id, condition id) entries, compressed into
+  // watchStart[glyph] .. watchStart[glyph + 1]
+  private final int[] watchStart;
+  private final int[] watchRule;
+  private final int[] watchCondition;
+  private final int conditionCount;
+
+  /**
+   * Constructor.
+   *
+   * @param rules the rules to close over
+   */
+  public GlyphClosure(Collection<Rule> rules) {
+    int ruleCount = rules.size();
+    this.groupCounts = new int[ruleCount];
+    this.substGlyphs = new int[ruleCount][];
+
+    // first pass - size the index
+    int maxGlyph = -1;
+    int conditions = 0;
+    int watches = 0;
+    for (Rule rule : rules) {
+      for (GlyphGroup group : rule.conditionGroups()) {
+        conditions++;
+        watches += group.cardinality();
+        maxGlyph = Math.max(maxGlyph, group.length() - 1);
+      }
+    }
+    this.conditionCount = conditions;
+    this.watchStart = new int[maxGlyph + 2];
+    this.watchRule = new int[watches];
+    this.watchCondition = new int[watches];
+
+    int ruleId = 0;
+    for (Rule rule : rules) {
+      for (GlyphGroup group : rule.conditionGroups()) {
+        for (int glyph = group.nextSetBit(0); glyph >= 0; glyph = group.nextSetBit(glyph + 1)) {
+          this.watchStart[glyph + 1]++;
+        }
+      }
+      GlyphGroup subst = new GlyphGroup();
+      if (rule.subst != null) {
+        for (GlyphGroup group : rule.subst) {
+          subst.or(group);
+        }
+      }
+      this.substGlyphs[ruleId++] = toArray(subst);
+    }
+    for (int glyph = 0; glyph <= maxGlyph; glyph++) {
+      this.watchStart[glyph + 1] += this.watchStart[glyph];
+    }
+
+    // second pass - fill the index
+    int[] next = Arrays.copyOf(this.watchStart, this.watchStart.length);
+    int conditionId = 0;
+    ruleId = 0;
+    for (Rule rule : rules) {
+      for (GlyphGroup group : rule.conditionGroups()) {
+        for (int glyph = group.nextSetBit(0); glyph >= 0; glyph = group.nextSetBit(glyph + 1)) {
+          int watch = next[glyph]++;
+          this.watchRule[watch] = ruleId;
+          this.watchCondition[watch] = conditionId;
+        }
+        conditionId++;
+        this.groupCounts[ruleId]++;
+      }
+      ruleId++;
+    }
+  }
+
+  private GlyphClosure(int[] groupCounts, int[][] substGlyphs, int[] watchStart,
+      int[] watchRule, int[] watchCondition, int conditionCount) {
+    this.groupCounts = groupCounts;
+    this.substGlyphs = substGlyphs;
+    this.watchStart = watchStart;
+    this.watchRule = watchRule;
+    this.watchCondition = watchCondition;
+    this.conditionCount = conditionCount;
+  }
+
+  /**
+   * Gets the closure engine for the GSUB features of the font. The engine is
+   * built the first time it is asked for and the same engine is returned for
+   * the font for as long as the font is reachable. A font without a GSUB table
+   * gets an engine with no rules.
+   *
+   * @param font the font
+   * @return the closure engine
+   */
+  public static GlyphClosure forFont(Font font) {
+    GlyphClosure closure = fontClosures.get(font);
+    if (closure == null) {
+      // racing threads may both build an engine but they build the same one
+      closure = Rule.glyphClosure(font);
+      if (closure == null) {
+        closure = new GlyphClosure(Collections.<Rule>emptyList());
+      }
+      fontClosures.put(font, closure);
+    }
+    return closure;
+  }
+
+  /**
+   * Gets the number of rules that the engine closes over.
+   *
+   * @return the number of rules
+   */
+  public int ruleCount() {
+    return this.groupCounts.length;
+  }
+
+  /**
+   * Adds to the glyph group all of the glyphs that the rules can produce from
+   * it.
+   *
+   * @param glyphs the glyphs to start from; the closure is added to this group
+   * @return the glyph group passed in
+   */
+  public GlyphGroup closure(GlyphGroup glyphs) {
+    int[] remaining = Arrays.copyOf(this.groupCounts, this.groupCounts.length);
+    BitSet satisfied = new BitSet(this.conditionCount);
+
+    int[] worklist = toArray(glyphs);
+    int size = worklist.length;
+    while (size > 0) {
+      int glyph = worklist[--size];
+      if (glyph + 1 >= this.watchStart.length) {
+        continue;
+      }
+      for (int watch = this.watchStart[glyph]; watch < this.watchStart[glyph + 1]; watch++) {
+        int condition = this.watchCondition[watch];
+        if (satisfied.get(condition)) {
+          continue;
+        }
+        satisfied.set(condition);
+        int rule = this.watchRule[watch];
+        if (--remaining[rule] > 0) {
+          continue;
+        }
+        for (int substGlyph : this.substGlyphs[rule]) {
+          if (!glyphs.get(substGlyph)) {
+            glyphs.set(substGlyph);
+            if (size == worklist.length) {
+              worklist = Arrays.copyOf(worklist, Math.max(16, 2 * size));
+            }
+            worklist[size++] = substGlyph;
+          }
+        }
+      }
+    }
+    return glyphs;
+  }
+
+  /**
+   * Writes the engine to the stream in a compact binary form.
+   *
+   * @param os the stream to write to
+   * @throws IOException if there is an error writing to the stream
+   * @see #readFrom(InputStream)
+   */
+  public void writeTo(OutputStream os) throws IOException {
+    DataOutputStream dos = new DataOutputStream(os);
+    dos.writeInt(MAGIC);
+    dos.writeInt(this.groupCounts.length);
+    dos.writeInt(this.conditionCount);
+    dos.writeInt(this.watchStart.length);
+    dos.writeInt(this.watchRule.length);
+    for (int rule = 0; rule < this.groupCounts.length; rule++) {
+      dos.writeInt(this.groupCounts[rule]);
+      dos.writeInt(this.substGlyphs[rule].length);
+      for (int glyph : this.substGlyphs[rule]) {
+        dos.writeShort(glyph);
+      }
+    }
+    for (int start : this.watchStart) {
+      dos.writeInt(start);
+    }
+    for (int watch = 0; watch < this.watchRule.length; watch++) {
+      dos.writeInt(this.watchRule[watch]);
+      dos.writeInt(this.watchCondition[watch]);
+    }
+    dos.flush();
+  }
+
+  /**
+   * Reads an engine that was written with {@link #writeTo(OutputStream)}.
+   *
+   * @param is the stream to read from
+   * @return the closure engine
+   * @throws IOException if there is an error reading from the stream or the
+   *         stream does not hold a closure engine
+   */
+  public static GlyphClosure readFrom(InputStream is) throws IOException {
+    DataInputStream dis = new DataInputStream(is);
+    if (dis.readInt() != MAGIC) {
+      throw new IOException("Not a glyph closure.");
+    }
+    int ruleCount = dis.readInt();
+    int conditionCount = dis.readInt();
+    int watchStartLength = dis.readInt();
+    int watchCount = dis.readInt();
+    // there is a watch start for each glyph and one more
+    if (ruleCount < 0 || conditionCount < 0 || watchStartLength < 1
+        || watchStartLength > MAX_GLYPHS + 1 || watchCount < 0) {
+      throw new IOException("Corrupt glyph closure.");
+    }
+    // the rule and watch counts have no bound of their own, so their arrays grow as entries
+    // are read and a corrupt count fails at the end of the stream rather than allocating
+    int[] groupCounts = new int[Math.min(ruleCount, INITIAL_CAPACITY)];
+    int[][] substGlyphs = new int[groupCounts.length][];
+    long groupTotal = 0;
+    for (int rule = 0; rule < ruleCount; rule++) {
+      if (rule == groupCounts.length) {
+        groupCounts = Arrays.copyOf(groupCounts, grownCapacity(rule, ruleCount));
+        substGlyphs = Arrays.copyOf(substGlyphs, groupCounts.length);
+      }
+      groupCounts[rule] = dis.readInt();
+      int substCount = dis.readInt();
+      if (groupCounts[rule] < 0 || substCount < 0 || substCount > MAX_GLYPHS) {
+        throw new IOException("Corrupt glyph closure.");
+      }
+      groupTotal += groupCounts[rule];
+      substGlyphs[rule] = new int[substCount];
+      for (int i = 0; i < substGlyphs[rule].length; i++) {
+        substGlyphs[rule][i] = dis.readUnsignedShort();
+      }
+    }
+    // every condition belongs to one rule's groups
+    if (groupTotal != conditionCount) {
+      throw new IOException("Corrupt glyph closure.");
+    }
+    int[] watchStart = new int[watchStartLength];
+    for (int i = 0; i < watchStartLength; i++) {
+      watchStart[i] = dis.readInt();
+      // the watch ranges must be ordered and within the watch lists
+      if (watchStart[i] < (i == 0 ? 0 : watchStart[i - 1]) || watchStart[i] > watchCount) {
+        throw new IOException("Corrupt glyph closure.");
+      }
+    }
+    int[] watchRule = new int[Math.min(watchCount, INITIAL_CAPACITY)];
+    int[] watchCondition = new int[watchRule.length];
+    for (int watch = 0; watch < watchCount; watch++) {
+      if (watch == watchRule.length) {
+        watchRule = Arrays.copyOf(watchRule, grownCapacity(watch, watchCount));
+        watchCondition = Arrays.copyOf(watchCondition, watchRule.length);
+      }
+      watchRule[watch] = dis.readInt();
+      watchCondition[watch] = dis.readInt();
+      if (watchRule[watch] < 0 || watchRule[watch] >= ruleCount
+          || watchCondition[watch] < 0 || watchCondition[watch] >= conditionCount) {
+        throw new IOException("Corrupt glyph closure.");
+      }
+    }
+    if (watchStart[0] != 0 || watchStart[watchStartLength - 1] != watchCount) {
+      throw new IOException("Corrupt glyph closure.");
+    }
+    return new GlyphClosure(
+        groupCounts, substGlyphs, watchStart, watchRule, watchCondition, conditionCount);
+  }
+
+  private static int grownCapacity(int capacity, int count) {
+    return (int) Math.min(count, 2L * capacity);
+  }
+
+  private static int[] toArray(BitSet glyphs) {
+    int[] array = new int[glyphs.cardinality()];
+    int i = 0;
+    for (int glyph = glyphs.nextSetBit(0); glyph >= 0; glyph = glyphs.nextSetBit(glyph + 1)) {
+      array[i++] = glyph;
+    }
+    return array;
+  }
+}
@@ -4,6 +4,7 @@ import com.google.typography.font.sfntly.Font;
 import com.google.typography.font.sfntly.Tag;
 import com.google.typography.font.sfntly.table.core.CMap;
 import com.google.typography.font.sfntly.table.core.CMapTable;
+import com.google.typography.font.sfntly.table.core.CompiledCMap;
 import com.google.typography.font.sfntly.table.core.PostScriptTable;
 import com.google.typography.font.sfntly.table.opentype.FeatureListTable;
 import com.google.typography.font.sfntly.table.opentype.GSubTable;
@@ -41,38 +42,43 @@ public class Rule {
     CMapTable cmapTable = font.getTable(Tag.cmap);
     GlyphGroup glyphGroup = glyphGroupForText(txt, cmapTable);
 
-    Set<Rule> featuredRules = featuredRules(font);
-    Map<Integer, Set<Rule>> glyphRuleMap = createGlyphRuleMap(featuredRules);
-    GlyphGroup ruleClosure = closure(glyphRuleMap, glyphGroup);
-    return ruleClosure;
+    return GlyphClosure.forFont(font).closure(glyphGroup);
   }
 
   public static GlyphGroup closure(Map<Integer, Set<Rule>> glyphRuleMap, GlyphGroup glyphs) {
-    int prevSize = 0;
-    while (glyphs.size() > prevSize) {
-      prevSize = glyphs.size();
-      for (Rule rule : rulesForGlyph(glyphRuleMap, glyphs)) {
-        rule.addMatchingTargetGlyphs(glyphs);
-      }
+    Set<Rule> rules = new LinkedHashSet<Rule>();
+    for (Set<Rule> rulesForGlyph : glyphRuleMap.values()) {
+      rules.addAll(rulesForGlyph);
     }
-    return glyphs;
+    return new GlyphClosure(rules).closure(glyphs);
   }
 
-  private void addMatchingTargetGlyphs(GlyphGroup glyphs) {
-    for (RuleSegment seg : new RuleSegment[] { input, backtrack, lookAhead }) {
-      if (seg == null) {
-        continue;
-      }
-      for (GlyphGroup g : seg) {
-        if (!g.intersects(glyphs)) {
-          return;
-        }
-      }
+  /**
+   * Builds a new closure engine for the GSUB features of the font.
+   *
+   * @return the closure engine; null if the font has no GSUB table
+   * @see GlyphClosure#forFont(Font)
+   */
+  public static GlyphClosure glyphClosure(Font font) {
+    Set<Rule> featuredRules = Rule.featuredRules(font);
+    if (featuredRules == null) {
+      return null;
     }
+    return new GlyphClosure(featuredRules);
+  }
 
-    for (GlyphGroup glyphGroup : subst) {
-      glyphs.addAll(glyphGroup);
+  /**
+   * Gets the glyph groups that must all intersect a set of glyphs for the rule
+   * to add its substitution to that set.
+   */
+  List<GlyphGroup> conditionGroups() {
+    List<GlyphGroup> groups = new ArrayList<GlyphGroup>();
+    for (RuleSegment seg : new RuleSegment[] { input, backtrack, lookAhead }) {
+      if (seg != null) {
+        groups.addAll(seg);
+      }
     }
+    return groups;
   }
 
   public static Map<Integer, Set<Rule>> glyphRulesMap(Font font) {
@@ -97,16 +103,6 @@ public class Rule {
     return map;
   }
 
-  private static Set<Rule> rulesForGlyph(Map<Integer, Set<Rule>> glyphRuleMap, GlyphGroup glyphs) {
-    Set<Rule> set = new HashSet<Rule>();
-    for(int glyph : glyphs) {
-      if (glyphRuleMap.containsKey(glyph)) {
-        set.addAll(glyphRuleMap.get(glyph));
-      }
-    }
-    return set;
-  }
-
   private static Set<Rule> featuredRules(
       Set<Integer> lookupIds, Map<Integer, Set<Rule>> ruleMap) {
     Set<Rule> rules = new LinkedHashSet<Rule>();
@@ -121,16 +117,9 @@ public class Rule {
     return rules;
   }
 
-  private static Set<Integer> featuredLookups(Font font) {
-    GSubTable gsub = font.getTable(Tag.GSUB);
-    if (gsub == null) {
-      return null;
-    }
-
+  private static Set<Integer> featuredLookups(GSubTable gsub) {
     ScriptListTable scripts = gsub.scriptList();
     FeatureListTable featureList = gsub.featureList();
-    LookupListTable lookupList = gsub.lookupList();
-    Map<Integer, Set<Rule>> ruleMap = RuleExtractor.extract(lookupList);
 
     Set<Integer> features = new HashSet<Integer>();
     Set<Integer> lookupIds = new HashSet<Integer>();
@@ -160,7 +149,7 @@ public class Rule {
 
     LookupListTable lookupList = gsub.lookupList();
     Map<Integer, Set<Rule>> ruleMap = RuleExtractor.extract(lookupList);
-    Set<Integer> lookupIds = featuredLookups(font);
+    Set<Integer> lookupIds = featuredLookups(gsub);
     Set<Rule> featuredRules = Rule.featuredRules(lookupIds, ruleMap);
     return featuredRules;
   }
@@ -170,17 +159,19 @@ public class Rule {
   public static GlyphGroup glyphGroupForText(String str, CMapTable cmapTable) {
     GlyphGroup glyphGroup = new GlyphGroup();
     Set<Integer> codes = codepointsFromStr(str);
+    List<CompiledCMap> cmaps = new ArrayList<CompiledCMap>();
+    for (CMap cmap : cmapTable) {
+      if (cmap.platformId() == 3 && cmap.encodingId() == 1 || // Unicode BMP
+          cmap.platformId() == 3 && cmap.encodingId() == 10 || // UCS2
+          cmap.platformId() == 0 && cmap.encodingId() == 5) { // Variation
+        cmaps.add(cmap.compiled());
+      }
+    }
     for (int code : codes) {
-      for (CMap cmap : cmapTable) {
-        if (cmap.platformId() == 3 && cmap.encodingId() == 1 || // Unicode BMP
-            cmap.platformId() == 3 && cmap.encodingId() == 10 || // UCS2
-            cmap.platformId() == 0 && cmap.encodingId() == 5) { // Variation
-          int glyph = cmap.glyphId(code);
-          if (glyph != CMapTable.NOTDEF) {
-            glyphGroup.add(glyph);
-          }
-          // System.out.println("code: " + code + " glyph: " + glyph + " platform: " + cmap.platformId() + " encodingId: " + cmap.encodingId() + " format: " + cmap.format());
-
+      for (CompiledCMap cmap : cmaps) {
+        int glyph = cmap.glyphId(code);
+        if (glyph != CMapTable.NOTDEF) {
+          glyphGroup.add(glyph);
         }
       }
     }
@@ -439,7 +430,7 @@ public class Rule {
     Map<Integer, Set<Rule>> ruleMap = RuleExtractor.extract(gsub.lookupList());
     PostScriptTable post = font.getTable(Tag.post);
     dumpRuleMap(ruleMap, post);
-    System.out.println("\nFeatured Lookup IDs: " + Rule.featuredLookups(font));
+    System.out.println("\nFeatured Lookup IDs: " + Rule.featuredLookups(gsub));
   }
 
   private String toString(PostScriptTable post) {
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2011 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.typography.font.sfntly.table.truetype;
+
+import com.google.typography.font.sfntly.Font;
+import com.google.typography.font.sfntly.Tag;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * A view of the glyphs of a font by glyph id. The view combines the loca and
+ * glyf tables and keeps the most recently used glyphs in a cache of bounded
+ * size so that glyphs which are visited repeatedly, such as the components of
+ * composite glyphs, are only parsed once.
+ *
+ * The view is safe for use by multiple threads.
+ */
+public final class GlyphView {
+
+  /**
+   * The number of glyphs cached by a view if no size is given.
+   */
+  public static final int DEFAULT_MAXIMUM_SIZE = 1024;
+
+  private static final Map<Font, GlyphView> fontViews =
+      Collections.synchronizedMap(new WeakHashMap<Font, GlyphView>());
+
+  private final LocaTable locaTable;
+  private final GlyphTable glyphTable;
+  private final int maximumSize;
+
+  // all guarded by the cache lock
+  private final LinkedHashMap<Integer, Glyph> cache;
+  private long hitCount;
+  private long missCount;
+
+  /**
+   * Constructor.
+   *
+   * @param locaTable the loca table of the font
+   * @param glyphTable the glyf table of the font
+   * @param maximumSize the maximum number of glyphs to cache; zero for no caching
+   */
+  public GlyphView(LocaTable locaTable, GlyphTable glyphTable, final int maximumSize) {
+    if (locaTable == null || glyphTable == null) {
+      throw new IllegalArgumentException("Both loca and glyf tables are needed.");
+    }
+    if (maximumSize < 0) {
+      throw new IllegalArgumentException("Negative maximum cache size " + maximumSize);
+    }
+    this.locaTable = locaTable;
+    this.glyphTable = glyphTable;
+    this.maximumSize = maximumSize;
+    this.cache = new LinkedHashMap<Integer, Glyph>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Integer, Glyph> eldest) {
+        return this.size() > maximumSize;
+      }
+    };
+  }
+
+  /**
+   * Gets the view of the glyphs of the font that is shared by all callers
+   * for the font. The view caches up to {@link #DEFAULT_MAXIMUM_SIZE} glyphs
+   * and is kept for as long as the font is.
+   *
+   * @param font the font
+   * @return the glyph view
+   * @throws IllegalArgumentException if the font has no loca or glyf table
+   */
+  public static GlyphView forFont(Font font) {
+    GlyphView view = fontViews.get(font);
+    if (view == null) {
+      // racing threads may both create a view; either may be kept
+      view = GlyphView.forFont(font, DEFAULT_MAXIMUM_SIZE);
+      fontViews.put(font, view);
+    }
+    return view;
+  }
+
+  /**
+   * Creates a new view of the glyphs of the font.
+   *
+   * @param font the font
+   * @param maximumSize the maximum number of glyphs to cache; zero for no caching
+   * @return the glyph view
+   * @throws IllegalArgumentException if the font has no loca or glyf table
+   */
+  public static GlyphView forFont(Font font, int maximumSize) {
+    LocaTable locaTable = font.getTable(Tag.loca);
+    GlyphTable glyphTable = font.getTable(Tag.glyf);
+    return new GlyphView(locaTable, glyphTable, maximumSize);
+  }
+
+  /**
+   * Gets the number of glyphs in the font.
+   *
+   * @return the number of glyphs
+   */
+  public int numGlyphs() {
+    return this.locaTable.numGlyphs();
+  }
+
+  /**
+   * Gets the glyph for the glyph id given.
+   *
+   * @param glyphId the glyph id; must be greater than or equal to 0 and less
+   *        than the number of glyphs in the font
+   * @return the glyph
+   * @throws IndexOutOfBoundsException if the glyph id is out of range
+   */
+  public Glyph glyph(int glyphId) {
+    Integer key = glyphId;
+    synchronized (this.cache) {
+      Glyph glyph = this.cache.get(key);
+      if (glyph != null) {
+        this.hitCount++;
+        return glyph;
+      }
+      this.missCount++;
+    }
+    // parse outside of the lock - a racing thread may parse the same glyph
+    Glyph glyph = this.glyphTable.glyph(
+        this.locaTable.glyphOffset(glyphId), this.locaTable.glyphLength(glyphId));
+    if (this.maximumSize > 0) {
+      synchronized (this.cache) {
+        Glyph cached = this.cache.get(key);
+        if (cached != null) {
+          return cached;
+        }
+        this.cache.put(key, glyph);
+      }
+    }
+    return glyph;
+  }
+
+  /**
+   * Gets the maximum number of glyphs that will be cached.
+   *
+   * @return the maximum cache size
+   */
+  public int maximumSize() {
+    return this.maximumSize;
+  }
+
+  /**
+   * Gets the number of glyphs currently cached.
+   *
+   * @return the cache size
+   */
+  public int size() {
+    synchronized (this.cache) {
+      return this.cache.size();
+    }
+  }
+
+  /**
+   * Gets the number of glyph lookups that were answered from the cache.
+   *
+   * @return the hit count
+   */
+  public long hitCount() {
+    synchronized (this.cache) {
+      return this.hitCount;
+    }
+  }
+
+  /**
+   * Gets the number of glyph lookups that had to parse the glyph.
+   *
+   * @return the miss count
+   */
+  public long missCount() {
+    synchronized (this.cache) {
+      return this.missCount;
+    }
+  }
+
+  /**
+   * Removes all glyphs from the cache. The hit and miss counts are kept.
+   */
+  public void clear() {
+    synchronized (this.cache) {
+      this.cache.clear();
+    }
+  }
+
+  @Override
+  public String toString() {
+    synchronized (this.cache) {
+      return "GlyphView[size=" + this.cache.size() + ", maximumSize=" + this.maximumSize
+          + ", hits=" + this.hitCount + ", misses=" + this.missCount + "]";
+    }
+  }
+}
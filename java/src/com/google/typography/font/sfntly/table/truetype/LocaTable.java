@@ -116,6 +116,32 @@ public final class LocaTable extends Table {
     return this.data.readULongAsInt(index * FontData.DataSize.ULONG.size());
   }
 
+  /**
+   * Read all the loca values for the table in one pass over the data.
+   *
+   * @return the loca values
+   * @see #loca
+   */
+  int[] locas() {
+    int[] locas = new int[this.numLocas()];
+    if (this.version == IndexToLocFormat.shortOffset) {
+      this.data.readUShortArray(0, locas, 0, locas.length);
+      for (int i = 0; i < locas.length; i++) {
+        locas[i] *= 2;
+      }
+    } else {
+      long[] longLocas = new long[locas.length];
+      this.data.readULongArray(0, longLocas, 0, longLocas.length);
+      for (int i = 0; i < locas.length; i++) {
+        if ((longLocas[i] & 0x80000000L) != 0) {
+          throw new ArithmeticException("Long value too large to fit into an integer.");
+        }
+        locas[i] = (int) longLocas[i];
+      }
+    }
+    return locas;
+  }
+
   /**
    * Get an iterator over the loca values for the table. The iterator returned
    * does not support the delete operation.
@@ -206,9 +232,8 @@ public final class LocaTable extends Table {
         }
 
         LocaTable table = new LocaTable(this.header(), data, this.formatVersion, this.numGlyphs);
-        Iterator<Integer> locaIter = table.iterator();
-        while (locaIter.hasNext()) {
-          this.loca.add(locaIter.next());
+        for (int loca : table.locas()) {
+          this.loca.add(loca);
         }
       }
     }
@@ -26,7 +26,8 @@ public final class SimpleGlyph extends Glyph {
   private int xByteCount;
   private int yByteCount;
 
-  private int[] xCoordinates;
+  // decoded points - only created when first accessed by point
+  private volatile int[] xCoordinates;
   private int[] yCoordinates;
   private boolean[] onCurve;
   private int[] contourIndex;
@@ -37,6 +38,26 @@ public final class SimpleGlyph extends Glyph {
     }
   }
 
+  /**
+   * A visitor for the decoded points of a simple glyph.
+   *
+   * @see SimpleGlyph#visitPoints(PointVisitor)
+   */
+  public interface PointVisitor {
+    /**
+     * Visit a single point of the glyph outline. Points are visited in order,
+     * contour by contour.
+     *
+     * @param contour the contour the point is on
+     * @param point the index of the point within the contour
+     * @param x the x coordinate of the point
+     * @param y the y coordinate of the point
+     * @param onCurve true if the point is on the curve; false if it is a
+     *        control point
+     */
+    void visitPoint(int contour, int point, int x, int y, boolean onCurve);
+  }
+
   SimpleGlyph(ReadableFontData data, int offset, int length) {
     super(data, offset, length, GlyphType.Simple);
   }
@@ -73,10 +94,7 @@ public final class SimpleGlyph extends Glyph {
       this.flagsOffset =
           this.instructionsOffset + this.instructionSize * FontData.DataSize.BYTE.size();
       this.numberOfPoints = this.contourEndPoint(this.numberOfContours() - 1) + 1;
-      this.xCoordinates = new int[this.numberOfPoints];
-      this.yCoordinates = new int[this.numberOfPoints];
-      this.onCurve = new boolean[this.numberOfPoints];
-      parseData(false);
+      countCoordinateBytes();
       this.xCoordinatesOffset =
           this.flagsOffset + this.flagByteCount * FontData.DataSize.BYTE.size();
       this.yCoordinatesOffset =
@@ -86,7 +104,6 @@ public final class SimpleGlyph extends Glyph {
       for (int contour = 0; contour < this.contourIndex.length - 1; contour++) {
         contourIndex[contour + 1] = this.contourEndPoint(contour) + 1;
       }
-      parseData(true);
       int nonPaddedDataLength =
           5 * FontData.DataSize.SHORT.size()
               + (this.numberOfContours() * FontData.DataSize.USHORT.size())
@@ -100,14 +117,59 @@ public final class SimpleGlyph extends Glyph {
     }
   }
 
-  // TODO(stuartg): think about replacing double parsing with ArrayList
-  private void parseData(boolean fillArrays) {
-    int flag = 0;
-    int flagRepeat = 0;
+  /**
+   * Finds the sizes of the flag and coordinate arrays by walking just the
+   * flags. No coordinates are read.
+   */
+  private void countCoordinateBytes() {
     int flagIndex = 0;
     int xByteIndex = 0;
     int yByteIndex = 0;
 
+    for (int pointIndex = 0; pointIndex < this.numberOfPoints;) {
+      int flag = this.flagAsInt(flagIndex++);
+      int points = 1;
+      if ((flag & FLAG_REPEAT) == FLAG_REPEAT) {
+        points += this.flagAsInt(flagIndex++);
+      }
+      points = Math.min(points, this.numberOfPoints - pointIndex);
+      xByteIndex += points * coordinateSize(flag, FLAG_XSHORT, FLAG_XREPEATSIGN);
+      yByteIndex += points * coordinateSize(flag, FLAG_YSHORT, FLAG_YREPEATSIGN);
+      pointIndex += points;
+    }
+    this.flagByteCount = flagIndex;
+    this.xByteCount = xByteIndex;
+    this.yByteCount = yByteIndex;
+  }
+
+  private static int coordinateSize(int flag, int shortFlag, int repeatSignFlag) {
+    if ((flag & shortFlag) == shortFlag) {
+      return 1;
+    }
+    return ((flag & repeatSignFlag) == repeatSignFlag) ? 0 : 2;
+  }
+
+  /**
+   * Decodes the points of the glyph in a single pass and passes each one to
+   * the visitor. No arrays are created for the points.
+   *
+   * @param visitor the visitor to receive the points
+   */
+  public void visitPoints(PointVisitor visitor) {
+    this.initialize();
+    if (this.numberOfPoints == 0) {
+      return;
+    }
+    int flag = 0;
+    int flagRepeat = 0;
+    int flagIndex = 0;
+    int xIndex = this.xCoordinatesOffset;
+    int yIndex = this.yCoordinatesOffset;
+    int x = 0;
+    int y = 0;
+    int contour = 0;
+    int lastContour = this.numberOfContours() - 1;
+
     for (int pointIndex = 0; pointIndex < this.numberOfPoints; pointIndex++) {
       // get the flag for the current point
       if (flagRepeat == 0) {
@@ -119,59 +181,83 @@ public final class SimpleGlyph extends Glyph {
         flagRepeat--;
       }
 
-      // on the curve?
-      if (fillArrays) {
-        this.onCurve[pointIndex] = ((flag & FLAG_ONCURVE) == FLAG_ONCURVE) ? true : false;
-      }
       // get the x coordinate
       if ((flag & FLAG_XSHORT) == FLAG_XSHORT) {
         // single byte x coord value
-        if (fillArrays) {
-          this.xCoordinates[pointIndex] =
-              this.data.readUByte(this.xCoordinatesOffset + xByteIndex);
-          this.xCoordinates[pointIndex] *=
-              ((flag & FLAG_XREPEATSIGN) == FLAG_XREPEATSIGN) ? 1 : -1;
-        }
-        xByteIndex++;
-      } else {
+        int dx = this.data.readUByte(xIndex++);
+        x += ((flag & FLAG_XREPEATSIGN) == FLAG_XREPEATSIGN) ? dx : -dx;
+      } else if (!((flag & FLAG_XREPEATSIGN) == FLAG_XREPEATSIGN)) {
         // double byte coord value
-        if (!((flag & FLAG_XREPEATSIGN) == FLAG_XREPEATSIGN)) {
-          if (fillArrays) {
-            this.xCoordinates[pointIndex] =
-                this.data.readShort(this.xCoordinatesOffset + xByteIndex);
-          }
-          xByteIndex += 2;
-        }
-      }
-      if (fillArrays && pointIndex > 0) {
-        this.xCoordinates[pointIndex] += this.xCoordinates[pointIndex - 1];
+        x += this.data.readShort(xIndex);
+        xIndex += 2;
       }
 
       // get the y coordinate
       if ((flag & FLAG_YSHORT) == FLAG_YSHORT) {
-        if (fillArrays) {
-          this.yCoordinates[pointIndex] =
-              this.data.readUByte(this.yCoordinatesOffset + yByteIndex);
-          this.yCoordinates[pointIndex] *=
-              ((flag & FLAG_YREPEATSIGN) == FLAG_YREPEATSIGN) ? 1 : -1;
-        }
-        yByteIndex++;
-      } else {
-        if (!((flag & FLAG_YREPEATSIGN) == FLAG_YREPEATSIGN)) {
-          if (fillArrays) {
-            this.yCoordinates[pointIndex] =
-                this.data.readShort(this.yCoordinatesOffset + yByteIndex);
-          }
-          yByteIndex += 2;
-        }
+        int dy = this.data.readUByte(yIndex++);
+        y += ((flag & FLAG_YREPEATSIGN) == FLAG_YREPEATSIGN) ? dy : -dy;
+      } else if (!((flag & FLAG_YREPEATSIGN) == FLAG_YREPEATSIGN)) {
+        y += this.data.readShort(yIndex);
+        yIndex += 2;
       }
-      if (fillArrays && pointIndex > 0) {
-        this.yCoordinates[pointIndex] += this.yCoordinates[pointIndex - 1];
+
+      while (contour < lastContour && pointIndex >= this.contourIndex[contour + 1]) {
+        contour++;
       }
+      visitor.visitPoint(contour, pointIndex - this.contourIndex[contour], x, y,
+          (flag & FLAG_ONCURVE) == FLAG_ONCURVE);
+    }
+  }
+
+  /**
+   * Gets the coordinates of all of the points of the glyph packed into a
+   * single array as x, y pairs in point order. The coordinates are stored as
+   * the signed 16 bit values that the glyf table format allows for.
+   *
+   * @return the packed coordinates
+   */
+  public short[] packedCoordinates() {
+    this.initialize();
+    final short[] coordinates = new short[2 * this.numberOfPoints];
+    this.visitPoints(new PointVisitor() {
+      private int index = 0;
+
+      @Override
+      public void visitPoint(int contour, int point, int x, int y, boolean onCurve) {
+        coordinates[this.index++] = (short) x;
+        coordinates[this.index++] = (short) y;
+      }
+    });
+    return coordinates;
+  }
+
+  private void decodePoints() {
+    this.initialize();
+    if (this.xCoordinates != null) {
+      return;
+    }
+    synchronized (this.initializationLock) {
+      if (this.xCoordinates != null) {
+        return;
+      }
+      final int[] xCoordinates = new int[this.numberOfPoints];
+      final int[] yCoordinates = new int[this.numberOfPoints];
+      final boolean[] onCurve = new boolean[this.numberOfPoints];
+      this.visitPoints(new PointVisitor() {
+        private int index = 0;
+
+        @Override
+        public void visitPoint(int contour, int point, int x, int y, boolean pointOnCurve) {
+          xCoordinates[this.index] = x;
+          yCoordinates[this.index] = y;
+          onCurve[this.index++] = pointOnCurve;
+        }
+      });
+      this.yCoordinates = yCoordinates;
+      this.onCurve = onCurve;
+      // written last as it guards the other point arrays
+      this.xCoordinates = xCoordinates;
     }
-    this.flagByteCount = flagIndex;
-    this.xByteCount = xByteIndex;
-    this.yByteCount = yByteIndex;
   }
 
   private int flagAsInt(int index) {
@@ -203,18 +289,28 @@ public final class SimpleGlyph extends Glyph {
     return this.contourIndex[contour + 1] - this.contourIndex[contour];
   }
 
-  public int xCoordinate(int contour, int point) {
+  /**
+   * Gets the total number of points in the glyph.
+   *
+   * @return the number of points
+   */
+  public int numberOfPoints() {
     this.initialize();
+    return this.numberOfPoints;
+  }
+
+  public int xCoordinate(int contour, int point) {
+    this.decodePoints();
     return this.xCoordinates[this.contourIndex[contour] + point];
   }
 
   public int yCoordinate(int contour, int point) {
-    this.initialize();
+    this.decodePoints();
     return this.yCoordinates[this.contourIndex[contour] + point];
   }
 
   public boolean onCurve(int contour, int point) {
-    this.initialize();
+    this.decodePoints();
     return this.onCurve[this.contourIndex[contour] + point];
   }
 
@@ -27,6 +27,8 @@ import com.google.typography.font.sfntly.table.core.OS2Table;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 
 /**
  * @author Jeremie Lenfant-Engelmann
@@ -34,6 +36,7 @@ import java.io.IOException;
 public class EOTWriter {
 
   private final boolean compressed;
+  private final int compressionLevel;
   
   private final FontFactory factory = FontFactory.getInstance();
 
@@ -47,40 +50,97 @@ public class EOTWriter {
   private final static long CS_XORKEY = 0x50475342;
 
   public EOTWriter() {
-    compressed = false;
+    this(false);
   }
   
   public EOTWriter(boolean compressed) {
+    this(compressed, LzcompCompress.DEFAULT_LEVEL);
+  }
+
+  /**
+   * @param compressed whether to compress the font data with MicroType Express
+   * @param compressionLevel the LZCOMP level used when compressing, see {@link MtxWriter}
+   * @throws IllegalArgumentException if the level is out of range, even when
+   *         not compressing
+   */
+  public EOTWriter(boolean compressed, int compressionLevel) {
+    if (compressionLevel < LzcompCompress.MIN_LEVEL ||
+        compressionLevel > LzcompCompress.MAX_LEVEL) {
+      throw new IllegalArgumentException("Compression level out of range: " + compressionLevel);
+    }
     this.compressed = compressed;
+    this.compressionLevel = compressionLevel;
   }
 
   public WritableFontData convert(Font font) throws IOException {
-    ByteArrayOutputStream baos = new ByteArrayOutputStream();
-    factory.serializeFont(font, baos);
-    byte[] fontData = baos.toByteArray();
+    byte[] fontData;
+    if (compressed) {
+      fontData = new MtxWriter(compressionLevel).compress(font);
+    } else {
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      factory.serializeFont(font, baos);
+      fontData = baos.toByteArray();
+    }
+    WritableFontData header = createHeader(font, fontData.length);
+    WritableFontData writableFontData =
+        createWritableFontData(header.length() + fontData.length);
+    header.copyTo(writableFontData);
+    // FontData[FontDataSize]
+    writableFontData.writeBytes(header.length(), fontData, 0, fontData.length);
+    return writableFontData;
+  }
+
+  /**
+   * Converts the font to EOT and writes it to the channel. An uncompressed
+   * font is serialized straight to the channel after the EOT header rather
+   * than being built in memory first.
+   *
+   * @param font the font to convert
+   * @param channel the destination
+   * @throws IOException if the font can't be converted or written
+   */
+  public void convert(Font font, WritableByteChannel channel) throws IOException {
+    if (compressed) {
+      byte[] fontData = new MtxWriter(compressionLevel).compress(font);
+      createHeader(font, fontData.length).copyTo(channel);
+      ByteBuffer buffer = ByteBuffer.wrap(fontData);
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      return;
+    }
+    long fontDataSize = font.serializedLength();
+    if (fontDataSize > Integer.MAX_VALUE) {
+      throw new IOException("Font too large for EOT: " + fontDataSize + " bytes.");
+    }
+    createHeader(font, (int) fontDataSize).copyTo(channel);
+    factory.serializeFont(font, channel); // FontData[FontDataSize]
+  }
+
+  /**
+   * Creates the EOT header, everything that comes before the font data.
+   */
+  private WritableFontData createHeader(Font font, int fontDataSize) {
     NameTable name = font.getTable(Tag.name);
     byte[] familyName = convertUTF16StringToLittleEndian(name.nameAsBytes(3, 1, 0x409, 1));
     byte[] styleName = convertUTF16StringToLittleEndian(name.nameAsBytes(3, 1, 0x409, 2));
     byte[] versionName = convertUTF16StringToLittleEndian(name.nameAsBytes(3, 1, 0x409, 5));
     byte[] fullName = convertUTF16StringToLittleEndian(name.nameAsBytes(3, 1, 0x409, 4));
     long flags = DEFAULT_FLAGS;
-    
     if (compressed) {
       flags |= FLAGS_TT_COMPRESSED;
-      MtxWriter mtxWriter = new MtxWriter();
-      fontData = mtxWriter.compress(font);
     }
-    
+
     long eotSize = computeEotSize(
-      familyName.length, styleName.length, versionName.length, fullName.length, fontData.length);
+      familyName.length, styleName.length, versionName.length, fullName.length, fontDataSize);
 
-    WritableFontData writableFontData = createWritableFontData((int) eotSize);
+    WritableFontData writableFontData = createWritableFontData((int) eotSize - fontDataSize);
 
     OS2Table os2Table = font.getTable(Tag.OS_2);
     int index = 0;
 
     index += writableFontData.writeULongLE(index, eotSize); // EOTSize
-    index += writableFontData.writeULongLE(index, fontData.length); // FontDataSize
+    index += writableFontData.writeULongLE(index, fontDataSize); // FontDataSize
     index += writableFontData.writeULongLE(index, VERSION); // Version
     index += writableFontData.writeULongLE(index, flags); // Flags
     index += writeFontPANOSE(index, os2Table, writableFontData); // FontPANOSE
@@ -123,7 +183,6 @@ public class EOTWriter {
       index += writableFontData.writeULongLE(index, 0);  // EUDCFlags
       index += writableFontData.writeULongLE(index, 0);  // EUDCFontSize
     }
-    writableFontData.writeBytes(index, fontData, 0, fontData.length); // FontData[FontDataSize]
     return writableFontData;
   }
 
@@ -102,21 +102,22 @@ public class GlyfEncoder {
       for (int i = 0; i < numContours; i++) {
         write255UShort(glyfStream, glyph.numberOfPoints(i) - (i == 0 ? 1 : 0));
       }
-      ByteArrayOutputStream os = new ByteArrayOutputStream();
-      int lastX = 0;
-      int lastY = 0;
-      for (int i = 0; i < numContours; i++) {
-        int numPoints = glyph.numberOfPoints(i);
-        for (int j = 0; j < numPoints; j++) {
-          int x = glyph.xCoordinate(i, j);
-          int y = glyph.yCoordinate(i, j);
-          int dx = x - lastX;
-          int dy = y - lastY;
-          writeTriplet(os, glyph.onCurve(i, j), dx, dy);
-          lastX = x;
-          lastY = y;
+      final ByteArrayOutputStream os = new ByteArrayOutputStream();
+      glyph.visitPoints(new SimpleGlyph.PointVisitor() {
+        private int lastX = 0;
+        private int lastY = 0;
+
+        @Override
+        public void visitPoint(int contour, int point, int x, int y, boolean onCurve) {
+          try {
+            writeTriplet(os, onCurve, x - this.lastX, y - this.lastY);
+          } catch (IOException e) {
+            throw new RuntimeException("unexpected IOException writing glyph data", e);
+          }
+          this.lastX = x;
+          this.lastY = y;
         }
-      }
+      });
       os.writeTo(glyfStream);
       if (numContours > 0) {
         writeInstructions(glyph);
@@ -159,9 +160,8 @@ public class GlyfEncoder {
     glyfStream.write(value & 255);
   }
   
-  // As per 6.1.1 of spec
-  // visible for testing
-  static void write255UShort(OutputStream os, int value) throws IOException {
+  // As per 6.1.1 of spec; WOFF 2.0 uses the same 255UInt16 encoding
+  public static void write255UShort(OutputStream os, int value) throws IOException {
     if (value < 0) {
       throw new IllegalArgumentException();
     }
@@ -339,4 +339,20 @@ public class GlyfEncoder {
   public byte[] getCodeBytes() {
     return codeStream.toByteArray();
   }
+
+  public int getPushSize() {
+    return pushStream.size();
+  }
+
+  public int getCodeSize() {
+    return codeStream.size();
+  }
+
+  public void writePushBytes(OutputStream os) throws IOException {
+    pushStream.writeTo(os);
+  }
+
+  public void writeCodeBytes(OutputStream os) throws IOException {
+    codeStream.writeTo(os);
+  }
 }
@@ -16,12 +16,21 @@
 
 package com.google.typography.font.tools.conversion.eot;
 
+import java.io.OutputStream;
+import java.util.Arrays;
+
 /**
  * Implement LZCOMP compression algorithm as defined in MicroType Express, part of the EOT
  * draft spec at {@link "http://www.w3.org/Submission/MTX/"}
  *
  * Java implementation based on http://www.w3.org/Submission/MTX/ reference code
  *
+ * <p>The compressor supports levels from {@link #MIN_LEVEL} to {@link #MAX_LEVEL}. The maximum
+ * level is the reference algorithm, which prices every candidate match against the adaptive
+ * Huffman model and looks ahead before committing to a copy. Lower levels bound the number of
+ * hash chain entries visited and pick the longest match, optionally deferring it by one byte when
+ * the next position has a longer one (lazy matching); they only consult the model once per copy.
+ *
  * @author Raph Levien
  */
 public class LzcompCompress {
@@ -35,6 +44,17 @@ public class LzcompCompress {
   private static final int BIT_RANGE = LEN_WIDTH - 1;
   private static final int PRELOAD_SIZE = 2 * 32 * 96 + 4 * 256;
   private static final int DEFAULT_MAX_COPY_DIST = 0x7fffffff;
+  private static final int HASH_SIZE = 0x10000;
+  private static final int MAX_COST_CACHE_LENGTH = 32;
+
+  public static final int MIN_LEVEL = 1;
+  public static final int MAX_LEVEL = 9;
+  public static final int DEFAULT_LEVEL = MAX_LEVEL;
+
+  // Hash chain entries visited per position, indexed by level.
+  private static final int[] CHAIN_DEPTH = {0, 4, 8, 16, 16, 32, 64, 128, 256, 256};
+  // Lowest level that defers a match when the next position has a longer one.
+  private static final int MIN_LAZY_LEVEL = 4;
 
   private BitIOWriter bits;
   private boolean usingRunLength;
@@ -49,29 +69,53 @@ public class LzcompCompress {
   private int dup4;
   private int dup6;
   private int numSyms;
+  private final int level;
+  private final int chainDepth;
   private byte[] buf;
-  private HashNode[] hashTable;
-
-  private static class HashNode {
-    int index;
-    HashNode next;
-  }
+  // Number of valid bytes in buf, preload included.
+  private int bufEnd;
+  // Hash chains over the 2-byte prefix at each position: head[hash] is the most recent position,
+  // prev[position] the one before it with the same hash, -1 terminates.
+  private int[] head;
+  private int[] prev;
+  private final int[] literalCostCache = new int[MAX_COST_CACHE_LENGTH + 1];
+  private int matchDist;
 
-  private LzcompCompress() {
+  private LzcompCompress(int level, int capacity) {
+    if (level < MIN_LEVEL || level > MAX_LEVEL) {
+      throw new IllegalArgumentException("Compression level out of range: " + level);
+    }
+    this.level = level;
+    this.chainDepth = CHAIN_DEPTH[level];
     bits = new BitIOWriter();
     usingRunLength = false;
+    buf = new byte[PRELOAD_SIZE + capacity];
+    bufEnd = PRELOAD_SIZE;
+  }
+
+  private void append(int b) {
+    if (bufEnd == buf.length) {
+      buf = Arrays.copyOf(buf, Math.max(bufEnd + 1, buf.length * 2));
+    }
+    buf[bufEnd++] = (byte) b;
   }
 
-  private void write(byte[] dataIn) {
+  private void append(byte[] b, int off, int len) {
+    if (bufEnd + len > buf.length) {
+      buf = Arrays.copyOf(buf, Math.max(bufEnd + len, buf.length * 2));
+    }
+    System.arraycopy(b, off, buf, bufEnd, len);
+    bufEnd += len;
+  }
+
+  private void write() {
     bits.writeBit(usingRunLength);
-    length1 = dataIn.length;
+    length1 = bufEnd - PRELOAD_SIZE;
     // If we want to do runlengths, here's the place, but I'm not convinced it's useful
     setDistRange(length1);
     distEncoder = new HuffmanEncoder(bits, 1 << DIST_WIDTH);
     lenEncoder = new HuffmanEncoder(bits, 1 << LEN_WIDTH);
     symEncoder = new HuffmanEncoder(bits, numSyms);
-    buf = new byte[PRELOAD_SIZE + length1];
-    System.arraycopy(dataIn, 0, buf, PRELOAD_SIZE, length1);
     encode();
     bits.flush();
   }
@@ -97,7 +141,7 @@ public class LzcompCompress {
     int[] dist = new int[1];
     for (int i = PRELOAD_SIZE; i < limit; ) {
       int here = i;
-      int len = makeCopyDecision(i++, dist);
+      int len = level == MAX_LEVEL ? makeCopyDecision(i++, dist) : makeFastCopyDecision(i++, dist);
       if (len > 0) {
         int distRanges = getNumDistRanges(dist[0]);
         encodeLength(len, dist[0], distRanges);
@@ -120,7 +164,9 @@ public class LzcompCompress {
     }
   }
   void initializeModel() {
-    hashTable = new HashNode[0x10000];
+    head = new int[HASH_SIZE];
+    Arrays.fill(head, -1);
+    prev = new int[bufEnd];
     int i = 0;
     for (int k = 0; k < 32; k++) {
       for (int j = 0; j < 96; j++) {
@@ -184,7 +230,7 @@ public class LzcompCompress {
           if (costPerByte1[0] * 2 > dup2Cost + symEncoder.writeSymbolCost(buf[here + 1] & 0xff)) {
             len1 = 0;
           }
-        } else if (here >= 1 && here + 1 < buf.length && buf[here + 1] == buf[here - 1]) {
+        } else if (here >= 1 && here + 1 < bufEnd && buf[here + 1] == buf[here - 1]) {
           int dup2Cost = symEncoder.writeSymbolCost(dup2);
           if (costPerByte1[0] * 2 > symbolCost + dup2Cost) {
             len1 = 0;
@@ -196,11 +242,84 @@ public class LzcompCompress {
     return len1;
   }
 
+  private int makeFastCopyDecision(int index, int[] bestDist) {
+    int len = findLongestMatch(index);
+    int dist = matchDist;
+    updateModel(index);
+    if (len > 0) {
+      if (level >= MIN_LAZY_LEVEL && findLongestMatch(index + 1) > len) {
+        return 0;
+      }
+      int distRanges = getNumDistRanges(dist);
+      int copyCost = encodeLengthCost(len, dist, distRanges) +
+          encodeDistance2Cost(dist, distRanges);
+      if (literalCost(index, len) <= copyCost) {
+        return 0;
+      }
+    }
+    bestDist[0] = dist;
+    return len;
+  }
+
+  /**
+   * Find the longest match at index among the first chainDepth hash chain entries, preferring the
+   * nearest one on ties. The encoded distance of the match is left in matchDist.
+   */
+  private int findLongestMatch(int index) {
+    int maxIndexMinusIndex = bufEnd - index;
+    int bestLength = 0;
+    int bestDist = 0;
+    if (maxIndexMinusIndex > 1) {
+      int pos = ((buf[index] & 0xff) << 8) | (buf[index + 1] & 0xff);
+      int count = 0;
+      for (int node = head[pos]; node >= 0; node = prev[node]) {
+        int dist = index - node;
+        count++;
+        if (count > chainDepth || dist > maxCopyDist || dist > distMax) {
+          break;
+        }
+        int maxLen = dist;
+        if (maxIndexMinusIndex < maxLen) {
+          maxLen = maxIndexMinusIndex;
+        }
+        if (maxLen <= bestLength || maxLen < LEN_MIN) {
+          continue;
+        }
+        if (bestLength > 0 && buf[node + bestLength] != buf[index + bestLength]) {
+          continue;
+        }
+        int length = 2;
+        while (length < maxLen && buf[node + length] == buf[index + length]) {
+          length++;
+        }
+        dist = dist - length + 1;
+        if (length > bestLength && (length > 2 || dist < MAX_2BYTE_DIST)) {
+          bestLength = length;
+          bestDist = dist;
+        }
+      }
+    }
+    matchDist = bestDist;
+    return bestLength;
+  }
+
+  private int literalCost(int index, int length) {
+    int limit = Math.min(length, MAX_COST_CACHE_LENGTH);
+    int cost = 0;
+    for (int i = 0; i < limit; i++) {
+      cost += symEncoder.writeSymbolCost(buf[index + i] & 0xff);
+    }
+    if (length > limit) {
+      cost += cost / limit * (length - limit);
+    }
+    return cost;
+  }
+
   // consider refactoring signature to return PotentialMatch object with fields set...
   int findMatch(int index, int[] distOut, int[] gainOut, int[] costPerByteOut) {
-    final int maxCostCacheLength = 32;
-    int[] literalCostCache = new int[maxCostCacheLength + 1];
-    int maxIndexMinusIndex = buf.length - index;
+    final int maxCostCacheLength = MAX_COST_CACHE_LENGTH;
+    int[] literalCostCache = this.literalCostCache;
+    int maxIndexMinusIndex = bufEnd - index;
     int bestLength = 0;
     int bestDist = 0;
     int bestGain = 0;
@@ -208,18 +327,13 @@ public class LzcompCompress {
     int maxComputedLength = 0;
     if (maxIndexMinusIndex > 1) {
       int pos = ((buf[index] & 0xff) << 8) | (buf[index + 1] & 0xff);
-      HashNode prevNode = null;
       int hNodeCount = 0;
-      for (HashNode hNode = hashTable[pos]; hNode != null; prevNode = hNode, hNode = hNode.next) {
-        int i = hNode.index;
+      // Chain entries only get older and deeper, so stopping here is as good as truncating.
+      for (int node = head[pos]; node >= 0; node = prev[node]) {
+        int i = node;
         int dist = index - i;
         hNodeCount++;
-        if (hNodeCount > 256 || dist > maxCopyDist || dist > distMax) {
-          if (hashTable[pos] == hNode) {
-            hashTable[pos] = null;
-          } else {
-            prevNode.next = null;
-          }
+        if (hNodeCount > chainDepth || dist > maxCopyDist || dist > distMax) {
           break;
         }
         int maxLen = index - i;
@@ -395,26 +509,88 @@ public class LzcompCompress {
   private void updateModel(int index) {
     byte c = buf[index];
     if (index > 0) {
-      HashNode hNode = new HashNode();
       byte prevC = buf[index - 1];
       int pos = ((prevC & 0xff) << 8) | (c & 0xff);
-      hNode.index = index - 1;
-      hNode.next = hashTable[pos];
-      hashTable[pos] = hNode;
+      prev[index - 1] = head[pos];
+      head[pos] = index - 1;
     }
   }
 
   private byte[] toByteArray() {
     return bits.toByteArray();
   }
-  
+
   public static byte[] compress(byte[] dataIn) {
-    LzcompCompress compressor = new LzcompCompress();
-    compressor.write(dataIn);
+    return compress(dataIn, DEFAULT_LEVEL);
+  }
+
+  public static byte[] compress(byte[] dataIn, int level) {
+    return compress(dataIn, 0, dataIn.length, level);
+  }
+
+  public static byte[] compress(byte[] dataIn, int offset, int length, int level) {
+    LzcompCompress compressor = new LzcompCompress(level, length);
+    compressor.append(dataIn, offset, length);
+    compressor.write();
     return compressor.toByteArray();
   }
-  
+
   public static int getPreloadSize() {
     return PRELOAD_SIZE;
   }
+
+  /**
+   * Collects the input to compress from any number of writes, placing it directly behind the
+   * preload area so that the pieces are never concatenated into an intermediate array.
+   */
+  public static final class Stream extends OutputStream {
+    private LzcompCompress compressor;
+
+    public Stream() {
+      this(DEFAULT_LEVEL);
+    }
+
+    public Stream(int level) {
+      this(level, 0);
+    }
+
+    /**
+     * @param level the compression level
+     * @param sizeHint the expected number of bytes to be written
+     */
+    public Stream(int level, int sizeHint) {
+      this.compressor = new LzcompCompress(level, sizeHint);
+    }
+
+    @Override
+    public void write(int b) {
+      if (this.compressor == null) {
+        throw new IllegalStateException("Stream has already been compressed.");
+      }
+      this.compressor.append(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      if (this.compressor == null) {
+        throw new IllegalStateException("Stream has already been compressed.");
+      }
+      this.compressor.append(b, off, len);
+    }
+
+    /**
+     * Compress everything written so far. The stream accepts no more data afterwards.
+     *
+     * @return the compressed data
+     */
+    public byte[] compress() {
+      if (this.compressor == null) {
+        throw new IllegalStateException("Stream has already been compressed.");
+      }
+      LzcompCompress c = this.compressor;
+      this.compressor = null;
+      c.write();
+      return c.toByteArray();
+    }
+  }
 }
@@ -23,6 +23,7 @@ import com.google.typography.font.sfntly.table.core.FontHeaderTable;
 import com.google.typography.font.sfntly.table.core.HorizontalDeviceMetricsTable;
 import com.google.typography.font.sfntly.table.truetype.ControlValueTable;
 
+import java.io.IOException;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Map;
@@ -46,6 +47,24 @@ public class MtxWriter {
     return Collections.unmodifiableSet(result);
   }
 
+  private final int compressionLevel;
+
+  public MtxWriter() {
+    this(LzcompCompress.DEFAULT_LEVEL);
+  }
+
+  /**
+   * @param compressionLevel the LZCOMP level, from {@link LzcompCompress#MIN_LEVEL} (fastest) to
+   *        {@link LzcompCompress#MAX_LEVEL} (smallest)
+   */
+  public MtxWriter(int compressionLevel) {
+    if (compressionLevel < LzcompCompress.MIN_LEVEL ||
+        compressionLevel > LzcompCompress.MAX_LEVEL) {
+      throw new IllegalArgumentException("Compression level out of range: " + compressionLevel);
+    }
+    this.compressionLevel = compressionLevel;
+  }
+
   public byte[] compress(Font sfntlyFont) {
     MtxFontBuilder fontBuilder = new MtxFontBuilder();
     for (Map.Entry<Integer, ? extends Table> entry : sfntlyFont.tableMap().entrySet()) {
@@ -75,9 +94,7 @@ public class MtxWriter {
     }
     
     byte[] block1 = fontBuilder.build();
-    byte[] block2 = glyfEncoder.getPushBytes();
-    byte[] block3 = glyfEncoder.getCodeBytes();
-    return packMtx(block1, block2, block3);
+    return packMtx(block1, glyfEncoder);
   }
 
   private static void writeBE24(byte[] data, int value, int off) {
@@ -89,12 +106,23 @@ public class MtxWriter {
   /**
    * Compress the blocks and pack them into the final container, as per section 2 of the spec.
    */
-  private static byte[] packMtx(byte[] block1, byte[] block2, byte[] block3) {
-    int copyDist = Math.max(block1.length, Math.max(block2.length, block3.length)) +
+  private byte[] packMtx(byte[] block1, GlyfEncoder glyfEncoder) {
+    int size2 = glyfEncoder.getPushSize();
+    int size3 = glyfEncoder.getCodeSize();
+    int copyDist = Math.max(block1.length, Math.max(size2, size3)) +
         LzcompCompress.getPreloadSize();
-    byte[] compressed1 = LzcompCompress.compress(block1);
-    byte[] compressed2 = LzcompCompress.compress(block2);
-    byte[] compressed3 = LzcompCompress.compress(block3);
+    byte[] compressed1 = LzcompCompress.compress(block1, compressionLevel);
+    // The push and code streams are handed to the compressor as they are buffered in the encoder.
+    LzcompCompress.Stream stream2 = new LzcompCompress.Stream(compressionLevel, size2);
+    LzcompCompress.Stream stream3 = new LzcompCompress.Stream(compressionLevel, size3);
+    try {
+      glyfEncoder.writePushBytes(stream2);
+      glyfEncoder.writeCodeBytes(stream3);
+    } catch (IOException e) {
+      throw new RuntimeException("unexpected IOException buffering glyph data", e);
+    }
+    byte[] compressed2 = stream2.compress();
+    byte[] compressed3 = stream3.compress();
     int resultSize = 10 + compressed1.length + compressed2.length + compressed3.length;
     byte[] result = new byte[resultSize];
     result[0] = 3;
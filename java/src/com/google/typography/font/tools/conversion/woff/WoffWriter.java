@@ -23,13 +23,32 @@ import com.google.typography.font.sfntly.data.WritableFontData;
 import com.google.typography.font.sfntly.table.Table;
 import com.google.typography.font.sfntly.table.core.FontHeaderTable;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 import java.util.zip.Deflater;
 
 /**
+ * Converts a font to WOFF.
+ *
+ * Each table is compressed on its own. By default the tables are compressed
+ * one after another on the calling thread; if an executor is set then the
+ * tables are compressed concurrently on it. The compression level and strategy
+ * can be set for all tables and overridden for individual tables. The output
+ * is the same whichever way the tables are compressed.
+ *
  * @author Jeremie Lenfant-Engelmann
  */
 public class WoffWriter {
@@ -40,12 +59,144 @@ public class WoffWriter {
   private static final int WOFF_HEADER_SIZE =
       (9 * FontData.DataSize.ULONG.size()) + (4 * FontData.DataSize.USHORT.size());
 
+  // idle compressors by compression settings, shared by all writers
+  private static final Map<Integer, ArrayDeque<Compressor>> compressorPool =
+      new HashMap<Integer, ArrayDeque<Compressor>>();
+  private static final int MAX_IDLE_COMPRESSORS = 2 * Runtime.getRuntime().availableProcessors();
+
+  private Executor executor = null;
+  private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+  private int compressionStrategy = Deflater.DEFAULT_STRATEGY;
+  private final Map<Integer, Integer> tableCompressionLevels = new HashMap<Integer, Integer>();
+  private final Map<Integer, Integer> tableCompressionStrategies =
+      new HashMap<Integer, Integer>();
+
+  /**
+   * Set the executor that tables are compressed on. If no executor is set then
+   * tables are compressed one after another on the calling thread.
+   *
+   * @param executor the executor to compress tables on; null to compress them
+   *        on the calling thread
+   */
+  public void setExecutor(Executor executor) {
+    this.executor = executor;
+  }
+
+  /**
+   * Get the executor that tables are compressed on.
+   *
+   * @return the executor; null if tables are compressed on the calling thread
+   */
+  public Executor executor() {
+    return this.executor;
+  }
+
+  /**
+   * Set the compression level used for tables that have no level of their own.
+   *
+   * @param level the compression level, from 0 to 9 or
+   *        {@link Deflater#DEFAULT_COMPRESSION}
+   */
+  public void setCompressionLevel(int level) {
+    this.compressionLevel = checkLevel(level);
+  }
+
+  /**
+   * Set the compression level used for a table.
+   *
+   * @param tag the table tag
+   * @param level the compression level, from 0 to 9 or
+   *        {@link Deflater#DEFAULT_COMPRESSION}
+   */
+  public void setCompressionLevel(int tag, int level) {
+    this.tableCompressionLevels.put(tag, checkLevel(level));
+  }
+
+  /**
+   * Set the compression strategy used for tables that have no strategy of
+   * their own.
+   *
+   * @param strategy one of {@link Deflater#DEFAULT_STRATEGY},
+   *        {@link Deflater#FILTERED} or {@link Deflater#HUFFMAN_ONLY}
+   */
+  public void setCompressionStrategy(int strategy) {
+    this.compressionStrategy = checkStrategy(strategy);
+  }
+
+  /**
+   * Set the compression strategy used for a table.
+   *
+   * @param tag the table tag
+   * @param strategy one of {@link Deflater#DEFAULT_STRATEGY},
+   *        {@link Deflater#FILTERED} or {@link Deflater#HUFFMAN_ONLY}
+   */
+  public void setCompressionStrategy(int tag, int strategy) {
+    this.tableCompressionStrategies.put(tag, checkStrategy(strategy));
+  }
+
+  private static int checkLevel(int level) {
+    if ((level < 0 || level > 9) && level != Deflater.DEFAULT_COMPRESSION) {
+      throw new IllegalArgumentException("Invalid compression level " + level);
+    }
+    return level;
+  }
+
+  private static int checkStrategy(int strategy) {
+    if (strategy != Deflater.DEFAULT_STRATEGY && strategy != Deflater.FILTERED
+        && strategy != Deflater.HUFFMAN_ONLY) {
+      throw new IllegalArgumentException("Invalid compression strategy " + strategy);
+    }
+    return strategy;
+  }
+
   public WritableFontData convert(Font font) {
     List<TableDirectoryEntry> tableDirectoryEntries = createTableDirectoryEntries(font);
     int length =
         WOFF_HEADER_SIZE + computeTableDirectoryEntriesLength(tableDirectoryEntries)
             + computeTablesLength(tableDirectoryEntries);
     WritableFontData writableFontData = WritableFontData.createWritableFontData(length);
+    int index = writeHeader(writableFontData, font, tableDirectoryEntries, length);
+    index += writeTables(writableFontData, index, tableDirectoryEntries);
+    return writableFontData;
+  }
+
+  /**
+   * Converts the font to WOFF and writes it to the channel. Only the header and
+   * table directory are built in memory; the compressed tables are written to
+   * the channel as they are, in a single write if the channel supports
+   * gathering writes.
+   *
+   * @param font the font to convert
+   * @param channel the destination
+   * @throws IOException if the font can't be written
+   */
+  public void convert(Font font, WritableByteChannel channel) throws IOException {
+    List<TableDirectoryEntry> tableDirectoryEntries = createTableDirectoryEntries(font);
+    int headerLength =
+        WOFF_HEADER_SIZE + computeTableDirectoryEntriesLength(tableDirectoryEntries);
+    int length = headerLength + computeTablesLength(tableDirectoryEntries);
+    WritableFontData header = WritableFontData.createWritableFontData(headerLength);
+    writeHeader(header, font, tableDirectoryEntries, length);
+
+    List<ByteBuffer> buffers = new ArrayList<ByteBuffer>(2 * tableDirectoryEntries.size() + 1);
+    buffers.add(header.asByteBuffer());
+    for (TableDirectoryEntry entry : tableDirectoryEntries) {
+      int tableLength = entry.getCompressedTableLength();
+      buffers.add(ByteBuffer.wrap(entry.compTable));
+      if (align4(tableLength) > tableLength) {
+        buffers.add(ByteBuffer.wrap(new byte[align4(tableLength) - tableLength]));
+      }
+    }
+    writeFully(channel, buffers.toArray(new ByteBuffer[buffers.size()]));
+  }
+
+  /**
+   * Writes the WOFF header and the table directory.
+   *
+   * @return the number of bytes written
+   */
+  private int writeHeader(WritableFontData writableFontData, Font font,
+      List<TableDirectoryEntry> tableDirectoryEntries, int length) {
     int index = 0;
 
     index += writeWoffHeader(writableFontData,
@@ -56,8 +207,27 @@ public class WoffWriter {
         extractMajorVersion(font),
         extractMinorVersion(font));
     index += writeTableDirectoryEntries(writableFontData, index, tableDirectoryEntries);
-    index += writeTables(writableFontData, index, tableDirectoryEntries);
-    return writableFontData;
+    return index;
+  }
+
+  private static void writeFully(WritableByteChannel channel, ByteBuffer[] buffers)
+      throws IOException {
+    if (channel instanceof GatheringByteChannel) {
+      GatheringByteChannel gatheringChannel = (GatheringByteChannel) channel;
+      long remaining = 0;
+      for (ByteBuffer buffer : buffers) {
+        remaining += buffer.remaining();
+      }
+      while (remaining > 0) {
+        remaining -= gatheringChannel.write(buffers);
+      }
+      return;
+    }
+    for (ByteBuffer buffer : buffers) {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    }
   }
 
   private int extractMajorVersion(Font font) {
@@ -155,6 +325,7 @@ public class WoffWriter {
 
   private List<TableDirectoryEntry> createTableDirectoryEntries(Font font) {
     List<TableDirectoryEntry> tableDirectoryEntries = new ArrayList<TableDirectoryEntry>();
+    List<FutureTask<byte[]>> compressionTasks = new ArrayList<FutureTask<byte[]>>();
     TreeSet<Integer> tags = new TreeSet<Integer>(font.tableMap().keySet());
     tags.remove(Tag.DSIG);
 
@@ -164,27 +335,164 @@ public class WoffWriter {
       tableDirectoryEntry.setTag(tag);
       tableDirectoryEntry.setOrigLength(table.dataLength());
       tableDirectoryEntry.setOrigChecksum(table.calculatedChecksum());
-      setCompressedTableData(tableDirectoryEntry, table);
       tableDirectoryEntries.add(tableDirectoryEntry);
+
+      FutureTask<byte[]> compressionTask =
+          new FutureTask<byte[]>(new CompressionTask(table, compressionLevel(tag),
+              compressionStrategy(tag), woff_compression_faster
+                  && (table.dataLength() < 100 || table.headerTag() == Tag.loca)));
+      if (this.executor != null) {
+        this.executor.execute(compressionTask);
+      } else {
+        compressionTask.run();
+      }
+      compressionTasks.add(compressionTask);
+    }
+
+    for (int i = 0; i < tableDirectoryEntries.size(); i++) {
+      tableDirectoryEntries.get(i).setCompTable(compressedTable(compressionTasks.get(i)));
     }
     return tableDirectoryEntries;
   }
 
-  private void setCompressedTableData(TableDirectoryEntry tableDirectoryEntry, Table table) {
-    int length = table.dataLength();
-    byte[] input = new byte[length];
-    table.readFontData().readBytes(0, input, 0, length);
-    if (woff_compression_faster && (length < 100 || table.headerTag() == Tag.loca)) {
-      tableDirectoryEntry.setCompTable(input);
-    } else {
-      byte[] output = new byte[length];
-      Deflater compresser = new Deflater();
-      compresser.setInput(input);
-      compresser.finish();
-      int compLength = compresser.deflate(output);
-      tableDirectoryEntry.setCompTable(
-          compLength == length || !compresser.finished() ? input : Arrays.copyOfRange(
-              output, 0, compLength));
+  private int compressionLevel(int tag) {
+    Integer level = this.tableCompressionLevels.get(tag);
+    return level == null ? this.compressionLevel : level;
+  }
+
+  private int compressionStrategy(int tag) {
+    Integer strategy = this.tableCompressionStrategies.get(tag);
+    return strategy == null ? this.compressionStrategy : strategy;
+  }
+
+  private static byte[] compressedTable(FutureTask<byte[]> compressionTask) {
+    try {
+      return compressionTask.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while compressing tables.", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new RuntimeException(cause);
+    }
+  }
+
+  private static Compressor borrowCompressor(int level, int strategy) {
+    int key = compressorKey(level, strategy);
+    synchronized (compressorPool) {
+      ArrayDeque<Compressor> idle = compressorPool.get(key);
+      if (idle != null && !idle.isEmpty()) {
+        return idle.pop();
+      }
+    }
+    return new Compressor(level, strategy);
+  }
+
+  private static void releaseCompressor(Compressor compressor) {
+    int key = compressorKey(compressor.level, compressor.strategy);
+    synchronized (compressorPool) {
+      ArrayDeque<Compressor> idle = compressorPool.get(key);
+      if (idle == null) {
+        idle = new ArrayDeque<Compressor>();
+        compressorPool.put(key, idle);
+      }
+      if (idle.size() < MAX_IDLE_COMPRESSORS) {
+        idle.push(compressor);
+        return;
+      }
+    }
+    compressor.end();
+  }
+
+  private static int compressorKey(int level, int strategy) {
+    return ((level + 1) << 8) | strategy;
+  }
+
+  /**
+   * Compresses the data of one table.
+   */
+  private static final class CompressionTask implements Callable<byte[]> {
+    private final Table table;
+    private final int level;
+    private final int strategy;
+    private final boolean stored;
+
+    private CompressionTask(Table table, int level, int strategy, boolean stored) {
+      this.table = table;
+      this.level = level;
+      this.strategy = strategy;
+      this.stored = stored;
+    }
+
+    @Override
+    public byte[] call() {
+      int length = this.table.dataLength();
+      byte[] input = new byte[length];
+      this.table.readFontData().readBytes(0, input, 0, length);
+      if (this.stored) {
+        return input;
+      }
+      Compressor compressor = borrowCompressor(this.level, this.strategy);
+      try {
+        return compressor.compress(input);
+      } finally {
+        releaseCompressor(compressor);
+      }
+    }
+  }
+
+  /**
+   * A deflater with a reusable output buffer.
+   */
+  private static final class Compressor {
+    // larger output buffers are dropped after use rather than kept while idle
+    private static final int MAX_RETAINED_BUFFER_SIZE = 1 << 20;
+
+    private final int level;
+    private final int strategy;
+    private final Deflater deflater;
+    private byte[] buffer = new byte[0];
+
+    private Compressor(int level, int strategy) {
+      this.level = level;
+      this.strategy = strategy;
+      this.deflater = new Deflater(level);
+      if (strategy != Deflater.DEFAULT_STRATEGY) {
+        this.deflater.setStrategy(strategy);
+      }
+    }
+
+    /**
+     * Compresses the input. If compression doesn't make the data smaller then
+     * the input is returned.
+     */
+    private byte[] compress(byte[] input) {
+      int length = input.length;
+      if (this.buffer.length < length) {
+        this.buffer = new byte[length];
+      }
+      try {
+        this.deflater.setInput(input);
+        this.deflater.finish();
+        int compLength = this.deflater.deflate(this.buffer, 0, length);
+        return compLength == length || !this.deflater.finished()
+            ? input : Arrays.copyOfRange(this.buffer, 0, compLength);
+      } finally {
+        this.deflater.reset();
+        if (this.buffer.length > MAX_RETAINED_BUFFER_SIZE) {
+          this.buffer = new byte[0];
+        }
+      }
+    }
+
+    private void end() {
+      this.deflater.end();
     }
   }
 
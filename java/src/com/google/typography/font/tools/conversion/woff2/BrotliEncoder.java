@@ -0,0 +1,742 @@
+/*
+ * Copyright 2011 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.typography.font.tools.conversion.woff2;
+
+import java.util.Arrays;
+
+/**
+ * A compressor for the Brotli format of RFC 7932.
+ *
+ * Backward references are found with hash chains, optionally with lazy
+ * matching. Each meta-block has a single block type and a single prefix code
+ * for each of the literals, the insert and copy lengths and the distances. The
+ * static dictionary and context modeling are not used so the output is
+ * somewhat larger than that of the reference encoder but it can be read by any
+ * Brotli decoder.
+ *
+ * The quality, from {@link #MIN_QUALITY} to {@link #MAX_QUALITY}, sets how
+ * hard the encoder looks for matches. An encoder may be shared between threads.
+ */
+public final class BrotliEncoder {
+
+  public static final int MIN_QUALITY = 0;
+  public static final int MAX_QUALITY = 11;
+  public static final int DEFAULT_QUALITY = MAX_QUALITY;
+
+  private static final int WINDOW_BITS = 22;
+  private static final int MAX_DISTANCE = (1 << WINDOW_BITS) - 16;
+  private static final int META_BLOCK_SIZE = 1 << 18;
+
+  private static final int HASH_BITS = 16;
+  private static final int MIN_MATCH = 4;
+  private static final int MAX_MATCH = 1 << 16;
+
+  // scores of backward references, as in the reference encoder
+  private static final int LITERAL_SCORE = 135;
+  private static final int SCORE_BASE = 1920;
+  private static final int MIN_SCORE = SCORE_BASE + 100;
+  private static final int LAST_DISTANCE_SCORE = 15;
+  private static final int LAZY_SCORE = 175;
+
+  private static final int LITERAL_ALPHABET_SIZE = 256;
+  private static final int COMMAND_ALPHABET_SIZE = 704;
+  private static final int DISTANCE_ALPHABET_SIZE = 64;
+  private static final int CODE_LENGTH_ALPHABET_SIZE = 18;
+  private static final int MAX_CODE_LENGTH = 15;
+  private static final int MAX_CODE_LENGTH_CODE_LENGTH = 5;
+  private static final int REPEAT_PREVIOUS_CODE_LENGTH = 16;
+  private static final int REPEAT_ZERO_CODE_LENGTH = 17;
+  private static final int INITIAL_REPEATED_CODE_LENGTH = 8;
+  private static final int INITIAL_LAST_DISTANCE = 4;
+
+  private static final int[] INSERT_BASE = {0, 1, 2, 3, 4, 5, 6, 8, 10, 14, 18, 26, 34, 50, 66,
+    98, 130, 194, 322, 578, 1090, 2114, 6210, 22594};
+  private static final int[] INSERT_EXTRA_BITS = {0, 0, 0, 0, 0, 0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5,
+    6, 7, 8, 9, 10, 12, 14, 24};
+  private static final int[] COPY_BASE = {2, 3, 4, 5, 6, 7, 8, 9, 10, 12, 14, 18, 22, 30, 38, 54,
+    70, 102, 134, 198, 326, 582, 1094, 2118};
+  private static final int[] COPY_EXTRA_BITS = {0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 2, 2, 3, 3, 4, 4,
+    5, 5, 6, 7, 8, 9, 10, 24};
+  // first insert and copy length symbol by insert code / 8 and copy code / 8
+  private static final int[] COMMAND_BASE = {128, 192, 384, 256, 320, 512, 448, 576, 640};
+  private static final int[] CODE_LENGTH_ORDER = {1, 2, 3, 4, 0, 5, 17, 6, 16, 7, 8, 9, 10, 11,
+    12, 13, 14, 15};
+  // the fixed prefix code for the lengths of the code length code
+  private static final int[] CODE_LENGTH_CODE_SYMBOLS = {0, 7, 3, 2, 1, 15};
+  private static final int[] CODE_LENGTH_CODE_BITS = {2, 4, 3, 2, 2, 4};
+
+  private final int quality;
+  private final int maxChain;
+  private final int niceLength;
+  private final boolean lazy;
+
+  public BrotliEncoder() {
+    this(DEFAULT_QUALITY);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param quality the compression quality, from {@link #MIN_QUALITY} to
+   *        {@link #MAX_QUALITY}
+   */
+  public BrotliEncoder(int quality) {
+    if (quality < MIN_QUALITY || quality > MAX_QUALITY) {
+      throw new IllegalArgumentException("Invalid quality " + quality);
+    }
+    this.quality = quality;
+    this.maxChain = 1 << Math.min(quality, 10);
+    this.niceLength = 16 << (quality / 3);
+    this.lazy = quality >= 4;
+  }
+
+  public int quality() {
+    return this.quality;
+  }
+
+  public byte[] compress(byte[] data) {
+    return compress(data, 0, data.length);
+  }
+
+  /**
+   * Compress part of an array.
+   *
+   * @param data the data to compress
+   * @param offset the start of the data to compress
+   * @param length the number of bytes to compress
+   * @return the Brotli stream
+   */
+  public byte[] compress(byte[] data, int offset, int length) {
+    if (offset < 0 || length < 0 || offset + length > data.length) {
+      throw new IndexOutOfBoundsException();
+    }
+    return new Compression(data, offset, length).compress();
+  }
+
+  /**
+   * The state of one compression.
+   */
+  private final class Compression {
+    private final byte[] data;
+    private final int start;
+    private final int end;
+    private final BitWriter writer;
+
+    private final int[] head = new int[1 << HASH_BITS];
+    private final int[] prev;
+    private int hashed;
+    // the last distance while finding commands and while writing them
+    private int lastDistance = INITIAL_LAST_DISTANCE;
+    private int writtenLastDistance = INITIAL_LAST_DISTANCE;
+
+    // commands of the current meta-block
+    private int commandCount;
+    private int[] insertLengths = new int[256];
+    private int[] copyLengths = new int[256];
+    private int[] distances = new int[256];
+
+    // candidate match found by find()
+    private int matchLength;
+    private int matchDistance;
+    private int matchScore;
+
+    Compression(byte[] data, int offset, int length) {
+      this.data = data;
+      this.start = offset;
+      this.end = offset + length;
+      this.writer = new BitWriter(length / 2 + 16);
+      this.prev = new int[length];
+      Arrays.fill(this.head, -1);
+      this.hashed = offset;
+    }
+
+    byte[] compress() {
+      // WBITS
+      this.writer.writeBits(1, 1);
+      this.writer.writeBits(3, WINDOW_BITS - 17);
+      for (int block = this.start; block < this.end; block += META_BLOCK_SIZE) {
+        int blockEnd = Math.min(this.end, block + META_BLOCK_SIZE);
+        this.findCommands(block, blockEnd);
+        this.writeMetaBlock(block, blockEnd);
+      }
+      // ISLAST and ISLASTEMPTY
+      this.writer.writeBits(1, 1);
+      this.writer.writeBits(1, 1);
+      return this.writer.toByteArray();
+    }
+
+    private int hash(int index) {
+      int value = ((this.data[index] & 0xff) | (this.data[index + 1] & 0xff) << 8
+          | (this.data[index + 2] & 0xff) << 16 | (this.data[index + 3] & 0xff) << 24);
+      return (value * 0x1e35a7bd) >>> (32 - HASH_BITS);
+    }
+
+    private void insertHashes(int limit) {
+      limit = Math.min(limit, this.end - MIN_MATCH + 1);
+      for (; this.hashed < limit; this.hashed++) {
+        int hash = this.hash(this.hashed);
+        this.prev[this.hashed - this.start] = this.head[hash];
+        this.head[hash] = this.hashed;
+      }
+    }
+
+    private int matchLength(int candidate, int index, int maxLength) {
+      int length = 0;
+      while (length < maxLength && this.data[candidate + length] == this.data[index + length]) {
+        length++;
+      }
+      return length;
+    }
+
+    /**
+     * Find the best backward reference at an index and leave it in the match
+     * fields. The match length is zero if there is no reference worth using.
+     */
+    private void find(int index, int blockEnd) {
+      this.matchLength = 0;
+      this.matchScore = MIN_SCORE;
+      int maxLength = Math.min(blockEnd - index, MAX_MATCH);
+      if (maxLength < MIN_MATCH) {
+        return;
+      }
+      this.insertHashes(index);
+
+      int distance = this.lastDistance;
+      if (distance <= index - this.start && distance <= MAX_DISTANCE) {
+        int length = this.matchLength(index - distance, index, maxLength);
+        if (length >= MIN_MATCH) {
+          this.setMatch(length, distance,
+              LITERAL_SCORE * length + SCORE_BASE + LAST_DISTANCE_SCORE);
+        }
+      }
+
+      int candidate = this.head[this.hash(index)];
+      for (int chain = maxChain; candidate >= 0 && chain > 0; chain--) {
+        distance = index - candidate;
+        if (distance > MAX_DISTANCE) {
+          break;
+        }
+        int best = this.matchLength;
+        if (best == 0 || (best < maxLength
+            && this.data[candidate + best] == this.data[index + best])) {
+          int length = this.matchLength(candidate, index, maxLength);
+          if (length >= MIN_MATCH) {
+            this.setMatch(length, distance,
+                LITERAL_SCORE * length + SCORE_BASE - 30 * log2Floor(distance));
+            if (this.matchLength >= niceLength) {
+              break;
+            }
+          }
+        }
+        candidate = this.prev[candidate - this.start];
+      }
+      this.insertHashes(index + 1);
+    }
+
+    private void setMatch(int length, int distance, int score) {
+      if (score > this.matchScore) {
+        this.matchLength = length;
+        this.matchDistance = distance;
+        this.matchScore = score;
+      }
+    }
+
+    private void findCommands(int blockStart, int blockEnd) {
+      this.commandCount = 0;
+      int literalStart = blockStart;
+      int index = blockStart;
+      while (index + MIN_MATCH <= blockEnd) {
+        this.find(index, blockEnd);
+        if (this.matchLength == 0) {
+          index++;
+          continue;
+        }
+        if (lazy) {
+          while (this.matchLength < niceLength) {
+            int length = this.matchLength;
+            int distance = this.matchDistance;
+            int score = this.matchScore;
+            this.find(index + 1, blockEnd);
+            if (this.matchLength == 0 || this.matchScore < score + LAZY_SCORE) {
+              this.matchLength = length;
+              this.matchDistance = distance;
+              break;
+            }
+            index++;
+          }
+        }
+        this.addCommand(index - literalStart, this.matchLength, this.matchDistance);
+        this.lastDistance = this.matchDistance;
+        index += this.matchLength;
+        literalStart = index;
+      }
+      if (literalStart < blockEnd) {
+        // the meta-block ends after the literals so the copy is never done
+        this.addCommand(blockEnd - literalStart, 0, 0);
+      }
+    }
+
+    private void addCommand(int insertLength, int copyLength, int distance) {
+      if (this.commandCount == this.insertLengths.length) {
+        int capacity = 2 * this.commandCount;
+        this.insertLengths = Arrays.copyOf(this.insertLengths, capacity);
+        this.copyLengths = Arrays.copyOf(this.copyLengths, capacity);
+        this.distances = Arrays.copyOf(this.distances, capacity);
+      }
+      this.insertLengths[this.commandCount] = insertLength;
+      this.copyLengths[this.commandCount] = copyLength;
+      this.distances[this.commandCount] = distance;
+      this.commandCount++;
+    }
+
+    private void writeMetaBlock(int blockStart, int blockEnd) {
+      int count = this.commandCount;
+      int[] insertCodes = new int[count];
+      int[] copyCodes = new int[count];
+      int[] commandSymbols = new int[count];
+      int[] distanceSymbols = new int[count];
+      int[] literalHistogram = new int[LITERAL_ALPHABET_SIZE];
+      int[] commandHistogram = new int[COMMAND_ALPHABET_SIZE];
+      int[] distanceHistogram = new int[DISTANCE_ALPHABET_SIZE];
+
+      int last = this.writtenLastDistance;
+      int literal = blockStart;
+      for (int i = 0; i < count; i++) {
+        int insertLength = this.insertLengths[i];
+        for (int j = 0; j < insertLength; j++) {
+          literalHistogram[this.data[literal++] & 0xff]++;
+        }
+        literal += this.copyLengths[i];
+        int distance = this.distances[i];
+        int distanceSymbol = -1;
+        if (this.copyLengths[i] > 0) {
+          distanceSymbol = distance == last ? 0 : distanceSymbol(distance);
+          last = distance;
+        }
+        insertCodes[i] = code(INSERT_BASE, insertLength);
+        copyCodes[i] = code(COPY_BASE, Math.max(2, this.copyLengths[i]));
+        int command = commandSymbol(insertCodes[i], copyCodes[i], distanceSymbol <= 0);
+        if (command >= 128 && distanceSymbol >= 0) {
+          distanceSymbols[i] = distanceSymbol;
+          distanceHistogram[distanceSymbol]++;
+        } else {
+          distanceSymbols[i] = -1;
+        }
+        commandSymbols[i] = command;
+        commandHistogram[command]++;
+      }
+      this.writtenLastDistance = last;
+
+      int length = blockEnd - blockStart;
+      int nibbles = (length - 1) < (1 << 16) ? 4 : (length - 1) < (1 << 20) ? 5 : 6;
+      BitWriter w = this.writer;
+      w.writeBits(1, 0); // ISLAST
+      w.writeBits(2, nibbles - 4);
+      w.writeBits(4 * nibbles, length - 1);
+      w.writeBits(1, 0); // ISUNCOMPRESSED
+      w.writeBits(1, 0); // NBLTYPESL
+      w.writeBits(1, 0); // NBLTYPESI
+      w.writeBits(1, 0); // NBLTYPESD
+      w.writeBits(2, 0); // NPOSTFIX
+      w.writeBits(4, 0); // NDIRECT
+      w.writeBits(2, 0); // context mode
+      w.writeBits(1, 0); // NTREESL
+      w.writeBits(1, 0); // NTREESD
+
+      PrefixCode literals = new PrefixCode(literalHistogram, 8, w);
+      PrefixCode commands = new PrefixCode(commandHistogram, 10, w);
+      PrefixCode distances = new PrefixCode(distanceHistogram, 6, w);
+
+      literal = blockStart;
+      for (int i = 0; i < count; i++) {
+        commands.write(w, commandSymbols[i]);
+        int insertLength = this.insertLengths[i];
+        int insertCode = insertCodes[i];
+        w.writeBits(INSERT_EXTRA_BITS[insertCode], insertLength - INSERT_BASE[insertCode]);
+        int copyCode = copyCodes[i];
+        w.writeBits(COPY_EXTRA_BITS[copyCode],
+            Math.max(2, this.copyLengths[i]) - COPY_BASE[copyCode]);
+        for (int j = 0; j < insertLength; j++) {
+          literals.write(w, this.data[literal++] & 0xff);
+        }
+        literal += this.copyLengths[i];
+        int distanceSymbol = distanceSymbols[i];
+        if (distanceSymbol >= 0) {
+          distances.write(w, distanceSymbol);
+          if (distanceSymbol >= 16) {
+            int value = this.distances[i] + 3;
+            int extraBits = log2Floor(value) - 1;
+            w.writeBits(extraBits, value & ((1 << extraBits) - 1));
+          }
+        }
+      }
+    }
+
+  }
+
+  private static int log2Floor(int value) {
+    return 31 - Integer.numberOfLeadingZeros(value);
+  }
+
+  private static int code(int[] base, int value) {
+    int code = base.length - 1;
+    while (base[code] > value) {
+      code--;
+    }
+    return code;
+  }
+
+  private static int distanceSymbol(int distance) {
+    int value = distance + 3;
+    int extraBits = log2Floor(value) - 1;
+    int bit = (value >> extraBits) & 1;
+    return 16 + 2 * (extraBits - 1) + bit;
+  }
+
+  private static int commandSymbol(int insertCode, int copyCode, boolean lastDistance) {
+    int bits = ((insertCode & 7) << 3) | (copyCode & 7);
+    if (lastDistance && insertCode < 8 && copyCode < 16) {
+      return copyCode < 8 ? bits : bits | 64;
+    }
+    return COMMAND_BASE[3 * (insertCode >> 3) + (copyCode >> 3)] | bits;
+  }
+
+  /**
+   * A canonical prefix code over one alphabet. The code is written to the
+   * stream when it is made.
+   */
+  private static final class PrefixCode {
+    private final int[] lengths;
+    private final int[] codes;
+
+    PrefixCode(int[] histogram, int alphabetBits, BitWriter w) {
+      this.lengths = new int[histogram.length];
+      this.codes = new int[histogram.length];
+      int[] symbols = new int[4];
+      int symbolCount = 0;
+      for (int i = 0; i < histogram.length; i++) {
+        if (histogram[i] > 0) {
+          if (symbolCount < symbols.length) {
+            symbols[symbolCount] = i;
+          }
+          symbolCount++;
+        }
+      }
+
+      if (symbolCount <= 4) {
+        // simple prefix code; an unused alphabet gets a code for symbol 0
+        symbolCount = Math.max(symbolCount, 1);
+        if (symbolCount > 1) {
+          buildLengths(histogram, MAX_CODE_LENGTH, this.lengths);
+        }
+        w.writeBits(2, 1);
+        w.writeBits(2, symbolCount - 1);
+        int maxLength = 0;
+        for (int length = 0; length <= 3; length++) {
+          for (int i = 0; i < symbolCount; i++) {
+            if (this.lengths[symbols[i]] == length) {
+              w.writeBits(alphabetBits, symbols[i]);
+              maxLength = length;
+            }
+          }
+        }
+        if (symbolCount == 4) {
+          w.writeBits(1, maxLength == 3 ? 1 : 0);
+        }
+        buildCodes(this.lengths, this.codes);
+        return;
+      }
+
+      buildLengths(histogram, MAX_CODE_LENGTH, this.lengths);
+      buildCodes(this.lengths, this.codes);
+      writeLengths(this.lengths, w);
+    }
+
+    void write(BitWriter w, int symbol) {
+      w.writeBits(this.lengths[symbol], this.codes[symbol]);
+    }
+  }
+
+  /**
+   * Write the code lengths of a complex prefix code. The lengths are run length
+   * coded and the result is written with a prefix code of its own.
+   */
+  private static void writeLengths(int[] lengths, BitWriter w) {
+    int size = lengths.length;
+    while (size > 0 && lengths[size - 1] == 0) {
+      size--;
+    }
+    int[] tokens = new int[size];
+    int[] extras = new int[size];
+    int tokenCount = 0;
+    int previous = INITIAL_REPEATED_CODE_LENGTH;
+    for (int i = 0; i < size;) {
+      int value = lengths[i];
+      int repetitions = 1;
+      while (i + repetitions < size && lengths[i + repetitions] == value) {
+        repetitions++;
+      }
+      int first;
+      if (value == 0) {
+        int remaining = repetitions;
+        if (remaining == 11) {
+          tokens[tokenCount++] = 0;
+          remaining--;
+        }
+        if (remaining < 3) {
+          for (int j = 0; j < remaining; j++) {
+            tokens[tokenCount++] = 0;
+          }
+        } else {
+          remaining -= 3;
+          first = tokenCount;
+          while (true) {
+            extras[tokenCount] = remaining & 7;
+            tokens[tokenCount++] = REPEAT_ZERO_CODE_LENGTH;
+            remaining >>= 3;
+            if (remaining == 0) {
+              break;
+            }
+            remaining--;
+          }
+          reverse(tokens, extras, first, tokenCount);
+        }
+      } else {
+        int remaining = repetitions;
+        if (previous != value) {
+          tokens[tokenCount++] = value;
+          remaining--;
+        }
+        if (remaining == 7) {
+          tokens[tokenCount++] = value;
+          remaining--;
+        }
+        if (remaining < 3) {
+          for (int j = 0; j < remaining; j++) {
+            tokens[tokenCount++] = value;
+          }
+        } else {
+          remaining -= 3;
+          first = tokenCount;
+          while (true) {
+            extras[tokenCount] = remaining & 3;
+            tokens[tokenCount++] = REPEAT_PREVIOUS_CODE_LENGTH;
+            remaining >>= 2;
+            if (remaining == 0) {
+              break;
+            }
+            remaining--;
+          }
+          reverse(tokens, extras, first, tokenCount);
+        }
+        previous = value;
+      }
+      i += repetitions;
+    }
+
+    int[] histogram = new int[CODE_LENGTH_ALPHABET_SIZE];
+    for (int i = 0; i < tokenCount; i++) {
+      histogram[tokens[i]]++;
+    }
+    int[] codeLengths = new int[CODE_LENGTH_ALPHABET_SIZE];
+    int used = 0;
+    int usedSymbol = 0;
+    for (int i = 0; i < CODE_LENGTH_ALPHABET_SIZE; i++) {
+      if (histogram[i] > 0) {
+        used++;
+        usedSymbol = i;
+      }
+    }
+    int toStore = CODE_LENGTH_ALPHABET_SIZE;
+    if (used == 1) {
+      codeLengths[usedSymbol] = 1;
+    } else {
+      buildLengths(histogram, MAX_CODE_LENGTH_CODE_LENGTH, codeLengths);
+      while (codeLengths[CODE_LENGTH_ORDER[toStore - 1]] == 0) {
+        toStore--;
+      }
+    }
+    int skip = 0;
+    if (codeLengths[CODE_LENGTH_ORDER[0]] == 0 && codeLengths[CODE_LENGTH_ORDER[1]] == 0) {
+      skip = codeLengths[CODE_LENGTH_ORDER[2]] == 0 ? 3 : 2;
+    }
+    w.writeBits(2, skip);
+    for (int i = skip; i < toStore; i++) {
+      int length = codeLengths[CODE_LENGTH_ORDER[i]];
+      w.writeBits(CODE_LENGTH_CODE_BITS[length], CODE_LENGTH_CODE_SYMBOLS[length]);
+    }
+
+    if (used == 1) {
+      // a code with one symbol takes no bits
+      codeLengths[usedSymbol] = 0;
+    }
+    int[] codes = new int[CODE_LENGTH_ALPHABET_SIZE];
+    buildCodes(codeLengths, codes);
+    for (int i = 0; i < tokenCount; i++) {
+      int token = tokens[i];
+      w.writeBits(codeLengths[token], codes[token]);
+      if (token == REPEAT_PREVIOUS_CODE_LENGTH) {
+        w.writeBits(2, extras[i]);
+      } else if (token == REPEAT_ZERO_CODE_LENGTH) {
+        w.writeBits(3, extras[i]);
+      }
+    }
+  }
+
+  private static void reverse(int[] tokens, int[] extras, int from, int to) {
+    for (int i = from, j = to - 1; i < j; i++, j--) {
+      int token = tokens[i];
+      tokens[i] = tokens[j];
+      tokens[j] = token;
+      int extra = extras[i];
+      extras[i] = extras[j];
+      extras[j] = extra;
+    }
+  }
+
+  /**
+   * Build Huffman code lengths no longer than a limit. When the lengths are too
+   * long the smallest counts are raised and the code is built again.
+   */
+  static void buildLengths(int[] histogram, int limit, int[] lengths) {
+    int n = 0;
+    for (int count : histogram) {
+      if (count > 0) {
+        n++;
+      }
+    }
+    Arrays.fill(lengths, 0);
+    if (n < 2) {
+      for (int i = 0; i < histogram.length; i++) {
+        if (histogram[i] > 0) {
+          lengths[i] = 1;
+        }
+      }
+      return;
+    }
+
+    long[] leaves = new long[n];
+    long[] weights = new long[2 * n - 1];
+    int[] parents = new int[2 * n - 1];
+    int[] depths = new int[2 * n - 1];
+    for (long minimum = 1; ; minimum *= 2) {
+      int leaf = 0;
+      for (int i = 0; i < histogram.length; i++) {
+        if (histogram[i] > 0) {
+          leaves[leaf++] = (Math.max(histogram[i], minimum) << 16) | i;
+        }
+      }
+      Arrays.sort(leaves);
+      for (int i = 0; i < n; i++) {
+        weights[i] = leaves[i] >>> 16;
+      }
+      // two queue Huffman construction: the leaves and the merged nodes are
+      // both in increasing weight order
+      leaf = 0;
+      int node = n;
+      for (int next = n; next < 2 * n - 1; next++) {
+        int first;
+        if (leaf < n && (node >= next || weights[leaf] <= weights[node])) {
+          first = leaf++;
+        } else {
+          first = node++;
+        }
+        int second;
+        if (leaf < n && (node >= next || weights[leaf] <= weights[node])) {
+          second = leaf++;
+        } else {
+          second = node++;
+        }
+        weights[next] = weights[first] + weights[second];
+        parents[first] = next;
+        parents[second] = next;
+      }
+      depths[2 * n - 2] = 0;
+      int maxDepth = 0;
+      for (int i = 2 * n - 3; i >= 0; i--) {
+        depths[i] = depths[parents[i]] + 1;
+        maxDepth = Math.max(maxDepth, depths[i]);
+      }
+      if (maxDepth <= limit) {
+        for (int i = 0; i < n; i++) {
+          lengths[(int) (leaves[i] & 0xffff)] = depths[i];
+        }
+        return;
+      }
+    }
+  }
+
+  /**
+   * Assign canonical codes to code lengths. The codes are bit reversed since
+   * the stream is written least significant bit first.
+   */
+  static void buildCodes(int[] lengths, int[] codes) {
+    int[] lengthCounts = new int[MAX_CODE_LENGTH + 1];
+    for (int length : lengths) {
+      lengthCounts[length]++;
+    }
+    lengthCounts[0] = 0;
+    int[] nextCodes = new int[MAX_CODE_LENGTH + 1];
+    int code = 0;
+    for (int length = 1; length <= MAX_CODE_LENGTH; length++) {
+      code = (code + lengthCounts[length - 1]) << 1;
+      nextCodes[length] = code;
+    }
+    for (int i = 0; i < lengths.length; i++) {
+      int length = lengths[i];
+      if (length > 0) {
+        codes[i] = Integer.reverse(nextCodes[length]++) >>> (32 - length);
+      } else {
+        codes[i] = 0;
+      }
+    }
+  }
+
+  /**
+   * Writes bits least significant bit first.
+   */
+  private static final class BitWriter {
+    private byte[] buffer;
+    private int size;
+    private long bits;
+    private int bitCount;
+
+    BitWriter(int capacity) {
+      this.buffer = new byte[capacity];
+    }
+
+    void writeBits(int count, long value) {
+      this.bits |= value << this.bitCount;
+      this.bitCount += count;
+      while (this.bitCount >= 8) {
+        if (this.size == this.buffer.length) {
+          this.buffer = Arrays.copyOf(this.buffer, 2 * this.size);
+        }
+        this.buffer[this.size++] = (byte) this.bits;
+        this.bits >>>= 8;
+        this.bitCount -= 8;
+      }
+    }
+
+    byte[] toByteArray() {
+      if (this.bitCount > 0) {
+        this.writeBits(8 - this.bitCount, 0);
+      }
+      return Arrays.copyOf(this.buffer, this.size);
+    }
+  }
+}
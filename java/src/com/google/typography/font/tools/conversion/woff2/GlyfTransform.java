@@ -0,0 +1,284 @@
+/*
+ * Copyright 2011 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.typography.font.tools.conversion.woff2;
+
+import com.google.typography.font.sfntly.Font;
+import com.google.typography.font.sfntly.Tag;
+import com.google.typography.font.sfntly.table.core.FontHeaderTable;
+import com.google.typography.font.sfntly.table.truetype.CompositeGlyph;
+import com.google.typography.font.sfntly.table.truetype.Glyph;
+import com.google.typography.font.sfntly.table.truetype.GlyphTable;
+import com.google.typography.font.sfntly.table.truetype.LocaTable;
+import com.google.typography.font.sfntly.table.truetype.SimpleGlyph;
+import com.google.typography.font.tools.conversion.eot.GlyfEncoder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The WOFF 2.0 transform of the glyf and loca tables, as per section 5.1 of the
+ * spec.
+ *
+ * Like the MicroType Express glyph encoding in {@link GlyfEncoder} the glyph
+ * data is split into streams of similar values which compress better than the
+ * glyph records: contour counts, point counts, point flags, point coordinates
+ * as triplets, composite glyph records, bounding boxes and instructions. The
+ * loca table is rebuilt by the decoder so it has no transformed data.
+ */
+final class GlyfTransform {
+
+  private static final int OVERLAP_SIMPLE = 0x40;
+  private static final int FLAG_OVERLAP_SIMPLE_BITMAP = 0x01;
+  private static final int HEADER_SIZE = 36;
+
+  private final ByteArrayOutputStream nContourStream = new ByteArrayOutputStream();
+  private final ByteArrayOutputStream nPointsStream = new ByteArrayOutputStream();
+  private final ByteArrayOutputStream flagStream = new ByteArrayOutputStream();
+  private final ByteArrayOutputStream glyphStream = new ByteArrayOutputStream();
+  private final ByteArrayOutputStream compositeStream = new ByteArrayOutputStream();
+  private final ByteArrayOutputStream bboxStream = new ByteArrayOutputStream();
+  private final ByteArrayOutputStream instructionStream = new ByteArrayOutputStream();
+
+  private final int numGlyphs;
+  private final int indexFormat;
+  private final byte[] bboxBitmap;
+  private final byte[] overlapBitmap;
+  private boolean hasOverlap;
+  private final int[] xMins;
+
+  private GlyfTransform(int numGlyphs, int indexFormat) {
+    this.numGlyphs = numGlyphs;
+    this.indexFormat = indexFormat;
+    this.bboxBitmap = new byte[((numGlyphs + 31) >> 5) << 2];
+    this.overlapBitmap = new byte[(numGlyphs + 7) >> 3];
+    this.xMins = new int[numGlyphs];
+  }
+
+  /**
+   * Transform the glyph data of a font.
+   *
+   * @param font the font with glyf and loca tables
+   * @return the transform
+   */
+  static GlyfTransform transform(Font font) {
+    LocaTable loca = font.getTable(Tag.loca);
+    GlyphTable glyf = font.getTable(Tag.glyf);
+    FontHeaderTable head = font.getTable(Tag.head);
+    GlyfTransform transform = new GlyfTransform(loca.numGlyphs(), head.indexToLocFormatAsInt());
+    try {
+      for (int glyphId = 0; glyphId < transform.numGlyphs; glyphId++) {
+        int length = loca.glyphLength(glyphId);
+        Glyph glyph = length == 0 ? null : glyf.glyph(loca.glyphOffset(glyphId), length);
+        transform.writeGlyph(glyphId, glyph);
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("unexpected IOException writing glyph data", e);
+    }
+    return transform;
+  }
+
+  /**
+   * Get the minimum x of a glyph as the decoder will see it; zero for glyphs
+   * without contours.
+   */
+  int xMin(int glyphId) {
+    return this.xMins[glyphId];
+  }
+
+  private void writeGlyph(int glyphId, Glyph glyph) throws IOException {
+    if (glyph == null || glyph.dataLength() == 0) {
+      writeShort(this.nContourStream, 0);
+    } else if (glyph instanceof SimpleGlyph) {
+      writeSimpleGlyph(glyphId, (SimpleGlyph) glyph);
+    } else if (glyph instanceof CompositeGlyph) {
+      writeCompositeGlyph(glyphId, (CompositeGlyph) glyph);
+    }
+  }
+
+  private void writeSimpleGlyph(int glyphId, SimpleGlyph glyph) throws IOException {
+    int numContours = glyph.numberOfContours();
+    if (numContours <= 0) {
+      writeShort(this.nContourStream, 0);
+      return;
+    }
+    writeShort(this.nContourStream, numContours);
+    for (int i = 0; i < numContours; i++) {
+      GlyfEncoder.write255UShort(this.nPointsStream, glyph.numberOfPoints(i));
+    }
+    final int[] bounds = {Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE,
+      Integer.MIN_VALUE};
+    glyph.visitPoints(new SimpleGlyph.PointVisitor() {
+      private int lastX = 0;
+      private int lastY = 0;
+
+      @Override
+      public void visitPoint(int contour, int point, int x, int y, boolean onCurve) {
+        try {
+          writeTriplet(onCurve, x - this.lastX, y - this.lastY);
+        } catch (IOException e) {
+          throw new RuntimeException("unexpected IOException writing glyph data", e);
+        }
+        this.lastX = x;
+        this.lastY = y;
+        bounds[0] = Math.min(bounds[0], x);
+        bounds[1] = Math.min(bounds[1], y);
+        bounds[2] = Math.max(bounds[2], x);
+        bounds[3] = Math.max(bounds[3], y);
+      }
+    });
+    writeInstructions(glyph);
+
+    if (glyph.numberOfPoints() == 0) {
+      bounds[0] = bounds[1] = bounds[2] = bounds[3] = 0;
+    }
+    // the decoder computes the bounding box from the points unless it's given
+    if (bounds[0] != glyph.xMin() || bounds[1] != glyph.yMin() || bounds[2] != glyph.xMax()
+        || bounds[3] != glyph.yMax()) {
+      writeBbox(glyphId, glyph);
+    }
+    this.xMins[glyphId] = glyph.xMin();
+
+    if (glyph.numberOfPoints() > 0) {
+      int flagsOffset = 5 * 2 + numContours * 2 + 2 + glyph.instructionSize();
+      if ((glyph.readFontData().readUByte(flagsOffset) & OVERLAP_SIMPLE) != 0) {
+        this.overlapBitmap[glyphId >> 3] |= 0x80 >> (glyphId & 7);
+        this.hasOverlap = true;
+      }
+    }
+  }
+
+  private void writeCompositeGlyph(int glyphId, CompositeGlyph glyph) throws IOException {
+    writeShort(this.nContourStream, -1);
+    writeBbox(glyphId, glyph);
+    this.xMins[glyphId] = glyph.xMin();
+
+    boolean haveInstructions = false;
+    int size = 0;
+    for (int i = 0; i < glyph.numGlyphs(); i++) {
+      int flags = glyph.flags(i);
+      haveInstructions |= (flags & CompositeGlyph.FLAG_WE_HAVE_INSTRUCTIONS) != 0;
+      // flags, glyph index, arguments and transformation
+      size += 4 + ((flags & CompositeGlyph.FLAG_ARG_1_AND_2_ARE_WORDS) != 0 ? 4 : 2)
+          + glyph.transformationSize(i);
+    }
+    glyph.readFontData().slice(5 * 2, size).copyTo(this.compositeStream);
+    if (haveInstructions) {
+      writeInstructions(glyph);
+    }
+  }
+
+  private void writeInstructions(Glyph glyph) throws IOException {
+    int size = glyph.instructionSize();
+    GlyfEncoder.write255UShort(this.glyphStream, size);
+    if (size > 0) {
+      glyph.instructions().copyTo(this.instructionStream);
+    }
+  }
+
+  private void writeBbox(int glyphId, Glyph glyph) {
+    this.bboxBitmap[glyphId >> 3] |= 0x80 >> (glyphId & 7);
+    writeShort(this.bboxStream, glyph.xMin());
+    writeShort(this.bboxStream, glyph.yMin());
+    writeShort(this.bboxStream, glyph.xMax());
+    writeShort(this.bboxStream, glyph.yMax());
+  }
+
+  // As in table 2 of the spec, which is the same as section 5.11 of the
+  // MicroType Express spec
+  private void writeTriplet(boolean onCurve, int x, int y) throws IOException {
+    int absX = Math.abs(x);
+    int absY = Math.abs(y);
+    int onCurveBit = onCurve ? 0 : 128;
+    int xSignBit = (x < 0) ? 0 : 1;
+    int ySignBit = (y < 0) ? 0 : 1;
+    int xySignBits = xSignBit + 2 * ySignBit;
+    OutputStream os = this.glyphStream;
+
+    if (x == 0 && absY < 1280) {
+      this.flagStream.write(onCurveBit + ((absY & 0xf00) >> 7) + ySignBit);
+      os.write(absY & 0xff);
+    } else if (y == 0 && absX < 1280) {
+      this.flagStream.write(onCurveBit + 10 + ((absX & 0xf00) >> 7) + xSignBit);
+      os.write(absX & 0xff);
+    } else if (absX < 65 && absY < 65) {
+      this.flagStream.write(onCurveBit + 20 + ((absX - 1) & 0x30) + (((absY - 1) & 0x30) >> 2)
+          + xySignBits);
+      os.write((((absX - 1) & 0xf) << 4) | ((absY - 1) & 0xf));
+    } else if (absX < 769 && absY < 769) {
+      this.flagStream.write(onCurveBit + 84 + 12 * (((absX - 1) & 0x300) >> 8)
+          + (((absY - 1) & 0x300) >> 6) + xySignBits);
+      os.write((absX - 1) & 0xff);
+      os.write((absY - 1) & 0xff);
+    } else if (absX < 4096 && absY < 4096) {
+      this.flagStream.write(onCurveBit + 120 + xySignBits);
+      os.write(absX >> 4);
+      os.write(((absX & 0xf) << 4) | (absY >> 8));
+      os.write(absY & 0xff);
+    } else {
+      this.flagStream.write(onCurveBit + 124 + xySignBits);
+      os.write(absX >> 8);
+      os.write(absX & 0xff);
+      os.write(absY >> 8);
+      os.write(absY & 0xff);
+    }
+  }
+
+  private static void writeShort(ByteArrayOutputStream os, int value) {
+    os.write(value >> 8);
+    os.write(value & 0xff);
+  }
+
+  /**
+   * Get the transformed glyf table.
+   */
+  byte[] toByteArray() {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream(HEADER_SIZE + this.nContourStream.size()
+        + this.nPointsStream.size() + this.flagStream.size() + this.glyphStream.size()
+        + this.compositeStream.size() + this.bboxBitmap.length + this.bboxStream.size()
+        + this.instructionStream.size() + this.overlapBitmap.length);
+    DataOutputStream os = new DataOutputStream(bos);
+    try {
+      os.writeShort(0); // reserved
+      os.writeShort(this.hasOverlap ? FLAG_OVERLAP_SIMPLE_BITMAP : 0);
+      os.writeShort(this.numGlyphs);
+      os.writeShort(this.indexFormat);
+      os.writeInt(this.nContourStream.size());
+      os.writeInt(this.nPointsStream.size());
+      os.writeInt(this.flagStream.size());
+      os.writeInt(this.glyphStream.size());
+      os.writeInt(this.compositeStream.size());
+      os.writeInt(this.bboxBitmap.length + this.bboxStream.size());
+      os.writeInt(this.instructionStream.size());
+      this.nContourStream.writeTo(os);
+      this.nPointsStream.writeTo(os);
+      this.flagStream.writeTo(os);
+      this.glyphStream.writeTo(os);
+      this.compositeStream.writeTo(os);
+      os.write(this.bboxBitmap);
+      this.bboxStream.writeTo(os);
+      this.instructionStream.writeTo(os);
+      if (this.hasOverlap) {
+        os.write(this.overlapBitmap);
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("unexpected IOException writing glyph data", e);
+    }
+    return bos.toByteArray();
+  }
+}
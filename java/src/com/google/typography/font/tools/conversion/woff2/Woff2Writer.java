@@ -0,0 +1,479 @@
+/*
+ * Copyright 2011 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.typography.font.tools.conversion.woff2;
+
+import com.google.typography.font.sfntly.Font;
+import com.google.typography.font.sfntly.Tag;
+import com.google.typography.font.sfntly.data.ReadableFontData;
+import com.google.typography.font.sfntly.data.WritableFontData;
+import com.google.typography.font.sfntly.table.Table;
+import com.google.typography.font.sfntly.table.core.FontHeaderTable;
+import com.google.typography.font.sfntly.table.core.HorizontalMetricsTable;
+import com.google.typography.font.tools.conversion.eot.GlyfEncoder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Converts a font or a font collection to WOFF 2.0.
+ *
+ * The glyf and loca tables are transformed as per section 5.1 of the spec and
+ * the hmtx table as per section 5.4 when its left side bearings can be
+ * recovered from the glyph bounding boxes. All of the table data is then
+ * compressed as one Brotli stream. Both transforms can be turned off.
+ *
+ * A collection, as loaded from a TTC file by the
+ * {@link com.google.typography.font.sfntly.FontFactory}, is written with each
+ * distinct table stored once and shared by the fonts that use it.
+ */
+public class Woff2Writer {
+
+  private static final int SIGNATURE = 0x774F4632;
+  private static final int HEADER_SIZE = 48;
+  private static final int SFNT_HEADER_SIZE = 12;
+  private static final int SFNT_ENTRY_SIZE = 16;
+  private static final int TTC_HEADER_SIZE = 12;
+  private static final int TTC_VERSION = 0x00010000;
+
+  private static final int UNKNOWN_TAG_INDEX = 63;
+  private static final int GLYF_TRANSFORM = 0;
+  private static final int GLYF_NULL_TRANSFORM = 3;
+  private static final int HMTX_TRANSFORM = 1;
+
+  // the tags that can be given by their index in the table directory, as per
+  // table 2 of the spec
+  private static final String[] KNOWN_TAGS = {
+    "cmap", "head", "hhea", "hmtx", "maxp", "name", "OS/2", "post", "cvt ", "fpgm", "glyf",
+    "loca", "prep", "CFF ", "VORG", "EBDT", "EBLC", "gasp", "hdmx", "kern", "LTSH", "PCLT",
+    "VDMX", "vhea", "vmtx", "BASE", "GDEF", "GPOS", "GSUB", "EBSC", "JSTF", "MATH", "CBDT",
+    "CBLC", "COLR", "CPAL", "SVG ", "sbix", "acnt", "avar", "bdat", "bloc", "bsln", "cvar",
+    "fdsc", "feat", "fmtx", "fvar", "gvar", "hsty", "just", "lcar", "mort", "morx", "opbd",
+    "prop", "trak", "Zapf", "Silf", "Glat", "Gloc", "Feat", "Sill"};
+  private static final Map<Integer, Integer> knownTagIndexes = new HashMap<Integer, Integer>();
+  static {
+    for (int i = 0; i < KNOWN_TAGS.length; i++) {
+      knownTagIndexes.put(Tag.intValue(KNOWN_TAGS[i]), i);
+    }
+  }
+
+  private int quality = BrotliEncoder.DEFAULT_QUALITY;
+  private boolean transformGlyf = true;
+  private boolean transformHmtx = true;
+
+  /**
+   * Set the Brotli compression quality.
+   *
+   * @param quality the quality, from {@link BrotliEncoder#MIN_QUALITY} to
+   *        {@link BrotliEncoder#MAX_QUALITY}
+   */
+  public void setQuality(int quality) {
+    if (quality < BrotliEncoder.MIN_QUALITY || quality > BrotliEncoder.MAX_QUALITY) {
+      throw new IllegalArgumentException("Invalid quality " + quality);
+    }
+    this.quality = quality;
+  }
+
+  public int quality() {
+    return this.quality;
+  }
+
+  /**
+   * Set whether the glyf and loca tables are transformed. The hmtx transform
+   * depends on the glyf transform so it's only done when both are set.
+   */
+  public void setTransformGlyf(boolean transform) {
+    this.transformGlyf = transform;
+  }
+
+  public boolean transformGlyf() {
+    return this.transformGlyf;
+  }
+
+  /**
+   * Set whether the hmtx table is transformed when its left side bearings can
+   * be recovered from the glyf table. Collections are never written with the
+   * hmtx transform.
+   */
+  public void setTransformHmtx(boolean transform) {
+    this.transformHmtx = transform;
+  }
+
+  public boolean transformHmtx() {
+    return this.transformHmtx;
+  }
+
+  /**
+   * Convert a font to WOFF 2.0.
+   *
+   * @param font the font
+   * @return the WOFF 2.0 data
+   */
+  public WritableFontData convert(Font font) {
+    Directory directory = new Directory(false);
+    List<TableEntry> fontEntries = directory.addFont(font);
+    int sfntSize =
+        SFNT_HEADER_SIZE + SFNT_ENTRY_SIZE * fontEntries.size() + directory.tablesSize();
+    return this.write(directory, font, font.sfntVersion(), sfntSize, null);
+  }
+
+  /**
+   * Convert a font collection to WOFF 2.0. The result is a collection even if
+   * there is only one font.
+   *
+   * @param fonts the fonts of the collection
+   * @return the WOFF 2.0 data
+   */
+  public WritableFontData convert(Font[] fonts) {
+    if (fonts.length == 0) {
+      throw new IllegalArgumentException("No fonts to convert.");
+    }
+    Directory directory = new Directory(true);
+    ByteArrayOutputStream collection = new ByteArrayOutputStream();
+    DataOutputStream os = new DataOutputStream(collection);
+    int sfntSize = TTC_HEADER_SIZE + 4 * fonts.length;
+    try {
+      os.writeInt(TTC_VERSION);
+      GlyfEncoder.write255UShort(os, fonts.length);
+      for (Font font : fonts) {
+        List<TableEntry> fontEntries = directory.addFont(font);
+        sfntSize += SFNT_HEADER_SIZE + SFNT_ENTRY_SIZE * fontEntries.size();
+        GlyfEncoder.write255UShort(os, fontEntries.size());
+        os.writeInt(font.sfntVersion());
+        // the fonts' tables are listed in tag order
+        TableEntry[] sorted = fontEntries.toArray(new TableEntry[fontEntries.size()]);
+        Arrays.sort(sorted, new Comparator<TableEntry>() {
+          @Override
+          public int compare(TableEntry e1, TableEntry e2) {
+            return e1.tag < e2.tag ? -1 : e1.tag == e2.tag ? 0 : 1;
+          }
+        });
+        for (TableEntry entry : sorted) {
+          GlyfEncoder.write255UShort(os, entry.index);
+        }
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("unexpected IOException writing collection directory", e);
+    }
+    sfntSize += directory.tablesSize();
+    return this.write(directory, fonts[0], Tag.ttcf, sfntSize, collection.toByteArray());
+  }
+
+  private WritableFontData write(Directory directory, Font font, int flavor, int sfntSize,
+      byte[] collectionDirectory) {
+    ByteArrayOutputStream tableData = new ByteArrayOutputStream(sfntSize);
+    ByteArrayOutputStream tableDirectory = new ByteArrayOutputStream();
+    try {
+      for (TableEntry entry : directory.entries) {
+        entry.writeTo(tableDirectory);
+        tableData.write(entry.data);
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("unexpected IOException writing table directory", e);
+    }
+    byte[] compressed = new BrotliEncoder(this.quality).compress(tableData.toByteArray());
+
+    int length = HEADER_SIZE + tableDirectory.size()
+        + (collectionDirectory == null ? 0 : collectionDirectory.length) + compressed.length;
+    length = (length + 3) & -4;
+    FontHeaderTable head = font.getTable(Tag.head);
+    int revision = head == null ? 0 : head.fontRevision();
+
+    ByteArrayOutputStream bos = new ByteArrayOutputStream(length);
+    DataOutputStream os = new DataOutputStream(bos);
+    try {
+      os.writeInt(SIGNATURE);
+      os.writeInt(flavor);
+      os.writeInt(length);
+      os.writeShort(directory.entries.size());
+      os.writeShort(0); // reserved
+      os.writeInt(sfntSize);
+      os.writeInt(compressed.length);
+      os.writeShort(revision >> 16);
+      os.writeShort(revision & 0xffff);
+      os.writeInt(0); // metaOffset
+      os.writeInt(0); // metaLength
+      os.writeInt(0); // metaOrigLength
+      os.writeInt(0); // privOffset
+      os.writeInt(0); // privLength
+      tableDirectory.writeTo(os);
+      if (collectionDirectory != null) {
+        os.write(collectionDirectory);
+      }
+      os.write(compressed);
+      while (bos.size() < length) {
+        os.write(0);
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("unexpected IOException writing WOFF2 data", e);
+    }
+    return WritableFontData.createWritableFontData(bos.toByteArray());
+  }
+
+  private static byte[] tableBytes(Table table) {
+    ReadableFontData data = table.readFontData();
+    byte[] b = new byte[data.length()];
+    data.readBytes(0, b, 0, b.length);
+    return b;
+  }
+
+  /**
+   * The table directory being built, with the tables of all of the fonts
+   * converted so far.
+   */
+  private final class Directory {
+    private final boolean collection;
+    final List<TableEntry> entries = new ArrayList<TableEntry>();
+    private final Map<TableKey, TableEntry> entriesByKey = new HashMap<TableKey, TableEntry>();
+
+    Directory(boolean collection) {
+      this.collection = collection;
+    }
+
+    /**
+     * Add the tables of a font that aren't already in the directory.
+     *
+     * @return the entries of the font's tables
+     */
+    List<TableEntry> addFont(Font font) {
+      boolean hasGlyf = font.hasTable(Tag.glyf) && font.hasTable(Tag.loca);
+      boolean glyfTransformed = transformGlyf && hasGlyf;
+      GlyfTransform glyf = null;
+
+      List<TableEntry> fontEntries = new ArrayList<TableEntry>();
+      for (int tag : new TreeSet<Integer>(font.tableMap().keySet())) {
+        if (tag == Tag.loca && hasGlyf) {
+          // added with glyf
+          continue;
+        }
+        if (tag == Tag.DSIG && glyfTransformed) {
+          // the signature doesn't survive the transform
+          continue;
+        }
+
+        if (tag == Tag.glyf && hasGlyf) {
+          byte[] glyfBytes = tableBytes(font.getTable(Tag.glyf));
+          byte[] locaBytes = tableBytes(font.getTable(Tag.loca));
+          TableKey key = new TableKey(Tag.glyf, glyfBytes, locaBytes);
+          TableEntry entry = this.entriesByKey.get(key);
+          if (entry == null) {
+            TableEntry loca;
+            if (glyfTransformed) {
+              glyf = GlyfTransform.transform(font);
+              entry = new TableEntry(Tag.glyf, GLYF_TRANSFORM, glyf.toByteArray(),
+                  glyfBytes.length);
+              loca = new TableEntry(Tag.loca, GLYF_TRANSFORM, new byte[0], locaBytes.length);
+            } else {
+              entry = new TableEntry(Tag.glyf, GLYF_NULL_TRANSFORM, glyfBytes, glyfBytes.length);
+              loca = new TableEntry(Tag.loca, GLYF_NULL_TRANSFORM, locaBytes, locaBytes.length);
+            }
+            entry.loca = loca;
+            this.add(key, entry);
+            this.add(null, loca);
+          }
+          fontEntries.add(entry);
+          fontEntries.add(entry.loca);
+          continue;
+        }
+
+        byte[] bytes = tableBytes(font.getTable(tag));
+        if (tag == Tag.head && glyfTransformed) {
+          bytes = markLossless(bytes);
+        }
+        TableKey key = new TableKey(tag, bytes);
+        TableEntry entry = this.entriesByKey.get(key);
+        if (entry == null) {
+          byte[] transformed = null;
+          if (tag == Tag.hmtx && transformHmtx && glyf != null && !this.collection) {
+            transformed = transformHmtx(font, glyf, bytes);
+          }
+          if (transformed != null) {
+            entry = new TableEntry(tag, HMTX_TRANSFORM, transformed, bytes.length);
+          } else {
+            entry = new TableEntry(tag, 0, bytes, bytes.length);
+          }
+          this.add(key, entry);
+        }
+        fontEntries.add(entry);
+      }
+      return fontEntries;
+    }
+
+    private void add(TableKey key, TableEntry entry) {
+      entry.index = this.entries.size();
+      this.entries.add(entry);
+      if (key != null) {
+        this.entriesByKey.put(key, entry);
+      }
+    }
+
+    /**
+     * Get the size of the tables once decoded.
+     */
+    int tablesSize() {
+      int size = 0;
+      for (TableEntry entry : this.entries) {
+        size += (entry.origLength + 3) & -4;
+      }
+      return size;
+    }
+  }
+
+  /**
+   * Set the head table flag that says that the font data has been through a
+   * lossless transform.
+   */
+  private static byte[] markLossless(byte[] head) {
+    byte[] b = head.clone();
+    int offset = 16;
+    int flags = ((b[offset] & 0xff) << 8) | (b[offset + 1] & 0xff);
+    flags |= FontHeaderTable.Flags.FontDataLossless.mask();
+    b[offset] = (byte) (flags >> 8);
+    b[offset + 1] = (byte) flags;
+    return b;
+  }
+
+  /**
+   * Transform the hmtx table, as per section 5.4 of the spec.
+   *
+   * @return the transformed table; null if no left side bearings can be left out
+   */
+  private static byte[] transformHmtx(Font font, GlyfTransform glyf, byte[] original) {
+    HorizontalMetricsTable hmtx = font.getTable(Tag.hmtx);
+    int numHMetrics = hmtx.numberOfHMetrics();
+    int numLsbs = hmtx.numberOfLSBs();
+    if (numLsbs < 0 || original.length != 4 * numHMetrics + 2 * numLsbs) {
+      return null;
+    }
+    boolean proportionalMatches = true;
+    for (int i = 0; i < numHMetrics && proportionalMatches; i++) {
+      proportionalMatches = hmtx.hMetricLSB(i) == glyf.xMin(i);
+    }
+    boolean monospaceMatches = numLsbs > 0;
+    for (int i = 0; i < numLsbs && monospaceMatches; i++) {
+      monospaceMatches = hmtx.lsbTableEntry(i) == glyf.xMin(numHMetrics + i);
+    }
+    if (!proportionalMatches && !monospaceMatches) {
+      return null;
+    }
+
+    ByteArrayOutputStream bos = new ByteArrayOutputStream(original.length);
+    DataOutputStream os = new DataOutputStream(bos);
+    try {
+      os.writeByte((proportionalMatches ? 1 : 0) | (monospaceMatches ? 2 : 0));
+      for (int i = 0; i < numHMetrics; i++) {
+        os.writeShort(hmtx.hMetricAdvanceWidth(i));
+      }
+      if (!proportionalMatches) {
+        for (int i = 0; i < numHMetrics; i++) {
+          os.writeShort(hmtx.hMetricLSB(i));
+        }
+      }
+      if (!monospaceMatches) {
+        for (int i = 0; i < numLsbs; i++) {
+          os.writeShort(hmtx.lsbTableEntry(i));
+        }
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("unexpected IOException writing hmtx data", e);
+    }
+    return bos.toByteArray();
+  }
+
+  /**
+   * The content of a table, used to find tables shared by fonts of a
+   * collection. The glyf table is keyed together with its loca table.
+   */
+  private static final class TableKey {
+    private final int tag;
+    private final byte[][] data;
+
+    TableKey(int tag, byte[]... data) {
+      this.tag = tag;
+      this.data = data;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof TableKey)) {
+        return false;
+      }
+      TableKey other = (TableKey) obj;
+      return this.tag == other.tag && Arrays.deepEquals(this.data, other.data);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * this.tag + Arrays.deepHashCode(this.data);
+    }
+  }
+
+  private static final class TableEntry {
+    final int tag;
+    final int transformVersion;
+    final byte[] data;
+    final int origLength;
+    int index;
+    TableEntry loca;
+
+    TableEntry(int tag, int transformVersion, byte[] data, int origLength) {
+      this.tag = tag;
+      this.transformVersion = transformVersion;
+      this.data = data;
+      this.origLength = origLength;
+    }
+
+    private boolean transformed() {
+      if (this.tag == Tag.glyf || this.tag == Tag.loca) {
+        return this.transformVersion != GLYF_NULL_TRANSFORM;
+      }
+      return this.transformVersion != 0;
+    }
+
+    void writeTo(ByteArrayOutputStream os) throws IOException {
+      Integer knownIndex = knownTagIndexes.get(this.tag);
+      int tagIndex = knownIndex == null ? UNKNOWN_TAG_INDEX : knownIndex;
+      os.write(tagIndex | (this.transformVersion << 6));
+      if (knownIndex == null) {
+        os.write(Tag.byteValue(this.tag));
+      }
+      writeUIntBase128(os, this.origLength);
+      if (this.transformed()) {
+        writeUIntBase128(os, this.data.length);
+      }
+    }
+  }
+
+  // As per section 3.1 of the spec
+  static void writeUIntBase128(ByteArrayOutputStream os, long value) {
+    int size = 1;
+    while ((value >>> (7 * size)) != 0 && size < 5) {
+      size++;
+    }
+    for (int i = size - 1; i >= 0; i--) {
+      int b = (int) ((value >>> (7 * i)) & 0x7f);
+      os.write(i == 0 ? b : (b | 0x80));
+    }
+  }
+}
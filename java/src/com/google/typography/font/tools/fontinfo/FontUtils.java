@@ -27,9 +27,9 @@ import com.google.typography.font.sfntly.table.truetype.LocaTable;
 
 import com.ibm.icu.lang.UCharacter;
 
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Paths;
 
 /**
  * Font Utility functions
@@ -46,7 +46,9 @@ public class FontUtils {
    *           if font file does not exist or is invalid
    */
   public static Font[] getFonts(String fontFile) throws IOException {
-    return getFonts(new FileInputStream(fontFile));
+    FontFactory fontFactory = FontFactory.getInstance();
+    fontFactory.fingerprintFont(true);
+    return fontFactory.loadFonts(Paths.get(fontFile));
   }
 
   /**
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2011 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.typography.font.tools.httpserver;
+
+import com.google.typography.font.sfntly.Font;
+import com.google.typography.font.sfntly.FontFactory;
+import com.google.typography.font.sfntly.table.truetype.GlyphView;
+import com.google.typography.font.tools.sfnttool.GlyphMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A registry of parsed fonts that are kept in memory across requests. Each
+ * font is registered under an id and loaded once, with fingerprinting turned
+ * on so that subsets of it can be cached by the font digest. The fonts and the
+ * glyph lookups kept with them are only read after loading, so they are shared
+ * by all request threads.
+ *
+ * The registry is safe for use by multiple threads.
+ */
+public final class FontRegistry {
+
+  /**
+   * A registered font together with the lookups used to find the glyphs
+   * needed for a text.
+   */
+  public static final class Entry {
+    private final String id;
+    private final Font font;
+    private final GlyphMapper mapper;
+    private final GlyphView glyphs;
+
+    Entry(String id, Font font) {
+      this.id = id;
+      this.font = font;
+      this.mapper = GlyphMapper.forFont(font);
+      this.glyphs = GlyphView.forFont(font);
+    }
+
+    public String id() {
+      return this.id;
+    }
+
+    public Font font() {
+      return this.font;
+    }
+
+    public GlyphMapper mapper() {
+      return this.mapper;
+    }
+
+    public GlyphView glyphs() {
+      return this.glyphs;
+    }
+  }
+
+  private final FontFactory fontFactory;
+  private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+  public FontRegistry() {
+    this.fontFactory = FontFactory.getInstance();
+    this.fontFactory.fingerprintFont(true);
+  }
+
+  /**
+   * Get the font factory fonts are loaded with and subsets are built with.
+   *
+   * @return the font factory
+   */
+  public FontFactory fontFactory() {
+    return this.fontFactory;
+  }
+
+  /**
+   * Load the first font in the file and register it, replacing any font
+   * already registered under the id.
+   *
+   * @param id the id requests name the font by
+   * @param fontFile the font file
+   * @return the registered font
+   * @throws IOException if the font can't be loaded
+   * @throws IllegalArgumentException if the id is empty or the font has no
+   *         usable cmap or no glyph table
+   */
+  public Entry register(String id, File fontFile) throws IOException {
+    return this.register(id, fontFile, 0);
+  }
+
+  /**
+   * Load a font from the file, which may be a collection, and register it,
+   * replacing any font already registered under the id.
+   *
+   * @param id the id requests name the font by
+   * @param fontFile the font file
+   * @param fontNumber the index of the font in the file
+   * @return the registered font
+   * @throws IOException if the font can't be loaded or has no digest to key
+   *         its subsets by
+   * @throws IllegalArgumentException if the id is empty or the font has no
+   *         usable cmap or no glyph table
+   */
+  public Entry register(String id, File fontFile, int fontNumber) throws IOException {
+    if (id == null || id.length() == 0) {
+      throw new IllegalArgumentException("A font id is needed.");
+    }
+    Font[] fonts = this.fontFactory.loadFonts(fontFile.toPath());
+    if (fontNumber < 0 || fontNumber >= fonts.length) {
+      throw new IOException("No font " + fontNumber + " in " + fontFile);
+    }
+    Font font = fonts[fontNumber];
+    if (font.digest() == null) {
+      throw new IOException("Font " + fontNumber + " in " + fontFile
+          + " has no digest, so its subsets can't be cached.");
+    }
+    Entry entry = new Entry(id, font);
+    this.entries.put(id, entry);
+    return entry;
+  }
+
+  /**
+   * Remove the font registered under the id.
+   *
+   * @param id the font id
+   * @return true if a font was registered under the id
+   */
+  public boolean unregister(String id) {
+    return this.entries.remove(id) != null;
+  }
+
+  /**
+   * Get the font registered under the id.
+   *
+   * @param id the font id
+   * @return the font; null if no font is registered under the id
+   */
+  public Entry get(String id) {
+    return this.entries.get(id);
+  }
+
+  /**
+   * Get the ids of the registered fonts.
+   *
+   * @return the ids in sorted order
+   */
+  public Set<String> ids() {
+    return Collections.unmodifiableSet(new TreeSet<String>(this.entries.keySet()));
+  }
+}
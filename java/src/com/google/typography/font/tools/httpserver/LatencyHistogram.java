@@ -0,0 +1,135 @@
+/*
+ * Copyright 2011 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.typography.font.tools.httpserver;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of request latencies with buckets that double in width. Bucket
+ * i counts the latencies of at most 2<sup>i</sup> microseconds that are not in
+ * a lower bucket, and the last bucket also counts every latency above its
+ * bound. Percentiles are reported as the upper bound of the bucket they fall
+ * in.
+ *
+ * The histogram is safe for use by multiple threads.
+ */
+public final class LatencyHistogram {
+
+  // the last bucket bound is 2^25 us, about 34 seconds
+  private static final int NUM_BUCKETS = 26;
+
+  private final AtomicLongArray buckets = new AtomicLongArray(NUM_BUCKETS);
+  private final AtomicLong count = new AtomicLong();
+  private final AtomicLong totalMicros = new AtomicLong();
+  private final AtomicLong maxMicros = new AtomicLong();
+
+  /**
+   * Record a latency.
+   *
+   * @param nanos the latency in nanoseconds
+   */
+  public void record(long nanos) {
+    long micros = Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos));
+    this.buckets.incrementAndGet(bucket(micros));
+    this.count.incrementAndGet();
+    this.totalMicros.addAndGet(micros);
+    long max = this.maxMicros.get();
+    while (micros > max && !this.maxMicros.compareAndSet(max, micros)) {
+      max = this.maxMicros.get();
+    }
+  }
+
+  private static int bucket(long micros) {
+    if (micros <= 1) {
+      return 0;
+    }
+    int bucket = 64 - Long.numberOfLeadingZeros(micros - 1);
+    return Math.min(bucket, NUM_BUCKETS - 1);
+  }
+
+  public int numBuckets() {
+    return NUM_BUCKETS;
+  }
+
+  /**
+   * Get the upper bound of a bucket.
+   *
+   * @param bucket the bucket index
+   * @return the largest latency counted by the bucket in microseconds; the
+   *         last bucket also counts larger latencies
+   */
+  public long bucketBoundMicros(int bucket) {
+    return 1L << bucket;
+  }
+
+  public long bucketCount(int bucket) {
+    return this.buckets.get(bucket);
+  }
+
+  public long count() {
+    return this.count.get();
+  }
+
+  public long totalMicros() {
+    return this.totalMicros.get();
+  }
+
+  public long maxMicros() {
+    return this.maxMicros.get();
+  }
+
+  /**
+   * Get an upper bound for a percentile of the latencies recorded.
+   *
+   * @param percentile the percentile, from 0 to 100
+   * @return the bound in microseconds; 0 if nothing has been recorded
+   */
+  public long percentileMicros(double percentile) {
+    if (percentile < 0 || percentile > 100) {
+      throw new IllegalArgumentException("Percentile out of range: " + percentile);
+    }
+    long total = 0;
+    long[] counts = new long[NUM_BUCKETS];
+    for (int i = 0; i < NUM_BUCKETS; i++) {
+      counts[i] = this.buckets.get(i);
+      total += counts[i];
+    }
+    if (total == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+    long seen = 0;
+    for (int i = 0; i < NUM_BUCKETS; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return i == NUM_BUCKETS - 1 ? Math.max(this.maxMicros(), bucketBoundMicros(i))
+            : bucketBoundMicros(i);
+      }
+    }
+    return this.maxMicros();
+  }
+
+  @Override
+  public String toString() {
+    long count = this.count();
+    return String.format("count=%d mean_us=%d p50_us=%d p90_us=%d p99_us=%d max_us=%d",
+        count, count == 0 ? 0 : this.totalMicros() / count, this.percentileMicros(50),
+        this.percentileMicros(90), this.percentileMicros(99), this.maxMicros());
+  }
+}
@@ -0,0 +1,420 @@
+/*
+ * Copyright 2011 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.typography.font.tools.httpserver;
+
+import com.google.typography.font.sfntly.Font;
+import com.google.typography.font.sfntly.FontFactory;
+import com.google.typography.font.tools.sfnttool.GlyphCoverage;
+import com.google.typography.font.tools.sfnttool.Subsetting;
+import com.google.typography.font.tools.sfnttool.UnicodeRanges;
+import com.google.typography.font.tools.subsetter.GlyphSet;
+import com.google.typography.font.tools.subsetter.SubsetCache;
+import com.google.typography.font.tools.subsetter.SubsetCache.Format;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A subsetting service on the JDK's built in HTTP server. Fonts are loaded into
+ * a {@link FontRegistry} once and kept parsed across requests, and the
+ * serialized subsets are kept in a {@link SubsetCache}. The server answers:
+ *
+ * <ul>
+ * <li>{@code GET /subset?font=id&text=...&format=ttf} with the subset of the
+ * font holding the glyphs for the text. Instead of {@code text} a request may
+ * give {@code unicodes} as a list of code points and ranges such as
+ * {@code U+0020-007E,U+00A0}. The format is one of {@code ttf} (the default),
+ * {@code woff}, {@code woff2}, {@code eot} or {@code mtx}, an EOT compressed
+ * with MicroType Express.</li>
+ * <li>{@code GET /fonts} with the ids of the registered fonts, one per
+ * line.</li>
+ * <li>{@code GET /stats} with the cache counts, the hits and evictions of
+ * each cache tier and a latency histogram of the subset requests for each
+ * format and of the failed requests.</li>
+ * </ul>
+ *
+ * @see #main(String[])
+ */
+public final class SubsetServer {
+  private static final Logger logger =
+    Logger.getLogger(SubsetServer.class.getCanonicalName());
+
+  public static final long DEFAULT_CACHE_BYTES = 64L * 1024 * 1024;
+  // longest text a request may ask for, in code points
+  public static final int MAX_TEXT_LENGTH = 1 << 16;
+
+  private static final String ERROR_HISTOGRAM = "error";
+  private static final String TEXT_CONTENT_TYPE = "text/plain; charset=utf-8";
+
+  private final FontRegistry registry;
+  private final SubsetCache cache;
+  private final HttpServer server;
+  private final ExecutorService executor;
+  private final Map<String, LatencyHistogram> histograms;
+
+  /**
+   * Constructor. The server is bound to the address but does not answer
+   * requests until it is started.
+   *
+   * @param registry the fonts to serve
+   * @param address the address to listen on; port 0 picks a free port
+   * @param nThreads the number of threads answering requests
+   * @param cacheBytes the size of the in memory subset cache; 0 for no cache
+   * @throws IOException if the server can't be bound to the address
+   */
+  public SubsetServer(FontRegistry registry, InetSocketAddress address, int nThreads,
+      long cacheBytes) throws IOException {
+    if (nThreads < 1) {
+      throw new IllegalArgumentException("Need at least one thread, not " + nThreads);
+    }
+    this.registry = registry;
+    this.cache = cacheBytes > 0
+        ? new SubsetCache(new SubsetCache.MemoryTier(cacheBytes)) : new SubsetCache();
+    Map<String, LatencyHistogram> histograms = new TreeMap<String, LatencyHistogram>();
+    for (Format format : Format.values()) {
+      histograms.put(formatName(format), new LatencyHistogram());
+    }
+    histograms.put(ERROR_HISTOGRAM, new LatencyHistogram());
+    this.histograms = Collections.unmodifiableMap(histograms);
+
+    this.server = HttpServer.create(address, 0);
+    this.executor = Executors.newFixedThreadPool(nThreads);
+    this.server.setExecutor(this.executor);
+    this.server.createContext("/subset", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        handleSubset(exchange);
+      }
+    });
+    this.server.createContext("/fonts", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        handleFonts(exchange);
+      }
+    });
+    this.server.createContext("/stats", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        handleStats(exchange);
+      }
+    });
+  }
+
+  public void start() {
+    this.server.start();
+  }
+
+  /**
+   * Stop the server.
+   *
+   * @param delaySeconds the longest time to wait for requests being answered
+   */
+  public void stop(int delaySeconds) {
+    this.server.stop(delaySeconds);
+    this.executor.shutdownNow();
+  }
+
+  /**
+   * Get the address the server listens on, with the actual port if port 0
+   * was asked for.
+   *
+   * @return the address
+   */
+  public InetSocketAddress address() {
+    return this.server.getAddress();
+  }
+
+  public FontRegistry registry() {
+    return this.registry;
+  }
+
+  public SubsetCache cache() {
+    return this.cache;
+  }
+
+  /**
+   * Get a latency histogram.
+   *
+   * @param name a format name such as {@code ttf} for the subset requests
+   *        answered in that format, or {@code error} for the failed requests
+   * @return the histogram; null if there is none by that name
+   */
+  public LatencyHistogram histogram(String name) {
+    return this.histograms.get(name);
+  }
+
+  private static String formatName(Format format) {
+    return format.name().toLowerCase();
+  }
+
+  private static String contentType(Format format) {
+    switch (format) {
+      case WOFF:
+        return "font/woff";
+      case WOFF2:
+        return "font/woff2";
+      case EOT:
+      case MTX:
+        return "application/vnd.ms-fontobject";
+      default:
+        return "font/ttf";
+    }
+  }
+
+  /**
+   * A request that can't be answered, with the status to answer it with.
+   */
+  private static final class RequestException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    final int status;
+
+    RequestException(int status, String message) {
+      super(message);
+      this.status = status;
+    }
+  }
+
+  private void handleSubset(HttpExchange exchange) throws IOException {
+    long start = System.nanoTime();
+    String histogram = ERROR_HISTOGRAM;
+    int status;
+    String contentType;
+    byte[] body;
+    try {
+      if (!"GET".equals(exchange.getRequestMethod())) {
+        throw new RequestException(405, "Only GET is supported.");
+      }
+      Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+      String id = params.get("font");
+      if (id == null) {
+        throw new RequestException(400, "Give the font.");
+      }
+      FontRegistry.Entry entry = this.registry.get(id);
+      if (entry == null) {
+        throw new RequestException(404, "Unknown font: " + id);
+      }
+      final Format format = parseFormat(params.get("format"));
+      final Font font = entry.font();
+      final GlyphSet glyphs =
+          GlyphCoverage.getGlyphCoverageSet(entry.mapper(), entry.glyphs(), parseText(params));
+      body = this.cache.get(
+          SubsetCache.Key.forFont(
+              font, glyphs, Subsetting.CMAP_IDS, Subsetting.REMOVE_TABLES, format),
+          new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws IOException {
+              return subset(font, glyphs, format);
+            }
+          });
+      status = 200;
+      contentType = contentType(format);
+      histogram = formatName(format);
+    } catch (RequestException e) {
+      status = e.status;
+      contentType = TEXT_CONTENT_TYPE;
+      body = (e.getMessage() + "\n").getBytes("UTF-8");
+    } catch (Exception e) {
+      // the details stay in the server log rather than going to the client
+      logger.log(Level.WARNING, "Subsetting failed for " + exchange.getRequestURI(), e);
+      status = 500;
+      contentType = TEXT_CONTENT_TYPE;
+      body = "Subsetting failed.\n".getBytes("UTF-8");
+    }
+    // recorded before answering so the counts include every answered request
+    this.histograms.get(histogram).record(System.nanoTime() - start);
+    try {
+      exchange.getResponseHeaders().set("Content-Type", contentType);
+      send(exchange, status, body);
+    } finally {
+      exchange.close();
+    }
+  }
+
+  private static Format parseFormat(String name) throws RequestException {
+    if (name == null) {
+      return Format.TTF;
+    }
+    for (Format format : Format.values()) {
+      if (formatName(format).equals(name)) {
+        return format;
+      }
+    }
+    throw new RequestException(400, "Unknown format: " + name);
+  }
+
+  private static String parseText(Map<String, String> params) throws RequestException {
+    String text = params.get("text");
+    String unicodes = params.get("unicodes");
+    if ((text == null) == (unicodes == null)) {
+      throw new RequestException(400, "Give one of text and unicodes.");
+    }
+    if (unicodes != null) {
+      try {
+        return UnicodeRanges.parse(unicodes, MAX_TEXT_LENGTH);
+      } catch (IllegalArgumentException e) {
+        throw new RequestException(400, e.getMessage());
+      }
+    }
+    if (text.codePointCount(0, text.length()) > MAX_TEXT_LENGTH) {
+      throw new RequestException(400, "Text longer than " + MAX_TEXT_LENGTH + " code points.");
+    }
+    return text;
+  }
+
+  private static Map<String, String> parseQuery(String query) throws RequestException {
+    Map<String, String> params = new HashMap<String, String>();
+    if (query == null) {
+      return params;
+    }
+    try {
+      for (String param : query.split("&")) {
+        int equals = param.indexOf('=');
+        String name = equals < 0 ? param : param.substring(0, equals);
+        String value = equals < 0 ? "" : param.substring(equals + 1);
+        params.put(URLDecoder.decode(name, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+      }
+    } catch (IllegalArgumentException e) {
+      throw new RequestException(400, "Malformed query: " + e.getMessage());
+    } catch (UnsupportedEncodingException e) {
+      throw new RuntimeException(e);
+    }
+    return params;
+  }
+
+  private byte[] subset(Font font, GlyphSet glyphs, Format format) throws IOException {
+    FontFactory fontFactory = this.registry.fontFactory();
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    Subsetting.write(fontFactory, Subsetting.subset(fontFactory, font, glyphs, false), format,
+        Channels.newChannel(os));
+    return os.toByteArray();
+  }
+
+  private void handleFonts(HttpExchange exchange) throws IOException {
+    StringBuilder sb = new StringBuilder();
+    for (String id : this.registry.ids()) {
+      sb.append(id).append('\n');
+    }
+    sendText(exchange, 200, sb.toString());
+    exchange.close();
+  }
+
+  private void handleStats(HttpExchange exchange) throws IOException {
+    StringBuilder sb = new StringBuilder();
+    sb.append("fonts ").append(this.registry.ids().size()).append('\n');
+    sb.append(String.format("cache hits=%d misses=%d shared=%d evictions=%d\n",
+        this.cache.hitCount(), this.cache.missCount(), this.cache.sharedLoadCount(),
+        this.cache.evictionCount()));
+    for (int i = 0; i < this.cache.numTiers(); i++) {
+      sb.append(String.format("cache tier %d hits=%d evictions=%d\n", i, this.cache.hitCount(i),
+          this.cache.evictionCount(i)));
+    }
+    for (Map.Entry<String, LatencyHistogram> entry : this.histograms.entrySet()) {
+      LatencyHistogram histogram = entry.getValue();
+      sb.append("latency ").append(entry.getKey()).append(' ').append(histogram).append('\n');
+      for (int i = 0; i < histogram.numBuckets(); i++) {
+        if (histogram.bucketCount(i) > 0) {
+          sb.append(String.format("latency %s le_us=%d %d\n", entry.getKey(),
+              histogram.bucketBoundMicros(i), histogram.bucketCount(i)));
+        }
+      }
+    }
+    sendText(exchange, 200, sb.toString());
+    exchange.close();
+  }
+
+  private static void sendText(HttpExchange exchange, int status, String text)
+      throws IOException {
+    exchange.getResponseHeaders().set("Content-Type", TEXT_CONTENT_TYPE);
+    send(exchange, status, text.getBytes("UTF-8"));
+  }
+
+  private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+    exchange.sendResponseHeaders(status, body.length);
+    OutputStream os = exchange.getResponseBody();
+    try {
+      os.write(body);
+    } finally {
+      os.close();
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    int port = 8080;
+    int nThreads = Runtime.getRuntime().availableProcessors();
+    long cacheBytes = DEFAULT_CACHE_BYTES;
+    List<String> fonts = new ArrayList<String>();
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("-port") && i + 1 < args.length) {
+        port = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("-threads") && i + 1 < args.length) {
+        nThreads = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("-cache") && i + 1 < args.length) {
+        cacheBytes = Long.parseLong(args[++i]) * 1024 * 1024;
+      } else if (args[i].indexOf('=') > 0 && !args[i].startsWith("-")) {
+        fonts.add(args[i]);
+      } else {
+        printUsage();
+        System.exit(args[i].equals("-help") || args[i].equals("-?") ? 0 : 1);
+      }
+    }
+    if (fonts.isEmpty()) {
+      printUsage();
+      System.exit(1);
+    }
+
+    FontRegistry registry = new FontRegistry();
+    for (String font : fonts) {
+      int equals = font.indexOf('=');
+      registry.register(font.substring(0, equals), new File(font.substring(equals + 1)));
+    }
+    SubsetServer server =
+        new SubsetServer(registry, new InetSocketAddress(port), nThreads, cacheBytes);
+    server.start();
+    System.out.println("Serving " + registry.ids() + " on " + server.address());
+  }
+
+  private static void printUsage() {
+    System.out.println("SubsetServer [-port n] [-threads n] [-cache mb] id=fontfile ...");
+    System.out.println("Font subsetting HTTP service");
+    System.out.println("\t-port\t Port to listen on (default 8080)");
+    System.out.println("\t-threads\t Number of request threads (default: one per CPU)");
+    System.out.println("\t-cache\t Size of the subset cache in megabytes (default 64, 0 for none)");
+    System.out.println("\tid=fontfile\t Serve the font file under the id");
+  }
+}
@@ -17,21 +17,13 @@
 package com.google.typography.font.tools.sfnttool;
 
 import com.google.typography.font.sfntly.Font;
-import com.google.typography.font.sfntly.Tag;
-import com.google.typography.font.sfntly.table.core.CMap;
-import com.google.typography.font.sfntly.table.core.CMap.CMapFormat;
-import com.google.typography.font.sfntly.table.core.CMapTable;
 import com.google.typography.font.sfntly.table.truetype.CompositeGlyph;
 import com.google.typography.font.sfntly.table.truetype.Glyph;
 import com.google.typography.font.sfntly.table.truetype.Glyph.GlyphType;
-import com.google.typography.font.sfntly.table.truetype.GlyphTable;
-import com.google.typography.font.sfntly.table.truetype.LocaTable;
+import com.google.typography.font.sfntly.table.truetype.GlyphView;
+import com.google.typography.font.tools.subsetter.GlyphSet;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 
 /**
  * A class for computing which glyphs are needed to render a given string. Currently
@@ -43,53 +35,38 @@ import java.util.Set;
 public class GlyphCoverage {
 
   public static List<Integer> getGlyphCoverage(Font font, String string) {
-    CMapTable cmapTable = font.getTable(Tag.cmap);
-    CMap cmap = getBestCMap(cmapTable);
-    Set<Integer> coverage = new HashSet<Integer>();
+    return getGlyphCoverageSet(font, string).toList();
+  }
+
+  public static GlyphSet getGlyphCoverageSet(Font font, CharSequence text) {
+    return getGlyphCoverageSet(GlyphMapper.forFont(font), GlyphView.forFont(font), text);
+  }
+
+  /**
+   * Computes the glyphs needed for the text using a mapper and glyph view that
+   * may be shared between many texts for the same font, so that the cmap
+   * lookups and parsed glyphs are reused.
+   */
+  public static GlyphSet getGlyphCoverageSet(
+      GlyphMapper mapper, GlyphView glyphs, CharSequence text) {
+    int[] glyphIds = mapper.glyphIds(text);
+    GlyphSet coverage = new GlyphSet();
     coverage.add(0);  // Always include notdef
-    // TODO: doesn't support non-BMP scripts, should use StringCharacterIterator instead
-    for (int i = 0; i < string.length(); i++) {
-      int c = (string.charAt(i)) & 0xffff;
-      int glyphId = cmap.glyphId(c);
-      touchGlyph(font, coverage, glyphId);
+    for (int glyphId : glyphIds) {
+      touchGlyph(glyphs, coverage, glyphId);
     }
-    List<Integer> sortedCoverage = new ArrayList<Integer>(coverage);
-    Collections.sort(sortedCoverage);
-    return sortedCoverage;
+    return coverage;
   }
   
-  private static void touchGlyph(Font font, Set<Integer> coverage, int glyphId) {
-    if (!coverage.contains(glyphId)) {
-      coverage.add(glyphId);
-      Glyph glyph = getGlyph(font, glyphId);
+  private static void touchGlyph(GlyphView glyphs, GlyphSet coverage, int glyphId) {
+    if (coverage.add(glyphId)) {
+      Glyph glyph = glyphs.glyph(glyphId);
       if (glyph != null && glyph.glyphType() == GlyphType.Composite) {
         CompositeGlyph composite = (CompositeGlyph) glyph;
         for (int i = 0; i < composite.numGlyphs(); i++) {
-          touchGlyph(font, coverage, composite.glyphIndex(i));
+          touchGlyph(glyphs, coverage, composite.glyphIndex(i));
         }
       }
     }
   }
-  
-  private static CMap getBestCMap(CMapTable cmapTable) {
-    for (CMap cmap : cmapTable) {
-      if (cmap.format() == CMapFormat.Format12.value()) {
-        return cmap;
-      }
-    }
-    for (CMap cmap : cmapTable) {
-      if (cmap.format() == CMapFormat.Format4.value()) {
-        return cmap;
-      }
-    }
-    return null;
-  }
-
-  private static Glyph getGlyph(Font font, int glyphId) {
-    LocaTable locaTable = font.getTable(Tag.loca);
-    GlyphTable glyfTable = font.getTable(Tag.glyf);
-    int offset = locaTable.glyphOffset(glyphId);
-    int length = locaTable.glyphLength(glyphId);
-    return glyfTable.glyph(offset, length);
-  }
 }
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2011 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.typography.font.tools.sfnttool;
+
+import com.google.typography.font.sfntly.Font;
+import com.google.typography.font.sfntly.Tag;
+import com.google.typography.font.sfntly.table.core.CMap;
+import com.google.typography.font.sfntly.table.core.CMap.CMapFormat;
+import com.google.typography.font.sfntly.table.core.CMapTable;
+import com.google.typography.font.sfntly.table.core.CompiledCMap;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Maps Unicode text to glyph ids in bulk. The best Unicode cmap of the font is
+ * chosen once when the mapper is created. Text is mapped by code point so
+ * surrogate pairs map to the glyph for the supplementary character. Results
+ * are written to primitive arrays.
+ *
+ * A mapper may be reused for any number of texts and is safe for use by
+ * multiple threads.
+ */
+public final class GlyphMapper {
+
+  private static final Map<Font, GlyphMapper> fontMappers =
+      Collections.synchronizedMap(new WeakHashMap<Font, GlyphMapper>());
+
+  private final CompiledCMap cmap;
+
+  /**
+   * Constructor.
+   *
+   * @param cmapTable the cmap table to choose a cmap from
+   * @throws IllegalArgumentException if the cmap table has no format 12 or
+   *         format 4 cmap
+   */
+  public GlyphMapper(CMapTable cmapTable) {
+    CMap cmap = getBestCMap(cmapTable);
+    if (cmap == null) {
+      throw new IllegalArgumentException("No format 12 or format 4 cmap found.");
+    }
+    this.cmap = cmap.compiled();
+  }
+
+  /**
+   * Gets the mapper for the cmap table of the font. One mapper is kept for
+   * each font, so the cmap is only chosen and compiled once.
+   *
+   * @param font the font to map text for
+   * @return the mapper
+   * @throws IllegalArgumentException if the font has no format 12 or format 4
+   *         cmap
+   */
+  public static GlyphMapper forFont(Font font) {
+    GlyphMapper mapper = fontMappers.get(font);
+    if (mapper == null) {
+      CMapTable cmapTable = font.getTable(Tag.cmap);
+      if (cmapTable == null) {
+        throw new IllegalArgumentException("Font has no cmap table.");
+      }
+      // racing threads may both create a mapper but they choose the same cmap
+      mapper = new GlyphMapper(cmapTable);
+      fontMappers.put(font, mapper);
+    }
+    return mapper;
+  }
+
+  /**
+   * Gets the cmap that text is mapped with.
+   *
+   * @return the cmap
+   */
+  public CMap cmap() {
+    return this.cmap.cmap();
+  }
+
+  /**
+   * Gets the glyph id for a single code point.
+   *
+   * @param codePoint the Unicode code point
+   * @return the glyph id; {@link CMapTable#NOTDEF} if the code point is not mapped
+   */
+  public int glyphId(int codePoint) {
+    return this.cmap.glyphId(codePoint);
+  }
+
+  /**
+   * Maps the text to glyph ids, one for each code point in the text.
+   *
+   * @param text the text to map
+   * @return the glyph ids
+   */
+  public int[] glyphIds(CharSequence text) {
+    int[] glyphIds = new int[Character.codePointCount(text, 0, text.length())];
+    this.glyphIds(text, glyphIds, 0);
+    return glyphIds;
+  }
+
+  /**
+   * Maps the text to glyph ids, one for each code point in the text, and
+   * writes them to the array given. The array must have room for as many
+   * glyph ids as there are code points in the text.
+   *
+   * @param text the text to map
+   * @param glyphIds the destination for the glyph ids
+   * @param offset the index in the destination to write the first glyph id at
+   * @return the number of glyph ids written
+   */
+  public int glyphIds(CharSequence text, int[] glyphIds, int offset) {
+    int count = 0;
+    for (int i = 0; i < text.length();) {
+      int codePoint = Character.codePointAt(text, i);
+      glyphIds[offset + count++] = this.cmap.glyphId(codePoint);
+      i += Character.charCount(codePoint);
+    }
+    return count;
+  }
+
+  /**
+   * Maps the code points to glyph ids.
+   *
+   * @param codePoints the code points to map
+   * @return the glyph ids in the same order as the code points
+   */
+  public int[] glyphIds(int[] codePoints) {
+    int[] glyphIds = new int[codePoints.length];
+    this.glyphIds(codePoints, 0, glyphIds, 0, codePoints.length);
+    return glyphIds;
+  }
+
+  /**
+   * Maps a run of code points to glyph ids and writes them to the array given.
+   *
+   * @param codePoints the code points to map
+   * @param codePointOffset the index of the first code point to map
+   * @param glyphIds the destination for the glyph ids
+   * @param glyphIdOffset the index in the destination to write the first glyph
+   *        id at
+   * @param count the number of code points to map
+   * @return the number of glyph ids written
+   */
+  public int glyphIds(
+      int[] codePoints, int codePointOffset, int[] glyphIds, int glyphIdOffset, int count) {
+    for (int i = 0; i < count; i++) {
+      glyphIds[glyphIdOffset + i] = this.cmap.glyphId(codePoints[codePointOffset + i]);
+    }
+    return count;
+  }
+
+  private static CMap getBestCMap(CMapTable cmapTable) {
+    for (CMap cmap : cmapTable) {
+      if (cmap.format() == CMapFormat.Format12.value()) {
+        return cmap;
+      }
+    }
+    for (CMap cmap : cmapTable) {
+      if (cmap.format() == CMapFormat.Format4.value()) {
+        return cmap;
+      }
+    }
+    return null;
+  }
+}
@@ -0,0 +1,334 @@
+/*
+ * Copyright 2011 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.typography.font.tools.sfnttool;
+
+import com.google.typography.font.sfntly.Font;
+import com.google.typography.font.sfntly.FontFactory;
+import com.google.typography.font.sfntly.table.truetype.GlyphView;
+import com.google.typography.font.tools.subsetter.GlyphSet;
+import com.google.typography.font.tools.subsetter.SubsetCache.Format;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Runs the subsetting jobs of a manifest on a fixed pool of worker threads.
+ * Each distinct font file is loaded once, the first time a job needs it, and
+ * the font and its glyph lookups are then shared read only by all the jobs for
+ * that font.
+ *
+ * <p>A manifest has one job per line with four tab separated fields: the font
+ * file, the text to keep, the output format and the output file. The text is
+ * either literal, with {@code \t}, {@code \n} and {@code \\} escapes, or a comma
+ * separated list of code points and ranges such as {@code U+0020-007E,U+00A0}.
+ * An empty text keeps all the glyphs. The format is one of {@code ttf},
+ * {@code woff}, {@code woff2}, {@code eot} or {@code mtx} (EOT with MicroType
+ * Express compression). Relative paths are resolved against the directory of
+ * the manifest. Blank lines and lines starting with {@code #} are skipped.
+ */
+public final class SfntBatch {
+
+  /**
+   * A job read from a manifest.
+   */
+  public static final class Job {
+    private final int lineNumber;
+    private final File fontFile;
+    private final String text;
+    private final Format format;
+    private final File outputFile;
+
+    Job(int lineNumber, File fontFile, String text, Format format, File outputFile) {
+      this.lineNumber = lineNumber;
+      this.fontFile = fontFile;
+      this.text = text;
+      this.format = format;
+      this.outputFile = outputFile;
+    }
+
+    public int lineNumber() {
+      return this.lineNumber;
+    }
+
+    public File fontFile() {
+      return this.fontFile;
+    }
+
+    /**
+     * @return the text to keep the glyphs for; null to keep all the glyphs
+     */
+    public String text() {
+      return this.text;
+    }
+
+    public Format format() {
+      return this.format;
+    }
+
+    public File outputFile() {
+      return this.outputFile;
+    }
+  }
+
+  /**
+   * A font shared by the jobs for it.
+   */
+  private static final class SharedFont {
+    final Font font;
+    final GlyphMapper mapper;
+    final GlyphView glyphs;
+
+    SharedFont(Font font) {
+      this.font = font;
+      this.mapper = GlyphMapper.forFont(font);
+      this.glyphs = GlyphView.forFont(font);
+    }
+  }
+
+  /**
+   * The outcome of a job and its line in the report.
+   */
+  private static final class Report {
+    final boolean ok;
+    final String line;
+
+    Report(boolean ok, String line) {
+      this.ok = ok;
+      this.line = line;
+    }
+  }
+
+  private final int nThreads;
+  private final boolean strip;
+  private final FontFactory fontFactory = FontFactory.getInstance();
+  private final ConcurrentMap<File, Future<SharedFont>> fonts =
+      new ConcurrentHashMap<File, Future<SharedFont>>();
+
+  /**
+   * @param nThreads the number of worker threads
+   * @param strip whether to strip the hints of every output font
+   */
+  public SfntBatch(int nThreads, boolean strip) {
+    if (nThreads < 1) {
+      throw new IllegalArgumentException("Need at least one thread, not " + nThreads);
+    }
+    this.nThreads = nThreads;
+    this.strip = strip;
+  }
+
+  public static List<Job> readManifest(File manifestFile) throws IOException {
+    Reader reader = new InputStreamReader(new FileInputStream(manifestFile), "UTF-8");
+    try {
+      return readManifest(reader, manifestFile.getAbsoluteFile().getParentFile());
+    } finally {
+      reader.close();
+    }
+  }
+
+  /**
+   * Read the jobs of a manifest.
+   *
+   * @param reader the manifest
+   * @param baseDir the directory relative paths are resolved against
+   * @return the jobs in manifest order
+   * @throws IOException if the manifest can't be read or has a malformed line
+   */
+  public static List<Job> readManifest(Reader reader, File baseDir) throws IOException {
+    List<Job> jobs = new ArrayList<Job>();
+    BufferedReader lines = new BufferedReader(reader);
+    int lineNumber = 0;
+    for (String line = lines.readLine(); line != null; line = lines.readLine()) {
+      lineNumber++;
+      if (line.trim().length() == 0 || line.startsWith("#")) {
+        continue;
+      }
+      String[] fields = line.split("\t", -1);
+      if (fields.length != 4) {
+        throw new IOException("Manifest line " + lineNumber + ": expected 4 tab separated fields"
+            + " but found " + fields.length);
+      }
+      Format format;
+      try {
+        format = Format.valueOf(fields[2].trim().toUpperCase());
+      } catch (IllegalArgumentException e) {
+        throw new IOException("Manifest line " + lineNumber + ": unknown format " + fields[2]);
+      }
+      String text;
+      try {
+        text = parseText(fields[1]);
+      } catch (IllegalArgumentException e) {
+        throw new IOException("Manifest line " + lineNumber + ": " + e.getMessage());
+      }
+      jobs.add(new Job(lineNumber, resolve(baseDir, fields[0]), text, format,
+          resolve(baseDir, fields[3])));
+    }
+    return jobs;
+  }
+
+  private static File resolve(File baseDir, String path) {
+    File file = new File(path);
+    if (!file.isAbsolute() && baseDir != null) {
+      file = new File(baseDir, path);
+    }
+    return file;
+  }
+
+  // visible for testing
+  static String parseText(String field) {
+    if (field.length() == 0) {
+      return null;
+    }
+    if (field.startsWith("U+") || field.startsWith("u+")) {
+      return UnicodeRanges.parse(field);
+    }
+    StringBuilder text = new StringBuilder(field.length());
+    for (int i = 0; i < field.length(); i++) {
+      char c = field.charAt(i);
+      if (c == '\\' && i + 1 < field.length()) {
+        char next = field.charAt(++i);
+        if (next == 't') {
+          c = '\t';
+        } else if (next == 'n') {
+          c = '\n';
+        } else if (next == '\\') {
+          c = '\\';
+        } else {
+          throw new IllegalArgumentException("bad escape \\" + next);
+        }
+      }
+      text.append(c);
+    }
+    return text.toString();
+  }
+
+  /**
+   * Run the jobs, printing a line with the time taken by each job as it
+   * finishes and a summary with the overall throughput at the end. A job that
+   * fails is reported and does not stop the others.
+   *
+   * @param jobs the jobs to run
+   * @param out where to report progress
+   * @return true if every job succeeded
+   */
+  public boolean run(List<Job> jobs, PrintStream out) {
+    long start = System.nanoTime();
+    ExecutorService executor = Executors.newFixedThreadPool(this.nThreads);
+    int failed = 0;
+    try {
+      CompletionService<Report> completion = new ExecutorCompletionService<Report>(executor);
+      for (final Job job : jobs) {
+        completion.submit(new Callable<Report>() {
+          @Override
+          public Report call() {
+            return runJob(job);
+          }
+        });
+      }
+      for (int i = 0; i < jobs.size(); i++) {
+        Report report;
+        try {
+          report = completion.take().get();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          out.println("Interrupted, " + (jobs.size() - i) + " jobs not reported");
+          return false;
+        } catch (ExecutionException e) {
+          // runJob reports its own failures
+          throw new RuntimeException(e.getCause());
+        }
+        if (!report.ok) {
+          failed++;
+        }
+        out.println(report.line);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    long millis = (System.nanoTime() - start) / 1000000;
+    double perSecond = millis == 0 ? jobs.size() : jobs.size() * 1000.0 / millis;
+    out.println(String.format("%d jobs, %d failed, %d fonts loaded in %d ms (%.1f jobs/s)",
+        jobs.size(), failed, this.fonts.size(), millis, perSecond));
+    return failed == 0;
+  }
+
+  private Report runJob(Job job) {
+    long start = System.nanoTime();
+    String name = "line " + job.lineNumber() + " " + job.outputFile();
+    try {
+      SharedFont shared = font(job.fontFile());
+      GlyphSet glyphs = null;
+      if (job.text() != null) {
+        glyphs = GlyphCoverage.getGlyphCoverageSet(shared.mapper, shared.glyphs, job.text());
+      }
+      SfntTool.writeFont(this.fontFactory,
+          Subsetting.subset(this.fontFactory, shared.font, glyphs, this.strip),
+          job.outputFile(), job.format());
+      return new Report(true, String.format("%s: %d ms, %d bytes", name,
+          (System.nanoTime() - start) / 1000000, job.outputFile().length()));
+    } catch (Exception e) {
+      return new Report(false, String.format("FAILED %s: %s", name, e));
+    }
+  }
+
+  /**
+   * Get the shared font for the file, loading it on this thread if no other
+   * job has asked for it yet.
+   */
+  private SharedFont font(final File fontFile) throws IOException, InterruptedException {
+    File key = fontFile.getCanonicalFile();
+    Future<SharedFont> future = this.fonts.get(key);
+    if (future == null) {
+      FutureTask<SharedFont> task = new FutureTask<SharedFont>(new Callable<SharedFont>() {
+        @Override
+        public SharedFont call() throws IOException {
+          return new SharedFont(fontFactory.loadFonts(fontFile.toPath())[0]);
+        }
+      });
+      future = this.fonts.putIfAbsent(key, task);
+      if (future == null) {
+        future = task;
+        task.run();
+      }
+    }
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      throw new IOException("Unable to load " + fontFile, cause);
+    }
+  }
+}
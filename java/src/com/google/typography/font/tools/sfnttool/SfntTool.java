@@ -18,23 +18,13 @@ package com.google.typography.font.tools.sfnttool;
 
 import com.google.typography.font.sfntly.Font;
 import com.google.typography.font.sfntly.FontFactory;
-import com.google.typography.font.sfntly.Tag;
-import com.google.typography.font.sfntly.data.WritableFontData;
-import com.google.typography.font.sfntly.table.core.CMapTable;
-import com.google.typography.font.tools.conversion.eot.EOTWriter;
-import com.google.typography.font.tools.conversion.woff.WoffWriter;
-import com.google.typography.font.tools.subsetter.HintStripper;
-import com.google.typography.font.tools.subsetter.RenumberingSubsetter;
-import com.google.typography.font.tools.subsetter.Subsetter;
+import com.google.typography.font.tools.subsetter.GlyphSet;
+import com.google.typography.font.tools.subsetter.SubsetCache.Format;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.nio.channels.FileChannel;
 
 /**
  * @author Raph Levien
@@ -43,6 +33,7 @@ public class SfntTool {
   private boolean strip = false;
   private String subsetString = null;
   private boolean woff = false;
+  private boolean woff2 = false;
   private boolean eot = false;
   private boolean mtx = false;
 
@@ -52,6 +43,8 @@ public class SfntTool {
     File outputFile = null;
     boolean bench = false;
     int nIters = 1;
+    File manifestFile = null;
+    int nThreads = Runtime.getRuntime().availableProcessors();
 
     for (int i = 0; i < args.length; i++) {
       String option = null;
@@ -72,10 +65,18 @@ public class SfntTool {
           i++;
         } else if (option.equals("w") || option.equals("woff")) {
           tool.woff = true;
+        } else if (option.equals("w2") || option.equals("woff2")) {
+          tool.woff2 = true;
         } else if (option.equals("e") || option.equals("eot")) {
           tool.eot = true;
         } else if (option.equals("x") || option.equals("mtx")) {
           tool.mtx = true;
+        } else if (option.equals("batch")) {
+          manifestFile = new File(args[i + 1]);
+          i++;
+        } else if (option.equals("threads")) {
+          nThreads = Integer.parseInt(args[i + 1]);
+          i++;
         } else {
           printUsage();
           System.exit(1);
@@ -90,12 +91,16 @@ public class SfntTool {
       }
     }
 
-    if (tool.woff && tool.eot) {
-      System.out.println("WOFF and EOT options are mutually exclusive");
+    if ((tool.woff ? 1 : 0) + (tool.woff2 ? 1 : 0) + (tool.eot ? 1 : 0) > 1) {
+      System.out.println("WOFF, WOFF2 and EOT options are mutually exclusive");
       System.exit(1);
     }
 
-    if (fontFile != null && outputFile != null) {
+    if (manifestFile != null) {
+      SfntBatch batch = new SfntBatch(nThreads, tool.strip);
+      boolean ok = batch.run(SfntBatch.readManifest(manifestFile), System.out);
+      System.exit(ok ? 0 : 1);
+    } else if (fontFile != null && outputFile != null) {
       tool.subsetFontFile(fontFile, outputFile, nIters);
     } else {
       printUsage();
@@ -104,85 +109,58 @@ public class SfntTool {
 
   private static final void printUsage() {
     System.out.println("Subset [-?|-h|-help] [-b] [-s string] fontfile outfile");
+    System.out.println("Subset [-h] -batch manifest [-threads n]");
     System.out.println("Prototype font subsetter");
     System.out.println("\t-?,-help\tprint this help information");
     System.out.println("\t-s,-string\t String to subset");
     System.out.println("\t-b,-bench\t Benchmark (run 10000 iterations)");
     System.out.println("\t-h,-hints\t Strip hints");
     System.out.println("\t-w,-woff\t Output WOFF format");
+    System.out.println("\t-w2,-woff2\t Output WOFF 2.0 format");
     System.out.println("\t-e,-eot\t Output EOT format");
     System.out.println("\t-x,-mtx\t Enable Microtype Express compression for EOT format");
+    System.out.println("\t-batch\t Run the jobs of a manifest, one per line:");
+    System.out.println("\t\t fontfile<TAB>text or U+XXXX[-YYYY],...<TAB>"
+        + "ttf|woff|woff2|eot|mtx<TAB>outfile");
+    System.out.println("\t-threads\t Number of batch worker threads (default: one per CPU)");
   }
 
   public void subsetFontFile(File fontFile, File outputFile, int nIters)
       throws IOException {
     FontFactory fontFactory = FontFactory.getInstance();
-    FileInputStream fis = null;
-    try {
-      fis = new FileInputStream(fontFile);
-      byte[] fontBytes = new byte[(int)fontFile.length()];
-      fis.read(fontBytes);
-      Font[] fontArray = null;
-      fontArray = fontFactory.loadFonts(fontBytes);
-      Font font = fontArray[0];
-      List<CMapTable.CMapId> cmapIds = new ArrayList<CMapTable.CMapId>();
-      cmapIds.add(CMapTable.CMapId.WINDOWS_BMP);
-      byte[] newFontData = null;
-      for (int i = 0; i < nIters; i++) {
-        Font newFont = font;
-        if (subsetString != null) {
-          Subsetter subsetter = new RenumberingSubsetter(newFont, fontFactory);
-          subsetter.setCMaps(cmapIds, 1);
-          List<Integer> glyphs = GlyphCoverage.getGlyphCoverage(font, subsetString);
-          subsetter.setGlyphs(glyphs);
-          Set<Integer> removeTables = new HashSet<Integer>();
-          // Most of the following are valid tables, but we don't renumber them yet, so strip
-          removeTables.add(Tag.GDEF);
-          removeTables.add(Tag.GPOS);
-          removeTables.add(Tag.GSUB);
-          removeTables.add(Tag.kern);
-          removeTables.add(Tag.hdmx);
-          removeTables.add(Tag.vmtx);
-          removeTables.add(Tag.VDMX);
-          removeTables.add(Tag.LTSH);
-          removeTables.add(Tag.DSIG);
-          removeTables.add(Tag.vhea);
-          // AAT tables, not yet defined in sfntly Tag class
-          removeTables.add(Tag.intValue(new byte[]{'m', 'o', 'r', 't'}));
-          removeTables.add(Tag.intValue(new byte[]{'m', 'o', 'r', 'x'}));
-          subsetter.setRemoveTables(removeTables);
-          newFont = subsetter.subset().build();
-        }
-        if (strip) {
-          Subsetter hintStripper = new HintStripper(newFont, fontFactory);
-          Set<Integer> removeTables = new HashSet<Integer>();
-          removeTables.add(Tag.fpgm);
-          removeTables.add(Tag.prep);
-          removeTables.add(Tag.cvt);
-          removeTables.add(Tag.hdmx);
-          removeTables.add(Tag.VDMX);
-          removeTables.add(Tag.LTSH);
-          removeTables.add(Tag.DSIG);
-          removeTables.add(Tag.vhea);
-          hintStripper.setRemoveTables(removeTables);
-          newFont = hintStripper.subset().build();
-        }
-
-        FileOutputStream fos = new FileOutputStream(outputFile);
-        if (woff) {
-          WritableFontData woffData = new WoffWriter().convert(newFont);
-          woffData.copyTo(fos);
-        } else if (eot) {
-          WritableFontData eotData = new EOTWriter(mtx).convert(newFont);
-          eotData.copyTo(fos);
-        } else {
-          fontFactory.serializeFont(newFont, fos);
-        }
+    Font[] fontArray = fontFactory.loadFonts(fontFile.toPath());
+    Font font = fontArray[0];
+    for (int i = 0; i < nIters; i++) {
+      GlyphSet glyphs = null;
+      if (subsetString != null) {
+        glyphs = GlyphCoverage.getGlyphCoverageSet(font, subsetString);
       }
+      writeFont(fontFactory, Subsetting.subset(fontFactory, font, glyphs, this.strip), outputFile,
+          this.outputFormat());
+    }
+  }
+
+  private Format outputFormat() {
+    if (this.woff) {
+      return Format.WOFF;
+    } else if (this.woff2) {
+      return Format.WOFF2;
+    } else if (this.eot) {
+      return this.mtx ? Format.MTX : Format.EOT;
+    }
+    return Format.TTF;
+  }
+
+  /**
+   * Write the font to the file in the output format given.
+   */
+  static void writeFont(FontFactory fontFactory, Font font, File outputFile,
+      Format format) throws IOException {
+    FileChannel channel = new FileOutputStream(outputFile).getChannel();
+    try {
+      Subsetting.write(fontFactory, font, format, channel);
     } finally {
-      if (fis != null) {
-        fis.close();
-      }
+      channel.close();
     }
   }
 }
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2011 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.typography.font.tools.sfnttool;
+
+import com.google.typography.font.sfntly.Font;
+import com.google.typography.font.sfntly.FontFactory;
+import com.google.typography.font.sfntly.Tag;
+import com.google.typography.font.sfntly.table.core.CMapTable;
+import com.google.typography.font.tools.conversion.eot.EOTWriter;
+import com.google.typography.font.tools.conversion.woff.WoffWriter;
+import com.google.typography.font.tools.conversion.woff2.Woff2Writer;
+import com.google.typography.font.tools.subsetter.GlyphSet;
+import com.google.typography.font.tools.subsetter.HintStripper;
+import com.google.typography.font.tools.subsetter.RenumberingSubsetter;
+import com.google.typography.font.tools.subsetter.SubsetCache.Format;
+import com.google.typography.font.tools.subsetter.Subsetter;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The subsetting and writing steps shared by {@link SfntTool}, its batch mode
+ * and the subsetting HTTP service, so that they all keep the same cmaps,
+ * remove the same tables and write each output format the same way.
+ */
+public final class Subsetting {
+
+  /**
+   * The cmaps kept in a subset.
+   */
+  public static final List<CMapTable.CMapId> CMAP_IDS =
+      Collections.singletonList(CMapTable.CMapId.WINDOWS_BMP);
+
+  /**
+   * The tables removed from a subset.
+   */
+  public static final Set<Integer> REMOVE_TABLES = createRemoveTables();
+
+  private Subsetting() {
+    // utility class
+  }
+
+  private static Set<Integer> createRemoveTables() {
+    Set<Integer> removeTables = new HashSet<Integer>();
+    // Most of the following are valid tables, but we don't renumber them yet, so strip
+    removeTables.add(Tag.GDEF);
+    removeTables.add(Tag.GPOS);
+    removeTables.add(Tag.GSUB);
+    removeTables.add(Tag.kern);
+    removeTables.add(Tag.hdmx);
+    removeTables.add(Tag.vmtx);
+    removeTables.add(Tag.VDMX);
+    removeTables.add(Tag.LTSH);
+    removeTables.add(Tag.DSIG);
+    removeTables.add(Tag.vhea);
+    // AAT tables, not yet defined in sfntly Tag class
+    removeTables.add(Tag.intValue(new byte[]{'m', 'o', 'r', 't'}));
+    removeTables.add(Tag.intValue(new byte[]{'m', 'o', 'r', 'x'}));
+    return Collections.unmodifiableSet(removeTables);
+  }
+
+  /**
+   * Subset the font to the glyphs and strip its hints if asked to. The font is
+   * only read, so it may be shared between threads.
+   *
+   * @param fontFactory the factory to build the subset with
+   * @param font the font to subset
+   * @param glyphs the glyphs to keep; null to keep the font's glyphs as they are
+   * @param strip whether to strip the hints
+   * @return the subset font
+   * @throws IOException if the subset can't be built
+   */
+  public static Font subset(FontFactory fontFactory, Font font, GlyphSet glyphs, boolean strip)
+      throws IOException {
+    Font newFont = font;
+    if (glyphs != null) {
+      Subsetter subsetter = new RenumberingSubsetter(newFont, fontFactory);
+      subsetter.setCMaps(CMAP_IDS, 1);
+      subsetter.setGlyphs(glyphs);
+      subsetter.setRemoveTables(REMOVE_TABLES);
+      newFont = subsetter.subset().build();
+    }
+    if (strip) {
+      Subsetter hintStripper = new HintStripper(newFont, fontFactory);
+      Set<Integer> removeTables = new HashSet<Integer>();
+      removeTables.add(Tag.fpgm);
+      removeTables.add(Tag.prep);
+      removeTables.add(Tag.cvt);
+      removeTables.add(Tag.hdmx);
+      removeTables.add(Tag.VDMX);
+      removeTables.add(Tag.LTSH);
+      removeTables.add(Tag.DSIG);
+      removeTables.add(Tag.vhea);
+      hintStripper.setRemoveTables(removeTables);
+      newFont = hintStripper.subset().build();
+    }
+    return newFont;
+  }
+
+  /**
+   * Write the font to the channel in the format given.
+   *
+   * @param fontFactory the factory to serialize uncompressed fonts with
+   * @param font the font to write
+   * @param format the output format
+   * @param channel the destination
+   * @throws IOException if the font can't be converted or written
+   */
+  public static void write(FontFactory fontFactory, Font font, Format format,
+      WritableByteChannel channel) throws IOException {
+    switch (format) {
+      case WOFF:
+        new WoffWriter().convert(font, channel);
+        break;
+      case WOFF2:
+        new Woff2Writer().convert(font).copyTo(channel);
+        break;
+      case EOT:
+        new EOTWriter(false).convert(font, channel);
+        break;
+      case MTX:
+        new EOTWriter(true).convert(font, channel);
+        break;
+      default:
+        fontFactory.serializeFont(font, channel);
+        break;
+    }
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2011 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.typography.font.tools.sfnttool;
+
+/**
+ * Parsing of unicode range lists such as {@code U+0020-007E,U+00A0}, shared by
+ * the tools that take the text to subset for as code point ranges.
+ */
+public final class UnicodeRanges {
+
+  private UnicodeRanges() {
+    // utility class
+  }
+
+  /**
+   * Make the text holding every code point of a comma separated list of code
+   * points and ranges.
+   *
+   * @param ranges the code points and ranges
+   * @return the text
+   * @throws IllegalArgumentException if the list is malformed
+   */
+  public static String parse(String ranges) {
+    return parse(ranges, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Make the text holding every code point of a comma separated list of code
+   * points and ranges, failing before any text is built if the ranges add up to
+   * more code points than the limit. Code points in overlapping ranges are
+   * counted once for each range.
+   *
+   * @param ranges the code points and ranges
+   * @param maxCodePoints the largest number of code points to accept
+   * @return the text
+   * @throws IllegalArgumentException if the list is malformed or the ranges
+   *         hold more than maxCodePoints code points
+   */
+  public static String parse(String ranges, int maxCodePoints) {
+    String[] list = ranges.split(",");
+    int[] firsts = new int[list.length];
+    int[] lasts = new int[list.length];
+    long total = 0;
+    for (int i = 0; i < list.length; i++) {
+      String range = list[i].trim();
+      if (!range.startsWith("U+") && !range.startsWith("u+")) {
+        throw new IllegalArgumentException("bad unicode range " + range);
+      }
+      int dash = range.indexOf('-');
+      try {
+        firsts[i] = Integer.parseInt(range.substring(2, dash < 0 ? range.length() : dash), 16);
+        lasts[i] = dash < 0 ? firsts[i] : Integer.parseInt(range.substring(dash + 1), 16);
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("bad unicode range " + range);
+      }
+      if (firsts[i] < 0 || firsts[i] > lasts[i] || !Character.isValidCodePoint(lasts[i])) {
+        throw new IllegalArgumentException("bad unicode range " + range);
+      }
+      total += lasts[i] - firsts[i] + 1;
+      if (total > maxCodePoints) {
+        throw new IllegalArgumentException("unicode ranges hold more than " + maxCodePoints
+            + " code points");
+      }
+    }
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < list.length; i++) {
+      for (int c = firsts[i]; c <= lasts[i]; c++) {
+        text.appendCodePoint(c);
+      }
+    }
+    return text.toString();
+  }
+}
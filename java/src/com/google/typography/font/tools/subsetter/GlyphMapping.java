@@ -0,0 +1,121 @@
+/*
+ * Copyright 2011 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.typography.font.tools.subsetter;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The permutation between the glyph ids of a font and the glyph ids of its
+ * subset. The new glyph id of a glyph is its position in the list of glyphs to
+ * keep. Both directions of the mapping are held in primitive arrays.
+ */
+public final class GlyphMapping {
+
+  /**
+   * The value returned by {@link #newGlyphId(int)} for glyphs that are not kept.
+   */
+  public static final int NOT_MAPPED = -1;
+
+  private final int[] newToOld;
+  private final int[] oldToNew;
+
+  /**
+   * Constructor.
+   *
+   * @param newToOld the old glyph ids to keep in the order of their new glyph ids
+   */
+  public GlyphMapping(int[] newToOld) {
+    this.newToOld = Arrays.copyOf(newToOld, newToOld.length);
+    int maxOldGlyphId = -1;
+    for (int oldGlyphId : newToOld) {
+      if (oldGlyphId < 0) {
+        throw new IllegalArgumentException("Negative glyph id " + oldGlyphId);
+      }
+      maxOldGlyphId = Math.max(maxOldGlyphId, oldGlyphId);
+    }
+    this.oldToNew = new int[maxOldGlyphId + 1];
+    Arrays.fill(this.oldToNew, NOT_MAPPED);
+    for (int newGlyphId = 0; newGlyphId < newToOld.length; newGlyphId++) {
+      this.oldToNew[newToOld[newGlyphId]] = newGlyphId;
+    }
+  }
+
+  /**
+   * Gets the number of glyphs in the subset.
+   *
+   * @return the number of glyphs
+   */
+  public int size() {
+    return this.newToOld.length;
+  }
+
+  /**
+   * Gets the old glyph id for a glyph in the subset.
+   *
+   * @param newGlyphId the glyph id in the subset
+   * @return the glyph id in the original font
+   */
+  public int oldGlyphId(int newGlyphId) {
+    return this.newToOld[newGlyphId];
+  }
+
+  /**
+   * Gets the new glyph id for a glyph in the original font.
+   *
+   * @param oldGlyphId the glyph id in the original font
+   * @return the glyph id in the subset; {@link #NOT_MAPPED} if the glyph is not
+   *         kept
+   */
+  public int newGlyphId(int oldGlyphId) {
+    if (oldGlyphId < 0 || oldGlyphId >= this.oldToNew.length) {
+      return NOT_MAPPED;
+    }
+    return this.oldToNew[oldGlyphId];
+  }
+
+  /**
+   * Gets whether a glyph in the original font is kept in the subset.
+   *
+   * @param oldGlyphId the glyph id in the original font
+   * @return true if the glyph is kept
+   */
+  public boolean contains(int oldGlyphId) {
+    return this.newGlyphId(oldGlyphId) != NOT_MAPPED;
+  }
+
+  /**
+   * Gets a read only boxed view of the old glyph ids in the order of their new
+   * glyph ids.
+   *
+   * @return the list view
+   */
+  public List<Integer> asList() {
+    return new AbstractList<Integer>() {
+      @Override
+      public Integer get(int index) {
+        return GlyphMapping.this.newToOld[index];
+      }
+
+      @Override
+      public int size() {
+        return GlyphMapping.this.newToOld.length;
+      }
+    };
+  }
+}
@@ -68,6 +68,19 @@ public class GlyphRenumberer {
         : glyph;
   }
 
+  /**
+   * Apply a renumbering referenced glyphs in TrueType glyph data using the
+   * primitive glyph mapping of a subset.
+   *
+   * @return renumbered glyph data
+   * @see #renumberGlyph(ReadableFontData, Map)
+   */
+  public static ReadableFontData renumberGlyph(ReadableFontData glyph, GlyphMapping mapping) {
+    return isCompositeGlyph(glyph)
+        ? renumberCompositeGlyph(glyph, mapping)
+        : glyph;
+  }
+
   /**
    * Determine whether the glyph data is a composite glyph. Should always give the same answer
    * as {@code parsedGlyph instanceof GlyphTable.CompositeGlyph}, but faster.
@@ -97,6 +110,28 @@ public class GlyphRenumberer {
     return result;
   }
   
+  private static ReadableFontData renumberCompositeGlyph(ReadableFontData glyph,
+                                                         GlyphMapping mapping) {
+    WritableFontData result = WritableFontData.createWritableFontData(glyph.length());
+    glyph.copyTo(result);
+
+    int flags = CompositeGlyph.FLAG_MORE_COMPONENTS;
+    int index = Offset.headerEnd.offset;
+
+    while ((flags & CompositeGlyph.FLAG_MORE_COMPONENTS) != 0) {
+      flags = glyph.readUShort(index + Offset.compositeFlags.offset);
+      int oldGlyphIndex = glyph.readUShort(index + Offset.compositeGlyphIndex.offset);
+      int newGlyphIndex = mapping.newGlyphId(oldGlyphIndex);
+      if (newGlyphIndex == GlyphMapping.NOT_MAPPED) {
+        throw new IllegalArgumentException(
+            "Composite glyph component " + oldGlyphIndex + " is not in the subset.");
+      }
+      result.writeUShort(index + Offset.compositeGlyphIndex.offset, newGlyphIndex);
+      index += compositeReferenceSize(flags);
+    }
+    return result;
+  }
+
   /**
    * Compute the size, in bytes, of a single composite reference.
    */
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2011 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.typography.font.tools.subsetter;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * A set of glyph ids backed by a bit set. Iteration over the set, through
+ * {@link #nextGlyph(int)} or {@link #toArray()}, is in ascending glyph id order.
+ */
+public final class GlyphSet {
+
+  private final BitSet glyphs;
+
+  /**
+   * Constructor for an empty set.
+   */
+  public GlyphSet() {
+    this.glyphs = new BitSet();
+  }
+
+  /**
+   * Constructor for a set holding the glyph ids given.
+   *
+   * @param glyphIds the glyph ids to add to the set
+   */
+  public GlyphSet(int... glyphIds) {
+    this();
+    this.addAll(glyphIds);
+  }
+
+  /**
+   * Adds a glyph id to the set.
+   *
+   * @param glyphId the glyph id
+   * @return true if the glyph id was not already in the set
+   */
+  public boolean add(int glyphId) {
+    if (this.glyphs.get(glyphId)) {
+      return false;
+    }
+    this.glyphs.set(glyphId);
+    return true;
+  }
+
+  /**
+   * Adds the glyph ids to the set.
+   *
+   * @param glyphIds the glyph ids
+   */
+  public void addAll(int... glyphIds) {
+    for (int glyphId : glyphIds) {
+      this.glyphs.set(glyphId);
+    }
+  }
+
+  /**
+   * Adds all of the glyph ids in another set to this set.
+   *
+   * @param other the other set
+   */
+  public void addAll(GlyphSet other) {
+    this.glyphs.or(other.glyphs);
+  }
+
+  public boolean contains(int glyphId) {
+    return this.glyphs.get(glyphId);
+  }
+
+  public int size() {
+    return this.glyphs.cardinality();
+  }
+
+  public boolean isEmpty() {
+    return this.glyphs.isEmpty();
+  }
+
+  /**
+   * Gets the lowest glyph id in the set that is at or above the glyph id given.
+   *
+   * @param fromGlyphId the glyph id to start searching at
+   * @return the next glyph id; -1 if there are no more
+   */
+  public int nextGlyph(int fromGlyphId) {
+    return this.glyphs.nextSetBit(fromGlyphId);
+  }
+
+  /**
+   * Gets the glyph ids in the set in ascending order.
+   *
+   * @return the glyph ids
+   */
+  public int[] toArray() {
+    int[] glyphIds = new int[this.size()];
+    int i = 0;
+    for (int glyphId = this.glyphs.nextSetBit(0); glyphId >= 0;
+        glyphId = this.glyphs.nextSetBit(glyphId + 1)) {
+      glyphIds[i++] = glyphId;
+    }
+    return glyphIds;
+  }
+
+  /**
+   * Gets the glyph ids in the set in ascending order as a boxed list.
+   *
+   * @return the glyph ids
+   */
+  public List<Integer> toList() {
+    List<Integer> glyphIds = new ArrayList<Integer>(this.size());
+    for (int glyphId = this.glyphs.nextSetBit(0); glyphId >= 0;
+        glyphId = this.glyphs.nextSetBit(glyphId + 1)) {
+      glyphIds.add(glyphId);
+    }
+    return glyphIds;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof GlyphSet)) {
+      return false;
+    }
+    return this.glyphs.equals(((GlyphSet) obj).glyphs);
+  }
+
+  @Override
+  public int hashCode() {
+    return this.glyphs.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return this.glyphs.toString();
+  }
+}
@@ -26,7 +26,6 @@ import com.google.typography.font.sfntly.table.truetype.LocaTable;
 
 import java.io.IOException;
 import java.util.List;
-import java.util.Map;
 
 /**
  * @author Stuart Gill
@@ -50,8 +49,8 @@ public class GlyphTableSubsetter extends TableSubsetterImpl {
     if (DEBUG) {
       System.out.println("GlyphTableSubsetter.subset()");
     }
-    List<Integer> permutationTable = subsetter.glyphMappingTable();
-    if (permutationTable == null) {
+    GlyphMapping glyphMapping = subsetter.glyphMapping();
+    if (glyphMapping == null) {
       return false;
     }
 
@@ -67,17 +66,16 @@ public class GlyphTableSubsetter extends TableSubsetterImpl {
     if (glyphTableBuilder == null || locaTableBuilder == null) {
       throw new RuntimeException("Builder for subset is not valid.");
     }
-    Map<Integer, Integer> inverseMap = subsetter.getInverseMapping();
-
     List<Glyph.Builder<? extends Glyph>> glyphBuilders = glyphTableBuilder.glyphBuilders();
-    for (int oldGlyphId : permutationTable) {
+    for (int newGlyphId = 0; newGlyphId < glyphMapping.size(); newGlyphId++) {
+      int oldGlyphId = glyphMapping.oldGlyphId(newGlyphId);
       // TODO(stuartg): add subsetting individual glyph data - remove hints etc.
 
       int oldOffset = locaTable.glyphOffset(oldGlyphId);
       int oldLength = locaTable.glyphLength(oldGlyphId);
       Glyph glyph = glyphTable.glyph(oldOffset, oldLength);
       ReadableFontData data = glyph.readFontData();
-      ReadableFontData renumberedData = GlyphRenumberer.renumberGlyph(data, inverseMap);
+      ReadableFontData renumberedData = GlyphRenumberer.renumberGlyph(data, glyphMapping);
       Glyph.Builder<? extends Glyph> glyphBuilder = glyphTableBuilder.glyphBuilder(renumberedData);
       if (DEBUG) {
         System.out.println("\toldGlyphId = " + oldGlyphId);
@@ -37,15 +37,15 @@ public class HorizontalMetricsTableSubsetter extends TableSubsetterImpl {
   
   @Override
   public boolean subset(Subsetter subsetter, Font font, Builder fontBuilder) {
-    List<Integer> permutationTable = subsetter.glyphMappingTable();
-    if (permutationTable == null) {
+    GlyphMapping glyphMapping = subsetter.glyphMapping();
+    if (glyphMapping == null) {
       return false;
     }
     HorizontalMetricsTable origMetrics = font.getTable(Tag.hmtx);
     List<HorizontalMetricsTableBuilder.LongHorMetric> metrics =
-        new ArrayList<HorizontalMetricsTableBuilder.LongHorMetric>();
-    for (int i = 0; i < permutationTable.size(); i++) {
-      int origGlyphId = permutationTable.get(i);
+        new ArrayList<HorizontalMetricsTableBuilder.LongHorMetric>(glyphMapping.size());
+    for (int i = 0; i < glyphMapping.size(); i++) {
+      int origGlyphId = glyphMapping.oldGlyphId(i);
       int advanceWidth = origMetrics.advanceWidth(origGlyphId);
       int lsb = origMetrics.leftSideBearing(origGlyphId);
       metrics.add(new HorizontalMetricsTableBuilder.LongHorMetric(advanceWidth, lsb));
@@ -35,17 +35,17 @@ public class PostScriptTableSubsetter extends TableSubsetterImpl {
   
   @Override
   public boolean subset(Subsetter subsetter, Font font, Font.Builder fontBuilder) {
-    List<Integer> permutationTable = subsetter.glyphMappingTable();
-    if (permutationTable == null) {
+    GlyphMapping glyphMapping = subsetter.glyphMapping();
+    if (glyphMapping == null) {
       return false;
     }
     PostScriptTableBuilder postBuilder = new PostScriptTableBuilder();
     PostScriptTable post = font.getTable(Tag.post);
     postBuilder.initV1From(post);
     if (post.version() == 0x10000 || post.version() == 0x20000) {
-      List<String> names = new ArrayList<String>();
-      for (int i = 0; i < permutationTable.size(); i++) {
-        names.add(post.glyphName(permutationTable.get(i)));
+      List<String> names = new ArrayList<String>(glyphMapping.size());
+      for (int i = 0; i < glyphMapping.size(); i++) {
+        names.add(post.glyphName(glyphMapping.oldGlyphId(i)));
       }
       postBuilder.setNames(names);
     }
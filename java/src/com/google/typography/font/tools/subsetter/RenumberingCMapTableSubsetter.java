@@ -52,12 +52,12 @@ public class RenumberingCMapTableSubsetter extends TableSubsetterImpl {
     if (cmap4 == null) {
       throw new RuntimeException("CMap format 4 table in source font not found");
     }
-    Map<Integer, Integer> inverseMapping = subsetter.getInverseMapping();
+    GlyphMapping glyphMapping = subsetter.glyphMapping();
     Map<Integer, Integer> mapping = new HashMap<Integer, Integer>();
     for (Integer unicode : cmap4) {
-      int glyph = cmap4.glyphId(unicode);
-      if (inverseMapping.containsKey(glyph)) {
-        mapping.put(unicode, inverseMapping.get(glyph));
+      int newGlyph = glyphMapping.newGlyphId(cmap4.glyphId(unicode));
+      if (newGlyph != GlyphMapping.NOT_MAPPED) {
+        mapping.put(unicode, newGlyph);
       }
     }
     return mapping;
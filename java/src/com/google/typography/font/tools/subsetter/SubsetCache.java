@@ -0,0 +1,794 @@
+/*
+ * Copyright 2011 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.typography.font.tools.subsetter;
+
+import com.google.typography.font.sfntly.Font;
+import com.google.typography.font.sfntly.table.core.CMapTable.CMapId;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cache of serialized subset fonts keyed by the content of the request.
+ *
+ * A request is identified by a {@link Key} made from the digest of the source
+ * font, the glyphs kept, the cmaps kept, the tables removed and the output
+ * format. The cache looks a request up in each of its {@link Tier}s in turn and
+ * copies a result found in a lower tier into the tiers above it. A request that
+ * is in no tier is computed by the loader given and stored in every tier.
+ * Concurrent requests for the same key share a single computation.
+ *
+ * The byte arrays returned by the cache are shared and must not be modified.
+ *
+ * The cache is safe for use by multiple threads.
+ */
+public final class SubsetCache {
+
+  /**
+   * The serialized form of a subset font. Settings of the writer for a format
+   * that change its output, such as a compression level, are given to the
+   * {@link Key} as writer options.
+   */
+  public enum Format {
+    /** An uncompressed TrueType or OpenType font. */
+    TTF,
+    WOFF,
+    /** An EOT holding the uncompressed font. */
+    EOT,
+    WOFF2,
+    /** An EOT holding the font compressed with MicroType Express. */
+    MTX;
+  }
+
+  /**
+   * A level of storage for cached subsets. Tiers must be safe for use by
+   * multiple threads.
+   */
+  public interface Tier {
+    /**
+     * Gets the subset stored for the key.
+     *
+     * @param key the request key
+     * @return the serialized subset; null if the tier has none for the key
+     * @throws IOException if there is an error reading the subset
+     */
+    byte[] get(Key key) throws IOException;
+
+    /**
+     * Stores the subset for the key.
+     *
+     * @param key the request key
+     * @param value the serialized subset
+     * @throws IOException if there is an error writing the subset
+     */
+    void put(Key key, byte[] value) throws IOException;
+
+    /**
+     * Gets the number of subsets that have been evicted to stay within the
+     * maximum size of the tier.
+     *
+     * @return the eviction count
+     */
+    long evictionCount();
+  }
+
+  /**
+   * The identity of a subset request. Keys are immutable.
+   */
+  public static final class Key {
+    private final byte[] fontDigest;
+    private final GlyphSet glyphs;
+    private final List<CMapId> cmapIds;
+    private final SortedSet<Integer> removeTables;
+    private final Format format;
+    private final String writerOptions;
+    private final int hashCode;
+
+    /**
+     * Constructor for a subset written with the default settings of the
+     * writer for the format.
+     *
+     * @param fontDigest the digest of the source font
+     * @param glyphs the glyphs kept in the subset
+     * @param cmapIds the cmaps kept in the subset, in order of priority
+     * @param removeTables the tags of the tables removed from the subset
+     * @param format the serialized form of the subset
+     */
+    public Key(byte[] fontDigest, GlyphSet glyphs, List<CMapId> cmapIds,
+        Set<Integer> removeTables, Format format) {
+      this(fontDigest, glyphs, cmapIds, removeTables, format, "");
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param fontDigest the digest of the source font
+     * @param glyphs the glyphs kept in the subset
+     * @param cmapIds the cmaps kept in the subset, in order of priority
+     * @param removeTables the tags of the tables removed from the subset
+     * @param format the serialized form of the subset
+     * @param writerOptions a description of every setting of the writer that
+     *        changes its output, such as {@code "level=4"}; empty for the
+     *        default settings
+     */
+    public Key(byte[] fontDigest, GlyphSet glyphs, List<CMapId> cmapIds,
+        Set<Integer> removeTables, Format format, String writerOptions) {
+      if (fontDigest == null) {
+        throw new IllegalArgumentException("A font digest is needed.");
+      }
+      if (format == null || writerOptions == null) {
+        throw new IllegalArgumentException("A format and writer options are needed.");
+      }
+      this.fontDigest = Arrays.copyOf(fontDigest, fontDigest.length);
+      this.glyphs = new GlyphSet();
+      this.glyphs.addAll(glyphs);
+      this.cmapIds = Collections.unmodifiableList(new ArrayList<CMapId>(cmapIds));
+      this.removeTables = Collections.unmodifiableSortedSet(new TreeSet<Integer>(removeTables));
+      this.format = format;
+      this.writerOptions = writerOptions;
+      int hash = Arrays.hashCode(this.fontDigest);
+      hash = 31 * hash + this.glyphs.hashCode();
+      hash = 31 * hash + this.cmapIds.hashCode();
+      hash = 31 * hash + this.removeTables.hashCode();
+      hash = 31 * hash + this.format.hashCode();
+      hash = 31 * hash + this.writerOptions.hashCode();
+      this.hashCode = hash;
+    }
+
+    /**
+     * Creates a key for a subset of the font given. The font must have been
+     * loaded with fingerprinting turned on.
+     *
+     * @param font the source font
+     * @param glyphs the glyphs kept in the subset
+     * @param cmapIds the cmaps kept in the subset, in order of priority
+     * @param removeTables the tags of the tables removed from the subset
+     * @param format the serialized form of the subset
+     * @return the key
+     * @throws IllegalArgumentException if the font has no digest
+     * @see com.google.typography.font.sfntly.FontFactory#fingerprintFont(boolean)
+     */
+    public static Key forFont(Font font, GlyphSet glyphs, List<CMapId> cmapIds,
+        Set<Integer> removeTables, Format format) {
+      return new Key(font.digest(), glyphs, cmapIds, removeTables, format);
+    }
+
+    /**
+     * Creates a key for a subset of the font given, written with the writer
+     * settings described. The font must have been loaded with fingerprinting
+     * turned on.
+     *
+     * @param font the source font
+     * @param glyphs the glyphs kept in the subset
+     * @param cmapIds the cmaps kept in the subset, in order of priority
+     * @param removeTables the tags of the tables removed from the subset
+     * @param format the serialized form of the subset
+     * @param writerOptions a description of every setting of the writer that
+     *        changes its output; empty for the default settings
+     * @return the key
+     * @throws IllegalArgumentException if the font has no digest
+     */
+    public static Key forFont(Font font, GlyphSet glyphs, List<CMapId> cmapIds,
+        Set<Integer> removeTables, Format format, String writerOptions) {
+      return new Key(font.digest(), glyphs, cmapIds, removeTables, format, writerOptions);
+    }
+
+    /**
+     * Gets the serialized form of the subset.
+     *
+     * @return the format
+     */
+    public Format format() {
+      return this.format;
+    }
+
+    /**
+     * Gets the description of the writer settings for the subset.
+     *
+     * @return the writer options; empty for the default settings
+     */
+    public String writerOptions() {
+      return this.writerOptions;
+    }
+
+    /**
+     * Gets a SHA-1 digest of the key as a hexadecimal string. The string is
+     * stable across processes and is suitable as a file name.
+     *
+     * @return the key digest
+     */
+    public String hexDigest() {
+      ByteArrayOutputStream bos = new ByteArrayOutputStream();
+      DataOutputStream dos = new DataOutputStream(bos);
+      MessageDigest digest;
+      try {
+        dos.write(this.fontDigest);
+        dos.writeInt(this.glyphs.size());
+        for (int glyphId = this.glyphs.nextGlyph(0); glyphId >= 0;
+            glyphId = this.glyphs.nextGlyph(glyphId + 1)) {
+          dos.writeInt(glyphId);
+        }
+        dos.writeInt(this.cmapIds.size());
+        for (CMapId cmapId : this.cmapIds) {
+          dos.writeShort(cmapId.platformId());
+          dos.writeShort(cmapId.encodingId());
+        }
+        dos.writeInt(this.removeTables.size());
+        for (int tag : this.removeTables) {
+          dos.writeInt(tag);
+        }
+        dos.writeInt(this.format.ordinal());
+        // keys with the default settings keep the digests they had before writer options
+        if (this.writerOptions.length() > 0) {
+          dos.writeUTF(this.writerOptions);
+        }
+        digest = MessageDigest.getInstance("SHA-1");
+      } catch (IOException e) {
+        throw new RuntimeException("Unable to write key.", e);
+      } catch (NoSuchAlgorithmException e) {
+        throw new RuntimeException("Unable to get requested message digest algorithm.", e);
+      }
+      StringBuilder sb = new StringBuilder();
+      for (byte b : digest.digest(bos.toByteArray())) {
+        sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+        sb.append(Character.forDigit(b & 0xf, 16));
+      }
+      return sb.toString();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return this.hashCode == other.hashCode
+          && Arrays.equals(this.fontDigest, other.fontDigest)
+          && this.glyphs.equals(other.glyphs)
+          && this.cmapIds.equals(other.cmapIds)
+          && this.removeTables.equals(other.removeTables)
+          && this.format == other.format
+          && this.writerOptions.equals(other.writerOptions);
+    }
+
+    @Override
+    public int hashCode() {
+      return this.hashCode;
+    }
+
+    @Override
+    public String toString() {
+      return "Key[glyphs=" + this.glyphs.size() + ", cmaps=" + this.cmapIds
+          + ", removeTables=" + this.removeTables.size() + ", format=" + this.format
+          + (this.writerOptions.length() > 0 ? ", writerOptions=" + this.writerOptions : "")
+          + "]";
+    }
+  }
+
+  /**
+   * A tier that keeps subsets in memory up to a total number of bytes and
+   * evicts the least recently used subsets beyond that.
+   */
+  public static final class MemoryTier implements Tier {
+    private final long maximumBytes;
+
+    // all guarded by the cache lock
+    private final LinkedHashMap<Key, byte[]> cache;
+    private long bytes;
+    private long evictionCount;
+
+    /**
+     * Constructor.
+     *
+     * @param maximumBytes the maximum total size of the subsets kept
+     */
+    public MemoryTier(long maximumBytes) {
+      if (maximumBytes < 0) {
+        throw new IllegalArgumentException("Negative maximum size " + maximumBytes);
+      }
+      this.maximumBytes = maximumBytes;
+      this.cache = new LinkedHashMap<Key, byte[]>(16, 0.75f, true);
+    }
+
+    @Override
+    public byte[] get(Key key) {
+      synchronized (this.cache) {
+        return this.cache.get(key);
+      }
+    }
+
+    @Override
+    public void put(Key key, byte[] value) {
+      if (value.length > this.maximumBytes) {
+        return;
+      }
+      synchronized (this.cache) {
+        byte[] old = this.cache.put(key, value);
+        if (old != null) {
+          this.bytes -= old.length;
+        }
+        this.bytes += value.length;
+        while (this.bytes > this.maximumBytes) {
+          Map.Entry<Key, byte[]> eldest = this.cache.entrySet().iterator().next();
+          this.bytes -= eldest.getValue().length;
+          this.cache.remove(eldest.getKey());
+          this.evictionCount++;
+        }
+      }
+    }
+
+    /**
+     * Gets the number of subsets held.
+     *
+     * @return the number of subsets
+     */
+    public int size() {
+      synchronized (this.cache) {
+        return this.cache.size();
+      }
+    }
+
+    /**
+     * Gets the total size of the subsets held.
+     *
+     * @return the size in bytes
+     */
+    public long bytes() {
+      synchronized (this.cache) {
+        return this.bytes;
+      }
+    }
+
+    @Override
+    public long evictionCount() {
+      synchronized (this.cache) {
+        return this.evictionCount;
+      }
+    }
+
+    @Override
+    public String toString() {
+      synchronized (this.cache) {
+        return "MemoryTier[size=" + this.cache.size() + ", bytes=" + this.bytes
+            + ", maximumBytes=" + this.maximumBytes + ", evictions=" + this.evictionCount + "]";
+      }
+    }
+  }
+
+  /**
+   * A tier that keeps each subset in a file in a directory up to a total
+   * number of bytes and deletes the least recently used subsets beyond that.
+   * The file is named by the {@link Key#hexDigest()} of its key. Files are
+   * written under a temporary name and then renamed so readers never see a
+   * partial subset. Subsets already in the directory are adopted when the tier
+   * is created, oldest first, so they are the first to be deleted.
+   *
+   * The recency of use is only tracked within the process, so a directory
+   * should not be shared by tiers in more than one process.
+   */
+  public static final class DiskTier implements Tier {
+    private static final String SUFFIX = ".subset";
+
+    private final File directory;
+    private final long maximumBytes;
+
+    // all guarded by the files lock; maps file name to file length
+    private final LinkedHashMap<String, Long> files;
+    private long bytes;
+    private long evictionCount;
+
+    /**
+     * Constructor.
+     *
+     * @param directory the directory to keep subsets in; created if missing
+     * @param maximumBytes the maximum total size of the subset files kept
+     * @throws IOException if the directory can't be created
+     */
+    public DiskTier(File directory, long maximumBytes) throws IOException {
+      if (maximumBytes < 0) {
+        throw new IllegalArgumentException("Negative maximum size " + maximumBytes);
+      }
+      if (!directory.isDirectory() && !directory.mkdirs()) {
+        throw new IOException("Unable to create cache directory " + directory);
+      }
+      this.directory = directory;
+      this.maximumBytes = maximumBytes;
+      this.files = new LinkedHashMap<String, Long>(16, 0.75f, true);
+      File[] existing = directory.listFiles(new FilenameFilter() {
+        @Override
+        public boolean accept(File dir, String name) {
+          return name.endsWith(SUFFIX);
+        }
+      });
+      if (existing == null) {
+        throw new IOException("Unable to list cache directory " + directory);
+      }
+      Arrays.sort(existing, new Comparator<File>() {
+        @Override
+        public int compare(File f1, File f2) {
+          long m1 = f1.lastModified();
+          long m2 = f2.lastModified();
+          return m1 < m2 ? -1 : (m1 > m2 ? 1 : 0);
+        }
+      });
+      synchronized (this.files) {
+        for (File file : existing) {
+          this.add(file.getName(), file.length());
+        }
+        this.evict();
+      }
+    }
+
+    @Override
+    public byte[] get(Key key) throws IOException {
+      String name = key.hexDigest() + SUFFIX;
+      File file = new File(this.directory, name);
+      InputStream is;
+      try {
+        is = new FileInputStream(file);
+      } catch (FileNotFoundException e) {
+        synchronized (this.files) {
+          Long length = this.files.remove(name);
+          if (length != null) {
+            this.bytes -= length;
+          }
+        }
+        return null;
+      }
+      try {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream((int) file.length());
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = is.read(buffer)) != -1) {
+          bos.write(buffer, 0, read);
+        }
+        synchronized (this.files) {
+          // marks the subset as most recently used
+          this.files.get(name);
+        }
+        return bos.toByteArray();
+      } finally {
+        is.close();
+      }
+    }
+
+    @Override
+    public void put(Key key, byte[] value) throws IOException {
+      if (value.length > this.maximumBytes) {
+        return;
+      }
+      String digest = key.hexDigest();
+      String name = digest + SUFFIX;
+      File temp = File.createTempFile(digest, ".tmp", this.directory);
+      try {
+        OutputStream os = new FileOutputStream(temp);
+        try {
+          os.write(value);
+        } finally {
+          os.close();
+        }
+        File file = new File(this.directory, name);
+        // renamed under the lock so an eviction can't delete the new file
+        synchronized (this.files) {
+          if (!temp.renameTo(file)) {
+            // another writer may have stored the same subset first
+            if (!file.exists()) {
+              throw new IOException("Unable to rename " + temp + " to " + file);
+            }
+          }
+          this.add(name, file.length());
+          this.evict();
+        }
+      } finally {
+        temp.delete();
+      }
+    }
+
+    // must hold the files lock
+    private void add(String name, long length) {
+      Long old = this.files.put(name, length);
+      if (old != null) {
+        this.bytes -= old;
+      }
+      this.bytes += length;
+    }
+
+    // must hold the files lock
+    private void evict() {
+      Iterator<Map.Entry<String, Long>> i = this.files.entrySet().iterator();
+      while (this.bytes > this.maximumBytes && i.hasNext()) {
+        Map.Entry<String, Long> eldest = i.next();
+        i.remove();
+        this.bytes -= eldest.getValue();
+        this.evictionCount++;
+        // a reader that has the file open still gets the whole subset on most platforms
+        new File(this.directory, eldest.getKey()).delete();
+      }
+    }
+
+    /**
+     * Gets the number of subset files held.
+     *
+     * @return the number of subsets
+     */
+    public int size() {
+      synchronized (this.files) {
+        return this.files.size();
+      }
+    }
+
+    /**
+     * Gets the total size of the subset files held.
+     *
+     * @return the size in bytes
+     */
+    public long bytes() {
+      synchronized (this.files) {
+        return this.bytes;
+      }
+    }
+
+    @Override
+    public long evictionCount() {
+      synchronized (this.files) {
+        return this.evictionCount;
+      }
+    }
+
+    @Override
+    public String toString() {
+      synchronized (this.files) {
+        return "DiskTier[" + this.directory + ", size=" + this.files.size() + ", bytes="
+            + this.bytes + ", maximumBytes=" + this.maximumBytes + ", evictions="
+            + this.evictionCount + "]";
+      }
+    }
+  }
+
+  private final Tier[] tiers;
+  private final ConcurrentMap<Key, FutureTask<byte[]>> inFlight =
+      new ConcurrentHashMap<Key, FutureTask<byte[]>>();
+  private final AtomicLong[] tierHitCounts;
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong sharedLoadCount = new AtomicLong();
+
+  /**
+   * Constructor.
+   *
+   * @param tiers the tiers to look subsets up in, fastest first
+   */
+  public SubsetCache(Tier... tiers) {
+    this.tiers = Arrays.copyOf(tiers, tiers.length);
+    this.tierHitCounts = new AtomicLong[tiers.length];
+    for (int i = 0; i < tiers.length; i++) {
+      this.tierHitCounts[i] = new AtomicLong();
+    }
+  }
+
+  /**
+   * Gets the subset for the key. If no tier holds the subset then it is
+   * computed with the loader and stored in every tier. If another thread is
+   * already computing the subset for the same key then this waits for and
+   * returns that result.
+   *
+   * @param key the request key
+   * @param loader computes the serialized subset for the key
+   * @return the serialized subset
+   * @throws IOException if a tier or the loader fails
+   */
+  public byte[] get(Key key, Callable<byte[]> loader) throws IOException {
+    byte[] value = this.lookup(key);
+    if (value != null) {
+      return value;
+    }
+    FutureTask<byte[]> task = new FutureTask<byte[]>(new LoadTask(key, loader));
+    FutureTask<byte[]> running = this.inFlight.putIfAbsent(key, task);
+    if (running == null) {
+      try {
+        task.run();
+      } finally {
+        this.inFlight.remove(key, task);
+      }
+      running = task;
+    } else {
+      this.sharedLoadCount.incrementAndGet();
+    }
+    return result(running);
+  }
+
+  /**
+   * Gets the number of requests that were answered by the tier given.
+   *
+   * @param tier the index of the tier
+   * @return the hit count
+   */
+  public long hitCount(int tier) {
+    return this.tierHitCounts[tier].get();
+  }
+
+  /**
+   * Gets the number of requests that were answered by any tier.
+   *
+   * @return the hit count
+   */
+  public long hitCount() {
+    long hits = 0;
+    for (AtomicLong count : this.tierHitCounts) {
+      hits += count.get();
+    }
+    return hits;
+  }
+
+  /**
+   * Gets the number of tiers.
+   *
+   * @return the number of tiers
+   */
+  public int numTiers() {
+    return this.tiers.length;
+  }
+
+  /**
+   * Gets the number of subsets that the tier given has evicted.
+   *
+   * @param tier the index of the tier
+   * @return the eviction count
+   */
+  public long evictionCount(int tier) {
+    return this.tiers[tier].evictionCount();
+  }
+
+  /**
+   * Gets the number of subsets that all tiers have evicted.
+   *
+   * @return the eviction count
+   */
+  public long evictionCount() {
+    long evictions = 0;
+    for (Tier tier : this.tiers) {
+      evictions += tier.evictionCount();
+    }
+    return evictions;
+  }
+
+  /**
+   * Gets the number of requests that were computed by their loader.
+   *
+   * @return the miss count
+   */
+  public long missCount() {
+    return this.missCount.get();
+  }
+
+  /**
+   * Gets the number of requests that waited for the computation of another
+   * request for the same key instead of computing the subset again.
+   *
+   * @return the shared load count
+   */
+  public long sharedLoadCount() {
+    return this.sharedLoadCount.get();
+  }
+
+  @Override
+  public String toString() {
+    return "SubsetCache[hits=" + this.hitCount() + ", misses=" + this.missCount()
+        + ", sharedLoads=" + this.sharedLoadCount() + ", evictions=" + this.evictionCount()
+        + ", tiers=" + Arrays.toString(this.tiers) + "]";
+  }
+
+  private byte[] lookup(Key key) throws IOException {
+    for (int i = 0; i < this.tiers.length; i++) {
+      byte[] value = this.tiers[i].get(key);
+      if (value != null) {
+        this.tierHitCounts[i].incrementAndGet();
+        for (int upper = 0; upper < i; upper++) {
+          this.tiers[upper].put(key, value);
+        }
+        return value;
+      }
+    }
+    return null;
+  }
+
+  private static byte[] result(FutureTask<byte[]> task) throws IOException {
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          return task.get();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IOException("Unable to compute subset.", cause);
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private final class LoadTask implements Callable<byte[]> {
+    private final Key key;
+    private final Callable<byte[]> loader;
+
+    LoadTask(Key key, Callable<byte[]> loader) {
+      this.key = key;
+      this.loader = loader;
+    }
+
+    @Override
+    public byte[] call() throws Exception {
+      // a load for the same key may have finished since the first lookup
+      byte[] value = SubsetCache.this.lookup(this.key);
+      if (value != null) {
+        return value;
+      }
+      SubsetCache.this.missCount.incrementAndGet();
+      value = this.loader.call();
+      if (value == null) {
+        throw new IOException("Subset loader returned no subset.");
+      }
+      for (Tier tier : SubsetCache.this.tiers) {
+        tier.put(this.key, value);
+      }
+      return value;
+    }
+  }
+}
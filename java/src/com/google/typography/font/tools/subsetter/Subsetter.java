@@ -50,10 +50,10 @@ public class Subsetter {
 
   // settings from user
   private Set<Integer> removeTables;
-  private List<Integer> newToOldGlyphs;
+  private GlyphMapping glyphMapping;
   private List<CMapTable.CMapId> cmapIds;
 
-  // inverse of mapping, computed lazily
+  // boxed inverse of mapping, computed lazily
   private Map<Integer, Integer> oldToNewGlyphs = null;
 
   protected Subsetter(Font font, FontFactory fontFactory) {
@@ -61,8 +61,40 @@ public class Subsetter {
     this.fontFactory = fontFactory;
   }
 
+  /**
+   * Set the glyphs to keep in the subsetted font. The glyphs are renumbered in
+   * the order given.
+   *
+   * @param glyphs the old glyph ids in the order of their new glyph ids
+   */
   public void setGlyphs(List<Integer> glyphs) {
-    this.newToOldGlyphs = new ArrayList<Integer>(glyphs);
+    int[] newToOld = new int[glyphs.size()];
+    int i = 0;
+    for (int glyph : glyphs) {
+      newToOld[i++] = glyph;
+    }
+    this.setGlyphs(newToOld);
+  }
+
+  /**
+   * Set the glyphs to keep in the subsetted font. The glyphs are renumbered in
+   * the order given.
+   *
+   * @param glyphs the old glyph ids in the order of their new glyph ids
+   */
+  public void setGlyphs(int[] glyphs) {
+    this.glyphMapping = new GlyphMapping(glyphs);
+    this.oldToNewGlyphs = null;
+  }
+
+  /**
+   * Set the glyphs to keep in the subsetted font. The glyphs keep their
+   * relative order.
+   *
+   * @param glyphs the old glyph ids
+   */
+  public void setGlyphs(GlyphSet glyphs) {
+    this.setGlyphs(glyphs.toArray());
   }
 
   /**
@@ -135,19 +167,29 @@ public class Subsetter {
     for (Integer tag : tableTags) {
       Table table = this.font.getTable(tag);
       if (table != null) {
+        // the passed through table shares the source font's data
         fontBuilder.newTableBuilder(tag, table.readFontData());
       }
     }
     return fontBuilder;
   }
 
+  /**
+   * Get the mapping between the old glyph ids and the new glyph ids.
+   *
+   * @return the glyph mapping; null if no glyphs have been set
+   */
+  GlyphMapping glyphMapping() {
+    return this.glyphMapping;
+  }
+
   /**
    * Get the permutation table of the old glyph id to the new glyph id.
    *
    * @return the permutation table
    */
   List<Integer> glyphMappingTable() {
-    return this.newToOldGlyphs;
+    return this.glyphMapping == null ? null : this.glyphMapping.asList();
   }
 
   /**
@@ -158,9 +200,8 @@ public class Subsetter {
   Map<Integer, Integer> getInverseMapping() {
     if (oldToNewGlyphs == null) {
       oldToNewGlyphs = new HashMap<Integer, Integer>();
-      List<Integer> mapping = glyphMappingTable();
-      for (int i = 0; i < mapping.size(); i++) {
-        oldToNewGlyphs.put(mapping.get(i), i);
+      for (int i = 0; i < this.glyphMapping.size(); i++) {
+        oldToNewGlyphs.put(this.glyphMapping.oldGlyphId(i), i);
       }
     }
     return oldToNewGlyphs;
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2011 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.typography.font.sfntly;
+
+import com.google.typography.font.sfntly.table.core.CMap;
+import com.google.typography.font.sfntly.table.core.CMapTable;
+import com.google.typography.font.sfntly.table.core.CompiledCMap;
+import com.google.typography.font.sfntly.testutils.TestFont;
+import com.google.typography.font.sfntly.testutils.TestFontUtils;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+
+/**
+ * Tests that the compiled lookup view of a cmap maps characters the same way
+ * as the cmap itself.
+ */
+public class CMapLookupTests extends TestCase {
+
+  private static final File[] TEST_FONT_FILES = {
+      TestFont.TestFontNames.OPENSANS.getFile(),
+      TestFont.TestFontNames.ROBOTO.getFile()};
+
+  public void testCompiledLookup() throws Exception {
+    for (File fontFile : TEST_FONT_FILES) {
+      Font font = TestFontUtils.loadFont(fontFile)[0];
+      CMapTable cmapTable = font.getTable(Tag.cmap);
+      for (CMap cmap : cmapTable) {
+        CompiledCMap compiled = cmap.compiled();
+        assertSame(compiled, cmap.compiled());
+        assertSame(cmap, compiled.cmap());
+        for (int c = 0; c <= 0x10ffff; c++) {
+          assertEquals(cmap.glyphId(c), compiled.glyphId(c));
+        }
+        assertEquals(cmap.glyphId(0x110000), compiled.glyphId(0x110000));
+      }
+    }
+  }
+
+  public void testCompiledViewIsKept() throws Exception {
+    Font font = TestFontUtils.loadFont(TestFont.TestFontNames.ROBOTO.getFile())[0];
+    CMapTable cmapTable = font.getTable(Tag.cmap);
+    int index = 0;
+    for (CMap cmap : cmapTable) {
+      assertSame(cmap, cmapTable.cmap(index++));
+      assertSame(cmap, cmapTable.cmap(cmap.cmapId()));
+      assertSame(cmap.compiled(), cmapTable.cmap(cmap.cmapId()).compiled());
+    }
+    assertEquals(cmapTable.numCMaps(), index);
+  }
+}
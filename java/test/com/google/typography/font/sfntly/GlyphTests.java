@@ -18,11 +18,13 @@ package com.google.typography.font.sfntly;
 
 import com.google.typography.font.sfntly.Font.PlatformId;
 import com.google.typography.font.sfntly.Font.WindowsEncodingId;
+import com.google.typography.font.sfntly.data.ReadableFontData;
 import com.google.typography.font.sfntly.table.core.CMap;
 import com.google.typography.font.sfntly.table.core.CMapTable;
 import com.google.typography.font.sfntly.table.truetype.Glyph;
 import com.google.typography.font.sfntly.table.truetype.GlyphTable;
 import com.google.typography.font.sfntly.table.truetype.LocaTable;
+import com.google.typography.font.sfntly.table.truetype.SimpleGlyph;
 import com.google.typography.font.sfntly.testutils.TestFont;
 import com.google.typography.font.sfntly.testutils.TestFontUtils;
 import com.google.typography.font.sfntly.testutils.TestUtils;
@@ -31,6 +33,8 @@ import junit.framework.TestCase;
 
 import java.io.File;
 import java.nio.charset.CharsetEncoder;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * @author Stuart Gill
@@ -103,6 +107,147 @@ public class GlyphTests extends TestCase {
     }
   }
 
+  public void testPointVisitor() throws Exception {
+    TestFont.TestFontNames[] fontNames =
+        {TestFont.TestFontNames.OPENSANS, TestFont.TestFontNames.ROBOTO};
+    for (TestFont.TestFontNames fontName : fontNames) {
+      Font font = TestFontUtils.loadFont(fontName.getFile())[0];
+      LocaTable locaTable = font.getTable(Tag.loca);
+      GlyphTable glyphTable = font.getTable(Tag.glyf);
+      for (int glyphId = 0; glyphId < locaTable.numGlyphs(); glyphId++) {
+        int offset = locaTable.glyphOffset(glyphId);
+        int length = locaTable.glyphLength(glyphId);
+        Glyph glyph = glyphTable.glyph(offset, length);
+        if (length == 0 || !(glyph instanceof SimpleGlyph)) {
+          continue;
+        }
+        SimpleGlyph simpleGlyph = (SimpleGlyph) glyph;
+        final List<int[]> points = new ArrayList<int[]>();
+        simpleGlyph.visitPoints(new SimpleGlyph.PointVisitor() {
+          @Override
+          public void visitPoint(int contour, int point, int x, int y, boolean onCurve) {
+            points.add(new int[] {contour, point, x, y, onCurve ? 1 : 0});
+          }
+        });
+        short[] packed = simpleGlyph.packedCoordinates();
+
+        // the visitor, the point accessors and the packed coordinates all match a decoding
+        // of the glyph data that doesn't use SimpleGlyph
+        int[][] expected = decodePoints(glyphTable.readFontData(), offset);
+        assertEquals(expected.length, simpleGlyph.numberOfPoints());
+        assertEquals(expected.length, points.size());
+        assertEquals(2 * expected.length, packed.length);
+        int index = 0;
+        for (int contour = 0; contour < simpleGlyph.numberOfContours(); contour++) {
+          for (int point = 0; point < simpleGlyph.numberOfPoints(contour); point++, index++) {
+            String message = fontName + " glyph " + glyphId + " point " + index;
+            int[] visited = points.get(index);
+            assertEquals(message, contour, visited[0]);
+            assertEquals(message, point, visited[1]);
+            assertEquals(message, expected[index][0], visited[2]);
+            assertEquals(message, expected[index][1], visited[3]);
+            assertEquals(message, expected[index][2], visited[4]);
+            assertEquals(message, expected[index][0], simpleGlyph.xCoordinate(contour, point));
+            assertEquals(message, expected[index][1], simpleGlyph.yCoordinate(contour, point));
+            assertEquals(message, expected[index][2] == 1, simpleGlyph.onCurve(contour, point));
+            assertEquals(message, (short) expected[index][0], packed[2 * index]);
+            assertEquals(message, (short) expected[index][1], packed[2 * index + 1]);
+          }
+        }
+        assertEquals(expected.length, index);
+      }
+    }
+  }
+
+  public void testKnownGlyphPoints() throws Exception {
+    Font font = TestFontUtils.loadFont(TestFont.TestFontNames.OPENSANS.getFile())[0];
+    // x, y and 1 for a point on the curve, by contour
+    assertPoints(font, 'L', new int[][][] {{
+        {201, 0, 1}, {201, 1462, 1}, {371, 1462, 1}, {371, 154, 1}, {1016, 154, 1},
+        {1016, 0, 1}}});
+    assertPoints(font, '.', new int[][][] {{
+        {152, 106, 1}, {152, 173, 0}, {213, 242, 0}, {270, 242, 1}, {328, 242, 0},
+        {393, 173, 0}, {393, 106, 1}, {393, 41, 0}, {327, -29, 0}, {270, -29, 1},
+        {219, -29, 0}, {152, 34, 0}}});
+    assertPoints(font, 'o', new int[][][] {{
+        {1122, 549, 1}, {1122, 281, 0}, {852, -20, 0}, {614, -20, 1}, {467, -20, 0},
+        {239, 118, 0}, {115, 376, 0}, {115, 549, 1}, {115, 817, 0}, {383, 1116, 0},
+        {621, 1116, 1}, {851, 1116, 0}, {1122, 810, 0}}, {
+        {287, 549, 1}, {287, 339, 0}, {455, 119, 0}, {618, 119, 1}, {781, 119, 0},
+        {950, 338, 0}, {950, 549, 1}, {950, 758, 0}, {781, 975, 0}, {616, 975, 1},
+        {453, 975, 0}, {287, 761, 0}}});
+  }
+
+  private static void assertPoints(Font font, char c, int[][][] expected) {
+    CMapTable cmapTable = font.getTable(Tag.cmap);
+    LocaTable locaTable = font.getTable(Tag.loca);
+    GlyphTable glyphTable = font.getTable(Tag.glyf);
+    int glyphId = cmapTable.cmap(
+        PlatformId.Windows.value(), WindowsEncodingId.UnicodeUCS2.value()).glyphId(c);
+    SimpleGlyph glyph = (SimpleGlyph) glyphTable.glyph(
+        locaTable.glyphOffset(glyphId), locaTable.glyphLength(glyphId));
+    assertEquals(expected.length, glyph.numberOfContours());
+    for (int contour = 0; contour < expected.length; contour++) {
+      assertEquals(expected[contour].length, glyph.numberOfPoints(contour));
+      for (int point = 0; point < expected[contour].length; point++) {
+        String message = c + " contour " + contour + " point " + point;
+        assertEquals(message, expected[contour][point][0], glyph.xCoordinate(contour, point));
+        assertEquals(message, expected[contour][point][1], glyph.yCoordinate(contour, point));
+        assertEquals(message, expected[contour][point][2] == 1, glyph.onCurve(contour, point));
+      }
+    }
+  }
+
+  /**
+   * Decodes the points of a simple glyph straight from the glyf data, as laid out in the
+   * TrueType specification.
+   *
+   * @return x, y and 1 for on curve or 0 for off curve, for each point
+   */
+  private static int[][] decodePoints(ReadableFontData data, int offset) {
+    int numberOfContours = data.readShort(offset);
+    int pos = offset + 10;
+    int numberOfPoints = 0;
+    for (int contour = 0; contour < numberOfContours; contour++, pos += 2) {
+      numberOfPoints = data.readUShort(pos) + 1;
+    }
+    pos += 2 + data.readUShort(pos);
+
+    int[] flags = new int[numberOfPoints];
+    for (int point = 0; point < numberOfPoints;) {
+      int flag = data.readUByte(pos++);
+      int repeat = (flag & 0x08) != 0 ? data.readUByte(pos++) : 0;
+      for (int i = 0; i <= repeat; i++) {
+        flags[point++] = flag;
+      }
+    }
+    int[][] points = new int[numberOfPoints][3];
+    int x = 0;
+    for (int point = 0; point < numberOfPoints; point++) {
+      if ((flags[point] & 0x02) != 0) {
+        int dx = data.readUByte(pos++);
+        x += (flags[point] & 0x10) != 0 ? dx : -dx;
+      } else if ((flags[point] & 0x10) == 0) {
+        x += data.readShort(pos);
+        pos += 2;
+      }
+      points[point][0] = x;
+      points[point][2] = flags[point] & 0x01;
+    }
+    int y = 0;
+    for (int point = 0; point < numberOfPoints; point++) {
+      if ((flags[point] & 0x04) != 0) {
+        int dy = data.readUByte(pos++);
+        y += (flags[point] & 0x20) != 0 ? dy : -dy;
+      } else if ((flags[point] & 0x20) == 0) {
+        y += data.readShort(pos);
+        pos += 2;
+      }
+      points[point][1] = y;
+    }
+    return points;
+  }
+
   private void checkTestSet(TestSet test) throws Exception {
     Font[] fonts = TestFontUtils.loadFont(test.fontFile);
     Font font = fonts[0];
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2011 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.typography.font.sfntly;
+
+import com.google.typography.font.sfntly.table.truetype.Glyph;
+import com.google.typography.font.sfntly.table.truetype.GlyphTable;
+import com.google.typography.font.sfntly.table.truetype.GlyphView;
+import com.google.typography.font.sfntly.table.truetype.LocaTable;
+import com.google.typography.font.sfntly.testutils.TestFont;
+import com.google.typography.font.sfntly.testutils.TestFontUtils;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+
+/**
+ * Tests for the cached glyph view.
+ */
+public class GlyphViewTests extends TestCase {
+
+  private static final File TEST_FONT_FILE = TestFont.TestFontNames.ROBOTO.getFile();
+
+  public void testGlyphView() throws Exception {
+    Font font = TestFontUtils.loadFont(TEST_FONT_FILE)[0];
+    LocaTable locaTable = font.getTable(Tag.loca);
+    GlyphTable glyphTable = font.getTable(Tag.glyf);
+    GlyphView glyphs = GlyphView.forFont(font, 8);
+    assertEquals(locaTable.numGlyphs(), glyphs.numGlyphs());
+
+    for (int glyphId = 0; glyphId < glyphs.numGlyphs(); glyphId++) {
+      Glyph expected =
+          glyphTable.glyph(locaTable.glyphOffset(glyphId), locaTable.glyphLength(glyphId));
+      Glyph glyph = glyphs.glyph(glyphId);
+      assertEquals(expected.glyphType(), glyph.glyphType());
+      assertEquals(expected.dataLength(), glyph.dataLength());
+      assertEquals(expected.numberOfContours(), glyph.numberOfContours());
+      assertTrue(glyphs.size() <= 8);
+    }
+    assertEquals(0, glyphs.hitCount());
+    assertEquals(glyphs.numGlyphs(), glyphs.missCount());
+
+    // the most recently used glyphs are still cached
+    int last = glyphs.numGlyphs() - 1;
+    Glyph cached = glyphs.glyph(last);
+    assertSame(cached, glyphs.glyph(last));
+    assertEquals(2, glyphs.hitCount());
+
+    // the eldest have been evicted
+    glyphs.glyph(0);
+    assertEquals(glyphs.numGlyphs() + 1, glyphs.missCount());
+
+    glyphs.clear();
+    assertEquals(0, glyphs.size());
+    try {
+      glyphs.glyph(glyphs.numGlyphs());
+      fail("glyph id past the end of the font");
+    } catch (IndexOutOfBoundsException e) {
+      // expected
+    }
+  }
+
+  public void testUncachedGlyphView() throws Exception {
+    Font font = TestFontUtils.loadFont(TEST_FONT_FILE)[0];
+    GlyphView glyphs = GlyphView.forFont(font, 0);
+    assertNotSame(glyphs.glyph(1), glyphs.glyph(1));
+    assertEquals(0, glyphs.size());
+    assertEquals(0, glyphs.hitCount());
+  }
+}
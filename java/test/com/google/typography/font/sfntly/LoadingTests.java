@@ -18,13 +18,28 @@ package com.google.typography.font.sfntly;
 
 import com.google.typography.font.sfntly.table.Header;
 import com.google.typography.font.sfntly.table.Table;
+import com.google.typography.font.sfntly.table.core.FontHeaderTable;
+import com.google.typography.font.sfntly.table.truetype.LocaTable;
 import com.google.typography.font.sfntly.testutils.TestFont;
 import com.google.typography.font.sfntly.testutils.TestFontUtils;
+import com.google.typography.font.sfntly.testutils.TestUtils;
+import com.google.typography.font.tools.conversion.woff.WoffWriter;
 
 import junit.framework.TestCase;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FilterInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * @author Stuart Gill
@@ -44,6 +59,316 @@ public class LoadingTests extends TestCase {
   public void testLoadingComparison() throws Exception {
     Font[] sFonts = TestFontUtils.loadFont(TEST_FONT_FILE);
     Font[] bFonts = TestFontUtils.loadFontUsingByteArray(TEST_FONT_FILE);
+    compareFonts(sFonts, bFonts);
+  }
+
+  public void testMappedLoadingComparison() throws Exception {
+    Font[] sFonts = TestFontUtils.loadFont(TEST_FONT_FILE);
+    Font[] mFonts = FontFactory.getInstance().loadFonts(TEST_FONT_FILE.toPath());
+    compareFonts(sFonts, mFonts);
+  }
+
+  public void testMappedFingerprint() throws Exception {
+    FontFactory fontFactory = FontFactory.getInstance();
+    fontFactory.fingerprintFont(true);
+    Font[] mFonts = fontFactory.loadFonts(TEST_FONT_FILE.toPath());
+    byte[] expected =
+        MessageDigest.getInstance("SHA-1").digest(TestUtils.readFile(TEST_FONT_FILE));
+    assertTrue(Arrays.equals(expected, mFonts[0].digest()));
+  }
+
+  public void testLazyLoadingComparison() throws Exception {
+    Font[] sFonts = TestFontUtils.loadFont(TEST_FONT_FILE);
+    FontFactory fontFactory = FontFactory.getInstance();
+    fontFactory.lazyTableLoading(true);
+    Font[] lFonts = fontFactory.loadFonts(TestUtils.readFile(TEST_FONT_FILE));
+
+    Font lazyFont = lFonts[0];
+    assertEquals(sFonts[0].numTables(), lazyFont.numTables());
+    assertTrue(lazyFont.hasTable(Tag.loca));
+    LocaTable loca = lazyFont.getTable(Tag.loca);
+    assertEquals(((LocaTable) sFonts[0].getTable(Tag.loca)).numGlyphs(), loca.numGlyphs());
+    assertSame(loca, lazyFont.getTable(Tag.loca));
+    assertEquals(sFonts[0].checksum(), lazyFont.checksum());
+    compareFonts(sFonts, lFonts);
+
+    ByteArrayOutputStream eagerOut = new ByteArrayOutputStream();
+    ByteArrayOutputStream lazyOut = new ByteArrayOutputStream();
+    FontFactory.getInstance().serializeFont(sFonts[0], eagerOut);
+    Font untouchedFont = fontFactory.loadFonts(TestUtils.readFile(TEST_FONT_FILE))[0];
+    fontFactory.serializeFont(untouchedFont, lazyOut);
+    assertTrue(Arrays.equals(eagerOut.toByteArray(), lazyOut.toByteArray()));
+  }
+
+  public void testParallelBuildingComparison() throws Exception {
+    Font[] sFonts = TestFontUtils.loadFont(TEST_FONT_FILE);
+    FontFactory fontFactory = FontFactory.getInstance();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      fontFactory.setTableBuildingExecutor(executor);
+      Font[] pFonts = fontFactory.loadFonts(TestUtils.readFile(TEST_FONT_FILE));
+      assertEquals(sFonts[0].checksum(), pFonts[0].checksum());
+      compareFonts(sFonts, pFonts);
+
+      ByteArrayOutputStream sequentialOut = new ByteArrayOutputStream();
+      ByteArrayOutputStream parallelOut = new ByteArrayOutputStream();
+      fontFactory.serializeFont(sFonts[0], sequentialOut);
+      fontFactory.serializeFont(pFonts[0], parallelOut);
+      assertTrue(Arrays.equals(sequentialOut.toByteArray(), parallelOut.toByteArray()));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  public void testWoffLoading() throws Exception {
+    Font font = TestFontUtils.loadFont(TEST_FONT_FILE)[0];
+    byte[] woff = toWoff(font);
+
+    FontFactory fontFactory = FontFactory.getInstance();
+    fontFactory.fingerprintFont(true);
+    Font streamFont = fontFactory.loadFonts(new ByteArrayInputStream(woff))[0];
+    compareWoffFont(font, streamFont);
+    assertTrue(Arrays.equals(MessageDigest.getInstance("SHA-1").digest(woff),
+        streamFont.digest()));
+    compareWoffFont(font, fontFactory.loadFonts(woff)[0]);
+    compareWoffFont(font, fontFactory.loadFontsForBuilding(woff)[0].build());
+
+    File woffFile = File.createTempFile("loading", ".woff");
+    try {
+      FileOutputStream os = new FileOutputStream(woffFile);
+      try {
+        os.write(woff);
+      } finally {
+        os.close();
+      }
+      compareWoffFont(font, fontFactory.loadFonts(woffFile.toPath())[0]);
+    } finally {
+      woffFile.delete();
+    }
+  }
+
+  public void testLazyWoffLoading() throws Exception {
+    Font font = TestFontUtils.loadFont(TEST_FONT_FILE)[0];
+    byte[] woff = toWoff(font);
+    FontFactory fontFactory = FontFactory.getInstance();
+    fontFactory.lazyTableLoading(true);
+    Font lazyFont = fontFactory.loadFonts(woff)[0];
+    LocaTable loca = lazyFont.getTable(Tag.loca);
+    assertEquals(((LocaTable) font.getTable(Tag.loca)).numGlyphs(), loca.numGlyphs());
+    compareWoffFont(font, lazyFont);
+
+    // a table is not inflated until it is first read, so corrupt data in one
+    // doesn't stop the font loading or the other tables being read
+    byte[] corrupt = corruptWoffTable(woff, Tag.post);
+    Font corruptFont = fontFactory.loadFonts(corrupt)[0];
+    loca = corruptFont.getTable(Tag.loca);
+    assertEquals(((LocaTable) font.getTable(Tag.loca)).numGlyphs(), loca.numGlyphs());
+    try {
+      corruptFont.getTable(Tag.post).readFontData().readUShort(0);
+      fail("Corrupt table was read.");
+    } catch (RuntimeException e) {
+      // expected
+    }
+    // without lazy loading every table is inflated as the font is loaded
+    fontFactory.lazyTableLoading(false);
+    try {
+      fontFactory.loadFonts(corrupt);
+      fail("Corrupt table was loaded.");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  public void testCorruptWoff() throws Exception {
+    byte[] woff = toWoff(TestFontUtils.loadFont(TEST_FONT_FILE)[0]);
+    // truncate the data so the length in the header no longer matches
+    byte[] truncated = Arrays.copyOf(woff, woff.length - 4);
+    try {
+      FontFactory.getInstance().loadFonts(truncated);
+      fail("Truncated WOFF was loaded.");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  public void testCollectionStreamLoading() throws Exception {
+    Font openSans = TestFontUtils.loadFont(TEST_FONT_FILE)[0];
+    Font roboto = TestFontUtils.loadFont(TestFont.TestFontNames.ROBOTO.getFile())[0];
+    for (boolean directoriesFirst : new boolean[] {true, false}) {
+      byte[] ttc = toCollection(directoriesFirst, openSans, roboto, openSans);
+      FontFactory fontFactory = FontFactory.getInstance();
+      Font[] streamFonts = fontFactory.loadFonts(new TrickleInputStream(ttc));
+      Font[] byteFonts = fontFactory.loadFonts(ttc);
+      assertEquals(3, streamFonts.length);
+      compareFonts(byteFonts, streamFonts);
+      Font[] fonts = {openSans, roboto, openSans};
+      for (int i = 0; i < fonts.length; i++) {
+        assertEquals(fonts[i].numTables(), streamFonts[i].numTables());
+        for (Table table : fonts[i].tableMap().values()) {
+          Table streamTable = streamFonts[i].getTable(table.header().tag());
+          byte[] expected = new byte[table.dataLength()];
+          byte[] actual = new byte[streamTable.dataLength()];
+          table.readFontData().readBytes(0, expected, 0, expected.length);
+          streamTable.readFontData().readBytes(0, actual, 0, actual.length);
+          assertTrue(Arrays.equals(expected, actual));
+        }
+      }
+    }
+  }
+
+  public void testCollectionStreamSharedTableEditing() throws Exception {
+    Font font = TestFontUtils.loadFont(TEST_FONT_FILE)[0];
+    byte[] ttc = toCollection(true, font, font);
+    Font.Builder[] builders =
+        FontFactory.getInstance().loadFontsForBuilding(new TrickleInputStream(ttc));
+    FontHeaderTable.Builder head = (FontHeaderTable.Builder) builders[0].getTableBuilder(Tag.head);
+    int revision = head.fontRevision();
+    head.setFontRevision(revision + 1);
+    assertEquals(revision + 1, ((FontHeaderTable) builders[0].build().getTable(Tag.head))
+        .fontRevision());
+    assertEquals(revision, ((FontHeaderTable) builders[1].build().getTable(Tag.head))
+        .fontRevision());
+  }
+
+  public void testTruncatedCollectionStream() throws Exception {
+    Font font = TestFontUtils.loadFont(TEST_FONT_FILE)[0];
+    byte[] ttc = toCollection(true, font, font);
+    try {
+      FontFactory.getInstance().loadFonts(
+          new TrickleInputStream(Arrays.copyOf(ttc, ttc.length - 100)));
+      fail("Truncated collection was loaded.");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  /**
+   * An input stream that hands out a few bytes at a time and never reports any
+   * as available, like a slow network stream.
+   */
+  private static final class TrickleInputStream extends FilterInputStream {
+    TrickleInputStream(byte[] b) {
+      super(new ByteArrayInputStream(b));
+    }
+
+    @Override
+    public int available() {
+      return 0;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      return super.read(b, off, Math.min(len, 7));
+    }
+  }
+
+  /**
+   * Make a TTC of the fonts, storing tables with the same data once. The offset
+   * tables are either all placed ahead of the table data or each is placed
+   * right before the tables it adds.
+   */
+  private static byte[] toCollection(boolean directoriesFirst, Font... fonts)
+      throws IOException {
+    FontFactory factory = FontFactory.getInstance();
+    ByteBuffer[] sfnts = new ByteBuffer[fonts.length];
+    int directoriesSize = 0;
+    for (int i = 0; i < fonts.length; i++) {
+      ByteArrayOutputStream os = new ByteArrayOutputStream();
+      factory.serializeFont(fonts[i], os);
+      sfnts[i] = ByteBuffer.wrap(os.toByteArray());
+      directoriesSize += 12 + 16 * (sfnts[i].getShort(4) & 0xffff);
+    }
+    int headerSize = 12 + 4 * fonts.length;
+    ByteArrayOutputStream ttc = new ByteArrayOutputStream();
+    ttc.write(new byte[headerSize + (directoriesFirst ? directoriesSize : 0)]);
+    int[] directoryOffsets = new int[fonts.length];
+    Map<ByteBuffer, Integer> tableOffsets = new HashMap<ByteBuffer, Integer>();
+    int directoryOffset = headerSize;
+    for (int i = 0; i < fonts.length; i++) {
+      ByteBuffer sfnt = sfnts[i];
+      int numTables = sfnt.getShort(4) & 0xffff;
+      if (!directoriesFirst) {
+        directoryOffset = ttc.size();
+        ttc.write(new byte[12 + 16 * numTables]);
+      }
+      directoryOffsets[i] = directoryOffset;
+      directoryOffset += 12 + 16 * numTables;
+      for (int table = 0; table < numTables; table++) {
+        int record = 12 + 16 * table;
+        int offset = sfnt.getInt(record + 8);
+        int length = sfnt.getInt(record + 12);
+        ByteBuffer data =
+            ByteBuffer.wrap(Arrays.copyOfRange(sfnt.array(), offset, offset + length));
+        Integer tableOffset = tableOffsets.get(data);
+        if (tableOffset == null) {
+          tableOffset = ttc.size();
+          tableOffsets.put(data, tableOffset);
+          ttc.write(data.array());
+          ttc.write(new byte[-length & 3]);
+        }
+        sfnt.putInt(record + 8, tableOffset);
+      }
+    }
+    ByteBuffer result = ByteBuffer.wrap(ttc.toByteArray());
+    result.putInt(Tag.ttcf).putInt(0x00010000).putInt(fonts.length);
+    for (int i = 0; i < fonts.length; i++) {
+      result.putInt(directoryOffsets[i]);
+    }
+    for (int i = 0; i < fonts.length; i++) {
+      int numTables = sfnts[i].getShort(4) & 0xffff;
+      System.arraycopy(
+          sfnts[i].array(), 0, result.array(), directoryOffsets[i], 12 + 16 * numTables);
+    }
+    return result.array();
+  }
+
+  private static byte[] toWoff(Font font) throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    new WoffWriter().convert(font).copyTo(os);
+    return os.toByteArray();
+  }
+
+  /**
+   * Returns a copy of the WOFF with the zlib header of the table's compressed
+   * data overwritten.
+   */
+  private static byte[] corruptWoffTable(byte[] woff, int tag) {
+    byte[] result = Arrays.copyOf(woff, woff.length);
+    ByteBuffer buffer = ByteBuffer.wrap(result);
+    int numTables = buffer.getShort(12) & 0xffff;
+    for (int i = 0; i < numTables; i++) {
+      int entry = 44 + 20 * i;
+      if (buffer.getInt(entry) == tag) {
+        int offset = buffer.getInt(entry + 4);
+        assertTrue("Table is not compressed.",
+            buffer.getInt(entry + 8) < buffer.getInt(entry + 12));
+        result[offset] = (byte) 0xff;
+        result[offset + 1] = (byte) 0xff;
+        return result;
+      }
+    }
+    throw new IllegalArgumentException("No table " + Tag.stringValue(tag));
+  }
+
+  private static void compareWoffFont(Font font, Font woffFont) {
+    assertEquals(font.sfntVersion(), woffFont.sfntVersion());
+    int numTables = font.numTables() - (font.hasTable(Tag.DSIG) ? 1 : 0);
+    assertEquals(numTables, woffFont.numTables());
+    for (Table woffTable : woffFont.tableMap().values()) {
+      int tag = woffTable.header().tag();
+      Table table = font.getTable(tag);
+      assertEquals(table.dataLength(), woffTable.dataLength());
+      assertEquals(table.calculatedChecksum(), woffTable.calculatedChecksum());
+      assertEquals(table.header().checksum(), woffTable.header().checksum());
+      byte[] expected = new byte[table.dataLength()];
+      byte[] actual = new byte[woffTable.dataLength()];
+      table.readFontData().readBytes(0, expected, 0, expected.length);
+      woffTable.readFontData().readBytes(0, actual, 0, actual.length);
+      assertTrue(Tag.stringValue(tag), Arrays.equals(expected, actual));
+    }
+  }
+
+  private static void compareFonts(Font[] sFonts, Font[] bFonts) {
 
     assertEquals(sFonts.length, bFonts.length);
     for (int i = 0; i < sFonts.length; i++) {
@@ -18,6 +18,7 @@ package com.google.typography.font.sfntly;
 
 import com.google.typography.font.sfntly.Font.PlatformId;
 import com.google.typography.font.sfntly.table.core.NameTable;
+import com.google.typography.font.sfntly.table.core.NameTable.NameEntryFilter;
 import com.google.typography.font.sfntly.table.core.NameTable.NameId;
 import com.google.typography.font.sfntly.testutils.TestFont;
 import com.google.typography.font.sfntly.testutils.TestFont.TestFontNames;
@@ -26,6 +27,7 @@ import com.google.typography.font.sfntly.testutils.TestFontUtils;
 import junit.framework.TestCase;
 
 import java.io.File;
+import java.util.Iterator;
 
 /**
  * @author Stuart Gill
@@ -82,4 +84,45 @@ public class NameTests extends TestCase {
       assertEquals(nameTable.nameCount(), nameCount);
     }
   }
+
+  public void testNameLookups() throws Exception {
+    TestFontNames[] fontNames = {TestFontNames.OPENSANS, TestFontNames.ROBOTO};
+    for (TestFontNames fontName : fontNames) {
+      Font font = TestFontUtils.loadFont(fontName.getFile())[0];
+      NameTable nameTable = font.getTable(Tag.name);
+      for (int index = 0; index < nameTable.nameCount(); index++) {
+        final int pid = nameTable.platformId(index);
+        final int eid = nameTable.encodingId(index);
+        final int lid = nameTable.languageId(index);
+        final int nid = nameTable.nameId(index);
+        int expected = -1;
+        for (int i = 0; i < nameTable.nameCount(); i++) {
+          if (nameTable.platformId(i) == pid && nameTable.encodingId(i) == eid
+              && nameTable.languageId(i) == lid && nameTable.nameId(i) == nid) {
+            expected = i;
+            break;
+          }
+        }
+        assertEquals(expected, nameTable.nameIndex(pid, eid, lid, nid));
+        assertEquals(nameTable.nameEntry(expected), nameTable.nameEntry(pid, eid, lid, nid));
+
+        int[] indices = nameTable.nameIndices(nid);
+        int n = 0;
+        for (Iterator<NameTable.NameEntry> iter = nameTable.iterator(new NameEntryFilter() {
+          @Override
+          public boolean accept(int platformId, int encodingId, int languageId, int nameId) {
+            return nameId == nid;
+          }
+        }); iter.hasNext(); n++) {
+          assertEquals(iter.next(), nameTable.nameEntry(indices[n]));
+        }
+        assertEquals(n, indices.length);
+      }
+
+      assertEquals(-1, nameTable.nameIndex(PlatformId.Windows.value(), 1, 0x409, 0x7fff));
+      assertEquals(-1, nameTable.nameIndex(-1, 1, 0x409, NameId.FontFamilyName.value()));
+      assertNull(nameTable.nameEntry(PlatformId.Custom.value(), 0, 0, 1));
+      assertEquals(0, nameTable.nameIndices(0x7fff).length);
+    }
+  }
 }
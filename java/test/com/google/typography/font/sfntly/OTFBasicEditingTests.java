@@ -120,4 +120,34 @@ public class OTFBasicEditingTests extends TestCase {
     long checksumAdjustment = header.checkSumAdjustment();
     assertEquals(headerAdjustment, header.checkSumAdjustment());
   }
+
+  /**
+   * Tables made from existing data share that data. Editing one of them must
+   * leave the source font alone while the other tables come through unchanged.
+   *
+   * @throws Exception
+   */
+  public void testNewTableBuilderFromData() throws Exception {
+    Font originalFont = TestFontUtils.loadFont(TEST_FONT_FILE)[0];
+    Builder fontBuilder = FontFactory.getInstance().newFontBuilder();
+    for (Table table : originalFont.tableMap().values()) {
+      fontBuilder.newTableBuilder(table.header().tag(), table.readFontData());
+    }
+    FontHeaderTable.Builder headerBuilder =
+        (FontHeaderTable.Builder) fontBuilder.getTableBuilder(Tag.head);
+    int revision = headerBuilder.fontRevision();
+    headerBuilder.setFontRevision(revision + 1);
+    Font builtFont = fontBuilder.build();
+
+    assertEquals(revision, ((FontHeaderTable) originalFont.getTable(Tag.head)).fontRevision());
+    assertEquals(revision + 1, ((FontHeaderTable) builtFont.getTable(Tag.head)).fontRevision());
+    for (Table table : originalFont.tableMap().values()) {
+      int tag = table.header().tag();
+      if (tag == Tag.head) {
+        continue;
+      }
+      assertEquals(Tag.stringValue(tag), table.calculatedChecksum(),
+          builtFont.getTable(tag).calculatedChecksum());
+    }
+  }
 }
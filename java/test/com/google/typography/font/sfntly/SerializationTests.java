@@ -0,0 +1,124 @@
+/*
+ * Copyright 2011 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.typography.font.sfntly;
+
+import com.google.typography.font.sfntly.table.Table;
+import com.google.typography.font.sfntly.table.core.FontHeaderTable;
+import com.google.typography.font.sfntly.testutils.TestFont;
+import com.google.typography.font.sfntly.testutils.TestFontUtils;
+import com.google.typography.font.sfntly.testutils.TestUtils;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Tests that serializing a font to a channel gives the same bytes as
+ * serializing it to a stream, and that collections share identical tables.
+ */
+public class SerializationTests extends TestCase {
+
+  private static final File TEST_FONT_FILE = TestFont.TestFontNames.ROBOTO.getFile();
+
+  public void testChannelSerialization() throws Exception {
+    FontFactory fontFactory = FontFactory.getInstance();
+    Font font = TestFontUtils.loadFont(TEST_FONT_FILE)[0];
+
+    ByteArrayOutputStream streamOut = new ByteArrayOutputStream();
+    fontFactory.serializeFont(font, streamOut);
+    byte[] expected = streamOut.toByteArray();
+
+    // a channel that can't do gathering writes
+    ByteArrayOutputStream channelOut = new ByteArrayOutputStream();
+    fontFactory.serializeFont(font, Channels.newChannel(channelOut));
+    assertTrue(Arrays.equals(expected, channelOut.toByteArray()));
+
+    // a file channel does gathering writes
+    File file = File.createTempFile("sfntly", ".ttf");
+    try {
+      FileChannel channel = TestUtils.createFileChannelForWriting(file);
+      try {
+        fontFactory.serializeFont(font, channel);
+      } finally {
+        channel.close();
+      }
+      assertTrue(Arrays.equals(expected, TestUtils.readFile(file)));
+
+      // and the same again from a mapped font
+      Font mappedFont = fontFactory.loadFonts(file.toPath())[0];
+      channelOut.reset();
+      fontFactory.serializeFont(mappedFont, Channels.newChannel(channelOut));
+      assertTrue(Arrays.equals(expected, channelOut.toByteArray()));
+    } finally {
+      file.delete();
+    }
+  }
+
+  public void testCollectionSerialization() throws Exception {
+    FontFactory fontFactory = FontFactory.getInstance();
+    Font roboto = TestFontUtils.loadFont(TEST_FONT_FILE)[0];
+    Font openSans = TestFontUtils.loadFont(TestFont.TestFontNames.OPENSANS.getFile())[0];
+    Font.Builder builder = TestFontUtils.builderForFontFile(TEST_FONT_FILE);
+    FontHeaderTable.Builder head = (FontHeaderTable.Builder) builder.getTableBuilder(Tag.head);
+    head.setFontRevision(head.fontRevision() + 1);
+    Font revised = builder.build();
+    Font[] fonts = {roboto, revised, openSans};
+
+    ByteArrayOutputStream ttcOut = new ByteArrayOutputStream();
+    fontFactory.serializeFonts(fonts, ttcOut);
+    byte[] ttc = ttcOut.toByteArray();
+
+    int separateSize = 0;
+    for (Font font : fonts) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      fontFactory.serializeFont(font, out);
+      separateSize += out.size();
+    }
+    // the revised font only adds its offset table and head
+    ByteArrayOutputStream revisedOut = new ByteArrayOutputStream();
+    fontFactory.serializeFont(revised, revisedOut);
+    assertTrue(ttc.length < separateSize - revisedOut.size() + 1024);
+
+    Font[] loaded = fontFactory.loadFonts(ttc);
+    assertEquals(fonts.length, loaded.length);
+    for (int i = 0; i < fonts.length; i++) {
+      assertEquals(fonts[i].numTables(), loaded[i].numTables());
+      for (Table table : fonts[i].tableMap().values()) {
+        Table loadedTable = loaded[i].getTable(table.header().tag());
+        assertEquals(table.calculatedChecksum(), loadedTable.header().checksum());
+        byte[] expected = new byte[table.dataLength()];
+        byte[] actual = new byte[loadedTable.dataLength()];
+        table.readFontData().readBytes(0, expected, 0, expected.length);
+        loadedTable.readFontData().readBytes(0, actual, 0, actual.length);
+        assertTrue(Arrays.equals(expected, actual));
+      }
+    }
+    for (Table table : loaded[0].tableMap().values()) {
+      int tag = table.header().tag();
+      int revisedOffset = loaded[1].getTable(tag).header().offset();
+      if (tag == Tag.head) {
+        assertTrue(table.header().offset() != revisedOffset);
+      } else {
+        assertEquals(Tag.stringValue(tag), table.header().offset(), revisedOffset);
+      }
+    }
+  }
+}
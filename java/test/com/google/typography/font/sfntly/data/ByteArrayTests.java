@@ -20,6 +20,9 @@ import com.google.typography.font.sfntly.testutils.TestUtils;
 
 import junit.framework.TestCase;
 
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
 
 /**
  * @author Stuart Gill
@@ -47,6 +50,34 @@ public class ByteArrayTests extends TestCase {
     }
   }
 
+  public void testInflatingByteArray() throws Exception {
+    byte[] expected = new byte[1000];
+    for (int i = 0; i < expected.length; i++) {
+      expected[i] = (byte) (i % 7);
+    }
+    Deflater deflater = new Deflater();
+    deflater.setInput(expected);
+    deflater.finish();
+    byte[] compressed = new byte[2 * expected.length];
+    compressed = Arrays.copyOf(compressed, deflater.deflate(compressed));
+    deflater.end();
+
+    InflatingByteArray ba = new InflatingByteArray(
+        ReadableFontData.createReadableFontData(compressed), expected.length);
+    byteArrayTester(ba);
+    byte[] actual = new byte[expected.length];
+    assertEquals(expected.length, ba.get(0, actual));
+    assertTrue(Arrays.equals(expected, actual));
+
+    ba.close();
+    try {
+      ba.get(0);
+      fail("Closed array was read.");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+  }
+
   private void byteArrayTester(ByteArray<? extends ByteArray<?>> ba) throws Exception {
     copyTest(ba);
     // slicingCopyTest(ba);
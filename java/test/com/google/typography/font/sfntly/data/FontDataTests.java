@@ -20,6 +20,8 @@ import com.google.typography.font.sfntly.testutils.TestUtils;
 
 import junit.framework.TestCase;
 
+import java.nio.ByteBuffer;
+
 
 /**
  * @author Stuart Gill
@@ -88,6 +90,101 @@ public class FontDataTests extends TestCase {
     }
   }
 
+  public void testMappedReadableFontData() throws Exception {
+    for (int size : BYTE_ARRAY_SIZES) {
+      WritableFontData wfd = fillTestWFD(WritableFontData.createWritableFontData(size), size);
+      byte[] b = new byte[size];
+      wfd.readBytes(0, b, 0, size);
+      ReadableFontData rfd = ReadableFontData.createReadableFontData(ByteBuffer.wrap(b));
+      assertEquals(wfd.checksum(), rfd.checksum());
+      slicingReadTest(rfd);
+    }
+  }
+
+  public void testCopyOnWriteFontData() throws Exception {
+    for (int size : BYTE_ARRAY_SIZES) {
+      ReadableFontData original =
+          fillTestWFD(WritableFontData.createWritableFontData(size), size);
+      WritableFontData wfd = WritableFontData.createCopyOnWriteFontData(original);
+      slicingReadTest(wfd);
+      slicingWriteTest(original, wfd);
+
+      // writes must never reach the shared data
+      wfd = WritableFontData.createCopyOnWriteFontData(original.slice(0, size));
+      wfd.writeByte(0, (byte) 0xff);
+      assertEquals(0xff, wfd.readUByte(0));
+      assertEquals(0, original.readUByte(0));
+      readComparison(1, size - 1, original, wfd.slice(1, size - 1));
+    }
+  }
+
+  public void testMultiByteReads() throws Exception {
+    for (int size : BYTE_ARRAY_SIZES) {
+      WritableFontData wfd = fillTestWFD(WritableFontData.createWritableFontData(size), size);
+      for (int trim = 0; trim < 4 && trim < size; trim++) {
+        ReadableFontData rfd = wfd.slice(trim);
+        int shorts = rfd.length() / 2;
+        int[] ushortArray = new int[shorts];
+        rfd.readUShortArray(0, ushortArray, 0, shorts);
+        for (int i = 0; i < shorts; i++) {
+          int expected = rfd.readUByte(2 * i) << 8 | rfd.readUByte(2 * i + 1);
+          assertEquals(expected, rfd.readUShort(2 * i));
+          assertEquals(expected, ushortArray[i]);
+          assertEquals((short) expected, rfd.readShort(2 * i));
+        }
+        int longs = rfd.length() / 4;
+        long[] ulongArray = new long[longs];
+        rfd.readULongArray(0, ulongArray, 0, longs);
+        for (int i = 0; i < longs; i++) {
+          long expected = (long) rfd.readUShort(4 * i) << 16 | rfd.readUShort(4 * i + 2);
+          assertEquals(expected, rfd.readULong(4 * i));
+          assertEquals(expected, ulongArray[i]);
+          assertEquals((int) expected, rfd.readLong(4 * i));
+          assertEquals(expected, Long.reverseBytes(rfd.readULongLE(4 * i)) >>> 32);
+        }
+        try {
+          rfd.readULong(rfd.length() - 3);
+          fail("read past the end of the data");
+        } catch (IndexOutOfBoundsException e) {
+          // expected
+        }
+      }
+    }
+  }
+
+  public void testChecksum() throws Exception {
+    for (int size : BYTE_ARRAY_SIZES) {
+      WritableFontData wfd = fillTestWFD(WritableFontData.createWritableFontData(size), size);
+      byte[] b = new byte[size];
+      wfd.readBytes(0, b, 0, size);
+      ReadableFontData[] backings = {
+          wfd,
+          fillTestWFD(WritableFontData.createWritableFontData(0), size),
+          ReadableFontData.createReadableFontData(ByteBuffer.wrap(b)),
+          WritableFontData.createCopyOnWriteFontData(wfd)};
+      for (ReadableFontData backing : backings) {
+        for (int trim = 0; trim < 4 && trim < size; trim++) {
+          ReadableFontData rfd = backing.slice(trim);
+          assertEquals(referenceChecksum(rfd, 0, rfd.length()), rfd.checksum());
+          if (rfd.length() >= 12) {
+            // skip a word the way the head table skips its checksum adjustment
+            rfd.setCheckSumRanges(0, 8, 12);
+            assertEquals(referenceChecksum(rfd, 0, 8) + referenceChecksum(rfd, 12, rfd.length())
+                & 0xffffffffL, rfd.checksum());
+          }
+        }
+      }
+    }
+  }
+
+  private static long referenceChecksum(ReadableFontData rfd, int lowBound, int highBound) {
+    long sum = 0;
+    for (int i = lowBound; i < highBound; i++) {
+      sum += (long) rfd.readUByte(i) << (8 * (3 - (i - lowBound) % 4));
+    }
+    return sum & 0xffffffffL;
+  }
+
   public void testReadableFontDataSearching() throws Exception {
     for (int[] arraySetupOffsets : SEARCH_TEST_OFFSETS) {
       WritableFontData wfd = WritableFontData.createWritableFontData(arraySetupOffsets[0]);
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2011 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.typography.font.sfntly.table.opentype.component;
+
+import com.google.typography.font.sfntly.Font;
+import com.google.typography.font.sfntly.Tag;
+import com.google.typography.font.sfntly.table.core.CMapTable;
+import com.google.typography.font.sfntly.testutils.TestFont.TestFontNames;
+import com.google.typography.font.sfntly.testutils.TestFontUtils;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tests for the worklist glyph closure.
+ */
+public class GlyphClosureTests extends TestCase {
+
+  private static final String[] TEXTS = {
+    "",
+    "fi",
+    "office affluent",
+    "The quick brown fox jumps over the lazy dog 0123456789",
+    "\u00c0\u00e9\u00ee\u00f5\u00fc \u0410\u0411\u0412 \u03b1\u03b2\u03b3",
+  };
+
+  public void testChainedRules() {
+    List<Rule> rules = new ArrayList<Rule>();
+    // 1 -> 2, 2 -> 3
+    rules.add(new Rule(null, new RuleSegment(1), null, new RuleSegment(2)));
+    rules.add(new Rule(null, new RuleSegment(2), null, new RuleSegment(3)));
+    // 4 followed by 3 -> 5; the look ahead is only reached through the chain
+    rules.add(new Rule(null, new RuleSegment(4), new RuleSegment(3), new RuleSegment(5)));
+    // 6 preceded by 7 -> 8; 7 is never produced
+    rules.add(new Rule(new RuleSegment(7), new RuleSegment(6), null, new RuleSegment(8)));
+    GlyphClosure closure = new GlyphClosure(rules);
+    assertEquals(4, closure.ruleCount());
+
+    assertEquals(glyphs(1, 2, 3), closure.closure(glyphs(1)));
+    assertEquals(glyphs(1, 2, 3, 4, 5), closure.closure(glyphs(1, 4)));
+    assertEquals(glyphs(4, 6), closure.closure(glyphs(4, 6)));
+    assertEquals(glyphs(6, 7, 8), closure.closure(glyphs(6, 7)));
+    assertEquals(glyphs(100), closure.closure(glyphs(100)));
+    assertEquals(glyphs(), closure.closure(glyphs()));
+  }
+
+  public void testMatchesFixedPoint() throws Exception {
+    for (TestFontNames fontName : TestFontNames.values()) {
+      Font font = TestFontUtils.loadFont(fontName.getFile())[0];
+      Map<Integer, Set<Rule>> glyphRulesMap = Rule.glyphRulesMap(font);
+      if (glyphRulesMap == null) {
+        continue;
+      }
+      CMapTable cmapTable = font.getTable(Tag.cmap);
+      GlyphClosure closure = Rule.glyphClosure(font);
+      for (String text : TEXTS) {
+        GlyphGroup expected =
+            fixedPointClosure(glyphRulesMap, Rule.glyphGroupForText(text, cmapTable));
+        assertEquals(fontName + " " + text,
+            expected, closure.closure(Rule.glyphGroupForText(text, cmapTable)));
+        assertEquals(fontName + " " + text, expected, Rule.charGlyphClosure(font, text));
+      }
+    }
+  }
+
+  public void testForFont() throws Exception {
+    Font font = TestFontUtils.loadFont(TestFontNames.ROBOTO.getFile())[0];
+    GlyphClosure closure = GlyphClosure.forFont(font);
+    assertSame(closure, GlyphClosure.forFont(font));
+    assertEquals(Rule.glyphClosure(font).ruleCount(), closure.ruleCount());
+  }
+
+  public void testSerialization() throws Exception {
+    Font font = TestFontUtils.loadFont(TestFontNames.ROBOTO.getFile())[0];
+    CMapTable cmapTable = font.getTable(Tag.cmap);
+    GlyphClosure closure = GlyphClosure.forFont(font);
+
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    closure.writeTo(bos);
+    byte[] bytes = bos.toByteArray();
+    GlyphClosure loaded = GlyphClosure.readFrom(new ByteArrayInputStream(bytes));
+    assertEquals(closure.ruleCount(), loaded.ruleCount());
+    for (String text : TEXTS) {
+      assertEquals(text, closure.closure(Rule.glyphGroupForText(text, cmapTable)),
+          loaded.closure(Rule.glyphGroupForText(text, cmapTable)));
+    }
+
+    bytes[0] ^= 0xff;
+    try {
+      GlyphClosure.readFrom(new ByteArrayInputStream(bytes));
+      fail("Bad magic number was accepted.");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  public void testCorruptInput() throws Exception {
+    List<Rule> rules = new ArrayList<Rule>();
+    rules.add(new Rule(null, new RuleSegment(1), null, new RuleSegment(2)));
+    rules.add(new Rule(null, new RuleSegment(2), null, new RuleSegment(3)));
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    new GlyphClosure(rules).writeTo(bos);
+    byte[] bytes = bos.toByteArray();
+    GlyphClosure.readFrom(new ByteArrayInputStream(bytes));
+
+    // header: magic, rule count, condition count, watch start length, watch count
+    int watchCount = readInt(bytes, 16);
+    // each rule: group count, substitution count and one substituted glyph
+    int watchStart = 20 + rules.size() * 10;
+    int[][] corruptions = {
+      {4, 0x7fffffff},  // rule count far past the end of the stream
+      {8, 0x7fffffff},  // condition count that the rules don't add up to
+      {16, 0x7fffffff},  // watch count far past the end of the stream
+      {20, -1},  // negative group count
+      {24, -1},  // negative substitution count
+      {24, 0x7fffffff},  // substitution count past the end of the stream
+      {watchStart, 1},  // first watch start not 0
+      {watchStart + 4, watchCount + 1},  // watch start past the watch lists
+      {watchStart + 4, watchCount},  // watch starts out of order
+    };
+    for (int[] corruption : corruptions) {
+      byte[] corrupt = Arrays.copyOf(bytes, bytes.length);
+      writeInt(corrupt, corruption[0], corruption[1]);
+      try {
+        GlyphClosure.readFrom(new ByteArrayInputStream(corrupt));
+        fail("Corrupt closure was accepted: " + Arrays.toString(corruption));
+      } catch (IOException e) {
+        // expected
+      }
+    }
+    try {
+      GlyphClosure.readFrom(new ByteArrayInputStream(bytes, 0, bytes.length - 1));
+      fail("Truncated closure was accepted.");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  private static int readInt(byte[] bytes, int offset) {
+    return ((bytes[offset] & 0xff) << 24) | ((bytes[offset + 1] & 0xff) << 16)
+        | ((bytes[offset + 2] & 0xff) << 8) | (bytes[offset + 3] & 0xff);
+  }
+
+  private static void writeInt(byte[] bytes, int offset, int value) {
+    bytes[offset] = (byte) (value >> 24);
+    bytes[offset + 1] = (byte) (value >> 16);
+    bytes[offset + 2] = (byte) (value >> 8);
+    bytes[offset + 3] = (byte) value;
+  }
+
+  private static GlyphGroup glyphs(Integer... glyphs) {
+    return new GlyphGroup(Arrays.asList(glyphs));
+  }
+
+  // applies every rule until the glyphs stop changing
+  private static GlyphGroup fixedPointClosure(
+      Map<Integer, Set<Rule>> glyphRulesMap, GlyphGroup glyphs) {
+    int prevSize = -1;
+    while (glyphs.cardinality() > prevSize) {
+      prevSize = glyphs.cardinality();
+      for (Set<Rule> rules : glyphRulesMap.values()) {
+        for (Rule rule : rules) {
+          boolean matches = true;
+          for (GlyphGroup group : rule.conditionGroups()) {
+            matches &= group.intersects(glyphs);
+          }
+          if (matches) {
+            for (GlyphGroup group : rule.subst) {
+              glyphs.or(group);
+            }
+          }
+        }
+      }
+    }
+    return glyphs;
+  }
+}
@@ -23,8 +23,11 @@ import com.google.typography.font.sfntly.testutils.TestFontUtils;
 
 import junit.framework.TestCase;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.Arrays;
 
 /**
  * @author Raph Levien
@@ -42,4 +45,16 @@ public class EOTWriterTest extends TestCase {
     assertEquals(EOT_VERSION, eotData.readULongLE(8));
     // TODO: more sanity-checking and validation
   }
+
+  public void testChannelMatchesConvert() throws IOException {
+    Font srcFont = TestFontUtils.loadFont(fontFile)[0];
+    for (boolean compressed : new boolean[] {false, true}) {
+      EOTWriter eotWriter = new EOTWriter(compressed);
+      ByteArrayOutputStream expected = new ByteArrayOutputStream();
+      eotWriter.convert(srcFont).copyTo(expected);
+      ByteArrayOutputStream actual = new ByteArrayOutputStream();
+      eotWriter.convert(srcFont, Channels.newChannel(actual));
+      assertTrue(Arrays.equals(expected.toByteArray(), actual.toByteArray()));
+    }
+  }
 }
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2011 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.typography.font.tools.conversion.eot;
+
+import com.google.typography.font.sfntly.Font;
+import com.google.typography.font.sfntly.FontFactory;
+import com.google.typography.font.sfntly.testutils.TestFont.TestFontNames;
+import com.google.typography.font.sfntly.testutils.TestFontUtils;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Tests for {@link LzcompCompress}.
+ */
+public class LzcompCompressTest extends TestCase {
+
+  private static byte[] fontBytes() throws IOException {
+    Font font = TestFontUtils.loadFont(TestFontNames.OPENSANS.getFile())[0];
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    FontFactory.getInstance().serializeFont(font, os);
+    return Arrays.copyOf(os.toByteArray(), 60000);
+  }
+
+  public void testRoundTripAllLevels() throws IOException {
+    byte[] data = fontBytes();
+    for (int level = LzcompCompress.MIN_LEVEL; level <= LzcompCompress.MAX_LEVEL; level++) {
+      byte[] compressed = LzcompCompress.compress(data, level);
+      assertTrue("level " + level, compressed.length < data.length);
+      assertTrue("level " + level, Arrays.equals(data, LzcompDecoder.decompress(compressed)));
+    }
+  }
+
+  public void testRoundTripSmallInputs() {
+    Random random = new Random(42);
+    for (int length = 0; length < 40; length++) {
+      byte[] data = new byte[length];
+      for (int i = 0; i < length; i++) {
+        data[i] = (byte) random.nextInt(4);
+      }
+      for (int level = LzcompCompress.MIN_LEVEL; level <= LzcompCompress.MAX_LEVEL; level++) {
+        assertTrue(Arrays.equals(data, LzcompDecoder.decompress(
+            LzcompCompress.compress(data, level))));
+      }
+    }
+  }
+
+  public void testMaximumLevelIsDefault() throws IOException {
+    byte[] data = fontBytes();
+    assertTrue(Arrays.equals(LzcompCompress.compress(data),
+        LzcompCompress.compress(data, LzcompCompress.MAX_LEVEL)));
+    assertTrue(LzcompCompress.compress(data, LzcompCompress.MAX_LEVEL).length <
+        LzcompCompress.compress(data, LzcompCompress.MIN_LEVEL).length);
+  }
+
+  public void testStreamMatchesArray() throws IOException {
+    byte[] data = fontBytes();
+    for (int level : new int[] {LzcompCompress.MIN_LEVEL, 5, LzcompCompress.MAX_LEVEL}) {
+      LzcompCompress.Stream stream = new LzcompCompress.Stream(level);
+      stream.write(data, 0, 1000);
+      // single bytes grow the buffer just as arrays do
+      for (int i = 1000; i < 5000; i++) {
+        stream.write(data[i]);
+      }
+      stream.write(data, 5000, data.length - 5000);
+      assertTrue(Arrays.equals(LzcompCompress.compress(data, level), stream.compress()));
+      try {
+        stream.write(0);
+        fail("write after compress");
+      } catch (IllegalStateException e) {
+        // expected
+      }
+    }
+    assertTrue(Arrays.equals(LzcompCompress.compress(Arrays.copyOfRange(data, 100, 5000), 3),
+        LzcompCompress.compress(data, 100, 4900, 3)));
+  }
+
+  public void testInvalidLevel() {
+    try {
+      LzcompCompress.compress(new byte[10], LzcompCompress.MIN_LEVEL - 1);
+      fail("level below minimum");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    try {
+      new MtxWriter(LzcompCompress.MAX_LEVEL + 1);
+      fail("level above maximum");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    // the EOT writer checks the level when it is made, not when it first compresses
+    try {
+      new EOTWriter(true, LzcompCompress.MAX_LEVEL + 1);
+      fail("level above maximum");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    try {
+      new EOTWriter(false, LzcompCompress.MIN_LEVEL - 1);
+      fail("level below minimum");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2011 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.typography.font.tools.conversion.eot;
+
+import java.util.Arrays;
+
+/**
+ * A minimal LZCOMP decompressor, used only to check that {@link LzcompCompress} output round
+ * trips. Run length coding is not supported, since the compressor never enables it.
+ */
+class LzcompDecoder {
+
+  private static final int MAX_2BYTE_DIST = 512;
+  private static final int DIST_WIDTH = 3;
+  private static final int LEN_WIDTH = 3;
+
+  private final byte[] data;
+  private int bitPos;
+
+  private LzcompDecoder(byte[] data) {
+    this.data = data;
+  }
+
+  static byte[] decompress(byte[] compressed) {
+    return new LzcompDecoder(compressed).decode();
+  }
+
+  private int readBit() {
+    int bit = (this.data[this.bitPos >> 3] >> (7 - (this.bitPos & 7))) & 1;
+    this.bitPos++;
+    return bit;
+  }
+
+  private int readValue(int numBits) {
+    int value = 0;
+    for (int i = 0; i < numBits; i++) {
+      value = (value << 1) | readBit();
+    }
+    return value;
+  }
+
+  private byte[] decode() {
+    if (readBit() != 0) {
+      throw new IllegalArgumentException("run length coding is not supported");
+    }
+    int length = readValue(24);
+    int numDistRanges = 1;
+    while ((1 << (DIST_WIDTH * numDistRanges)) < length) {
+      numDistRanges++;
+    }
+    int dup2 = 256 + (1 << LEN_WIDTH) * numDistRanges;
+    HuffmanDecoder distDecoder = new HuffmanDecoder(1 << DIST_WIDTH);
+    HuffmanDecoder lenDecoder = new HuffmanDecoder(1 << LEN_WIDTH);
+    HuffmanDecoder symDecoder = new HuffmanDecoder(dup2 + 3);
+
+    int preload = LzcompCompress.getPreloadSize();
+    byte[] buf = new byte[preload + length];
+    int i = 0;
+    for (int k = 0; k < 32; k++) {
+      for (int j = 0; j < 96; j++) {
+        buf[i++] = (byte) k;
+        buf[i++] = (byte) j;
+      }
+    }
+    for (int j = 0; i < preload && j < 256; j++) {
+      for (int r = 0; r < 4; r++) {
+        buf[i++] = (byte) j;
+      }
+    }
+
+    int limit = preload + length;
+    while (i < limit) {
+      int symbol = symDecoder.read();
+      if (symbol < 256) {
+        buf[i] = (byte) symbol;
+        i++;
+      } else if (symbol >= dup2) {
+        int back = 2 * (symbol - dup2 + 1);
+        buf[i] = buf[i - back];
+        i++;
+      } else {
+        symbol -= 256;
+        int distRanges = symbol / (1 << LEN_WIDTH) + 1;
+        int value = symbol & 3;
+        boolean more = (symbol & 4) != 0;
+        while (more) {
+          int s = lenDecoder.read();
+          value = (value << 2) | (s & 3);
+          more = (s & 4) != 0;
+        }
+        int dist = 0;
+        for (int r = 0; r < distRanges; r++) {
+          dist = (dist << DIST_WIDTH) | distDecoder.read();
+        }
+        dist += 1;
+        int len = value + (dist >= MAX_2BYTE_DIST ? 3 : 2);
+        int src = i - dist - len + 1;
+        for (int r = 0; r < len; r++) {
+          buf[i++] = buf[src + r];
+        }
+      }
+    }
+    return Arrays.copyOfRange(buf, preload, limit);
+  }
+
+  /**
+   * Adaptive Huffman decoder mirroring the tree updates of {@link HuffmanEncoder}.
+   */
+  private final class HuffmanDecoder {
+    private final int[] up;
+    private final int[] left;
+    private final int[] right;
+    private final int[] code;
+    private final int[] weight;
+    private final int[] symbolIndex;
+
+    HuffmanDecoder(int range) {
+      int limit = 2 * range;
+      this.up = new int[limit];
+      this.left = new int[limit];
+      this.right = new int[limit];
+      this.code = new int[limit];
+      this.weight = new int[limit];
+      this.symbolIndex = new int[range];
+      for (int i = 2; i < limit; i++) {
+        this.up[i] = i / 2;
+        this.weight[i] = 1;
+      }
+      for (int i = 1; i < range; i++) {
+        this.left[i] = 2 * i;
+        this.right[i] = 2 * i + 1;
+      }
+      for (int i = 0; i < range; i++) {
+        this.code[i] = -1;
+        this.code[range + i] = i;
+        this.left[range + i] = -1;
+        this.right[range + i] = -1;
+        this.symbolIndex[i] = range + i;
+      }
+      initWeight(1);
+      if (range > 256 && range < 512) {
+        updateWeight(this.symbolIndex[256]);
+        updateWeight(this.symbolIndex[257]);
+        for (int i = 0; i < 12; i++) {
+          updateWeight(this.symbolIndex[range - 3]);
+        }
+        for (int i = 0; i < 6; i++) {
+          updateWeight(this.symbolIndex[range - 2]);
+        }
+      } else {
+        for (int j = 0; j < 2; j++) {
+          for (int i = 0; i < range; i++) {
+            updateWeight(this.symbolIndex[i]);
+          }
+        }
+      }
+    }
+
+    int read() {
+      int a = 1;
+      while (this.code[a] < 0) {
+        a = readBit() != 0 ? this.right[a] : this.left[a];
+      }
+      int symbol = this.code[a];
+      updateWeight(a);
+      return symbol;
+    }
+
+    private int initWeight(int a) {
+      if (this.code[a] < 0) {
+        this.weight[a] = initWeight(this.left[a]) + initWeight(this.right[a]);
+      }
+      return this.weight[a];
+    }
+
+    private void updateWeight(int a) {
+      for (; a != 1; a = this.up[a]) {
+        int weightA = this.weight[a];
+        int b = a - 1;
+        if (this.weight[b] == weightA) {
+          do {
+            b--;
+          } while (this.weight[b] == weightA);
+          b++;
+          if (b > 1) {
+            swapNodes(a, b);
+            a = b;
+          }
+        }
+        this.weight[a] = weightA + 1;
+      }
+      this.weight[a]++;
+    }
+
+    private void swapNodes(int a, int b) {
+      swap(this.left, a, b);
+      swap(this.right, a, b);
+      swap(this.code, a, b);
+      swap(this.weight, a, b);
+      fixLinks(a);
+      fixLinks(b);
+    }
+
+    private void fixLinks(int a) {
+      if (this.code[a] < 0) {
+        this.up[this.left[a]] = a;
+        this.up[this.right[a]] = a;
+      } else {
+        this.symbolIndex[this.code[a]] = a;
+      }
+    }
+
+    private void swap(int[] array, int a, int b) {
+      int tmp = array[a];
+      array[a] = array[b];
+      array[b] = tmp;
+    }
+  }
+}
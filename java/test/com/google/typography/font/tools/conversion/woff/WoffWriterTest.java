@@ -0,0 +1,139 @@
+/*
+ * Copyright 2011 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.typography.font.tools.conversion.woff;
+
+import com.google.typography.font.sfntly.Font;
+import com.google.typography.font.sfntly.Tag;
+import com.google.typography.font.sfntly.data.WritableFontData;
+import com.google.typography.font.sfntly.table.Table;
+import com.google.typography.font.sfntly.testutils.TestFont.TestFontNames;
+import com.google.typography.font.sfntly.testutils.TestFontUtils;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Tests for the WOFF writer.
+ */
+public class WoffWriterTest extends TestCase {
+
+  private static final int HEADER_SIZE = 44;
+  private static final int ENTRY_SIZE = 20;
+
+  public void testParallelMatchesSequential() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      for (TestFontNames fontName : TestFontNames.values()) {
+        Font font = TestFontUtils.loadFont(fontName.getFile())[0];
+        byte[] sequential = toBytes(new WoffWriter().convert(font));
+        WoffWriter writer = new WoffWriter();
+        writer.setExecutor(executor);
+        assertTrue(fontName.toString(), Arrays.equals(sequential, toBytes(writer.convert(font))));
+        // compressors are reused from the pool on later conversions
+        assertTrue(fontName.toString(), Arrays.equals(sequential, toBytes(writer.convert(font))));
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  public void testChannelMatchesConvert() throws Exception {
+    for (TestFontNames fontName : TestFontNames.values()) {
+      Font font = TestFontUtils.loadFont(fontName.getFile())[0];
+      ByteArrayOutputStream os = new ByteArrayOutputStream();
+      new WoffWriter().convert(font, Channels.newChannel(os));
+      assertTrue(fontName.toString(),
+          Arrays.equals(toBytes(new WoffWriter().convert(font)), os.toByteArray()));
+    }
+  }
+
+  public void testTableCompression() throws Exception {
+    Font font = TestFontUtils.loadFont(TestFontNames.ROBOTO.getFile())[0];
+    WoffWriter writer = new WoffWriter();
+    writer.setCompressionLevel(Deflater.BEST_COMPRESSION);
+    writer.setCompressionLevel(Tag.glyf, Deflater.NO_COMPRESSION);
+    writer.setCompressionStrategy(Tag.hmtx, Deflater.FILTERED);
+    byte[] woff = toBytes(writer.convert(font));
+
+    int numTables = readUShort(woff, 12);
+    for (int i = 0; i < numTables; i++) {
+      int entry = HEADER_SIZE + i * ENTRY_SIZE;
+      int tag = readULong(woff, entry);
+      int offset = readULong(woff, entry + 4);
+      int compLength = readULong(woff, entry + 8);
+      int origLength = readULong(woff, entry + 12);
+
+      Table table = font.getTable(tag);
+      byte[] expected = new byte[table.dataLength()];
+      table.readFontData().readBytes(0, expected, 0, expected.length);
+      assertEquals(expected.length, origLength);
+      byte[] actual;
+      if (compLength == origLength) {
+        actual = Arrays.copyOfRange(woff, offset, offset + compLength);
+      } else {
+        Inflater inflater = new Inflater();
+        inflater.setInput(woff, offset, compLength);
+        actual = new byte[origLength];
+        assertEquals(origLength, inflater.inflate(actual));
+        inflater.end();
+      }
+      assertTrue(Tag.stringValue(tag), Arrays.equals(expected, actual));
+      if (tag == Tag.glyf) {
+        // stored deflate blocks are larger than the input so the table is kept as is
+        assertEquals(origLength, compLength);
+      }
+    }
+  }
+
+  public void testInvalidSettings() {
+    WoffWriter writer = new WoffWriter();
+    try {
+      writer.setCompressionLevel(10);
+      fail("Invalid level was accepted.");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    try {
+      writer.setCompressionStrategy(Tag.glyf, 7);
+      fail("Invalid strategy was accepted.");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  private static byte[] toBytes(WritableFontData data) throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    data.copyTo(os);
+    return os.toByteArray();
+  }
+
+  private static int readUShort(byte[] b, int index) {
+    return ((b[index] & 0xff) << 8) | (b[index + 1] & 0xff);
+  }
+
+  private static int readULong(byte[] b, int index) {
+    return (readUShort(b, index) << 16) | readUShort(b, index + 2);
+  }
+}
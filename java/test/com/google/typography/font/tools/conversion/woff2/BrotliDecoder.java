@@ -0,0 +1,354 @@
+/*
+ * Copyright 2011 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.typography.font.tools.conversion.woff2;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A Brotli decoder for checking the output of the encoder. It follows RFC 7932
+ * but doesn't support block switching, context maps or the static dictionary
+ * since the encoder doesn't use them.
+ */
+final class BrotliDecoder {
+
+  private static final int[] INSERT_BASE = {0, 1, 2, 3, 4, 5, 6, 8, 10, 14, 18, 26, 34, 50, 66,
+    98, 130, 194, 322, 578, 1090, 2114, 6210, 22594};
+  private static final int[] INSERT_EXTRA_BITS = {0, 0, 0, 0, 0, 0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5,
+    6, 7, 8, 9, 10, 12, 14, 24};
+  private static final int[] COPY_BASE = {2, 3, 4, 5, 6, 7, 8, 9, 10, 12, 14, 18, 22, 30, 38, 54,
+    70, 102, 134, 198, 326, 582, 1094, 2118};
+  private static final int[] COPY_EXTRA_BITS = {0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 2, 2, 3, 3, 4, 4,
+    5, 5, 6, 7, 8, 9, 10, 24};
+  // insert and copy code ranges / 8 of the cells of the insert and copy alphabet
+  private static final int[] CELL_INSERT = {0, 0, 0, 0, 1, 1, 0, 2, 1, 2, 2};
+  private static final int[] CELL_COPY = {0, 1, 0, 1, 0, 1, 2, 0, 2, 1, 2};
+  private static final int[] CODE_LENGTH_ORDER = {1, 2, 3, 4, 0, 5, 17, 6, 16, 7, 8, 9, 10, 11,
+    12, 13, 14, 15};
+  private static final int[] RING_INDEX = {0, 1, 2, 3, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1, 1, 1};
+  private static final int[] RING_OFFSET = {0, 0, 0, 0, -1, 1, -2, 2, -3, 3, -1, 1, -2, 2, -3, 3};
+
+  private final byte[] input;
+  private int position;
+  private long bits;
+  private int bitCount;
+
+  private byte[] output = new byte[1024];
+  private int size;
+
+  private BrotliDecoder(byte[] input) {
+    this.input = input;
+  }
+
+  static byte[] decode(byte[] input) throws IOException {
+    return new BrotliDecoder(input).decode();
+  }
+
+  private int readBits(int count) throws IOException {
+    while (this.bitCount < count) {
+      if (this.position >= this.input.length) {
+        throw new IOException("Unexpected end of stream.");
+      }
+      this.bits |= (long) (this.input[this.position++] & 0xff) << this.bitCount;
+      this.bitCount += 8;
+    }
+    int value = (int) (this.bits & ((1L << count) - 1));
+    this.bits >>>= count;
+    this.bitCount -= count;
+    return value;
+  }
+
+  private void alignToByte() throws IOException {
+    if (this.readBits(this.bitCount & 7) != 0) {
+      throw new IOException("Non-zero padding.");
+    }
+  }
+
+  private int readVarLenUint8() throws IOException {
+    if (this.readBits(1) == 0) {
+      return 0;
+    }
+    int n = this.readBits(3);
+    return n == 0 ? 1 : (1 << n) + this.readBits(n);
+  }
+
+  private void put(int b) {
+    if (this.size == this.output.length) {
+      this.output = Arrays.copyOf(this.output, 2 * this.size);
+    }
+    this.output[this.size++] = (byte) b;
+  }
+
+  private byte[] decode() throws IOException {
+    int windowBits;
+    if (this.readBits(1) == 0) {
+      windowBits = 16;
+    } else {
+      int n = this.readBits(3);
+      if (n != 0) {
+        windowBits = 17 + n;
+      } else {
+        n = this.readBits(3);
+        if (n == 1) {
+          throw new IOException("Invalid window size.");
+        }
+        windowBits = n == 0 ? 17 : 8 + n;
+      }
+    }
+    int maxDistance = (1 << windowBits) - 16;
+    int[] distances = {4, 11, 15, 16};
+
+    while (true) {
+      boolean last = this.readBits(1) == 1;
+      if (last && this.readBits(1) == 1) {
+        break;
+      }
+      int nibbles = this.readBits(2);
+      if (nibbles == 3) {
+        throw new IOException("Metadata blocks are not supported.");
+      }
+      int length = this.readBits(4 * (nibbles + 4)) + 1;
+      if (!last && this.readBits(1) == 1) {
+        this.alignToByte();
+        for (int i = 0; i < length; i++) {
+          this.put(this.readBits(8));
+        }
+        continue;
+      }
+      if (this.readVarLenUint8() != 0 || this.readVarLenUint8() != 0
+          || this.readVarLenUint8() != 0) {
+        throw new IOException("Block switching is not supported.");
+      }
+      int postfixBits = this.readBits(2);
+      int direct = this.readBits(4) << postfixBits;
+      this.readBits(2); // context mode
+      if (this.readVarLenUint8() != 0 || this.readVarLenUint8() != 0) {
+        throw new IOException("Context maps are not supported.");
+      }
+      PrefixCode literals = this.readPrefixCode(256);
+      PrefixCode commands = this.readPrefixCode(704);
+      PrefixCode distanceCode = this.readPrefixCode(16 + direct + (48 << postfixBits));
+
+      int end = this.size + length;
+      while (this.size < end) {
+        int command = commands.read(this);
+        int cell = command >> 6;
+        int insertCode = (CELL_INSERT[cell] << 3) | ((command >> 3) & 7);
+        int copyCode = (CELL_COPY[cell] << 3) | (command & 7);
+        int insertLength =
+            INSERT_BASE[insertCode] + this.readBits(INSERT_EXTRA_BITS[insertCode]);
+        int copyLength = COPY_BASE[copyCode] + this.readBits(COPY_EXTRA_BITS[copyCode]);
+        if (this.size + insertLength > end) {
+          throw new IOException("Literals past the end of the meta-block.");
+        }
+        for (int i = 0; i < insertLength; i++) {
+          this.put(literals.read(this));
+        }
+        if (this.size == end) {
+          break;
+        }
+
+        int distance;
+        int symbol = cell < 2 ? 0 : distanceCode.read(this);
+        if (symbol < 16) {
+          distance = distances[RING_INDEX[symbol]] + RING_OFFSET[symbol];
+          if (distance <= 0) {
+            throw new IOException("Invalid distance.");
+          }
+        } else if (symbol < 16 + direct) {
+          distance = symbol - 15;
+        } else {
+          int code = symbol - direct - 16;
+          int extraBits = 1 + (code >> (postfixBits + 1));
+          int high = code >> postfixBits;
+          int low = code & ((1 << postfixBits) - 1);
+          int offset = ((2 + (high & 1)) << extraBits) - 4;
+          distance = ((offset + this.readBits(extraBits)) << postfixBits) + low + direct + 1;
+        }
+        if (symbol != 0) {
+          System.arraycopy(distances, 0, distances, 1, 3);
+          distances[0] = distance;
+        }
+        if (distance > Math.min(this.size, maxDistance)) {
+          throw new IOException("Dictionary references are not supported.");
+        }
+        if (this.size + copyLength > end) {
+          throw new IOException("Copy past the end of the meta-block.");
+        }
+        for (int i = 0; i < copyLength; i++) {
+          this.put(this.output[this.size - distance]);
+        }
+      }
+      if (last) {
+        break;
+      }
+    }
+    this.alignToByte();
+    if (this.position != this.input.length) {
+      throw new IOException("Data after the end of the stream.");
+    }
+    return Arrays.copyOf(this.output, this.size);
+  }
+
+  private PrefixCode readPrefixCode(int alphabetSize) throws IOException {
+    int[] lengths = new int[alphabetSize];
+    int skip = this.readBits(2);
+    if (skip == 1) {
+      int count = this.readBits(2) + 1;
+      int alphabetBits = 32 - Integer.numberOfLeadingZeros(alphabetSize - 1);
+      int[] symbols = new int[count];
+      for (int i = 0; i < count; i++) {
+        symbols[i] = this.readBits(alphabetBits);
+        if (symbols[i] >= alphabetSize || lengths[symbols[i]] != 0) {
+          throw new IOException("Invalid simple prefix code.");
+        }
+        lengths[symbols[i]] = -1;
+      }
+      int[][] shapes = {{0}, {1, 1}, {1, 2, 2}, {2, 2, 2, 2}, {1, 2, 3, 3}};
+      int shape = count - 1;
+      if (count == 4 && this.readBits(1) == 1) {
+        shape = 4;
+      }
+      for (int i = 0; i < count; i++) {
+        lengths[symbols[i]] = shapes[shape][i];
+      }
+      return count == 1 ? new PrefixCode(symbols[0]) : new PrefixCode(lengths);
+    }
+
+    int[] codeLengths = new int[18];
+    int space = 32;
+    int used = 0;
+    int usedSymbol = 0;
+    for (int i = skip; i < 18 && space > 0; i++) {
+      int length;
+      if (this.readBits(1) == 0) {
+        length = this.readBits(1) == 0 ? 0 : 3;
+      } else if (this.readBits(1) == 0) {
+        length = 4;
+      } else if (this.readBits(1) == 0) {
+        length = 2;
+      } else {
+        length = this.readBits(1) == 0 ? 1 : 5;
+      }
+      codeLengths[CODE_LENGTH_ORDER[i]] = length;
+      if (length != 0) {
+        space -= 32 >> length;
+        used++;
+        usedSymbol = CODE_LENGTH_ORDER[i];
+      }
+    }
+    if (used != 1 && space != 0) {
+      throw new IOException("Incomplete code length code.");
+    }
+    PrefixCode lengthCode =
+        used == 1 ? new PrefixCode(usedSymbol) : new PrefixCode(codeLengths);
+
+    int symbol = 0;
+    int previous = 8;
+    int repeat = 0;
+    int repeatLength = 0;
+    space = 1 << 15;
+    while (symbol < alphabetSize && space > 0) {
+      int code = lengthCode.read(this);
+      if (code < 16) {
+        repeat = 0;
+        lengths[symbol++] = code;
+        if (code != 0) {
+          previous = code;
+          space -= (1 << 15) >> code;
+        }
+      } else {
+        int extraBits = code == 16 ? 2 : 3;
+        int newLength = code == 16 ? previous : 0;
+        if (repeatLength != newLength) {
+          repeat = 0;
+          repeatLength = newLength;
+        }
+        int oldRepeat = repeat;
+        if (repeat > 0) {
+          repeat = (repeat - 2) << extraBits;
+        }
+        repeat += this.readBits(extraBits) + 3;
+        int delta = repeat - oldRepeat;
+        if (symbol + delta > alphabetSize) {
+          throw new IOException("Code lengths past the end of the alphabet.");
+        }
+        for (int i = 0; i < delta; i++) {
+          lengths[symbol++] = repeatLength;
+        }
+        if (repeatLength != 0) {
+          space -= delta << (15 - repeatLength);
+        }
+      }
+    }
+    if (space != 0) {
+      throw new IOException("Incomplete prefix code.");
+    }
+    return new PrefixCode(lengths);
+  }
+
+  /**
+   * A canonical prefix code, decoded a bit at a time.
+   */
+  private static final class PrefixCode {
+    private final int[] counts = new int[16];
+    private final int[] symbols;
+
+    PrefixCode(int symbol) {
+      this.symbols = new int[] {symbol};
+    }
+
+    PrefixCode(int[] lengths) {
+      int n = 0;
+      for (int length : lengths) {
+        if (length > 0) {
+          this.counts[length]++;
+          n++;
+        }
+      }
+      this.symbols = new int[n];
+      int index = 0;
+      for (int length = 1; length < 16; length++) {
+        for (int i = 0; i < lengths.length; i++) {
+          if (lengths[i] == length) {
+            this.symbols[index++] = i;
+          }
+        }
+      }
+    }
+
+    int read(BrotliDecoder decoder) throws IOException {
+      if (this.symbols.length == 1) {
+        return this.symbols[0];
+      }
+      int code = 0;
+      int first = 0;
+      int index = 0;
+      for (int length = 1; length < 16; length++) {
+        code |= decoder.readBits(1);
+        int count = this.counts[length];
+        if (code - count < first) {
+          return this.symbols[index + (code - first)];
+        }
+        index += count;
+        first = (first + count) << 1;
+        code <<= 1;
+      }
+      throw new IOException("Invalid prefix code.");
+    }
+  }
+}
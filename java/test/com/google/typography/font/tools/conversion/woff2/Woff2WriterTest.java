@@ -0,0 +1,548 @@
+/*
+ * Copyright 2011 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.typography.font.tools.conversion.woff2;
+
+import com.google.typography.font.sfntly.Font;
+import com.google.typography.font.sfntly.FontFactory;
+import com.google.typography.font.sfntly.Tag;
+import com.google.typography.font.sfntly.data.ReadableFontData;
+import com.google.typography.font.sfntly.data.WritableFontData;
+import com.google.typography.font.sfntly.table.Table;
+import com.google.typography.font.sfntly.table.core.FontHeaderTable;
+import com.google.typography.font.sfntly.table.core.HorizontalMetricsTable;
+import com.google.typography.font.sfntly.table.truetype.CompositeGlyph;
+import com.google.typography.font.sfntly.table.truetype.Glyph;
+import com.google.typography.font.sfntly.table.truetype.GlyphTable;
+import com.google.typography.font.sfntly.table.truetype.LocaTable;
+import com.google.typography.font.sfntly.table.truetype.SimpleGlyph;
+import com.google.typography.font.sfntly.testutils.TestFont.TestFontNames;
+import com.google.typography.font.sfntly.testutils.TestFontUtils;
+import com.google.typography.font.tools.conversion.woff.WoffWriter;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests for the WOFF 2.0 writer and its Brotli encoder. The output is checked
+ * by decoding it again.
+ */
+public class Woff2WriterTest extends TestCase {
+
+  private static final int SIGNATURE = 0x774F4632;
+
+  public void testBrotliRoundTrip() throws Exception {
+    Random random = new Random(42);
+    byte[] noise = new byte[10000];
+    random.nextBytes(noise);
+    byte[] text = new byte[700000];
+    for (int i = 0; i < text.length; i++) {
+      // a few symbols with many repeats, over several meta-blocks
+      text[i] = (byte) ("abcabd".charAt(random.nextInt(6)) + (i % 1000 < 10 ? i % 7 : 0));
+    }
+    byte[] zeros = new byte[100000];
+    List<byte[]> inputs = Arrays.asList(new byte[0], new byte[] {7}, "aaaaaaaaaaaaaaaa".getBytes(),
+        noise, text, zeros);
+
+    for (int quality : new int[] {0, 4, 11}) {
+      BrotliEncoder encoder = new BrotliEncoder(quality);
+      for (byte[] input : inputs) {
+        byte[] compressed = encoder.compress(input);
+        assertTrue(quality + " " + input.length,
+            Arrays.equals(input, BrotliDecoder.decode(compressed)));
+      }
+      assertTrue(encoder.compress(zeros).length < 100);
+    }
+
+    byte[] compressed = new BrotliEncoder().compress(text, 1000, 5000);
+    assertTrue(Arrays.equals(Arrays.copyOfRange(text, 1000, 6000),
+        BrotliDecoder.decode(compressed)));
+  }
+
+  public void testInvalidQuality() {
+    try {
+      new Woff2Writer().setQuality(12);
+      fail("Invalid quality was accepted.");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  public void testConvert() throws Exception {
+    for (TestFontNames fontName : TestFontNames.values()) {
+      Font font = TestFontUtils.loadFont(fontName.getFile())[0];
+      Woff2 woff2 = new Woff2(toBytes(new Woff2Writer().convert(font)));
+      assertEquals(font.sfntVersion(), woff2.flavor);
+
+      List<Integer> tags = new ArrayList<Integer>();
+      for (int i = 0; i < woff2.numTables; i++) {
+        tags.add(woff2.tags[i]);
+        int tag = woff2.tags[i];
+        Table table = font.getTable(tag);
+        assertEquals(Tag.stringValue(tag), table.dataLength(), woff2.origLengths[i]);
+        if (tag == Tag.glyf) {
+          assertEquals(0, woff2.versions[i]);
+          checkGlyf(font, woff2.table(i));
+        } else if (tag == Tag.loca) {
+          assertEquals(0, woff2.versions[i]);
+          assertEquals(0, woff2.table(i).length);
+        } else if (tag == Tag.hmtx && woff2.versions[i] == 1) {
+          checkHmtx(font, woff2.table(i));
+        } else if (tag == Tag.head) {
+          FontHeaderTable head = font.getTable(Tag.head);
+          byte[] bytes = woff2.table(i);
+          int flags = ((bytes[16] & 0xff) << 8) | (bytes[17] & 0xff);
+          assertEquals(head.flagsAsInt() | FontHeaderTable.Flags.FontDataLossless.mask(), flags);
+        } else {
+          assertEquals(0, woff2.versions[i]);
+          assertTrue(Tag.stringValue(tag), Arrays.equals(tableBytes(table), woff2.table(i)));
+        }
+      }
+      assertEquals(tags.indexOf(Tag.glyf) + 1, tags.indexOf(Tag.loca));
+      assertFalse(tags.contains(Tag.DSIG));
+
+      // the reason for WOFF 2.0
+      int woffLength = new WoffWriter().convert(font).length();
+      assertTrue(fontName + " " + woff2.length + " " + woffLength, woff2.length < woffLength);
+    }
+  }
+
+  public void testHmtxTransform() throws Exception {
+    Font font = TestFontUtils.loadFont(TestFontNames.ROBOTO.getFile())[0];
+    Woff2Writer writer = new Woff2Writer();
+    Woff2 woff2 = new Woff2(toBytes(writer.convert(font)));
+    int index = woff2.indexOf(Tag.hmtx);
+    assertEquals(1, woff2.versions[index]);
+    assertTrue(woff2.table(index).length < font.getTable(Tag.hmtx).dataLength());
+
+    writer.setTransformHmtx(false);
+    woff2 = new Woff2(toBytes(writer.convert(font)));
+    index = woff2.indexOf(Tag.hmtx);
+    assertEquals(0, woff2.versions[index]);
+    assertTrue(Arrays.equals(tableBytes(font.getTable(Tag.hmtx)), woff2.table(index)));
+  }
+
+  public void testWithoutTransforms() throws Exception {
+    Font font = TestFontUtils.loadFont(TestFontNames.OPENSANS.getFile())[0];
+    Woff2Writer writer = new Woff2Writer();
+    writer.setTransformGlyf(false);
+    writer.setQuality(5);
+    Woff2 woff2 = new Woff2(toBytes(writer.convert(font)));
+    assertEquals(font.numTables(), woff2.numTables);
+    for (int i = 0; i < woff2.numTables; i++) {
+      int tag = woff2.tags[i];
+      int version = (tag == Tag.glyf || tag == Tag.loca) ? 3 : 0;
+      assertEquals(Tag.stringValue(tag), version, woff2.versions[i]);
+      assertTrue(Tag.stringValue(tag),
+          Arrays.equals(tableBytes(font.getTable(tag)), woff2.table(i)));
+    }
+  }
+
+  public void testCollection() throws Exception {
+    Font openSans = TestFontUtils.loadFont(TestFontNames.OPENSANS.getFile())[0];
+    Font roboto = TestFontUtils.loadFont(TestFontNames.ROBOTO.getFile())[0];
+    Font[] fonts = FontFactory.getInstance().loadFonts(toCollection(openSans, roboto, openSans));
+    assertEquals(3, fonts.length);
+
+    Woff2 woff2 = new Woff2(toBytes(new Woff2Writer().convert(fonts)));
+    assertEquals(Tag.ttcf, woff2.flavor);
+    assertEquals(3, woff2.fontTables.length);
+    // the third font shares all of its tables with the first
+    assertTrue(Arrays.equals(woff2.fontTables[0], woff2.fontTables[2]));
+    for (int i = 0; i < fonts.length; i++) {
+      int[] indexes = woff2.fontTables[i];
+      assertEquals(fonts[i].numTables() - (fonts[i].hasTable(Tag.DSIG) ? 1 : 0), indexes.length);
+      for (int j = 0; j < indexes.length; j++) {
+        int tag = woff2.tags[indexes[j]];
+        if (j > 0) {
+          assertTrue(woff2.tags[indexes[j - 1]] < tag);
+        }
+        if (tag == Tag.glyf) {
+          checkGlyf(fonts[i], woff2.table(indexes[j]));
+          assertEquals(Tag.loca, woff2.tags[indexes[j] + 1]);
+        } else if (tag != Tag.loca && tag != Tag.head) {
+          assertEquals(0, woff2.versions[indexes[j]]);
+          assertTrue(Tag.stringValue(tag),
+              Arrays.equals(tableBytes(fonts[i].getTable(tag)), woff2.table(indexes[j])));
+        }
+      }
+    }
+  }
+
+  /**
+   * Decode a transformed glyf table and check it against the font's glyphs.
+   */
+  private static void checkGlyf(Font font, byte[] transformed) {
+    ByteBuffer header = ByteBuffer.wrap(transformed);
+    LocaTable loca = font.getTable(Tag.loca);
+    GlyphTable glyf = font.getTable(Tag.glyf);
+    FontHeaderTable head = font.getTable(Tag.head);
+    assertEquals(0, header.getShort(0));
+    int numGlyphs = header.getShort(4) & 0xffff;
+    assertEquals(loca.numGlyphs(), numGlyphs);
+    assertEquals(head.indexToLocFormatAsInt(), header.getShort(6));
+
+    ByteBuffer[] streams = new ByteBuffer[7];
+    int offset = 36;
+    for (int i = 0; i < streams.length; i++) {
+      int size = header.getInt(8 + 4 * i);
+      streams[i] = ByteBuffer.wrap(transformed, offset, size).slice();
+      offset += size;
+    }
+    ByteBuffer nContours = streams[0];
+    ByteBuffer nPoints = streams[1];
+    ByteBuffer flags = streams[2];
+    ByteBuffer glyphs = streams[3];
+    ByteBuffer composites = streams[4];
+    ByteBuffer bboxes = streams[5];
+    ByteBuffer instructions = streams[6];
+    byte[] bboxBitmap = new byte[((numGlyphs + 31) >> 5) << 2];
+    bboxes.get(bboxBitmap);
+
+    for (int glyphId = 0; glyphId < numGlyphs; glyphId++) {
+      int length = loca.glyphLength(glyphId);
+      Glyph glyph = length == 0 ? null : glyf.glyph(loca.glyphOffset(glyphId), length);
+      int contours = nContours.getShort();
+      boolean hasBbox = (bboxBitmap[glyphId >> 3] & (0x80 >> (glyphId & 7))) != 0;
+      if (contours == 0) {
+        assertTrue(glyph == null || glyph.numberOfContours() == 0);
+        assertFalse(hasBbox);
+        continue;
+      }
+      if (hasBbox) {
+        assertEquals(glyph.xMin(), bboxes.getShort());
+        assertEquals(glyph.yMin(), bboxes.getShort());
+        assertEquals(glyph.xMax(), bboxes.getShort());
+        assertEquals(glyph.yMax(), bboxes.getShort());
+      }
+      if (contours == -1) {
+        assertTrue(hasBbox);
+        CompositeGlyph composite = (CompositeGlyph) glyph;
+        boolean haveInstructions = false;
+        for (int i = 0; i < composite.numGlyphs(); i++) {
+          int componentFlags = composites.getShort() & 0xffff;
+          assertEquals(composite.flags(i), componentFlags);
+          assertEquals(composite.glyphIndex(i), composites.getShort() & 0xffff);
+          composites.position(composites.position()
+              + ((componentFlags & CompositeGlyph.FLAG_ARG_1_AND_2_ARE_WORDS) != 0 ? 4 : 2)
+              + composite.transformationSize(i));
+          haveInstructions |= (componentFlags & CompositeGlyph.FLAG_WE_HAVE_INSTRUCTIONS) != 0;
+        }
+        if (haveInstructions) {
+          checkInstructions(glyph, glyphs, instructions);
+        }
+        continue;
+      }
+
+      SimpleGlyph simple = (SimpleGlyph) glyph;
+      assertEquals(simple.numberOfContours(), contours);
+      int x = 0;
+      int y = 0;
+      int xMin = Integer.MAX_VALUE;
+      int xMax = Integer.MIN_VALUE;
+      int yMin = Integer.MAX_VALUE;
+      int yMax = Integer.MIN_VALUE;
+      for (int contour = 0; contour < contours; contour++) {
+        int points = read255UShort(nPoints);
+        assertEquals(simple.numberOfPoints(contour), points);
+        for (int point = 0; point < points; point++) {
+          int flag = flags.get() & 0xff;
+          int[] delta = decodeTriplet(flag & 0x7f, glyphs);
+          x += delta[0];
+          y += delta[1];
+          assertEquals(simple.xCoordinate(contour, point), x);
+          assertEquals(simple.yCoordinate(contour, point), y);
+          assertEquals(simple.onCurve(contour, point), (flag & 0x80) == 0);
+          xMin = Math.min(xMin, x);
+          xMax = Math.max(xMax, x);
+          yMin = Math.min(yMin, y);
+          yMax = Math.max(yMax, y);
+        }
+      }
+      if (!hasBbox) {
+        assertEquals(glyph.xMin(), xMin);
+        assertEquals(glyph.yMin(), yMin);
+        assertEquals(glyph.xMax(), xMax);
+        assertEquals(glyph.yMax(), yMax);
+      }
+      checkInstructions(glyph, glyphs, instructions);
+    }
+    assertFalse(nContours.hasRemaining());
+    assertFalse(nPoints.hasRemaining());
+    assertFalse(flags.hasRemaining());
+    assertFalse(glyphs.hasRemaining());
+    assertFalse(composites.hasRemaining());
+    assertFalse(bboxes.hasRemaining());
+    assertFalse(instructions.hasRemaining());
+  }
+
+  private static void checkInstructions(Glyph glyph, ByteBuffer glyphs, ByteBuffer instructions) {
+    int size = read255UShort(glyphs);
+    assertEquals(glyph.instructionSize(), size);
+    byte[] expected = new byte[size];
+    if (size > 0) {
+      glyph.instructions().readBytes(0, expected, 0, size);
+    }
+    byte[] actual = new byte[size];
+    instructions.get(actual);
+    assertTrue(Arrays.equals(expected, actual));
+  }
+
+  private static void checkHmtx(Font font, byte[] transformed) {
+    HorizontalMetricsTable hmtx = font.getTable(Tag.hmtx);
+    LocaTable loca = font.getTable(Tag.loca);
+    GlyphTable glyf = font.getTable(Tag.glyf);
+    ByteBuffer buffer = ByteBuffer.wrap(transformed);
+    int flags = buffer.get();
+    assertTrue(flags == 1 || flags == 2 || flags == 3);
+    int numHMetrics = hmtx.numberOfHMetrics();
+    for (int i = 0; i < numHMetrics; i++) {
+      assertEquals(hmtx.hMetricAdvanceWidth(i), buffer.getShort() & 0xffff);
+    }
+    for (int i = 0; i < loca.numGlyphs(); i++) {
+      boolean proportional = i < numHMetrics;
+      int lsb;
+      if ((flags & (proportional ? 1 : 2)) == 0) {
+        lsb = buffer.getShort();
+      } else {
+        int length = loca.glyphLength(i);
+        Glyph glyph = length == 0 ? null : glyf.glyph(loca.glyphOffset(i), length);
+        lsb = glyph == null || glyph.numberOfContours() == 0 ? 0 : glyph.xMin();
+      }
+      assertEquals(hmtx.leftSideBearing(i), lsb);
+    }
+    assertFalse(buffer.hasRemaining());
+  }
+
+  // as in the reference decoder
+  private static int[] decodeTriplet(int flag, ByteBuffer in) {
+    int dx;
+    int dy;
+    if (flag < 10) {
+      dx = 0;
+      dy = withSign(flag, ((flag & 14) << 7) + (in.get() & 0xff));
+    } else if (flag < 20) {
+      dx = withSign(flag, (((flag - 10) & 14) << 7) + (in.get() & 0xff));
+      dy = 0;
+    } else if (flag < 84) {
+      int b0 = flag - 20;
+      int b1 = in.get() & 0xff;
+      dx = withSign(flag, 1 + (b0 & 0x30) + (b1 >> 4));
+      dy = withSign(flag >> 1, 1 + ((b0 & 0x0c) << 2) + (b1 & 0x0f));
+    } else if (flag < 120) {
+      int b0 = flag - 84;
+      dx = withSign(flag, 1 + ((b0 / 12) << 8) + (in.get() & 0xff));
+      dy = withSign(flag >> 1, 1 + (((b0 % 12) >> 2) << 8) + (in.get() & 0xff));
+    } else if (flag < 124) {
+      int b1 = in.get() & 0xff;
+      int b2 = in.get() & 0xff;
+      dx = withSign(flag, (b1 << 4) + (b2 >> 4));
+      dy = withSign(flag >> 1, ((b2 & 0x0f) << 8) + (in.get() & 0xff));
+    } else {
+      dx = withSign(flag, in.getShort() & 0xffff);
+      dy = withSign(flag >> 1, in.getShort() & 0xffff);
+    }
+    return new int[] {dx, dy};
+  }
+
+  private static int withSign(int flag, int value) {
+    return (flag & 1) != 0 ? value : -value;
+  }
+
+  private static int read255UShort(ByteBuffer in) {
+    int code = in.get() & 0xff;
+    if (code == 253) {
+      return in.getShort() & 0xffff;
+    } else if (code == 255) {
+      return 253 + (in.get() & 0xff);
+    } else if (code == 254) {
+      return 506 + (in.get() & 0xff);
+    }
+    return code;
+  }
+
+  private static long readUIntBase128(ByteBuffer in) {
+    long value = 0;
+    for (int i = 0; i < 5; i++) {
+      int b = in.get() & 0xff;
+      assertFalse(i == 0 && b == 0x80);
+      value = (value << 7) | (b & 0x7f);
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    fail("UIntBase128 is too long.");
+    return 0;
+  }
+
+  private static byte[] tableBytes(Table table) {
+    ReadableFontData data = table.readFontData();
+    byte[] b = new byte[data.length()];
+    data.readBytes(0, b, 0, b.length);
+    return b;
+  }
+
+  private static byte[] toBytes(WritableFontData data) throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    data.copyTo(os);
+    return os.toByteArray();
+  }
+
+  /**
+   * Make a TTC file of fonts by moving their table offsets.
+   */
+  private static byte[] toCollection(Font... fonts) throws IOException {
+    FontFactory factory = FontFactory.getInstance();
+    List<byte[]> serialized = new ArrayList<byte[]>();
+    for (Font font : fonts) {
+      ByteArrayOutputStream os = new ByteArrayOutputStream();
+      factory.serializeFont(font, os);
+      serialized.add(os.toByteArray());
+    }
+    int headerSize = 12 + 4 * fonts.length;
+    int size = headerSize;
+    for (byte[] b : serialized) {
+      size += (b.length + 3) & -4;
+    }
+    ByteBuffer ttc = ByteBuffer.allocate(size);
+    ttc.putInt(Tag.ttcf);
+    ttc.putInt(0x00010000);
+    ttc.putInt(fonts.length);
+    int offset = headerSize;
+    for (byte[] b : serialized) {
+      ttc.putInt(offset);
+      offset += (b.length + 3) & -4;
+    }
+    offset = headerSize;
+    for (byte[] b : serialized) {
+      ByteBuffer sfnt = ByteBuffer.wrap(b);
+      int numTables = sfnt.getShort(4) & 0xffff;
+      for (int i = 0; i < numTables; i++) {
+        int record = 12 + 16 * i + 8;
+        sfnt.putInt(record, sfnt.getInt(record) + offset);
+      }
+      ttc.position(offset);
+      ttc.put(b);
+      offset += (b.length + 3) & -4;
+    }
+    return ttc.array();
+  }
+
+  /**
+   * A parsed WOFF 2.0 file with its table data decompressed.
+   */
+  private static final class Woff2 {
+    final int flavor;
+    final int length;
+    final int numTables;
+    final int[] tags;
+    final int[] versions;
+    final long[] origLengths;
+    final int[] offsets;
+    final int[] lengths;
+    final byte[] data;
+    int[][] fontTables;
+
+    Woff2(byte[] woff2) throws IOException {
+      ByteBuffer in = ByteBuffer.wrap(woff2);
+      assertEquals(SIGNATURE, in.getInt());
+      this.flavor = in.getInt();
+      this.length = in.getInt();
+      assertEquals(woff2.length, this.length);
+      assertEquals(0, this.length % 4);
+      this.numTables = in.getShort() & 0xffff;
+      assertEquals(0, in.getShort());
+      int totalSfntSize = in.getInt();
+      int compressedLength = in.getInt();
+      in.position(48);
+
+      this.tags = new int[this.numTables];
+      this.versions = new int[this.numTables];
+      this.origLengths = new long[this.numTables];
+      this.offsets = new int[this.numTables];
+      this.lengths = new int[this.numTables];
+      int offset = 0;
+      long sfntTables = 0;
+      for (int i = 0; i < this.numTables; i++) {
+        int flags = in.get() & 0xff;
+        this.tags[i] = (flags & 0x3f) == 63 ? in.getInt() : knownTag(flags & 0x3f);
+        this.versions[i] = flags >> 6;
+        this.origLengths[i] = readUIntBase128(in);
+        sfntTables += (this.origLengths[i] + 3) & -4;
+        boolean glyfOrLoca = this.tags[i] == Tag.glyf || this.tags[i] == Tag.loca;
+        boolean transformed = glyfOrLoca ? this.versions[i] == 0 : this.versions[i] != 0;
+        this.offsets[i] = offset;
+        this.lengths[i] =
+            (int) (transformed ? readUIntBase128(in) : this.origLengths[i]);
+        offset += this.lengths[i];
+      }
+
+      if (this.flavor == Tag.ttcf) {
+        assertEquals(0x00010000, in.getInt());
+        this.fontTables = new int[read255UShort(in)][];
+        int sfntDirectories = 12 + 4 * this.fontTables.length;
+        for (int i = 0; i < this.fontTables.length; i++) {
+          this.fontTables[i] = new int[read255UShort(in)];
+          in.getInt(); // flavor
+          sfntDirectories += 12 + 16 * this.fontTables[i].length;
+          for (int j = 0; j < this.fontTables[i].length; j++) {
+            this.fontTables[i][j] = read255UShort(in);
+          }
+        }
+        assertEquals(sfntDirectories + sfntTables, totalSfntSize);
+      } else {
+        assertEquals(12 + 16 * this.numTables + sfntTables, totalSfntSize);
+      }
+
+      assertTrue(in.position() + compressedLength <= this.length);
+      assertTrue(in.position() + compressedLength + 4 > this.length);
+      this.data = BrotliDecoder.decode(
+          Arrays.copyOfRange(woff2, in.position(), in.position() + compressedLength));
+      assertEquals(offset, this.data.length);
+    }
+
+    int indexOf(int tag) {
+      for (int i = 0; i < this.numTables; i++) {
+        if (this.tags[i] == tag) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    byte[] table(int index) {
+      return Arrays.copyOfRange(this.data, this.offsets[index],
+          this.offsets[index] + this.lengths[index]);
+    }
+
+    private static int knownTag(int index) {
+      String[] tags = {"cmap", "head", "hhea", "hmtx", "maxp", "name", "OS/2", "post", "cvt ",
+        "fpgm", "glyf", "loca", "prep", "CFF ", "VORG", "EBDT", "EBLC", "gasp", "hdmx", "kern",
+        "LTSH", "PCLT", "VDMX", "vhea", "vmtx", "BASE", "GDEF", "GPOS", "GSUB", "EBSC", "JSTF",
+        "MATH", "CBDT", "CBLC", "COLR", "CPAL", "SVG ", "sbix", "acnt", "avar", "bdat", "bloc",
+        "bsln", "cvar", "fdsc", "feat", "fmtx", "fvar", "gvar", "hsty", "just", "lcar", "mort",
+        "morx", "opbd", "prop", "trak", "Zapf", "Silf", "Glat", "Gloc", "Feat", "Sill"};
+      return Tag.intValue(tags[index]);
+    }
+  }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2011 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.typography.font.tools.httpserver;
+
+import com.google.typography.font.sfntly.Font;
+import com.google.typography.font.sfntly.FontFactory;
+import com.google.typography.font.sfntly.Tag;
+import com.google.typography.font.sfntly.table.core.MaximumProfileTable;
+import com.google.typography.font.sfntly.testutils.TestFont.TestFontNames;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.Arrays;
+
+/**
+ * Tests for {@link SubsetServer}, run against a server on localhost.
+ */
+public class SubsetServerTest extends TestCase {
+
+  private SubsetServer server;
+
+  @Override
+  protected void setUp() throws Exception {
+    FontRegistry registry = new FontRegistry();
+    registry.register("roboto", TestFontNames.ROBOTO.getFile());
+    this.server = new SubsetServer(registry,
+        new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 2, 1024 * 1024);
+    this.server.start();
+  }
+
+  @Override
+  protected void tearDown() {
+    this.server.stop(0);
+  }
+
+  private HttpURLConnection open(String path) throws IOException {
+    URL url = new URL("http", "localhost", this.server.address().getPort(), path);
+    return (HttpURLConnection) url.openConnection();
+  }
+
+  private static byte[] read(InputStream is) throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    try {
+      byte[] buffer = new byte[4096];
+      for (int n; (n = is.read(buffer)) != -1;) {
+        os.write(buffer, 0, n);
+      }
+    } finally {
+      is.close();
+    }
+    return os.toByteArray();
+  }
+
+  private byte[] get(String path, String contentType) throws IOException {
+    HttpURLConnection connection = open(path);
+    assertEquals(path, 200, connection.getResponseCode());
+    assertEquals(contentType, connection.getContentType());
+    return read(connection.getInputStream());
+  }
+
+  private int status(String path) throws IOException {
+    HttpURLConnection connection = open(path);
+    int status = connection.getResponseCode();
+    if (connection.getErrorStream() != null) {
+      read(connection.getErrorStream());
+    }
+    return status;
+  }
+
+  public void testSubset() throws IOException {
+    String text = URLEncoder.encode("Hello 0", "UTF-8");
+    byte[] ttf = get("/subset?font=roboto&text=" + text, "font/ttf");
+    Font subset = FontFactory.getInstance().loadFonts(new ByteArrayInputStream(ttf))[0];
+    // notdef and H, e, l, o, space and 0
+    assertEquals(7, ((MaximumProfileTable) subset.getTable(Tag.maxp)).numGlyphs());
+
+    byte[] woff = get("/subset?font=roboto&format=woff&text=" + text, "font/woff");
+    assertEquals("wOFF", new String(woff, 0, 4, "US-ASCII"));
+    byte[] eot = get("/subset?font=roboto&format=eot&unicodes=U%2B0041-0043",
+        "application/vnd.ms-fontobject");
+    assertTrue(eot.length > 0);
+    byte[] mtx = get("/subset?font=roboto&format=mtx&unicodes=U%2B0041-0043",
+        "application/vnd.ms-fontobject");
+    assertFalse(Arrays.equals(eot, mtx));
+    byte[] woff2 = get("/subset?font=roboto&format=woff2&text=" + text, "font/woff2");
+    assertEquals("wOF2", new String(woff2, 0, 4, "US-ASCII"));
+
+    // a repeated request is answered from the cache
+    assertTrue(Arrays.equals(ttf,
+        get("/subset?font=roboto&format=ttf&text=" + text, "font/ttf")));
+    assertEquals(1, this.server.cache().hitCount());
+    assertEquals(5, this.server.cache().missCount());
+    assertEquals(2, this.server.histogram("ttf").count());
+    assertEquals(1, this.server.histogram("woff").count());
+    assertEquals(1, this.server.histogram("eot").count());
+  }
+
+  public void testCollection() throws IOException {
+    FontFactory fontFactory = FontFactory.getInstance();
+    Font[] fonts = {
+        fontFactory.loadFonts(TestFontNames.OPENSANS.getFile().toPath())[0],
+        fontFactory.loadFonts(TestFontNames.ROBOTO.getFile().toPath())[0]};
+    File ttc = File.createTempFile("subsetserver", ".ttc");
+    try {
+      OutputStream os = new FileOutputStream(ttc);
+      try {
+        fontFactory.serializeFonts(fonts, os);
+      } finally {
+        os.close();
+      }
+      FontRegistry registry = this.server.registry();
+      byte[] first = registry.register("first", ttc, 0).font().digest();
+      byte[] second = registry.register("second", ttc, 1).font().digest();
+      assertFalse(Arrays.equals(first, second));
+      try {
+        registry.register("third", ttc, 2);
+        fail("Missing collection font was registered.");
+      } catch (IOException e) {
+        // expected
+      }
+
+      String text = URLEncoder.encode("Hello 0", "UTF-8");
+      for (String id : new String[] {"first", "second"}) {
+        byte[] ttf = get("/subset?font=" + id + "&text=" + text, "font/ttf");
+        Font subset = fontFactory.loadFonts(new ByteArrayInputStream(ttf))[0];
+        assertEquals(7, ((MaximumProfileTable) subset.getTable(Tag.maxp)).numGlyphs());
+      }
+      assertEquals(2, this.server.cache().missCount());
+    } finally {
+      ttc.delete();
+    }
+  }
+
+  public void testBadRequests() throws IOException {
+    assertEquals(404, status("/subset?font=missing&text=abc"));
+    assertEquals(400, status("/subset?font=roboto&text=abc&format=pdf"));
+    assertEquals(400, status("/subset?font=roboto"));
+    assertEquals(400, status("/subset?font=roboto&text=a&unicodes=U%2B41"));
+    assertEquals(400, status("/subset?font=roboto&unicodes=U%2B43-41"));
+    assertEquals(400, status("/subset?text=abc"));
+    StringBuilder ranges = new StringBuilder("U%2B0-10FFFF");
+    for (int i = 0; i < 100; i++) {
+      ranges.append(",U%2B0-10FFFF");
+    }
+    assertEquals(400, status("/subset?font=roboto&unicodes=" + ranges));
+
+    HttpURLConnection connection = open("/subset?font=roboto&text=abc");
+    connection.setRequestMethod("DELETE");
+    assertEquals(405, connection.getResponseCode());
+
+    assertEquals(8, this.server.histogram("error").count());
+    assertEquals(0, this.server.cache().missCount());
+  }
+
+  public void testFontsAndStats() throws IOException {
+    assertEquals("roboto\n", new String(get("/fonts", "text/plain; charset=utf-8"), "UTF-8"));
+    get("/subset?font=roboto&text=abc", "font/ttf");
+    String stats = new String(get("/stats", "text/plain; charset=utf-8"), "UTF-8");
+    assertTrue(stats, stats.contains("fonts 1\n"));
+    assertTrue(stats, stats.contains("cache hits=0 misses=1 shared=0 evictions=0\n"));
+    assertTrue(stats, stats.contains("cache tier 0 hits=0 evictions=0\n"));
+    assertTrue(stats, stats.contains("latency ttf count=1 "));
+    assertTrue(stats, stats.contains("latency woff count=0 "));
+  }
+
+  public void testLatencyHistogram() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals(0, histogram.percentileMicros(50));
+    for (int i = 1; i <= 100; i++) {
+      histogram.record(i * 1000L);
+    }
+    assertEquals(100, histogram.count());
+    assertEquals(5050, histogram.totalMicros());
+    assertEquals(100, histogram.maxMicros());
+    // bucket bounds are powers of two
+    assertEquals(64, histogram.percentileMicros(50));
+    assertEquals(128, histogram.percentileMicros(99));
+    long total = 0;
+    for (int i = 0; i < histogram.numBuckets(); i++) {
+      total += histogram.bucketCount(i);
+    }
+    assertEquals(100, total);
+  }
+}
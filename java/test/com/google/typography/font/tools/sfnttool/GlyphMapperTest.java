@@ -0,0 +1,80 @@
+/*
+ * Copyright 2011 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.typography.font.tools.sfnttool;
+
+import com.google.typography.font.sfntly.Font;
+import com.google.typography.font.sfntly.table.core.CMap;
+import com.google.typography.font.sfntly.table.core.CMapTable;
+import com.google.typography.font.sfntly.table.truetype.GlyphView;
+import com.google.typography.font.sfntly.testutils.TestFont.TestFontNames;
+import com.google.typography.font.sfntly.testutils.TestFontUtils;
+
+import junit.framework.TestCase;
+
+import java.util.List;
+
+/**
+ * Tests for {@link GlyphMapper} and {@link GlyphCoverage}.
+ */
+public class GlyphMapperTest extends TestCase {
+
+  // a supplementary character between two BMP characters
+  private static final String TEST_TEXT = "Hello \uD83D\uDE00 world";
+
+  public void testTextMapping() throws Exception {
+    Font font = TestFontUtils.loadFont(TestFontNames.ROBOTO.getFile())[0];
+    GlyphMapper mapper = GlyphMapper.forFont(font);
+    assertSame(mapper, GlyphMapper.forFont(font));
+    assertSame(GlyphView.forFont(font), GlyphView.forFont(font));
+    CMap cmap = mapper.cmap();
+
+    int[] glyphIds = mapper.glyphIds(TEST_TEXT);
+    int[] codePoints = new int[TEST_TEXT.codePointCount(0, TEST_TEXT.length())];
+    for (int i = 0, c = 0; i < TEST_TEXT.length(); i += Character.charCount(codePoints[c++])) {
+      codePoints[c] = TEST_TEXT.codePointAt(i);
+    }
+    assertEquals(codePoints.length, glyphIds.length);
+    for (int i = 0; i < codePoints.length; i++) {
+      assertEquals(cmap.glyphId(codePoints[i]), glyphIds[i]);
+    }
+    assertTrue(glyphIds[0] != CMapTable.NOTDEF);
+
+    int[] fromCodePoints = mapper.glyphIds(codePoints);
+    for (int i = 0; i < codePoints.length; i++) {
+      assertEquals(glyphIds[i], fromCodePoints[i]);
+    }
+
+    int[] padded = new int[glyphIds.length + 2];
+    assertEquals(glyphIds.length, mapper.glyphIds(TEST_TEXT, padded, 1));
+    assertEquals(0, padded[0]);
+    for (int i = 0; i < glyphIds.length; i++) {
+      assertEquals(glyphIds[i], padded[i + 1]);
+    }
+  }
+
+  public void testCoverage() throws Exception {
+    Font font = TestFontUtils.loadFont(TestFontNames.ROBOTO.getFile())[0];
+    List<Integer> coverage = GlyphCoverage.getGlyphCoverage(font, TEST_TEXT);
+    assertEquals(Integer.valueOf(0), coverage.get(0));
+    for (int i = 1; i < coverage.size(); i++) {
+      assertTrue(coverage.get(i - 1) < coverage.get(i));
+    }
+    for (int glyphId : GlyphMapper.forFont(font).glyphIds(TEST_TEXT)) {
+      assertTrue(coverage.contains(glyphId));
+    }
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2011 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.typography.font.tools.sfnttool;
+
+import com.google.typography.font.sfntly.Font;
+import com.google.typography.font.sfntly.FontFactory;
+import com.google.typography.font.sfntly.Tag;
+import com.google.typography.font.sfntly.table.core.MaximumProfileTable;
+import com.google.typography.font.sfntly.testutils.TestFont.TestFontNames;
+import com.google.typography.font.tools.sfnttool.SfntBatch.Job;
+import com.google.typography.font.tools.subsetter.SubsetCache.Format;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.util.List;
+
+/**
+ * Tests for {@link SfntBatch}.
+ */
+public class SfntBatchTest extends TestCase {
+
+  public void testReadManifest() throws IOException {
+    File base = new File("/fonts");
+    String manifest = "# comment\n"
+        + "\n"
+        + "a.ttf\tHello\\tworld\twoff2\tout/a.woff2\n"
+        + "/abs/b.ttf\tU+0041-0043,u+1F600\tMTX\t/tmp/b.eot\n"
+        + "c.ttf\t\tttf\tc.ttf\n";
+    List<Job> jobs = SfntBatch.readManifest(new StringReader(manifest), base);
+    assertEquals(3, jobs.size());
+
+    assertEquals(3, jobs.get(0).lineNumber());
+    assertEquals(new File(base, "a.ttf"), jobs.get(0).fontFile());
+    assertEquals("Hello\tworld", jobs.get(0).text());
+    assertEquals(Format.WOFF2, jobs.get(0).format());
+    assertEquals(new File(base, "out/a.woff2"), jobs.get(0).outputFile());
+
+    assertEquals(new File("/abs/b.ttf"), jobs.get(1).fontFile());
+    assertEquals("ABC\uD83D\uDE00", jobs.get(1).text());
+    assertEquals(Format.MTX, jobs.get(1).format());
+
+    assertNull(jobs.get(2).text());
+    assertEquals(Format.TTF, jobs.get(2).format());
+  }
+
+  public void testMalformedManifest() {
+    String[] manifests = {
+        "a.ttf\tabc\twoff\n",
+        "a.ttf\tabc\tpdf\tout\n",
+        "a.ttf\tU+0043-0041\tttf\tout\n",
+        "a.ttf\tbad\\q\tttf\tout\n"};
+    for (String manifest : manifests) {
+      try {
+        SfntBatch.readManifest(new StringReader(manifest), null);
+        fail(manifest);
+      } catch (IOException e) {
+        assertTrue(e.getMessage().startsWith("Manifest line 1"));
+      }
+    }
+  }
+
+  public void testRun() throws IOException {
+    File dir = File.createTempFile("sfntbatch", "");
+    dir.delete();
+    dir.mkdir();
+    try {
+      String font = TestFontNames.ROBOTO.getFile().getAbsolutePath();
+      StringBuilder manifest = new StringBuilder();
+      String[] formats = {"ttf", "woff", "woff2", "eot", "mtx"};
+      for (int i = 0; i < formats.length; i++) {
+        manifest.append(font).append("\tHello ").append(i).append('\t').append(formats[i])
+            .append("\tout").append(i).append('\n');
+      }
+      manifest.append("missing.ttf\tabc\tttf\tmissing\n");
+      List<Job> jobs = SfntBatch.readManifest(new StringReader(manifest.toString()), dir);
+
+      ByteArrayOutputStream report = new ByteArrayOutputStream();
+      boolean ok = new SfntBatch(3, false).run(jobs, new PrintStream(report, true));
+      assertFalse(ok);
+      String text = report.toString();
+      assertTrue(text, text.contains("FAILED line 6"));
+      assertTrue(text, text.contains("6 jobs, 1 failed, 2 fonts loaded"));
+
+      for (int i = 0; i < formats.length; i++) {
+        assertTrue(new File(dir, "out" + i).length() > 0);
+      }
+      Font subset = FontFactory.getInstance().loadFonts(new File(dir, "out0").toPath())[0];
+      // notdef and H, e, l, o, space and 0
+      assertEquals(7, ((MaximumProfileTable) subset.getTable(Tag.maxp)).numGlyphs());
+    } finally {
+      for (File file : dir.listFiles()) {
+        file.delete();
+      }
+      dir.delete();
+    }
+  }
+}
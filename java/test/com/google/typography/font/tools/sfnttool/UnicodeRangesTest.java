@@ -0,0 +1,64 @@
+/*
+ * Copyright 2011 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.typography.font.tools.sfnttool;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for {@link UnicodeRanges}.
+ */
+public class UnicodeRangesTest extends TestCase {
+
+  public void testParse() {
+    assertEquals("ABC\uD83D\uDE00", UnicodeRanges.parse("U+0041-0043, u+1F600"));
+    assertEquals("AA", UnicodeRanges.parse("U+41,U+41"));
+    assertEquals(0x10000, UnicodeRanges.parse("U+0-FFFF").length());
+  }
+
+  public void testMalformed() {
+    String[] malformed = {"", "0041", "U+", "U+43-41", "U+110000", "U+-41", "U+4G"};
+    for (String ranges : malformed) {
+      try {
+        UnicodeRanges.parse(ranges);
+        fail(ranges);
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+  }
+
+  public void testLimit() {
+    assertEquals(3, UnicodeRanges.parse("U+41-43", 3).length());
+    try {
+      UnicodeRanges.parse("U+41-42,U+43-44", 3);
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertTrue(e.getMessage().contains("more than 3"));
+    }
+    // rejected from the counts alone, without building the text
+    StringBuilder ranges = new StringBuilder("U+0-10FFFF");
+    for (int i = 0; i < 10000; i++) {
+      ranges.append(",U+0-10FFFF");
+    }
+    try {
+      UnicodeRanges.parse(ranges.toString(), 1 << 16);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+}
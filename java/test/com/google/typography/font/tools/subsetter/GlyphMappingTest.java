@@ -0,0 +1,88 @@
+/*
+ * Copyright 2011 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.typography.font.tools.subsetter;
+
+import com.google.typography.font.sfntly.Font;
+import com.google.typography.font.sfntly.FontFactory;
+import com.google.typography.font.sfntly.Tag;
+import com.google.typography.font.sfntly.testutils.TestFont.TestFontNames;
+import com.google.typography.font.sfntly.testutils.TestFontUtils;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tests for {@link GlyphSet} and {@link GlyphMapping}.
+ */
+public class GlyphMappingTest extends TestCase {
+
+  public void testGlyphSet() {
+    GlyphSet glyphs = new GlyphSet(162, 0, 68);
+    assertTrue(glyphs.add(67));
+    assertFalse(glyphs.add(68));
+    assertEquals(4, glyphs.size());
+    assertTrue(glyphs.contains(162));
+    assertFalse(glyphs.contains(1));
+    assertTrue(Arrays.equals(new int[] {0, 67, 68, 162}, glyphs.toArray()));
+    assertEquals(Arrays.asList(0, 67, 68, 162), glyphs.toList());
+    assertEquals(67, glyphs.nextGlyph(1));
+    assertEquals(-1, glyphs.nextGlyph(163));
+  }
+
+  public void testGlyphMapping() {
+    GlyphMapping mapping = new GlyphMapping(new int[] {0, 162, 67, 68});
+    assertEquals(4, mapping.size());
+    assertEquals(162, mapping.oldGlyphId(1));
+    assertEquals(1, mapping.newGlyphId(162));
+    assertEquals(3, mapping.newGlyphId(68));
+    assertEquals(GlyphMapping.NOT_MAPPED, mapping.newGlyphId(1));
+    assertEquals(GlyphMapping.NOT_MAPPED, mapping.newGlyphId(1000));
+    assertFalse(mapping.contains(-1));
+    List<Integer> list = mapping.asList();
+    assertEquals(Arrays.asList(0, 162, 67, 68), list);
+  }
+
+  public void testSubsetWithGlyphSet() throws Exception {
+    Font srcFont = TestFontUtils.loadFont(TestFontNames.OPENSANS.getFile())[0];
+    FontFactory factory = FontFactory.getInstance();
+
+    GlyphSet glyphs = new GlyphSet(0, 67, 68, 162);
+    Subsetter setSubsetter = new RenumberingSubsetter(srcFont, factory);
+    setSubsetter.setGlyphs(glyphs);
+    Subsetter listSubsetter = new RenumberingSubsetter(srcFont, factory);
+    listSubsetter.setGlyphs(glyphs.toList());
+
+    assertTrue(Arrays.equals(subsetBytes(factory, listSubsetter),
+        subsetBytes(factory, setSubsetter)));
+  }
+
+  private static byte[] subsetBytes(FontFactory factory, Subsetter subsetter) throws Exception {
+    Set<Integer> removeTables = new HashSet<Integer>();
+    removeTables.add(Tag.GPOS);
+    removeTables.add(Tag.GSUB);
+    removeTables.add(Tag.kern);
+    subsetter.setRemoveTables(removeTables);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    factory.serializeFont(subsetter.subset().build(), out);
+    return out.toByteArray();
+  }
+}
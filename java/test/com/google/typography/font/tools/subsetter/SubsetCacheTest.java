@@ -0,0 +1,291 @@
+/*
+ * Copyright 2011 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.typography.font.tools.subsetter;
+
+import com.google.typography.font.sfntly.Font;
+import com.google.typography.font.sfntly.FontFactory;
+import com.google.typography.font.sfntly.Tag;
+import com.google.typography.font.sfntly.table.core.CMapTable.CMapId;
+import com.google.typography.font.sfntly.testutils.TestFont.TestFontNames;
+import com.google.typography.font.sfntly.testutils.TestFontUtils;
+import com.google.typography.font.tools.subsetter.SubsetCache.DiskTier;
+import com.google.typography.font.tools.subsetter.SubsetCache.Format;
+import com.google.typography.font.tools.subsetter.SubsetCache.Key;
+import com.google.typography.font.tools.subsetter.SubsetCache.MemoryTier;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for the subset result cache.
+ */
+public class SubsetCacheTest extends TestCase {
+
+  private static final byte[] DIGEST = {1, 2, 3, 4};
+  private static final List<CMapId> CMAPS = Arrays.asList(CMapId.WINDOWS_BMP);
+  private static final Set<Integer> NO_TABLES = Collections.emptySet();
+
+  private File directory;
+
+  @Override
+  public void setUp() throws IOException {
+    this.directory = File.createTempFile("subsetcache", "");
+    this.directory.delete();
+  }
+
+  @Override
+  public void tearDown() {
+    File[] files = this.directory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    this.directory.delete();
+  }
+
+  public void testKey() {
+    Set<Integer> tables = new HashSet<Integer>(Arrays.asList(Tag.GSUB, Tag.GPOS));
+    Key key = new Key(DIGEST, new GlyphSet(0, 5, 3), CMAPS, tables, Format.TTF);
+    Key same = new Key(DIGEST, new GlyphSet(3, 0, 5), CMAPS,
+        new HashSet<Integer>(Arrays.asList(Tag.GPOS, Tag.GSUB)), Format.TTF);
+    assertEquals(key, same);
+    assertEquals(key.hashCode(), same.hashCode());
+    assertEquals(key.hexDigest(), same.hexDigest());
+    assertEquals(40, key.hexDigest().length());
+
+    assertFalse(key.equals(new Key(DIGEST, new GlyphSet(0, 5), CMAPS, tables, Format.TTF)));
+    assertFalse(key.equals(new Key(DIGEST, new GlyphSet(0, 5, 3), CMAPS, tables, Format.WOFF)));
+    assertFalse(key.equals(new Key(DIGEST, new GlyphSet(0, 5, 3), CMAPS, NO_TABLES, Format.TTF)));
+    assertFalse(key.equals(new Key(new byte[] {1, 2, 3, 5}, new GlyphSet(0, 5, 3), CMAPS, tables,
+        Format.TTF)));
+    assertFalse(key.hexDigest().equals(
+        new Key(DIGEST, new GlyphSet(0, 5, 3), CMAPS, tables, Format.WOFF).hexDigest()));
+
+    // uncompressed and MicroType Express EOTs, and other writer settings, are kept apart
+    Key eot = new Key(DIGEST, new GlyphSet(0, 5, 3), CMAPS, tables, Format.EOT);
+    Key mtx = new Key(DIGEST, new GlyphSet(0, 5, 3), CMAPS, tables, Format.MTX);
+    Key mtxLevel = new Key(DIGEST, new GlyphSet(0, 5, 3), CMAPS, tables, Format.MTX, "level=4");
+    assertFalse(eot.equals(mtx));
+    assertFalse(mtx.equals(mtxLevel));
+    assertFalse(mtx.hexDigest().equals(mtxLevel.hexDigest()));
+    assertEquals(mtx, new Key(DIGEST, new GlyphSet(0, 5, 3), CMAPS, tables, Format.MTX, ""));
+    assertEquals(mtxLevel,
+        new Key(DIGEST, new GlyphSet(0, 5, 3), CMAPS, tables, Format.MTX, "level=4"));
+
+    // later changes to the arguments don't change the key
+    GlyphSet glyphs = new GlyphSet(1);
+    Key copied = new Key(DIGEST, glyphs, CMAPS, NO_TABLES, Format.TTF);
+    glyphs.add(2);
+    assertEquals(new Key(DIGEST, new GlyphSet(1), CMAPS, NO_TABLES, Format.TTF), copied);
+  }
+
+  public void testMemoryTier() throws IOException {
+    MemoryTier memory = new MemoryTier(10);
+    SubsetCache cache = new SubsetCache(memory);
+    CountingLoader loader = new CountingLoader(4);
+
+    byte[] first = cache.get(key(1), loader);
+    assertEquals(4, first.length);
+    assertSame(first, cache.get(key(1), loader));
+    assertEquals(1, loader.count.get());
+    assertEquals(1, cache.hitCount());
+    assertEquals(1, cache.missCount());
+
+    cache.get(key(2), loader);
+    // touch 1 so that 2 is the least recently used
+    cache.get(key(1), loader);
+    cache.get(key(3), loader);
+    assertEquals(2, memory.size());
+    assertEquals(8, memory.bytes());
+    assertEquals(1, memory.evictionCount());
+    assertNull(memory.get(key(2)));
+    assertNotNull(memory.get(key(1)));
+
+    // subsets bigger than the tier are not kept
+    cache.get(key(4), new CountingLoader(11));
+    assertNull(memory.get(key(4)));
+  }
+
+  public void testDiskTier() throws IOException {
+    CountingLoader loader = new CountingLoader(100);
+    SubsetCache cache = new SubsetCache(new DiskTier(this.directory, 1000));
+    byte[] value = cache.get(key(1), loader);
+    assertEquals(1, this.directory.listFiles().length);
+
+    // a new process finds the subset on disk and keeps it in memory
+    MemoryTier memory = new MemoryTier(1000);
+    SubsetCache warm = new SubsetCache(memory, new DiskTier(this.directory, 1000));
+    assertTrue(Arrays.equals(value, warm.get(key(1), loader)));
+    assertEquals(1, loader.count.get());
+    assertEquals(0, warm.hitCount(0));
+    assertEquals(1, warm.hitCount(1));
+    assertEquals(1, memory.size());
+    warm.get(key(1), loader);
+    assertEquals(1, warm.hitCount(0));
+  }
+
+  public void testDiskTierEviction() throws IOException {
+    DiskTier disk = new DiskTier(this.directory, 250);
+    SubsetCache cache = new SubsetCache(disk);
+    CountingLoader loader = new CountingLoader(100);
+    cache.get(key(1), loader);
+    cache.get(key(2), loader);
+    // touch 1 so that 2 is the least recently used
+    cache.get(key(1), loader);
+    cache.get(key(3), loader);
+    assertEquals(2, disk.size());
+    assertEquals(200, disk.bytes());
+    assertEquals(2, this.directory.listFiles().length);
+    assertEquals(1, disk.evictionCount());
+    assertEquals(1, cache.evictionCount(0));
+    assertEquals(1, cache.evictionCount());
+    assertNull(disk.get(key(2)));
+    assertNotNull(disk.get(key(1)));
+
+    // subsets bigger than the tier are not kept
+    cache.get(key(4), new CountingLoader(251));
+    assertNull(disk.get(key(4)));
+    assertEquals(2, this.directory.listFiles().length);
+
+    // a smaller tier over the same directory deletes the oldest subsets first
+    assertTrue(new File(this.directory, key(1).hexDigest() + ".subset")
+        .setLastModified(System.currentTimeMillis() + 60000));
+    DiskTier smaller = new DiskTier(this.directory, 150);
+    assertEquals(1, smaller.size());
+    assertEquals(1, smaller.evictionCount());
+    assertNotNull(smaller.get(key(1)));
+    assertNull(smaller.get(key(3)));
+  }
+
+  public void testSharedLoad() throws Exception {
+    final SubsetCache cache = new SubsetCache(new MemoryTier(1000));
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final AtomicInteger loads = new AtomicInteger();
+    final Callable<byte[]> loader = new Callable<byte[]>() {
+      @Override
+      public byte[] call() throws Exception {
+        loads.incrementAndGet();
+        started.countDown();
+        release.await();
+        return new byte[] {42};
+      }
+    };
+    Callable<byte[]> request = new Callable<byte[]>() {
+      @Override
+      public byte[] call() throws Exception {
+        return cache.get(key(1), loader);
+      }
+    };
+
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<byte[]> first = executor.submit(request);
+      started.await();
+      Future<byte[]> second = executor.submit(request);
+      while (cache.sharedLoadCount() == 0) {
+        Thread.sleep(1);
+      }
+      release.countDown();
+      assertSame(first.get(), second.get());
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals(1, loads.get());
+    assertEquals(1, cache.missCount());
+    assertEquals(1, cache.sharedLoadCount());
+  }
+
+  public void testLoaderFailure() {
+    SubsetCache cache = new SubsetCache(new MemoryTier(1000));
+    try {
+      cache.get(key(1), new Callable<byte[]>() {
+        @Override
+        public byte[] call() throws Exception {
+          throw new IOException("failed");
+        }
+      });
+      fail("Loader failure was not reported.");
+    } catch (IOException e) {
+      assertEquals("failed", e.getMessage());
+    }
+  }
+
+  public void testSubsetFont() throws Exception {
+    final Font font = TestFontUtils.loadFont(TestFontNames.OPENSANS.getFile())[0];
+    final GlyphSet glyphs = new GlyphSet(0, 67, 68, 162);
+    Key key = Key.forFont(font, glyphs, CMAPS, NO_TABLES, Format.TTF);
+    Callable<byte[]> loader = new Callable<byte[]>() {
+      @Override
+      public byte[] call() throws Exception {
+        FontFactory factory = FontFactory.getInstance();
+        Subsetter subsetter = new RenumberingSubsetter(font, factory);
+        subsetter.setGlyphs(glyphs);
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        factory.serializeFont(subsetter.subset().build(), os);
+        return os.toByteArray();
+      }
+    };
+    SubsetCache cache = new SubsetCache(new MemoryTier(1 << 20));
+    byte[] subset = cache.get(key, loader);
+    assertSame(subset, cache.get(key, loader));
+    Font loaded = FontFactory.getInstance().loadFonts(subset)[0];
+    assertNotNull(loaded.getTable(Tag.glyf));
+
+    try {
+      Key.forFont(TestFontUtils.loadFont(TestFontNames.OPENSANS.getFile(), false)[0], glyphs,
+          CMAPS, NO_TABLES, Format.TTF);
+      fail("Font without a digest was accepted.");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  private static Key key(int glyphId) {
+    return new Key(DIGEST, new GlyphSet(glyphId), CMAPS, NO_TABLES, Format.TTF);
+  }
+
+  private static final class CountingLoader implements Callable<byte[]> {
+    private final int length;
+    final AtomicInteger count = new AtomicInteger();
+
+    CountingLoader(int length) {
+      this.length = length;
+    }
+
+    @Override
+    public byte[] call() {
+      this.count.incrementAndGet();
+      return new byte[this.length];
+    }
+  }
+}